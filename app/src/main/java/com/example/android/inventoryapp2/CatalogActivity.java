@@ -16,26 +16,36 @@
 package com.example.android.inventoryapp2;
 
 import android.app.LoaderManager;
+import android.content.AsyncQueryHandler;
 import android.content.ContentUris;
 import android.content.ContentValues;
-import android.content.CursorLoader;
+import android.content.Context;
 import android.content.Intent;
 import android.content.Loader;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.text.TextUtils;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.CursorAdapter;
-import android.widget.ListView;
+import android.widget.Toast;
 
+import com.example.android.inventoryapp2.data.CatalogSnapshotCursor;
 import com.example.android.inventoryapp2.data.ProductContract;
 import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockAlertEntry;
+import com.example.android.inventoryapp2.data.ProductImporter;
+import com.example.android.inventoryapp2.data.ProductWriter;
 /**
  * Created by clarissajarem on 11/9/18.
  */
@@ -45,11 +55,70 @@ import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
 public class CatalogActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor>{
     private static final int PRODUCT_LOADER = 0;
 
-    CursorAdapter localCursorAdapter;
+    /** Request code for picking the catalog file to import */
+    private static final int REQUEST_IMPORT_CATALOG = 1;
+
+    ProductListAdapter localProductAdapter;
+
+    /** Shown instead of the list while it has no items */
+    private View mEmptyView;
+
+    /**
+     * How long the search text has to stay the same before the list is reloaded, so a fast
+     * typist doesn't start a search per keystroke
+     */
+    private static final long SEARCH_DELAY_MILLIS = 100;
+
+    /** Text typed into the search box, empty to show every product */
+    private String mSearchQuery = "";
+
+    /** Reloads the list with the current search text, posted once the typing pauses */
+    private final Handler mSearchHandler = new Handler();
+    private final Runnable mSearch = new Runnable() {
+        @Override
+        public void run() {
+            mSearchPending = false;
+            // Restarting cancels the search still running, if any
+            getLoaderManager().restartLoader(PRODUCT_LOADER, null, CatalogActivity.this);
+        }
+    };
+
+    /** Whether {@link #mSearch} is posted */
+    private boolean mSearchPending;
+
+    /**
+     * When the search text last changed, for logging how long the results took in debug
+     * builds, 0 after that and in release builds
+     */
+    private long mSearchChangedAt;
+
+    /**
+     * The catalog snapshot shown until the first load finishes, so a cold start doesn't wait
+     * for the database. Null once replaced or if there was none.
+     */
+    private CatalogSnapshotCursor mSnapshotCursor;
+
+    /**
+     * When this activity was created, for logging how long the first rows took in debug
+     * builds, 0 after that and in release builds
+     */
+    private long mCreatedAt;
+
+    /** Reads and dismisses the stock alerts off the main thread */
+    private StockAlertHandler mStockAlertHandler;
+
+    /**
+     * Checks the stock alerts whenever the provider notifies them, which it does once for a
+     * burst of alerts. Registered while this activity is started.
+     */
+    private ContentObserver mStockAlertObserver;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (BuildConfig.DEBUG) {
+            mCreatedAt = SystemClock.elapsedRealtime();
+        }
         setContentView(R.layout.activity_catalog);
 
         // Setup FAB to open EditorActivity
@@ -61,40 +130,137 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
                 startActivity(intent);
             }
         });
-        //Find the listview which will be populated with the pet data
-        ListView productListView = (ListView) findViewById(R.id.list_view_product);
-        //Find and use the emptyview on the ListView, so that it only shows when the list has 0 items
-        View emptyView = findViewById(R.id.empty_view);
-        productListView.setEmptyView(emptyView);
+        //Find the recyclerview which will be populated with the product data
+        RecyclerView productListView = (RecyclerView) findViewById(R.id.list_view_product);
+        productListView.setLayoutManager(new LinearLayoutManager(this));
+        //Find the emptyview, it only shows when the list has 0 items
+        mEmptyView = findViewById(R.id.empty_view);
         //set up adapter
-        localCursorAdapter = new ProductCursorAdapter(this, null);
-        productListView.setAdapter(localCursorAdapter);
-
-        productListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        localProductAdapter = new ProductListAdapter(this, new ProductListAdapter.OnProductClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
+            public void onProductClick(long id) {
                 // Create new intent to go to {@link EditorActivity}
                 Intent intent = new Intent(CatalogActivity.this, EditorActivity.class);
 
-                // Form the content URI that represents the specific pet that was clicked on,
+                // Form the content URI that represents the specific product that was clicked on,
                 // by appending the "id" (passed as input to this method) onto the
                 // {@link ProductEntry#CONTENT_URI}.
-                // For example, the URI would be "content://com.example.android.inventoryapp/pets/2"
-                // if the pet with ID 2 was clicked on.
+                // For example, the URI would be "content://com.example.android.inventoryapp2/products/2"
+                // if the product with ID 2 was clicked on.
                 Uri currentProductUri = ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id);
 
                 // Set the URI on the data field of the intent
                 intent.setData(currentProductUri);
 
-                // Launch the {@link EditorActivity} to display the data for the current pet.
+                // Launch the {@link EditorActivity} to display the data for the current product.
                 startActivity(intent);
             }
         });
+        localProductAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+        });
+        productListView.setAdapter(localProductAdapter);
+
+        //show the snapshot of the catalog right away, the loader replaces it once it is done
+        mSnapshotCursor = CatalogSnapshotCursor.open(this);
+        if (mSnapshotCursor != null) {
+            localProductAdapter.swapCursor(mSnapshotCursor);
+            if (mCreatedAt != 0) {
+                Log.v("CatalogActivity", "First rows from snapshot after "
+                        + (SystemClock.elapsedRealtime() - mCreatedAt) + " ms");
+            }
+        }
+        updateEmptyView();
 
         //start the loader
         getLoaderManager().initLoader(PRODUCT_LOADER, null, this);
+
+        mStockAlertHandler = new StockAlertHandler(this);
+        mStockAlertObserver = new ContentObserver(new Handler()) {
+            @Override
+            public void onChange(boolean selfChange) {
+                mStockAlertHandler.check();
+            }
+        };
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        getContentResolver().registerContentObserver(StockAlertEntry.CONTENT_URI, false, mStockAlertObserver);
+        // Show the alerts raised while this activity wasn't watching
+        mStockAlertHandler.check();
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        getContentResolver().unregisterContentObserver(mStockAlertObserver);
+    }
+
+    /**
+     * Shows a toast for the stock alerts there are and dismisses them, so each alert is shown
+     * once. Holds the application context only, a query may finish after the activity.
+     */
+    private static final class StockAlertHandler extends AsyncQueryHandler {
+        private final Context mContext;
+
+        StockAlertHandler(Context context) {
+            super(context.getContentResolver());
+            mContext = context.getApplicationContext();
+        }
+
+        void check() {
+            startQuery(0, null, StockAlertEntry.CONTENT_URI, new String[]{StockAlertEntry.COLUMN_TIMESTAMP},
+                    null, null, null);
+        }
+
+        @Override
+        protected void onQueryComplete(int token, Object cookie, Cursor cursor) {
+            if (cursor == null) {
+                return;
+            }
+            int count;
+            long latest = 0;
+            try {
+                count = cursor.getCount();
+                while (cursor.moveToNext()) {
+                    latest = Math.max(latest, cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+            if (count == 0) {
+                return;
+            }
+            Toast.makeText(mContext, mContext.getResources().getQuantityString(R.plurals.stock_alert, count, count),
+                    Toast.LENGTH_LONG).show();
+            // Alerts raised since the query stay for the next check
+            startDelete(0, null, StockAlertEntry.CONTENT_URI, StockAlertEntry.COLUMN_TIMESTAMP + " <= ?",
+                    new String[]{String.valueOf(latest)});
+        }
+    }
+
+
+    /**
+     * Show the empty view only while the list has no items.
+     */
+    private void updateEmptyView() {
+        mEmptyView.setVisibility(localProductAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+    }
 
     /**
      * Temporary helper method to display information in the onscreen TextView about the state of
@@ -119,15 +285,19 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
         // Insert a new row for Toto into the provider using the ContentResolver.
         // Use the {@link ProductEntry#CONTENT_URI} to indicate that we want to insert
         // into the pets database table.
-        // Receive the new content URI that will allow us to access Toto's data in the future.
-        Uri newUri = getContentResolver().insert(ProductContract.ProductEntry.CONTENT_URI, values);
+        // The insert runs on the writer thread, off the main thread.
+        ProductWriter.getInstance(this).insert(values, null);
     }
     /**
      * Helper method to delete all products in the database.
      */
     private void deleteAllProducts() {
-        int rowsDeleted = getContentResolver().delete(ProductContract.ProductEntry.CONTENT_URI, null, null);
-        Log.v("CatalogActivity", rowsDeleted + " rows deleted from products database");
+        ProductWriter.getInstance(this).delete(ProductContract.ProductEntry.CONTENT_URI, new ProductWriter.Callback<Integer>() {
+            @Override
+            public void onComplete(Integer rowsDeleted) {
+                Log.v("CatalogActivity", rowsDeleted + " rows deleted from products database");
+            }
+        });
     }
 
     @Override
@@ -135,6 +305,35 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu items to the app bar.
         getMenuInflater().inflate(R.menu.menu_catalog, menu);
+
+        // Reload the list with the matching products whenever the search text changes
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                // No need to wait for more typing
+                if (mSearchPending) {
+                    mSearchHandler.removeCallbacks(mSearch);
+                    mSearch.run();
+                }
+                return false;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (newText.equals(mSearchQuery)) {
+                    return true;
+                }
+                mSearchQuery = newText;
+                if (BuildConfig.DEBUG) {
+                    mSearchChangedAt = SystemClock.elapsedRealtime();
+                }
+                mSearchHandler.removeCallbacks(mSearch);
+                mSearchHandler.postDelayed(mSearch, SEARCH_DELAY_MILLIS);
+                mSearchPending = true;
+                return true;
+            }
+        });
         return true;
     }
 
@@ -150,10 +349,53 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
             case R.id.action_delete_all_entries:
                 deleteAllProducts();
                 return true;
+            // Respond to a click on the "Import catalog" menu option
+            case R.id.action_import_catalog:
+                Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+                intent.addCategory(Intent.CATEGORY_OPENABLE);
+                intent.setType("text/*");
+                startActivityForResult(intent, REQUEST_IMPORT_CATALOG);
+                return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode == REQUEST_IMPORT_CATALOG) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                importCatalog(data.getData());
+            }
+            return;
+        }
+        super.onActivityResult(requestCode, resultCode, data);
+    }
+
+    /**
+     * Import the products of a CSV catalog in the background. Picking a file whose import
+     * failed resumes it. The list reloads as the products are written.
+     */
+    private void importCatalog(Uri uri) {
+        // The import may outlive this activity, so the result toast uses the application context
+        final Context appContext = getApplicationContext();
+        new ProductImporter(this).start(uri, new ProductImporter.Listener() {
+            @Override
+            public void onProgress(ProductImporter.Progress progress) {
+                if (BuildConfig.DEBUG) {
+                    Log.v("CatalogActivity", "Importing catalog: " + progress);
+                }
+            }
+
+            @Override
+            public void onFinished(ProductImporter.Progress progress, Exception error) {
+                String message = error == null
+                        ? appContext.getString(R.string.import_catalog_successful, progress.imported, progress.rejected)
+                        : appContext.getString(R.string.import_catalog_failed, progress.imported);
+                Toast.makeText(appContext, message, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
     @Override
     public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
         //Define a projection that specifies the columns from the table we care about.
@@ -164,26 +406,57 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
                 ProductEntry.COLUMN_PRODUCT_PRICE,
                 ProductEntry.COLUMN_PRODUCT_QUANTITY};
 
-        //This loader will execute the ContentProvider's query method on a background thread
-        return new CursorLoader(this, //parent activity context
-                ProductContract.ProductEntry.CONTENT_URI,  //provider content URI to query
+        //Search the products if the user typed anything into the search box
+        Uri uri = TextUtils.isEmpty(mSearchQuery) ? ProductContract.ProductEntry.CONTENT_URI
+                : ProductEntry.buildSearchUri(mSearchQuery);
+
+        //This loader will execute the ContentProvider's query method on a background thread,
+        //reading the first page only. The rest is read a page at a time as the list scrolls.
+        return new ProductPagedLoader(this, //parent activity context
+                uri,  //provider content URI to query
                 projection,            //columns to include in the resulting Cursor
                 null,           //no selection clause
-                null,       //no selection arguments
-                null);         // default sort order
+                null);       //no selection arguments
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        //update {@link ProductCursorAdapter} with new cursor containing updated pet data
-        localCursorAdapter.swapCursor(data);
+        //update {@link ProductListAdapter} with new cursor containing updated product data,
+        //it only rebinds the rows that changed
+        localProductAdapter.swapCursor(data);
+        if (mCreatedAt != 0) {
+            Log.v("CatalogActivity", "First rows from database after "
+                    + (SystemClock.elapsedRealtime() - mCreatedAt) + " ms");
+            mCreatedAt = 0;
+        }
+        if (mSearchChangedAt != 0 && !mSearchPending) {
+            Log.v("CatalogActivity", "Search results after "
+                    + (SystemClock.elapsedRealtime() - mSearchChangedAt) + " ms");
+            mSearchChangedAt = 0;
+        }
+        //the snapshot has been replaced
+        closeSnapshot();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mSearchHandler.removeCallbacks(mSearch);
+        closeSnapshot();
+    }
 
+    private void closeSnapshot() {
+        if (mSnapshotCursor != null) {
+            mSnapshotCursor.close();
+            mSnapshotCursor = null;
+        }
     }
 
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
         //Callback called when the data needs to be deleted
-        localCursorAdapter.swapCursor(null);
+        localProductAdapter.swapCursor(null);
+        closeSnapshot();
 
     }
 }
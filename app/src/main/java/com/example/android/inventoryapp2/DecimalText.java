@@ -0,0 +1,33 @@
+package com.example.android.inventoryapp2;
+
+/**
+ * Writes numbers as decimal text into reusable char buffers, so rows of the catalog can be
+ * bound without allocating a String per number.
+ */
+final class DecimalText {
+
+    /** Long enough for any long value, sign included */
+    static final int MAX_LENGTH = 20;
+
+    private DecimalText() {
+    }
+
+    /**
+     * Write the decimal digits of a number to the end of the given buffer, and return the index
+     * of the first character written.
+     */
+    static int format(long value, char[] buffer) {
+        int position = buffer.length;
+        boolean negative = value < 0;
+        // Work with the negative value, so Long.MIN_VALUE doesn't overflow
+        long remaining = negative ? value : -value;
+        do {
+            buffer[--position] = (char) ('0' - (remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        if (negative) {
+            buffer[--position] = '-';
+        }
+        return position;
+    }
+}
@@ -18,6 +18,7 @@ package com.example.android.inventoryapp2;
 import android.app.AlertDialog;
 import android.app.LoaderManager;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.CursorLoader;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -42,6 +43,7 @@ import android.widget.Toast;
 
 import com.example.android.inventoryapp2.data.ProductContract;
 import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductWriter;
 
 /**
  * Created by clarissajarem on 11/9/18.
@@ -68,6 +70,12 @@ public class EditorActivity extends AppCompatActivity implements
     /** EditText field to enter the product quantity */
     private EditText mQuantityEditText;
 
+    /** EditText field to enter the reorder point, empty for 0 */
+    private EditText mReorderPointEditText;
+
+    /** EditText field to enter the SKU, empty for none */
+    private EditText mSkuEditText;
+
     /** EditText field to enter the supplier phone */
     private EditText mSupplierPhoneEditText;
     /** EditText field to enter the supplier phone */
@@ -140,6 +148,8 @@ public class EditorActivity extends AppCompatActivity implements
         mPriceEditText = (EditText) findViewById(R.id.edit_pet_price);
         mSupplierPhoneEditText = (EditText) findViewById(R.id.edit_supplier_phone);
         mQuantityEditText = (EditText) findViewById(R.id.edit_product_quantity);
+        mReorderPointEditText = (EditText) findViewById(R.id.edit_product_reorder_point);
+        mSkuEditText = (EditText) findViewById(R.id.edit_product_sku);
         mSaleButton = (Button) findViewById(R.id.sale_button);
         mAddButton = (Button) findViewById(R.id.add_button);
         mCallButton = (Button) findViewById(R.id.call_button);
@@ -151,6 +161,8 @@ public class EditorActivity extends AppCompatActivity implements
         mPriceEditText.setOnTouchListener(localTouchListener);
         mSupplierPhoneEditText.setOnTouchListener(localTouchListener);
         mQuantityEditText.setOnTouchListener(localTouchListener);
+        mReorderPointEditText.setOnTouchListener(localTouchListener);
+        mSkuEditText.setOnTouchListener(localTouchListener);
         mTypeSpinner.setOnTouchListener(localTouchListener);
 
         mSaleButton.setOnClickListener(new View.OnClickListener() {
@@ -251,6 +263,8 @@ public class EditorActivity extends AppCompatActivity implements
         String supplierPhoneString = mSupplierPhoneEditText.getText().toString().trim();
         String priceString = mPriceEditText.getText().toString().trim();
         String quantityString = mQuantityEditText.getText().toString().trim();
+        String reorderPointString = mReorderPointEditText.getText().toString().trim();
+        String skuString = mSkuEditText.getText().toString().trim();
         // Check if this is supposed to be a new product
         // and check if all the fields in the editor are blank
 
@@ -277,24 +291,40 @@ public class EditorActivity extends AppCompatActivity implements
             price = Integer.parseInt(priceString);
         }
         values.put(ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE, price);
+        // Without a reorder point the product alerts when it sells out
+        int reorderPoint = 0;
+        if (!TextUtils.isEmpty(reorderPointString)) {
+            reorderPoint = Integer.parseInt(reorderPointString);
+        }
+        values.put(ProductEntry.COLUMN_REORDER_POINT, reorderPoint);
+        // SKUs are unique, so a product without one is stored as null rather than empty
+        values.put(ProductEntry.COLUMN_SKU, TextUtils.isEmpty(skuString) ? null : skuString);
+
+        // The write runs on the writer thread and this activity finishes right away, so the
+        // result toasts use the application context
+        final Context appContext = getApplicationContext();
 
         // Insert a new pet into the provider, returning the content URI for the new pet.
         // Determine if this is a new or existing pet by checking if mCurrentPetUri is null or not
         if (localCurrentProductUri == null) {
             // This is a NEW pet, so insert a new pet into the provider,
             // returning the content URI for the new pet.
-            Uri newUri = getContentResolver().insert(ProductEntry.CONTENT_URI, values);
-            // Show a toast message depending on whether or not the insertion was successful.
-            if (newUri == null) {
-                // If the new content URI is null, then there was an error with insertion.
-                Toast.makeText(this, getString(R.string.editor_insert_product_failed),
-                        Toast.LENGTH_SHORT).show();
-            }
-            else {
-                // Otherwise, the insertion was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_insert_product_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            ProductWriter.getInstance(this).insert(values, new ProductWriter.Callback<Uri>() {
+                @Override
+                public void onComplete(Uri newUri) {
+                    // Show a toast message depending on whether or not the insertion was successful.
+                    if (newUri == null) {
+                        // If the new content URI is null, then there was an error with insertion.
+                        Toast.makeText(appContext, appContext.getString(R.string.editor_insert_product_failed),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                    else {
+                        // Otherwise, the insertion was successful and we can display a toast.
+                        Toast.makeText(appContext, appContext.getString(R.string.editor_insert_product_successful),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
 
         }
         else {
@@ -302,17 +332,21 @@ public class EditorActivity extends AppCompatActivity implements
             // and pass in the new ContentValues. Pass in null for the selection and selection args
             // because mCurrentProductUri will already identify the correct row in the database that
             // we want to modify.
-            int rowsAffected = getContentResolver().update(localCurrentProductUri, values, null, null);
-            // Show a toast message depending on whether or not the update was successful.
-            if (rowsAffected == 0) {
-                // If no rows were affected, then there was an error with the update.
-                Toast.makeText(this, getString(R.string.editor_update_product_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the update was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_update_product_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            ProductWriter.getInstance(this).update(localCurrentProductUri, values, new ProductWriter.Callback<Integer>() {
+                @Override
+                public void onComplete(Integer rowsAffected) {
+                    // Show a toast message depending on whether or not the update was successful.
+                    if (rowsAffected == 0) {
+                        // If no rows were affected, then there was an error with the update.
+                        Toast.makeText(appContext, appContext.getString(R.string.editor_update_product_failed),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        // Otherwise, the update was successful and we can display a toast.
+                        Toast.makeText(appContext, appContext.getString(R.string.editor_update_product_successful),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
         }
     }
     private void showUnsavedChangesDialog(
@@ -426,7 +460,9 @@ public class EditorActivity extends AppCompatActivity implements
                 ProductEntry.COLUMN_PRODUCT_TYPE,
                 ProductEntry.COLUMN_SUPPLIER_PHONE,
                 ProductEntry.COLUMN_PRODUCT_QUANTITY,
-                ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE};
+                ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE,
+                ProductEntry.COLUMN_REORDER_POINT,
+                ProductEntry.COLUMN_SKU};
         // This loader will execute the ContentProvider's query method on a background thread
         return new CursorLoader(this,   // Parent activity context
                 localCurrentProductUri,         // Query the content URI for the current pet
@@ -452,6 +488,8 @@ public class EditorActivity extends AppCompatActivity implements
             int genderColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_TYPE);
             int quantityColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_QUANTITY);
             int priceColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_PRICE);
+            int reorderPointColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_REORDER_POINT);
+            int skuColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_SKU);
             // Extract out the value from the Cursor for the given column index
             String name = cursor.getString(nameColumnIndex);
             String supplier = cursor.getString(supplierColumnIndex);
@@ -459,12 +497,16 @@ public class EditorActivity extends AppCompatActivity implements
             String phone = cursor.getString(supplierPhoneColmnIndex);
             int quantity = cursor.getInt(quantityColumnIndex);
             int price = cursor.getInt(priceColumnIndex);
+            int reorderPoint = cursor.getInt(reorderPointColumnIndex);
+            String sku = cursor.getString(skuColumnIndex);
             // Update the views on the screen with the values from the database
             mNameEditText.setText(name);
             mSupplierEditText.setText(supplier);
             mSupplierPhoneEditText.setText(phone);
             mQuantityEditText.setText(Integer.toString(quantity));
             mPriceEditText.setText(Integer.toString(price));
+            mReorderPointEditText.setText(Integer.toString(reorderPoint));
+            mSkuEditText.setText(sku);
             // Gender is a dropdown spinner, so map the constant value from the database
             // into one of the dropdown options (0 is Unknown, 1 is Male, 2 is Female).
             // Then call setSelection() so that option is displayed on screen as the current selection.
@@ -492,6 +534,8 @@ public class EditorActivity extends AppCompatActivity implements
         mSupplierPhoneEditText.setText("");
         mPriceEditText.setText("");
         mQuantityEditText.setText("");
+        mReorderPointEditText.setText("");
+        mSkuEditText.setText("");
         mTypeSpinner.setSelection(0); // Select "Unknown" TYPE
 
     }
@@ -537,21 +581,25 @@ public class EditorActivity extends AppCompatActivity implements
     private void deleteProduct() {
         // Only perform the delete if this is an existing product.
         if (localCurrentProductUri != null) {
-            // Call the ContentResolver to delete the pet at the given content URI.
+            // Ask the writer to delete the product at the given content URI.
             // Pass in null for the selection and selection args because the mCurrentPetUri
             // content URI already identifies the pet that we want.
-            int rowsDeleted = getContentResolver().delete(localCurrentProductUri, null, null);
-
-            // Show a toast message depending on whether or not the delete was successful.
-            if (rowsDeleted == 0) {
-                // If no rows were deleted, then there was an error with the delete.
-                Toast.makeText(this, getString(R.string.editor_delete_product_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the delete was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_delete_product_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            final Context appContext = getApplicationContext();
+            ProductWriter.getInstance(this).delete(localCurrentProductUri, new ProductWriter.Callback<Integer>() {
+                @Override
+                public void onComplete(Integer rowsDeleted) {
+                    // Show a toast message depending on whether or not the delete was successful.
+                    if (rowsDeleted == 0) {
+                        // If no rows were deleted, then there was an error with the delete.
+                        Toast.makeText(appContext, appContext.getString(R.string.editor_delete_product_failed),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        // Otherwise, the delete was successful and we can display a toast.
+                        Toast.makeText(appContext, appContext.getString(R.string.editor_delete_product_successful),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
         }
 
         // Close the activity
@@ -0,0 +1,272 @@
+package com.example.android.inventoryapp2;
+
+import android.content.Context;
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.example.android.inventoryapp2.data.ProductContract;
+import com.example.android.inventoryapp2.data.ProductWriter;
+
+/**
+ * {@link RecyclerView.Adapter} for the catalog. Rows are read from a product cursor; when the
+ * cursor comes from a {@link ProductPagedLoader} with a {@link ProductListSnapshot.Update},
+ * only the rows that changed since the previous cursor are rebound. A {@link ProductPagedCursor}
+ * is grown by a page whenever a row near the end of what it has read is bound. Its pages are
+ * read in the background, rows whose page isn't back yet are bound blank and rebound when it
+ * is.
+ */
+public class ProductListAdapter extends RecyclerView.Adapter<ProductListAdapter.ViewHolder> {
+
+    /** How close to the end of the rows read so far binding a row reads the next page */
+    private static final int LOAD_MORE_DISTANCE = ProductPagedCursor.PAGE_SIZE / 2;
+
+    /**
+     * Receives clicks on a product in the list.
+     */
+    public interface OnProductClickListener {
+        void onProductClick(long id);
+    }
+
+    private final LayoutInflater mInflater;
+
+    private final OnProductClickListener mProductClickListener;
+
+    /** Shown instead of an empty supplier */
+    private final String mUnknownSupplier;
+
+    /** Rows being shown, and the snapshot of them if the loader took one */
+    private Cursor mCursor;
+    private ProductListSnapshot mSnapshot;
+
+    /** Column indices of the current cursor, looked up once per {@link #swapCursor} */
+    private int mIdColumnIndex = -1;
+    private int mNameColumnIndex = -1;
+    private int mSupplierColumnIndex = -1;
+    private int mPriceColumnIndex = -1;
+    private int mQuantityColumnIndex = -1;
+
+    /**
+     * Shows the rows a paged cursor read in the background. Only ever set on the cursor being
+     * shown, so the rows are always the current cursor's.
+     */
+    private final ProductPagedCursor.PageListener mPageListener = new ProductPagedCursor.PageListener() {
+        @Override
+        public void onRowsAppended(int positionStart, int rowCount) {
+            // The cursor's snapshot grew with it, the next load diffs against that one
+            mSnapshot = ((ProductPagedCursor) mCursor).getSnapshot();
+            notifyItemRangeInserted(positionStart, rowCount);
+        }
+
+        @Override
+        public void onRowsReloaded(int positionStart, int rowCount) {
+            notifyItemRangeChanged(positionStart, rowCount);
+        }
+    };
+
+    /**
+     * One listener shared by every row. The row's {@link ViewHolder} is the view's tag, so the
+     * listener knows which product was clicked.
+     */
+    private final View.OnClickListener mItemClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            ViewHolder holder = (ViewHolder) view.getTag();
+            mProductClickListener.onProductClick(holder.id);
+        }
+    };
+
+    /**
+     * One listener shared by the sale buttons of every row, see {@link #mItemClickListener}.
+     */
+    private final View.OnClickListener mSaleClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            final ViewHolder holder = (ViewHolder) view.getTag();
+            final long id = holder.id;
+            final Context context = view.getContext().getApplicationContext();
+            // Let the provider decrement the stock on the writer thread, so rapid taps can't
+            // overwrite each other or block scrolling
+            ProductWriter.getInstance(context).sell(id, 1, new ProductWriter.Callback<Integer>() {
+                @Override
+                public void onComplete(Integer quantity) {
+                    if (quantity >= 0) {
+                        // The row may show another product by now
+                        if (holder.id == id) {
+                            holder.setQuantity(quantity);
+                        }
+                    } else {
+                        Toast.makeText(context, R.string.below_zero_warning, Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
+        }
+    };
+
+    /**
+     * Constructs a new {@link ProductListAdapter} without any rows.
+     *
+     * @param context  The context
+     * @param listener Receives clicks on a product
+     */
+    public ProductListAdapter(Context context, OnProductClickListener listener) {
+        mInflater = LayoutInflater.from(context);
+        mProductClickListener = listener;
+        mUnknownSupplier = context.getString(R.string.unknown_supplier);
+        setHasStableIds(true);
+    }
+
+    /**
+     * Show the rows of a new cursor. If it carries a diff from the snapshot currently shown,
+     * only the changed rows are notified, otherwise the whole list is. The old cursor is not
+     * closed, the loader that delivered it takes care of that.
+     */
+    public void swapCursor(Cursor cursor) {
+        ProductListSnapshot.Update update = cursor instanceof ProductPagedCursor
+                ? ((ProductPagedCursor) cursor).getListUpdate() : null;
+        if (mCursor instanceof ProductPagedCursor) {
+            ((ProductPagedCursor) mCursor).setPageListener(null);
+        }
+        if (cursor instanceof ProductPagedCursor) {
+            ((ProductPagedCursor) cursor).setPageListener(mPageListener);
+        }
+        mCursor = cursor;
+        findColumns(cursor);
+
+        if (update != null && update.diff != null && update.base == mSnapshot) {
+            mSnapshot = update.snapshot;
+            update.diff.dispatchUpdatesTo(this);
+        } else {
+            mSnapshot = update == null ? null : update.snapshot;
+            notifyDataSetChanged();
+        }
+    }
+
+    private void findColumns(Cursor cursor) {
+        if (cursor == null) {
+            return;
+        }
+        mIdColumnIndex = cursor.getColumnIndex(ProductContract.ProductEntry._ID);
+        mNameColumnIndex = cursor.getColumnIndex(ProductContract.ProductEntry.COLUMN_PRODUCT_NAME);
+        mSupplierColumnIndex = cursor.getColumnIndex(ProductContract.ProductEntry.COLUMN_SUPPLIER_NAME);
+        mPriceColumnIndex = cursor.getColumnIndex(ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE);
+        mQuantityColumnIndex = cursor.getColumnIndex(ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY);
+    }
+
+    @Override
+    public int getItemCount() {
+        if (mSnapshot != null) {
+            return mSnapshot.size();
+        }
+        return mCursor == null ? 0 : mCursor.getCount();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        if (mSnapshot != null) {
+            return mSnapshot.getId(position);
+        }
+        return mCursor != null && mCursor.moveToPosition(position)
+                ? mCursor.getLong(mIdColumnIndex) : RecyclerView.NO_ID;
+    }
+
+    /**
+     * Makes a new blank list item view. No data is set (or bound) to the views yet, but the
+     * views are looked up once and kept in a {@link ViewHolder}.
+     */
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        // Inflate a list item view using the layout specified in list_item.xml
+        View view = mInflater.inflate(R.layout.list_item, parent, false);
+        ViewHolder holder = new ViewHolder(view);
+        view.setTag(holder);
+        view.setOnClickListener(mItemClickListener);
+        holder.saleButton.setTag(holder);
+        holder.saleButton.setOnClickListener(mSaleClickListener);
+        return holder;
+    }
+
+    /**
+     * This method binds the product data at the given position to the given list item. Text is
+     * copied into buffers owned by the {@link ViewHolder}, so binding a row doesn't allocate.
+     */
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        Cursor cursor = mCursor;
+        if (position >= getItemCount() - LOAD_MORE_DISTANCE && cursor instanceof ProductPagedCursor) {
+            // Read in the background, the rows are inserted once they are there
+            ((ProductPagedCursor) cursor).loadMore();
+        }
+        if (cursor == null || !cursor.moveToPosition(position)) {
+            // The row's page is being read again, or the list shrank after the snapshot was
+            // taken and a reload is on its way
+            holder.clear();
+            return;
+        }
+        holder.id = cursor.getLong(mIdColumnIndex);
+
+        // Update the TextViews with the attributes for the current product
+        cursor.copyStringToBuffer(mNameColumnIndex, holder.nameBuffer);
+        holder.nameTextView.setText(holder.nameBuffer.data, 0, holder.nameBuffer.sizeCopied);
+
+        // If the supplier is empty string or null, then use some default text
+        // that says "Unknown supplier", so the TextView isn't blank.
+        cursor.copyStringToBuffer(mSupplierColumnIndex, holder.supplierBuffer);
+        if (holder.supplierBuffer.sizeCopied == 0) {
+            holder.supplierTextView.setText(mUnknownSupplier);
+        } else {
+            holder.supplierTextView.setText(holder.supplierBuffer.data, 0, holder.supplierBuffer.sizeCopied);
+        }
+
+        int priceStart = DecimalText.format(cursor.getLong(mPriceColumnIndex), holder.priceBuffer);
+        holder.priceTextView.setText(holder.priceBuffer, priceStart, holder.priceBuffer.length - priceStart);
+        holder.setQuantity(cursor.getLong(mQuantityColumnIndex));
+    }
+
+    /**
+     * Views and reusable text buffers of one list item.
+     */
+    static final class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView nameTextView;
+        final TextView supplierTextView;
+        final TextView priceTextView;
+        final TextView quantityTextView;
+        final Button saleButton;
+
+        final CharArrayBuffer nameBuffer = new CharArrayBuffer(64);
+        final CharArrayBuffer supplierBuffer = new CharArrayBuffer(64);
+        final char[] priceBuffer = new char[DecimalText.MAX_LENGTH];
+        final char[] quantityBuffer = new char[DecimalText.MAX_LENGTH];
+
+        /** ID of the product currently bound to this item */
+        long id;
+
+        ViewHolder(View view) {
+            super(view);
+            nameTextView = (TextView) view.findViewById(R.id.name);
+            supplierTextView = (TextView) view.findViewById(R.id.supplier);
+            priceTextView = (TextView) view.findViewById(R.id.list_price);
+            quantityTextView = (TextView) view.findViewById(R.id.list_quantity);
+            saleButton = (Button) view.findViewById(R.id.sale_button2);
+        }
+
+        void setQuantity(long quantity) {
+            int start = DecimalText.format(quantity, quantityBuffer);
+            quantityTextView.setText(quantityBuffer, start, quantityBuffer.length - start);
+        }
+
+        void clear() {
+            id = RecyclerView.NO_ID;
+            nameTextView.setText(null);
+            supplierTextView.setText(null);
+            priceTextView.setText(null);
+            quantityTextView.setText(null);
+        }
+    }
+}
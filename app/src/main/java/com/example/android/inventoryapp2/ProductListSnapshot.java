@@ -0,0 +1,115 @@
+package com.example.android.inventoryapp2;
+
+import android.support.v7.util.DiffUtil;
+
+import java.util.Arrays;
+
+/**
+ * Compact copy of a product list for computing what changed between two loads: the ID of
+ * every row read so far and a hash of its displayed columns, in list order. Rows with the same
+ * ID are the same item, rows whose hash differs have to be rebound.
+ *
+ * Snapshots never change, a {@link ProductPagedCursor} replaces its snapshot with a longer one
+ * for every page it reads, so a snapshot can be handed to another thread as it is.
+ */
+final class ProductListSnapshot {
+
+    /** Snapshot of a list before any page was read */
+    static final ProductListSnapshot EMPTY = new ProductListSnapshot(new long[0], new int[0]);
+
+    private final long[] mIds;
+    private final int[] mHashes;
+
+    private ProductListSnapshot(long[] ids, int[] hashes) {
+        mIds = ids;
+        mHashes = hashes;
+    }
+
+    /**
+     * Returns a snapshot of this list followed by the rows of a page.
+     *
+     * @param values   values of the page, row by row
+     * @param rowCount number of rows on the page
+     * @param idColumn index of the {@code _id} column
+     */
+    ProductListSnapshot append(Object[] values, int rowCount, int idColumn) {
+        int size = mIds.length;
+        long[] ids = Arrays.copyOf(mIds, size + rowCount);
+        int[] hashes = Arrays.copyOf(mHashes, size + rowCount);
+        int columnCount = rowCount == 0 ? 0 : values.length / rowCount;
+        int offset = 0;
+        for (int row = size; row < size + rowCount; row++) {
+            ids[row] = ((Number) values[offset + idColumn]).longValue();
+            int hash = 1;
+            for (int column = 0; column < columnCount; column++) {
+                hash = 31 * hash + hashValue(values[offset++]);
+            }
+            hashes[row] = hash;
+        }
+        return new ProductListSnapshot(ids, hashes);
+    }
+
+    private static int hashValue(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof byte[]) {
+            return Arrays.hashCode((byte[]) value);
+        }
+        return value.hashCode();
+    }
+
+    int size() {
+        return mIds.length;
+    }
+
+    long getId(int position) {
+        return mIds[position];
+    }
+
+    /**
+     * Compute the item changes that turn {@code oldList} into {@code newList}. This is
+     * linear in the list size plus quadratic in the number of changes, so run it in the
+     * background.
+     */
+    static DiffUtil.DiffResult diff(final ProductListSnapshot oldList, final ProductListSnapshot newList) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldList.mIds.length;
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newList.mIds.length;
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldList.mIds[oldItemPosition] == newList.mIds[newItemPosition];
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldList.mHashes[oldItemPosition] == newList.mHashes[newItemPosition];
+            }
+        }, false);
+    }
+
+    /**
+     * A freshly loaded snapshot together with the changes from the snapshot loaded before it.
+     */
+    static final class Update {
+        /** Snapshot the diff starts from, null on the first load */
+        final ProductListSnapshot base;
+        /** Snapshot of the new list */
+        final ProductListSnapshot snapshot;
+        /** Changes from {@link #base} to {@link #snapshot}, null if there is no base */
+        final DiffUtil.DiffResult diff;
+
+        Update(ProductListSnapshot base, ProductListSnapshot snapshot, DiffUtil.DiffResult diff) {
+            this.base = base;
+            this.snapshot = snapshot;
+            this.diff = diff;
+        }
+    }
+}
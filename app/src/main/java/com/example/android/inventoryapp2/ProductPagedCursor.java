@@ -0,0 +1,478 @@
+package com.example.android.inventoryapp2;
+
+import android.content.ContentResolver;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.CursorIndexOutOfBoundsException;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link Cursor} over a product list that reads the rows from the provider a page at a time
+ * as the list is scrolled, instead of copying the whole table into one cursor window.
+ *
+ * Pages are fetched with keyset paging in ID order, so every page costs the same however
+ * deep into the list it is. Only the most recently used pages are kept in memory; pages that
+ * scrolled off screen are dropped and fetched again if the user scrolls back.
+ *
+ * The rows are never counted up front: the count is the number of rows read so far, and grows
+ * by a page every time {@link #loadMore()} reads the next one, until a page comes back short.
+ *
+ * Only the first pages are read by the constructor. After that the cursor belongs to the main
+ * thread and never queries on it: the next page and pages read again are queried on a
+ * background thread and handed back to the main thread, which tells the {@link PageListener}.
+ * Moving to a row whose page isn't in memory fails until the page is back.
+ */
+public class ProductPagedCursor extends AbstractCursor {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = ProductPagedCursor.class.getSimpleName();
+
+    /** Number of rows fetched at once */
+    public static final int PAGE_SIZE = 50;
+
+    /** Number of pages kept in memory, enough to cover a few screens in either direction */
+    private static final int MAX_PAGES = 8;
+
+    /**
+     * Receives the rows read in the background, on the main thread.
+     */
+    public interface PageListener {
+        /** The next page was read, and its rows added after the ones there were */
+        void onRowsAppended(int positionStart, int rowCount);
+
+        /** A page that had been dropped was read again, and its rows can be moved to */
+        void onRowsReloaded(int positionStart, int rowCount);
+    }
+
+    /** Thread the pages after the first ones are queried on, shared by every cursor */
+    private static final ExecutorService sPageExecutor = Executors.newSingleThreadExecutor();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private PageListener mPageListener;
+
+    /** Whether the next page is being read */
+    private boolean mAppending;
+
+    /** Dropped pages being read again */
+    private final Set<Integer> mReloading = new HashSet<>();
+
+    private final ContentResolver mResolver;
+    private final Uri mUri;
+    private final String[] mColumns;
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+    private final int mIdColumn;
+
+    /** Rows read so far, every page but the last is full */
+    private int mCount;
+    private int mPageCount;
+
+    /** Whether the last page read came back short, so there are no more rows */
+    private boolean mComplete;
+
+    /**
+     * For each page read so far and the one after it, the ID of the last row on the page
+     * before it, which is where its keyset query starts. Kept after the page itself has been
+     * evicted.
+     */
+    private long[] mPageStarts = new long[MAX_PAGES];
+
+    /** Pages in memory, least recently used first */
+    private final LinkedHashMap<Integer, Page> mPages =
+            new LinkedHashMap<Integer, Page>(MAX_PAGES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+                    return size() > MAX_PAGES;
+                }
+            };
+
+    /**
+     * IDs and hashes of the rows read so far, taken from each page as it is read. Replaced on
+     * the main thread as the list grows and read by the loader for the next load.
+     */
+    private volatile ProductListSnapshot mSnapshot = ProductListSnapshot.EMPTY;
+
+    /** Snapshot and diff computed by the loader, null until it has computed one */
+    private ProductListSnapshot.Update mListUpdate;
+
+    /** Values of the current row, and where they start in {@link #mCurrentPage} */
+    private Page mCurrentPage;
+    private int mCurrentOffset;
+
+    /**
+     * Rows of one page, stored row by row as the objects read from the provider.
+     */
+    private static final class Page {
+        final Object[] values;
+        final int rowCount;
+
+        Page(Object[] values, int rowCount) {
+            this.values = values;
+            this.rowCount = rowCount;
+        }
+    }
+
+    /**
+     * Fetch the first pages. This queries the provider, so call it off the main thread.
+     *
+     * @param resolver      to query the provider with
+     * @param uri           list URI to page through, {@link ProductEntry#CONTENT_URI} or a
+     *                      search URI
+     * @param projection    columns to read, must include {@link ProductEntry#_ID}
+     * @param selection     selection applied to every page
+     * @param selectionArgs arguments of the selection
+     * @param rows          number of rows to read right away, e.g. as many as the list showed
+     *                      before a reload; the first page is always read
+     * @param cancellationSignal cancels fetching the first pages, may be null and must be null
+     *                      before Jelly Bean
+     */
+    public ProductPagedCursor(ContentResolver resolver, Uri uri, String[] projection,
+                              String selection, String[] selectionArgs, int rows,
+                              CancellationSignal cancellationSignal) {
+        mResolver = resolver;
+        mUri = uri;
+        mColumns = projection;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        mIdColumn = Arrays.asList(projection).indexOf(ProductEntry._ID);
+        if (mIdColumn < 0) {
+            throw new IllegalArgumentException("Paging requires the " + ProductEntry._ID + " column");
+        }
+
+        // IDs start at 1, so the first page starts after 0
+        mPageStarts[0] = 0;
+        do {
+            appendPage(fetch(mPageStarts[mPageCount], cancellationSignal));
+        } while (!mComplete && mCount < rows);
+    }
+
+    /**
+     * Set the listener told about the rows read in the background, null for none. Call on the
+     * main thread.
+     */
+    void setPageListener(PageListener listener) {
+        mPageListener = listener;
+    }
+
+    /**
+     * Returns the IDs and hashes of the rows read so far, in list order. Diffing it doesn't
+     * touch the pages or query the provider, so it can be done on a background thread.
+     */
+    ProductListSnapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    ProductListSnapshot.Update getListUpdate() {
+        return mListUpdate;
+    }
+
+    void setListUpdate(ProductListSnapshot.Update listUpdate) {
+        mListUpdate = listUpdate;
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns whether there may be rows after the ones read so far.
+     */
+    public boolean hasMore() {
+        return !mComplete && !isClosed();
+    }
+
+    /**
+     * Start reading the page after the ones read so far, unless it is being read already.
+     * Once it is read the count grows by its rows and the {@link PageListener} is told. Call
+     * on the main thread.
+     */
+    public void loadMore() {
+        if (!hasMore() || mAppending) {
+            return;
+        }
+        mAppending = true;
+        final long after = mPageStarts[mPageCount];
+        sPageExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Page page;
+                try {
+                    page = fetch(after, null);
+                } catch (RuntimeException e) {
+                    // Let the next bind near the end try again
+                    Log.e(LOG_TAG, "Failed to read the next page", e);
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            mAppending = false;
+                        }
+                    });
+                    return;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mAppending = false;
+                        if (isClosed()) {
+                            return;
+                        }
+                        int start = mCount;
+                        int added = appendPage(page);
+                        if (added > 0 && mPageListener != null) {
+                            mPageListener.onRowsAppended(start, added);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Start reading a dropped page again, unless it is being read already. Once it is back
+     * the {@link PageListener} is told.
+     */
+    private void reload(final int pageIndex) {
+        if (isClosed() || !mReloading.add(pageIndex)) {
+            return;
+        }
+        final long after = mPageStarts[pageIndex];
+        sPageExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Page fetched = null;
+                try {
+                    fetched = fetch(after, null);
+                } catch (RuntimeException e) {
+                    // Moving to one of its rows tries again
+                    Log.e(LOG_TAG, "Failed to read page " + pageIndex + " again", e);
+                }
+                final Page page = fetched;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mReloading.remove(pageIndex);
+                        if (page == null || isClosed()) {
+                            return;
+                        }
+                        mPages.put(pageIndex, page);
+                        if (mPageListener != null) {
+                            int start = pageIndex * PAGE_SIZE;
+                            mPageListener.onRowsReloaded(start, Math.min(PAGE_SIZE, mCount - start));
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumns;
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        int pageIndex = newPosition / PAGE_SIZE;
+        Page page = mPages.get(pageIndex);
+        if (page == null) {
+            // Every page read so far has a known start, so it can be read again
+            reload(pageIndex);
+            mCurrentPage = null;
+            return false;
+        }
+        int row = newPosition - pageIndex * PAGE_SIZE;
+        if (row >= page.rowCount) {
+            // The table shrank since the page was read, the loader will reload soon
+            mCurrentPage = null;
+            return false;
+        }
+        mCurrentPage = page;
+        mCurrentOffset = row * mColumns.length;
+        return true;
+    }
+
+    /**
+     * Add the page after the ones read so far and count its rows. Return the number of rows
+     * added, 0 if there were no more or the page couldn't be read.
+     */
+    private int appendPage(Page page) {
+        if (page == null) {
+            mComplete = true;
+            return 0;
+        }
+        mPages.put(mPageCount, page);
+        mPageCount++;
+        mCount += page.rowCount;
+        mSnapshot = mSnapshot.append(page.values, page.rowCount, mIdColumn);
+        if (page.rowCount < PAGE_SIZE) {
+            mComplete = true;
+        } else {
+            // Remember where the next page starts
+            if (mPageCount == mPageStarts.length) {
+                mPageStarts = Arrays.copyOf(mPageStarts, mPageCount * 2);
+            }
+            mPageStarts[mPageCount] = ((Number) page.values[page.values.length - mColumns.length + mIdColumn])
+                    .longValue();
+        }
+        return page.rowCount;
+    }
+
+    /**
+     * Query one page, starting after the last ID of the page before it. Return null if it
+     * couldn't be read. Only reads final fields, so it can run on any thread. The signal may
+     * be null.
+     */
+    private Page fetch(long afterId, CancellationSignal cancellationSignal) {
+        Uri pageUri = mUri.buildUpon()
+                .appendQueryParameter(ProductEntry.QUERY_PARAMETER_LIMIT, String.valueOf(PAGE_SIZE))
+                .appendQueryParameter(ProductEntry.QUERY_PARAMETER_AFTER_ID, String.valueOf(afterId))
+                .build();
+        Cursor cursor = query(mResolver, pageUri, mColumns, mSelection, mSelectionArgs, null, cancellationSignal);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            int columnCount = mColumns.length;
+            Object[] values = new Object[cursor.getCount() * columnCount];
+            int offset = 0;
+            while (cursor.moveToNext()) {
+                for (int column = 0; column < columnCount; column++) {
+                    values[offset++] = readValue(cursor, column);
+                }
+            }
+            return new Page(values, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Query the provider, with the signal if there is one. The resolver only takes a signal
+     * from Jelly Bean on.
+     */
+    private static Cursor query(ContentResolver resolver, Uri uri, String[] projection, String selection,
+                                String[] selectionArgs, String sortOrder, CancellationSignal cancellationSignal) {
+        if (cancellationSignal == null) {
+            return resolver.query(uri, projection, selection, selectionArgs, sortOrder);
+        }
+        return resolver.query(uri, projection, selection, selectionArgs, sortOrder, cancellationSignal);
+    }
+
+    private static Object readValue(Cursor cursor, int column) {
+        switch (cursor.getType(column)) {
+            case FIELD_TYPE_NULL:
+                return null;
+            case FIELD_TYPE_INTEGER:
+                return cursor.getLong(column);
+            case FIELD_TYPE_FLOAT:
+                return cursor.getDouble(column);
+            case FIELD_TYPE_BLOB:
+                return cursor.getBlob(column);
+            default:
+                return cursor.getString(column);
+        }
+    }
+
+    private Object get(int column) {
+        if (column < 0 || column >= mColumns.length) {
+            throw new CursorIndexOutOfBoundsException("Requested column: " + column
+                    + ", # of columns: " + mColumns.length);
+        }
+        if (mCurrentPage == null) {
+            throw new CursorIndexOutOfBoundsException("Not on a row, position " + getPosition());
+        }
+        return mCurrentPage.values[mCurrentOffset + column];
+    }
+
+    @Override
+    public int getType(int column) {
+        Object value = get(column);
+        if (value == null) {
+            return FIELD_TYPE_NULL;
+        } else if (value instanceof Long) {
+            return FIELD_TYPE_INTEGER;
+        } else if (value instanceof Double) {
+            return FIELD_TYPE_FLOAT;
+        } else if (value instanceof byte[]) {
+            return FIELD_TYPE_BLOB;
+        }
+        return FIELD_TYPE_STRING;
+    }
+
+    @Override
+    public String getString(int column) {
+        Object value = get(column);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        Object value = get(column);
+        return value instanceof byte[] ? (byte[]) value : super.getBlob(column);
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        Object value = get(column);
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        Object value = get(column);
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(value.toString());
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return get(column) == null;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        mPages.clear();
+        mCurrentPage = null;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.android.inventoryapp2;
+
+import android.content.Context;
+import android.content.CursorLoader;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+
+import com.example.android.inventoryapp2.data.ProductChange;
+import com.example.android.inventoryapp2.data.ProductObserver;
+
+/**
+ * {@link CursorLoader} that loads a {@link ProductPagedCursor}, so only the first page is read
+ * before the list can be shown. The rest is read as the list scrolls, and a reload reads as
+ * many rows as the list had grown to, so it doesn't shrink under the user.
+ *
+ * Every cursor keeps a {@link ProductListSnapshot} of the pages it has read. A reload diffs
+ * the snapshot of the new cursor against the one of the cursor shown before it in the
+ * background, so the adapter only rebinds the rows that changed. Only the rows read so far
+ * are compared, never the whole table.
+ *
+ * From Jelly Bean on a load is canceled as soon as the loader is restarted or stopped, e.g.
+ * when the search text changes, so a stale search doesn't hold up the next one.
+ */
+public class ProductPagedLoader extends CursorLoader {
+
+    /**
+     * Reloads when the provider reports a change to any of the loaded columns. Changes to
+     * other columns, e.g. a supplier's phone number, don't affect the list.
+     */
+    private final ProductObserver mObserver;
+
+    private boolean mObserverRegistered;
+
+    /** Cursor delivered last, null if there is none */
+    private volatile ProductPagedCursor mDeliveredCursor;
+
+    /** Cancels the load in progress, null if there is none or before Jelly Bean */
+    private CancellationSignal mCancellationSignal;
+
+    public ProductPagedLoader(Context context, Uri uri, String[] projection, String selection,
+                              String[] selectionArgs) {
+        super(context, uri, projection, selection, selectionArgs, null);
+        mObserver = new ProductObserver(new Handler(Looper.getMainLooper()), null, projection) {
+            @Override
+            public void onProductChanged(ProductChange change) {
+                onContentChanged();
+            }
+        };
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserverRegistered) {
+            mObserver.register(getContext().getContentResolver());
+            mObserverRegistered = true;
+        }
+        super.onStartLoading();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        mDeliveredCursor = null;
+        if (mObserverRegistered) {
+            mObserver.unregister(getContext().getContentResolver());
+            mObserverRegistered = false;
+        }
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        CancellationSignal cancellationSignal = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            synchronized (this) {
+                if (isLoadInBackgroundCanceled()) {
+                    throw new OperationCanceledException();
+                }
+                cancellationSignal = new CancellationSignal();
+                mCancellationSignal = cancellationSignal;
+            }
+        }
+        try {
+            ProductPagedCursor delivered = mDeliveredCursor;
+            ProductListSnapshot base = delivered == null ? null : delivered.getSnapshot();
+            ProductPagedCursor cursor = new ProductPagedCursor(getContext().getContentResolver(),
+                    getUri(), getProjection(), getSelection(), getSelectionArgs(),
+                    base == null ? 0 : base.size(), cancellationSignal);
+            ProductListSnapshot snapshot = cursor.getSnapshot();
+            cursor.setListUpdate(new ProductListSnapshot.Update(base, snapshot,
+                    base == null ? null : ProductListSnapshot.diff(base, snapshot)));
+            return cursor;
+        } finally {
+            synchronized (this) {
+                mCancellationSignal = null;
+            }
+        }
+    }
+
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+        synchronized (this) {
+            if (mCancellationSignal != null) {
+                mCancellationSignal.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void deliverResult(Cursor cursor) {
+        super.deliverResult(cursor);
+        if (cursor != null && !isReset()) {
+            mDeliveredCursor = (ProductPagedCursor) cursor;
+        }
+    }
+}
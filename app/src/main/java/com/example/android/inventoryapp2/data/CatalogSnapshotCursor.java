@@ -0,0 +1,149 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.Context;
+import android.database.AbstractCursor;
+import android.database.CursorIndexOutOfBoundsException;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Cursor over the catalog snapshot {@link ProductProvider} writes in the background after
+ * products change. It is memory-mapped, so the catalog can be shown on a cold start before
+ * the database is opened, and only the rows that are bound get decoded. It is rewritten at
+ * most every half minute, so it may be that far behind the products table; show the real
+ * query as soon as it has loaded.
+ */
+public final class CatalogSnapshotCursor extends AbstractCursor {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = CatalogSnapshotCursor.class.getSimpleName();
+
+    /** The columns of the snapshot, those of the catalog list */
+    public static final String[] COLUMNS = {
+            ProductContract.ProductEntry._ID,
+            ProductContract.ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductContract.ProductEntry.COLUMN_SUPPLIER_NAME,
+            ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE,
+            ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY};
+
+    private static final int COLUMN_ID = 0;
+    private static final int COLUMN_NAME = 1;
+    private static final int COLUMN_SUPPLIER = 2;
+    private static final int COLUMN_PRICE = 3;
+    private static final int COLUMN_QUANTITY = 4;
+
+    private static final String FILE_NAME = "catalog.snapshot";
+
+    private final CatalogSnapshotFormat.Reader mReader;
+
+    private CatalogSnapshotCursor(CatalogSnapshotFormat.Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Map the catalog snapshot. Return null if there is none yet or it can't be read, e.g. it
+     * was written by another version of the app.
+     */
+    public static CatalogSnapshotCursor open(Context context) {
+        try {
+            CatalogSnapshotFormat.Reader reader = CatalogSnapshotFormat.Reader.map(getFile(context));
+            return reader == null ? null : new CatalogSnapshotCursor(reader);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to open the catalog snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * The snapshot file of the given app.
+     */
+    static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    @Override
+    public int getCount() {
+        return mReader.size();
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return COLUMNS;
+    }
+
+    @Override
+    public int getType(int column) {
+        switch (checkColumn(column)) {
+            case COLUMN_NAME:
+            case COLUMN_SUPPLIER:
+                return getString(column) == null ? FIELD_TYPE_NULL : FIELD_TYPE_STRING;
+            default:
+                return FIELD_TYPE_INTEGER;
+        }
+    }
+
+    @Override
+    public String getString(int column) {
+        switch (checkColumn(column)) {
+            case COLUMN_NAME:
+                return mReader.getName(getPosition());
+            case COLUMN_SUPPLIER:
+                return mReader.getSupplier(getPosition());
+            default:
+                return String.valueOf(getLong(column));
+        }
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        switch (checkColumn(column)) {
+            case COLUMN_ID:
+                return mReader.getId(getPosition());
+            case COLUMN_PRICE:
+                return mReader.getPrice(getPosition());
+            case COLUMN_QUANTITY:
+                return mReader.getQuantity(getPosition());
+            default:
+                String text = getString(column);
+                return text == null ? 0 : Long.parseLong(text);
+        }
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return getType(column) == FIELD_TYPE_NULL;
+    }
+
+    private int checkColumn(int column) {
+        if (column < 0 || column >= COLUMNS.length) {
+            throw new CursorIndexOutOfBoundsException("Requested column: " + column
+                    + ", # of columns: " + COLUMNS.length);
+        }
+        if (getPosition() < 0 || getPosition() >= getCount()) {
+            throw new CursorIndexOutOfBoundsException("Not on a row, position " + getPosition());
+        }
+        return column;
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.android.inventoryapp2.data;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Binary file holding the catalog list, so the list can be shown straight from a memory map
+ * when the app starts, before the database is even opened. Only the columns of the list are
+ * kept: ID, name, supplier, price and quantity.
+ *
+ * Layout, big-endian:
+ *
+ *     int magic, int version
+ *     every row, in ID order: long id, int price, int quantity, name, supplier
+ *         where a text is an int byte length (-1 for null) and the UTF-8 bytes
+ *     int offset of every row from the start of the file
+ *     int row count, int offset of the row offsets
+ *
+ * The counts come last so the file can be written in one pass. A file of another version is
+ * ignored; bump {@link #VERSION} whenever the layout changes.
+ *
+ * Plain Java, so the benchmark module can measure it on a desktop JVM.
+ */
+final class CatalogSnapshotFormat {
+
+    private static final int MAGIC = 0x43415453;
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private CatalogSnapshotFormat() {}
+
+    /**
+     * Writes a snapshot, one row at a time in ID order.
+     */
+    static final class Writer implements Closeable {
+        private final DataOutputStream mOut;
+        private int[] mOffsets = new int[256];
+        private int mRowCount;
+
+        Writer(OutputStream out) throws IOException {
+            mOut = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+            mOut.writeInt(MAGIC);
+            mOut.writeInt(VERSION);
+        }
+
+        void writeRow(long id, String name, String supplier, int price, int quantity) throws IOException {
+            if (mRowCount == mOffsets.length) {
+                mOffsets = Arrays.copyOf(mOffsets, mRowCount * 2);
+            }
+            mOffsets[mRowCount++] = mOut.size();
+            mOut.writeLong(id);
+            mOut.writeInt(price);
+            mOut.writeInt(quantity);
+            writeText(name);
+            writeText(supplier);
+        }
+
+        private void writeText(String text) throws IOException {
+            if (text == null) {
+                mOut.writeInt(-1);
+                return;
+            }
+            byte[] bytes = text.getBytes(UTF_8);
+            mOut.writeInt(bytes.length);
+            mOut.write(bytes);
+        }
+
+        /**
+         * Write the row offsets and counts, and close the stream. A snapshot that isn't
+         * finished can't be read.
+         */
+        void finish() throws IOException {
+            int indexOffset = mOut.size();
+            for (int i = 0; i < mRowCount; i++) {
+                mOut.writeInt(mOffsets[i]);
+            }
+            mOut.writeInt(mRowCount);
+            mOut.writeInt(indexOffset);
+            mOut.close();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mOut.close();
+        }
+    }
+
+    /**
+     * Reads the rows of a snapshot from a memory map, decoding only the values asked for.
+     */
+    static final class Reader {
+        private final ByteBuffer mBuffer;
+        private final int mRowCount;
+        private final int mIndexOffset;
+
+        private Reader(ByteBuffer buffer, int rowCount, int indexOffset) {
+            mBuffer = buffer;
+            mRowCount = rowCount;
+            mIndexOffset = indexOffset;
+        }
+
+        /**
+         * Map the given snapshot file. Return null if it doesn't exist or isn't a complete
+         * snapshot of this version.
+         */
+        static Reader map(File file) throws IOException {
+            if (!file.exists()) {
+                return null;
+            }
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+            ByteBuffer buffer;
+            try {
+                long length = input.length();
+                if (length < HEADER_SIZE + TRAILER_SIZE || length > Integer.MAX_VALUE) {
+                    return null;
+                }
+                // The mapping stays valid after the file is closed
+                buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            } finally {
+                input.close();
+            }
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                return null;
+            }
+            int rowCount = buffer.getInt(buffer.limit() - TRAILER_SIZE);
+            int indexOffset = buffer.getInt(buffer.limit() - TRAILER_SIZE + 4);
+            if (rowCount < 0 || indexOffset < HEADER_SIZE
+                    || (long) indexOffset + 4L * rowCount != buffer.limit() - TRAILER_SIZE) {
+                return null;
+            }
+            return new Reader(buffer, rowCount, indexOffset);
+        }
+
+        int size() {
+            return mRowCount;
+        }
+
+        long getId(int row) {
+            return mBuffer.getLong(rowOffset(row));
+        }
+
+        int getPrice(int row) {
+            return mBuffer.getInt(rowOffset(row) + 8);
+        }
+
+        int getQuantity(int row) {
+            return mBuffer.getInt(rowOffset(row) + 12);
+        }
+
+        String getName(int row) {
+            return readText(rowOffset(row) + 16);
+        }
+
+        String getSupplier(int row) {
+            int nameOffset = rowOffset(row) + 16;
+            int nameLength = mBuffer.getInt(nameOffset);
+            return readText(nameOffset + 4 + Math.max(nameLength, 0));
+        }
+
+        private int rowOffset(int row) {
+            return mBuffer.getInt(mIndexOffset + 4 * row);
+        }
+
+        private String readText(int offset) {
+            int length = mBuffer.getInt(offset);
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            ByteBuffer text = mBuffer.duplicate();
+            text.position(offset + 4);
+            text.get(bytes);
+            return new String(bytes, UTF_8);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.android.inventoryapp2.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads comma-separated values one record at a time through a fixed-size buffer, so memory
+ * use doesn't depend on the size of the file. Fields may be quoted with double quotes, in
+ * which case they can hold commas, line breaks and doubled quotes. Lines end in LF, CRLF or
+ * CR, blank lines are skipped and a leading byte order mark is ignored.
+ *
+ * Plain Java, so the benchmark module can measure it on a desktop JVM.
+ */
+final class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int END = -1;
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private int mPosition;
+    private int mLimit;
+    private boolean mStarted;
+
+    /** Builds the field being read, reused for every field */
+    private final StringBuilder mField = new StringBuilder();
+
+    /** Line the reader is on, and the line the last record started on */
+    private long mLine = 1;
+    private long mRecordLine;
+
+    CsvReader(Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Read the next record into the given list, replacing its contents. Return false if there
+     * are no more records.
+     *
+     * @throws IOException if reading fails or the input ends inside a quoted field
+     */
+    boolean readRecord(List<String> fields) throws IOException {
+        fields.clear();
+        int c = read();
+        if (!mStarted) {
+            mStarted = true;
+            if (c == '\uFEFF') {
+                c = read();
+            }
+        }
+        while (c == '\n' || c == '\r') {
+            endLine(c);
+            c = read();
+        }
+        if (c == END) {
+            return false;
+        }
+        mRecordLine = mLine;
+
+        while (true) {
+            mField.setLength(0);
+            if (c == '"') {
+                while (true) {
+                    c = read();
+                    if (c == END) {
+                        throw new IOException("Unterminated quoted field on line " + mRecordLine);
+                    }
+                    if (c == '"') {
+                        c = read();
+                        if (c != '"') {
+                            // The closing quote
+                            break;
+                        }
+                    } else if (c == '\n' || (c == '\r' && peek() != '\n')) {
+                        mLine++;
+                    }
+                    mField.append((char) c);
+                }
+            }
+            // Unquoted text, or anything after the closing quote, is taken as it is
+            while (c != ',' && c != '\n' && c != '\r' && c != END) {
+                mField.append((char) c);
+                c = read();
+            }
+            fields.add(mField.toString());
+            if (c != ',') {
+                endLine(c);
+                return true;
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Skip the given number of records. They are parsed like {@link #readRecord} does, since
+     * quoted fields may span lines. Return the number of records skipped, fewer than asked if
+     * the input ends first.
+     *
+     * @throws IOException if reading fails or the input ends inside a quoted field
+     */
+    long skipRecords(long count) throws IOException {
+        ArrayList<String> fields = new ArrayList<>();
+        long skipped = 0;
+        while (skipped < count && readRecord(fields)) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    /**
+     * Line the record returned by the last {@link #readRecord} started on, counting from 1.
+     */
+    long getRecordLine() {
+        return mRecordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+
+    /**
+     * Finish the line ended by the given character, which was just read.
+     */
+    private void endLine(int c) throws IOException {
+        if (c == '\r' && peek() == '\n') {
+            read();
+        }
+        if (c != END) {
+            mLine++;
+        }
+    }
+
+    private int read() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            return END;
+        }
+        return mBuffer[mPosition++];
+    }
+
+    private int peek() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            return END;
+        }
+        return mBuffer[mPosition];
+    }
+
+    private boolean fill() throws IOException {
+        int count = mReader.read(mBuffer, 0, BUFFER_SIZE);
+        if (count <= 0) {
+            return false;
+        }
+        mPosition = 0;
+        mLimit = count;
+        return true;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.android.inventoryapp2.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Writes rows to a channel as CSV or newline-delimited JSON, in UTF-8. A row is built as text
+ * and encoded into a fixed-size buffer that is written out whenever it fills up, so memory use
+ * doesn't depend on the number of rows.
+ *
+ * CSV starts with a header naming the columns and quotes only the fields that need it, the
+ * way {@link CsvReader} reads them back. JSON has one object per line, keyed by column name.
+ *
+ * Plain Java, so the benchmark module can measure it on a desktop JVM.
+ */
+final class ExportWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel mChannel;
+    private final boolean mJson;
+    private final String[] mColumns;
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /** Text that isn't valid UTF-16, like a lone surrogate in a name, is replaced, not an error */
+    private final CharsetEncoder mEncoder = Charset.forName("UTF-8").newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /** The row being written */
+    private final StringBuilder mRow = new StringBuilder(256);
+    private int mColumn;
+
+    /**
+     * @param format  {@link ProductContract.ProductEntry#EXPORT_FORMAT_CSV} or
+     *                {@link ProductContract.ProductEntry#EXPORT_FORMAT_NDJSON}
+     * @param columns names of the columns of every row
+     */
+    ExportWriter(WritableByteChannel channel, String format, String[] columns) throws IOException {
+        mChannel = channel;
+        mColumns = columns;
+        switch (format) {
+            case ProductContract.ProductEntry.EXPORT_FORMAT_CSV:
+                mJson = false;
+                // The header
+                for (String column : columns) {
+                    writeString(column);
+                }
+                endRow();
+                break;
+            case ProductContract.ProductEntry.EXPORT_FORMAT_NDJSON:
+                mJson = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown export format " + format);
+        }
+    }
+
+    /**
+     * Write the next field of the current row.
+     */
+    void writeLong(long value) {
+        startField();
+        mRow.append(value);
+    }
+
+    /**
+     * Write the next field of the current row, null being an empty CSV field.
+     */
+    void writeString(String value) {
+        startField();
+        if (value == null) {
+            if (mJson) {
+                mRow.append("null");
+            }
+        } else if (mJson) {
+            appendJsonString(value);
+        } else {
+            appendCsvField(value);
+        }
+    }
+
+    /**
+     * Finish the current row, writing out the buffer if it is full.
+     */
+    void endRow() throws IOException {
+        if (mJson) {
+            mRow.append('}');
+        }
+        mRow.append('\n');
+        encode(CharBuffer.wrap(mRow));
+        mRow.setLength(0);
+        mColumn = 0;
+    }
+
+    /**
+     * Write out what is buffered.
+     */
+    void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    /**
+     * Write out what is buffered and close the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            mChannel.close();
+        }
+    }
+
+    private void startField() {
+        if (mJson) {
+            mRow.append(mColumn == 0 ? '{' : ',');
+            appendJsonString(mColumns[mColumn]);
+            mRow.append(':');
+        } else if (mColumn != 0) {
+            mRow.append(',');
+        }
+        mColumn++;
+    }
+
+    private void appendCsvField(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            mRow.append(value);
+            return;
+        }
+        mRow.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                mRow.append('"');
+            }
+            mRow.append(c);
+        }
+        mRow.append('"');
+    }
+
+    private void appendJsonString(String value) {
+        mRow.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    mRow.append("\\\"");
+                    break;
+                case '\\':
+                    mRow.append("\\\\");
+                    break;
+                case '\n':
+                    mRow.append("\\n");
+                    break;
+                case '\r':
+                    mRow.append("\\r");
+                    break;
+                case '\t':
+                    mRow.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        mRow.append("\\u00").append(Character.forDigit(c >> 4, 16))
+                                .append(Character.forDigit(c & 0xf, 16));
+                    } else {
+                        mRow.append(c);
+                    }
+                    break;
+            }
+        }
+        mRow.append('"');
+    }
+
+    /**
+     * Encode a complete row into the buffer, writing the buffer out whenever it fills up.
+     */
+    private void encode(CharBuffer row) throws IOException {
+        mEncoder.reset();
+        CoderResult result;
+        do {
+            result = mEncoder.encode(row, mBuffer, true);
+            if (result.isOverflow()) {
+                flush();
+            }
+        } while (!result.isUnderflow());
+        while (mEncoder.flush(mBuffer).isOverflow()) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.android.inventoryapp2.data;
+
+import java.util.Arrays;
+
+/**
+ * Column-oriented copy of the numbers in the products table: one primitive array per column,
+ * sorted by product ID. Aggregates over the whole inventory are a tight loop over a few arrays
+ * instead of a table scan through a cursor.
+ *
+ * {@link ProductProvider} loads it from the table once and then, after every write, reads the
+ * rows the write changed again and puts them here. Writes it can't follow, such as updates by
+ * selection, {@link #invalidate} it until the next load. Every change is idempotent, so putting
+ * a row that a load already picked up is harmless.
+ */
+final class InventorySnapshot {
+
+    private long[] mIds;
+    private int[] mTypes;
+    private int[] mQuantities;
+    private int[] mPrices;
+    private int mSize;
+    private boolean mValid;
+
+    InventorySnapshot(int capacity) {
+        capacity = Math.max(capacity, 16);
+        mIds = new long[capacity];
+        mTypes = new int[capacity];
+        mQuantities = new int[capacity];
+        mPrices = new int[capacity];
+    }
+
+    /**
+     * Whether the snapshot matches the table, false until it is loaded and after
+     * {@link #invalidate}.
+     */
+    synchronized boolean isValid() {
+        return mValid;
+    }
+
+    /**
+     * Mark the snapshot as out of date, so it is loaded again before the next aggregate.
+     */
+    synchronized void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Remove every product and mark the snapshot as matching an empty table. Loading starts
+     * here, followed by a {@link #put} for every row.
+     */
+    synchronized void clear() {
+        mSize = 0;
+        mValid = true;
+    }
+
+    synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Add a product, or replace its numbers if it is already there.
+     */
+    synchronized void put(long id, int type, int quantity, int price) {
+        int index;
+        if (mSize == 0 || mIds[mSize - 1] < id) {
+            // New IDs are nearly always the largest, so this is an append
+            index = ~mSize;
+        } else {
+            index = Arrays.binarySearch(mIds, 0, mSize, id);
+        }
+        if (index < 0) {
+            index = ~index;
+            if (mSize == mIds.length) {
+                grow();
+            }
+            int tail = mSize - index;
+            if (tail > 0) {
+                System.arraycopy(mIds, index, mIds, index + 1, tail);
+                System.arraycopy(mTypes, index, mTypes, index + 1, tail);
+                System.arraycopy(mQuantities, index, mQuantities, index + 1, tail);
+                System.arraycopy(mPrices, index, mPrices, index + 1, tail);
+            }
+            mIds[index] = id;
+            mSize++;
+        }
+        mTypes[index] = type;
+        mQuantities[index] = quantity;
+        mPrices[index] = price;
+    }
+
+    /**
+     * Remove a product. Does nothing if the product isn't there.
+     */
+    synchronized void remove(long id) {
+        int index = Arrays.binarySearch(mIds, 0, mSize, id);
+        if (index < 0) {
+            return;
+        }
+        int tail = mSize - index - 1;
+        if (tail > 0) {
+            System.arraycopy(mIds, index + 1, mIds, index, tail);
+            System.arraycopy(mTypes, index + 1, mTypes, index, tail);
+            System.arraycopy(mQuantities, index + 1, mQuantities, index, tail);
+            System.arraycopy(mPrices, index + 1, mPrices, index, tail);
+        }
+        mSize--;
+    }
+
+    /**
+     * Compute the totals of every product type. Products with a quantity at or below the given
+     * threshold count as low on stock.
+     */
+    synchronized Totals aggregate(int lowStockThreshold) {
+        // There are only a handful of types, a linear search beats hashing
+        int[] types = new int[4];
+        int[] productCounts = new int[4];
+        long[] stockQuantities = new long[4];
+        long[] stockValues = new long[4];
+        int[] lowStockCounts = new int[4];
+        int typeCount = 0;
+        int last = 0;
+
+        for (int i = 0; i < mSize; i++) {
+            int type = mTypes[i];
+            int slot = last;
+            if (slot >= typeCount || types[slot] != type) {
+                for (slot = 0; slot < typeCount && types[slot] != type; slot++) {
+                    // Searching
+                }
+                if (slot == typeCount) {
+                    if (typeCount == types.length) {
+                        int length = typeCount * 2;
+                        types = Arrays.copyOf(types, length);
+                        productCounts = Arrays.copyOf(productCounts, length);
+                        stockQuantities = Arrays.copyOf(stockQuantities, length);
+                        stockValues = Arrays.copyOf(stockValues, length);
+                        lowStockCounts = Arrays.copyOf(lowStockCounts, length);
+                    }
+                    types[slot] = type;
+                    typeCount++;
+                }
+                last = slot;
+            }
+            int quantity = mQuantities[i];
+            productCounts[slot]++;
+            stockQuantities[slot] += quantity;
+            stockValues[slot] += (long) quantity * mPrices[i];
+            if (quantity <= lowStockThreshold) {
+                lowStockCounts[slot]++;
+            }
+        }
+        // Put the types in order, there are few enough for an insertion sort
+        for (int i = 1; i < typeCount; i++) {
+            for (int j = i; j > 0 && types[j - 1] > types[j]; j--) {
+                swap(types, j);
+                swap(productCounts, j);
+                swap(stockQuantities, j);
+                swap(stockValues, j);
+                swap(lowStockCounts, j);
+            }
+        }
+        return new Totals(typeCount, types, productCounts, stockQuantities, stockValues, lowStockCounts);
+    }
+
+    private static void swap(int[] array, int index) {
+        int value = array[index];
+        array[index] = array[index - 1];
+        array[index - 1] = value;
+    }
+
+    private static void swap(long[] array, int index) {
+        long value = array[index];
+        array[index] = array[index - 1];
+        array[index - 1] = value;
+    }
+
+    private void grow() {
+        int capacity = mIds.length * 2;
+        mIds = Arrays.copyOf(mIds, capacity);
+        mTypes = Arrays.copyOf(mTypes, capacity);
+        mQuantities = Arrays.copyOf(mQuantities, capacity);
+        mPrices = Arrays.copyOf(mPrices, capacity);
+    }
+
+    /**
+     * Totals per product type, in ascending type order. Entry i of every array
+     * belongs to type {@code types[i]}.
+     */
+    static final class Totals {
+        final int typeCount;
+        final int[] types;
+        final int[] productCounts;
+        final long[] stockQuantities;
+        final long[] stockValues;
+        final int[] lowStockCounts;
+
+        Totals(int typeCount, int[] types, int[] productCounts, long[] stockQuantities,
+               long[] stockValues, int[] lowStockCounts) {
+            this.typeCount = typeCount;
+            this.types = types;
+            this.productCounts = productCounts;
+            this.stockQuantities = stockQuantities;
+            this.stockValues = stockValues;
+            this.lowStockCounts = lowStockCounts;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.android.inventoryapp2.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * A single step in the schema history of the products database. A migration upgrades the
+ * database from {@code version - 1} to {@link #version}; {@link ProductDbHelper} runs the
+ * pending steps in order inside the open helper's upgrade transaction.
+ */
+abstract class Migration {
+
+    /** Schema version the database is at after this migration has run */
+    final int version;
+
+    Migration(int version) {
+        this.version = version;
+    }
+
+    /**
+     * Apply this step to a database at schema version {@code version - 1}.
+     */
+    abstract void migrate(SQLiteDatabase db);
+}
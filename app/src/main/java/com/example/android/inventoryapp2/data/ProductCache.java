@@ -0,0 +1,253 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentValues;
+
+import java.util.Arrays;
+
+/**
+ * Bounded cache of product rows keyed by product ID, evicting the least recently used row when
+ * it is full. IDs are kept in a primitive open-addressing table, so lookups don't box.
+ *
+ * Every write to the products table must {@link #remove} the products it changed, or
+ * {@link #clear} them all, once it has committed, so the cache never serves stale rows. Rows are
+ * never updated in place, since concurrent writes may get to the cache in another order than
+ * they committed. Readers that miss take a {@link #generation} before querying the database and
+ * hand it to {@link #put}, so a row read before a concurrent write can't be cached after that
+ * write.
+ */
+final class ProductCache {
+
+    private static final int NONE = -1;
+
+    private final int mCapacity;
+
+    /** Hash table from ID to entry index, NONE for empty buckets. Size is a power of two. */
+    private final int[] mBuckets;
+    private final int mMask;
+
+    /** Entries, linked from most recently used ({@link #mHead}) to least ({@link #mTail}) */
+    private final long[] mIds;
+    private final ContentValues[] mRows;
+    private final int[] mPrev;
+    private final int[] mNext;
+    private int mHead = NONE;
+    private int mTail = NONE;
+    private int mSize;
+
+    /** Incremented by every write */
+    private long mGeneration;
+
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+
+    ProductCache(int capacity) {
+        mCapacity = capacity;
+        // Keep the table at most half full so probe sequences stay short
+        int buckets = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+        mBuckets = new int[buckets];
+        mMask = buckets - 1;
+        Arrays.fill(mBuckets, NONE);
+        mIds = new long[capacity];
+        mRows = new ContentValues[capacity];
+        mPrev = new int[capacity];
+        mNext = new int[capacity];
+    }
+
+    /**
+     * Return the cached row of a product, or null if it isn't cached. The row must not be
+     * modified.
+     */
+    synchronized ContentValues get(long id) {
+        int entry = find(id);
+        if (entry == NONE) {
+            mMisses++;
+            return null;
+        }
+        mHits++;
+        moveToHead(entry);
+        return mRows[entry];
+    }
+
+    /**
+     * The current write generation, to pass to {@link #put} after reading a row.
+     */
+    synchronized long generation() {
+        return mGeneration;
+    }
+
+    /**
+     * Cache a row read from the database, unless something was written since the given
+     * generation was taken.
+     */
+    synchronized void put(long id, ContentValues row, long generation) {
+        if (generation != mGeneration || mCapacity == 0) {
+            return;
+        }
+        int entry = find(id);
+        if (entry != NONE) {
+            mRows[entry] = row;
+            moveToHead(entry);
+            return;
+        }
+        if (mSize == mCapacity) {
+            // Reuse the least recently used entry
+            entry = mTail;
+            unlink(entry);
+            removeFromTable(mIds[entry]);
+            mEvictions++;
+        } else {
+            entry = mSize++;
+        }
+        mIds[entry] = id;
+        mRows[entry] = row;
+        addToTable(id, entry);
+        linkAtHead(entry);
+    }
+
+    /**
+     * Drop a product from the cache.
+     */
+    synchronized void remove(long id) {
+        mGeneration++;
+        int entry = find(id);
+        if (entry == NONE) {
+            return;
+        }
+        unlink(entry);
+        removeFromTable(id);
+        // Keep the entries dense by moving the last one into the hole
+        int last = --mSize;
+        if (entry != last) {
+            boolean wasHead = mHead == last;
+            boolean wasTail = mTail == last;
+            mIds[entry] = mIds[last];
+            mRows[entry] = mRows[last];
+            mPrev[entry] = mPrev[last];
+            mNext[entry] = mNext[last];
+            if (mPrev[entry] != NONE) {
+                mNext[mPrev[entry]] = entry;
+            }
+            if (mNext[entry] != NONE) {
+                mPrev[mNext[entry]] = entry;
+            }
+            if (wasHead) {
+                mHead = entry;
+            }
+            if (wasTail) {
+                mTail = entry;
+            }
+            removeFromTable(mIds[entry]);
+            addToTable(mIds[entry], entry);
+        }
+        mRows[last] = null;
+    }
+
+    /**
+     * Drop every product, for writes that may touch any row.
+     */
+    synchronized void clear() {
+        mGeneration++;
+        Arrays.fill(mBuckets, NONE);
+        Arrays.fill(mRows, null);
+        mHead = NONE;
+        mTail = NONE;
+        mSize = 0;
+    }
+
+    synchronized long getHits() {
+        return mHits;
+    }
+
+    synchronized long getMisses() {
+        return mMisses;
+    }
+
+    synchronized long getEvictions() {
+        return mEvictions;
+    }
+
+    synchronized int size() {
+        return mSize;
+    }
+
+    int capacity() {
+        return mCapacity;
+    }
+
+    private int bucketOf(long id) {
+        // Spread the bits, product IDs are sequential
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mMask;
+    }
+
+    private int find(long id) {
+        for (int bucket = bucketOf(id); mBuckets[bucket] != NONE; bucket = (bucket + 1) & mMask) {
+            if (mIds[mBuckets[bucket]] == id) {
+                return mBuckets[bucket];
+            }
+        }
+        return NONE;
+    }
+
+    private void addToTable(long id, int entry) {
+        int bucket = bucketOf(id);
+        while (mBuckets[bucket] != NONE) {
+            bucket = (bucket + 1) & mMask;
+        }
+        mBuckets[bucket] = entry;
+    }
+
+    /**
+     * Remove an ID from the hash table, shifting later entries of its probe sequence back so
+     * lookups never stop at the hole.
+     */
+    private void removeFromTable(long id) {
+        int bucket = bucketOf(id);
+        while (mIds[mBuckets[bucket]] != id) {
+            bucket = (bucket + 1) & mMask;
+        }
+        int hole = bucket;
+        for (int next = (hole + 1) & mMask; mBuckets[next] != NONE; next = (next + 1) & mMask) {
+            int home = bucketOf(mIds[mBuckets[next]]);
+            // Move the entry into the hole if the hole lies between its home bucket and it
+            if (((next - home) & mMask) >= ((next - hole) & mMask)) {
+                mBuckets[hole] = mBuckets[next];
+                hole = next;
+            }
+        }
+        mBuckets[hole] = NONE;
+    }
+
+    private void linkAtHead(int entry) {
+        mPrev[entry] = NONE;
+        mNext[entry] = mHead;
+        if (mHead != NONE) {
+            mPrev[mHead] = entry;
+        }
+        mHead = entry;
+        if (mTail == NONE) {
+            mTail = entry;
+        }
+    }
+
+    private void unlink(int entry) {
+        if (mPrev[entry] != NONE) {
+            mNext[mPrev[entry]] = mNext[entry];
+        } else {
+            mHead = mNext[entry];
+        }
+        if (mNext[entry] != NONE) {
+            mPrev[mNext[entry]] = mPrev[entry];
+        } else {
+            mTail = mPrev[entry];
+        }
+    }
+
+    private void moveToHead(int entry) {
+        if (mHead != entry) {
+            unlink(entry);
+            linkAtHead(entry);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentUris;
+import android.net.Uri;
+import android.text.TextUtils;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Describes a change {@link ProductProvider} notifies its observers about: what kind of change
+ * it was, which product it touched and which columns it wrote.
+ *
+ * A change is sent as the notification URI itself. Changes to a single product are notified
+ * on the product's URI, e.g. {@code products/3?op=update&columns=quantity}, so only observers
+ * of that product and of the whole table are woken up. Changes to several products at once
+ * are notified on {@link ProductEntry#CONTENT_URI} and have no ID.
+ */
+public final class ProductChange {
+
+    /** Several changes of different kinds, e.g. a batch */
+    public static final int OP_UNKNOWN = 0;
+    public static final int OP_INSERT = 1;
+    public static final int OP_UPDATE = 2;
+    public static final int OP_DELETE = 3;
+
+    /** ID of a change that isn't about a single product */
+    public static final long NO_ID = -1;
+
+    private static final String QUERY_PARAMETER_OP = "op";
+    private static final String QUERY_PARAMETER_COLUMNS = "columns";
+    private static final String[] OP_NAMES = {null, "insert", "update", "delete"};
+
+    /** One of the OP_* constants */
+    public final int op;
+
+    /** ID of the changed product, {@link #NO_ID} if the change may touch several */
+    public final long id;
+
+    /** Columns written by an update, null if unknown or if the whole row changed */
+    public final Set<String> columns;
+
+    public ProductChange(int op, long id, Collection<String> columns) {
+        this.op = op;
+        this.id = id;
+        this.columns = columns == null ? null : Collections.unmodifiableSet(new HashSet<>(columns));
+    }
+
+    /**
+     * Whether this change could affect any of the given columns of a product. Inserts, deletes
+     * and changes with unknown columns affect every column.
+     */
+    public boolean affectsAny(Set<String> columns) {
+        if (this.columns == null || op != OP_UPDATE) {
+            return true;
+        }
+        for (String column : this.columns) {
+            if (columns.contains(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The URI to notify for this change.
+     */
+    public Uri toUri() {
+        Uri.Builder builder = id == NO_ID ? ProductEntry.CONTENT_URI.buildUpon()
+                : ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id).buildUpon();
+        if (op != OP_UNKNOWN) {
+            builder.appendQueryParameter(QUERY_PARAMETER_OP, OP_NAMES[op]);
+        }
+        if (columns != null) {
+            builder.appendQueryParameter(QUERY_PARAMETER_COLUMNS, TextUtils.join(",", columns));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Read the change from a notification URI. A URI without a description, e.g. one notified
+     * by an older version of the provider, is an {@link #OP_UNKNOWN} change.
+     */
+    public static ProductChange fromUri(Uri uri) {
+        int op = OP_UNKNOWN;
+        String opName = uri.getQueryParameter(QUERY_PARAMETER_OP);
+        for (int i = 1; i < OP_NAMES.length; i++) {
+            if (OP_NAMES[i].equals(opName)) {
+                op = i;
+            }
+        }
+        long id = NO_ID;
+        String lastSegment = uri.getLastPathSegment();
+        if (lastSegment != null && TextUtils.isDigitsOnly(lastSegment) && !lastSegment.isEmpty()) {
+            id = Long.parseLong(lastSegment);
+        }
+        Set<String> columns = null;
+        String columnList = uri.getQueryParameter(QUERY_PARAMETER_COLUMNS);
+        if (columnList != null) {
+            columns = new HashSet<>();
+            Collections.addAll(columns, TextUtils.split(columnList, ","));
+        }
+        return new ProductChange(op, id, columns);
+    }
+
+    @Override
+    public String toString() {
+        return toUri().toString();
+    }
+}
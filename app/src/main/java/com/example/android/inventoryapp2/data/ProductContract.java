@@ -29,6 +29,18 @@ public final class ProductContract {
     public static final String CONTENT_AUTHORITY = "com.example.android.inventoryapp2";
     public static final Uri BASE_CONTENT_URI = Uri.parse("content://" + CONTENT_AUTHORITY);
     public static final String PATH_PRODUCTS = "products";
+    public static final String PATH_SEARCH = "search";
+    public static final String PATH_STATS = "stats";
+    public static final String PATH_MOVEMENTS = "movements";
+    public static final String PATH_DAILY = "daily";
+    public static final String PATH_IMPORTS = "imports";
+    public static final String PATH_EXPORT = "export";
+    public static final String PATH_ALERTS = "alerts";
+    public static final String PATH_SKU = "sku";
+    public static final String PATH_LOCATIONS = "locations";
+    public static final String PATH_STOCK = "stock";
+    public static final String PATH_SUPPLIERS = "suppliers";
+    public static final String PATH_SYNC = "sync";
     // To prevent someone from accidentally instantiating the contract class,
     // give it an empty constructor.
     private ProductContract() {}
@@ -50,6 +62,68 @@ public final class ProductContract {
         public static final String CONTENT_ITEM_TYPE =
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_PRODUCTS;
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_PRODUCTS);
+        /**
+         * Full-text search over product and supplier names. Pass the text to search for in the
+         * {@link #QUERY_PARAMETER_SEARCH} query parameter, see {@link #buildSearchUri}.
+         */
+        public static final Uri SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+        /**
+         * Query parameter of {@link #SEARCH_URI} holding the search text. Every word is matched
+         * as a prefix of a word in the product or supplier name.
+         */
+        public static final String QUERY_PARAMETER_SEARCH = "q";
+        /**
+         * Products by {@link #COLUMN_SKU}: append the SKU, see {@link #buildSkuUri}. The lookup
+         * goes through a unique index, so it takes the same time however many products there are.
+         */
+        public static final Uri SKU_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SKU);
+        /**
+         * Inventory totals, one row per product type plus a first row with the totals of all
+         * products whose {@link #COLUMN_PRODUCT_TYPE} is {@link #STATS_TYPE_ALL}. The columns
+         * are {@link #COLUMN_PRODUCT_TYPE}, {@link #COLUMN_STATS_PRODUCT_COUNT},
+         * {@link #COLUMN_STATS_QUANTITY}, {@link #COLUMN_STATS_VALUE} and
+         * {@link #COLUMN_STATS_LOW_STOCK_COUNT}.
+         */
+        public static final Uri STATS_URI = Uri.withAppendedPath(CONTENT_URI, PATH_STATS);
+        /**
+         * The MIME type of the {@link #STATS_URI}.
+         */
+        public static final String CONTENT_STATS_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS;
+        /**
+         * Query parameter of {@link #STATS_URI}: products with a quantity at or below it count
+         * as low on stock. Defaults to {@link #DEFAULT_LOW_STOCK_THRESHOLD}.
+         */
+        public static final String QUERY_PARAMETER_LOW_STOCK = "low_stock";
+        public static final int DEFAULT_LOW_STOCK_THRESHOLD = 5;
+        /**
+         * Type of the {@link #STATS_URI} row holding the totals of all products.
+         */
+        public static final int STATS_TYPE_ALL = -1;
+        /**
+         * Number of products, in the {@link #STATS_URI}.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_STATS_PRODUCT_COUNT = "product_count";
+        /**
+         * Sum of the quantities in stock, in the {@link #STATS_URI}.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_STATS_QUANTITY = "stock_quantity";
+        /**
+         * Sum of quantity times price, in the {@link #STATS_URI}.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_STATS_VALUE = "stock_value";
+        /**
+         * Number of products low on stock, in the {@link #STATS_URI}.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_STATS_LOW_STOCK_COUNT = "low_stock_count";
         /** Name of database table for products */
         public final static String TABLE_NAME = "products";
         /**
@@ -65,11 +139,19 @@ public final class ProductContract {
          */
         public final static String COLUMN_PRODUCT_NAME ="name";
         /**
-         * supplier of the product.
+         * supplier of the product, the {@link SupplierEntry#COLUMN_SUPPLIER_NAME} of its
+         * supplier. Writing a name no supplier has yet adds one.
          *
          * Type: TEXT
          */
         public final static String COLUMN_SUPPLIER_NAME = "supplier";
+        /**
+         * {@link SupplierEntry#_ID} of the supplier of the product, null if it has none.
+         * Read only, set {@link #COLUMN_SUPPLIER_NAME} to change the supplier.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SUPPLIER_ID = "supplier_id";
         /**
          * type of the product.
          *
@@ -80,7 +162,9 @@ public final class ProductContract {
          */
         public final static String COLUMN_PRODUCT_TYPE = "type";
         /**
-         * quantity of the product.
+         * quantity of the product, the total over every {@link LocationEntry}. Setting it sets
+         * the stock at {@link LocationEntry#DEFAULT_LOCATION_ID}, which holds whatever isn't
+         * at another location, so it can't be set below the stock at the other locations.
          *
          * Type: String
          */
@@ -92,11 +176,28 @@ public final class ProductContract {
          */
         public final static String COLUMN_PRODUCT_PRICE = "price";
         /**
-         * supplier phone
+         * supplier phone, the {@link SupplierEntry#COLUMN_SUPPLIER_PHONE} of its supplier, so
+         * writing it changes the phone of every product from the same supplier.
          *
          * Type: String
          */
         public final static String COLUMN_SUPPLIER_PHONE = "phone";
+        /**
+         * Reorder point of the product: when a write takes the quantity from above it down to
+         * it or below, a {@link StockAlertEntry} is raised. 0, the default, alerts when the
+         * product sells out. Kept on this device only, it isn't synced.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_REORDER_POINT = "reorder_point";
+        /**
+         * Stock keeping unit of the product, usually the number of its barcode. Unique among
+         * the products, null if the product has none. Kept on this device only, it isn't
+         * synced.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SKU = "sku";
         /**
          * Possible values for the type of the item.
          */
@@ -104,17 +205,818 @@ public final class ProductContract {
         public static final int GROCERY = 1;
         public static final int GOODS = 2;
 
+        /**
+         * Name of the {@link android.content.ContentProvider#call} method that sells stock of a
+         * single product. The argument is the product ID, and {@link #EXTRA_AMOUNT} in the
+         * extras is the number of items sold (1 if absent). The quantity is only decremented
+         * if enough stock is left; the returned bundle holds the new quantity in
+         * {@link #EXTRA_QUANTITY}, or -1 if the product doesn't have enough stock. A missing or
+         * malformed ID throws an {@link IllegalArgumentException}.
+         */
+        public static final String METHOD_SELL = "sell";
+
+        /**
+         * Name of the {@link android.content.ContentProvider#call} method that sells stock of the
+         * product with a given {@link #COLUMN_SKU}, e.g. a scanned barcode. The argument is the
+         * SKU, otherwise it works like {@link #METHOD_SELL}: the product is looked up and sold in
+         * one transaction. The returned bundle also holds the ID of the product in
+         * {@link #EXTRA_PRODUCT_ID}, or -1 if no product has the SKU.
+         */
+        public static final String METHOD_SELL_SKU = "sell_sku";
+
+        /**
+         * Number of items for {@link #METHOD_SELL}.
+         *
+         * Type: int
+         */
+        public static final String EXTRA_AMOUNT = "amount";
+
+        /**
+         * Quantity left after {@link #METHOD_SELL}.
+         *
+         * Type: int
+         */
+        public static final String EXTRA_QUANTITY = "quantity";
+
+        /**
+         * ID of the product sold by {@link #METHOD_SELL_SKU}.
+         *
+         * Type: long
+         */
+        public static final String EXTRA_PRODUCT_ID = "product_id";
+
+        /**
+         * Name of the {@link android.content.ContentProvider#call} method that reports how well
+         * the provider's in-memory product cache is doing, for sizing it. The returned bundle
+         * holds {@link #EXTRA_CACHE_HITS}, {@link #EXTRA_CACHE_MISSES},
+         * {@link #EXTRA_CACHE_EVICTIONS}, {@link #EXTRA_CACHE_SIZE} and
+         * {@link #EXTRA_CACHE_CAPACITY}.
+         */
+        public static final String METHOD_CACHE_STATS = "cache_stats";
+
+        /**
+         * Number of single product queries served from the cache.
+         *
+         * Type: long
+         */
+        public static final String EXTRA_CACHE_HITS = "cache_hits";
+
+        /**
+         * Number of single product queries that had to read the database.
+         *
+         * Type: long
+         */
+        public static final String EXTRA_CACHE_MISSES = "cache_misses";
+
+        /**
+         * Number of products dropped from the cache to make room for others.
+         *
+         * Type: long
+         */
+        public static final String EXTRA_CACHE_EVICTIONS = "cache_evictions";
+
+        /**
+         * Number of products currently cached.
+         *
+         * Type: int
+         */
+        public static final String EXTRA_CACHE_SIZE = "cache_size";
+
+        /**
+         * Maximum number of products the cache holds.
+         *
+         * Type: int
+         */
+        public static final String EXTRA_CACHE_CAPACITY = "cache_capacity";
+
+        /**
+         * Name of the {@link android.content.ContentProvider#call} method that returns the
+         * provider's operation metrics. The argument may be {@link #METRICS_ENABLE},
+         * {@link #METRICS_DISABLE} or {@link #METRICS_RESET}, which is applied after taking the
+         * snapshot. Recording is on in debug builds and off otherwise.
+         *
+         * The returned bundle holds {@link #EXTRA_METRICS_ENABLED}, {@link #EXTRA_METRICS_DUMP}
+         * and a nested bundle for every operation and URI that was recorded, keyed
+         * "operation:uri", e.g. "query:product_id". The operations are query, insert,
+         * bulk_insert, update, delete, batch, sell, export and sync; the URIs products,
+         * product_id, search, stats, movements, movements_daily, imports, export, alerts, or none
+         * for batches and syncs. The nested bundles hold the METRIC_* keys.
+         */
+        public static final String METHOD_METRICS = "metrics";
+
+        /** Arguments of {@link #METHOD_METRICS}. */
+        public static final String METRICS_ENABLE = "enable";
+        public static final String METRICS_DISABLE = "disable";
+        public static final String METRICS_RESET = "reset";
+
+        /**
+         * Whether metrics are being recorded, in the result of {@link #METHOD_METRICS}.
+         *
+         * Type: boolean
+         */
+        public static final String EXTRA_METRICS_ENABLED = "metrics_enabled";
+
+        /**
+         * Human readable version of the result of {@link #METHOD_METRICS}, for logging.
+         *
+         * Type: String
+         */
+        public static final String EXTRA_METRICS_DUMP = "metrics_dump";
+
+        /**
+         * Number of operations.
+         *
+         * Type: long
+         */
+        public static final String METRIC_COUNT = "count";
+
+        /**
+         * Time taken by all operations together, in nanoseconds.
+         *
+         * Type: long
+         */
+        public static final String METRIC_TOTAL_NANOS = "total_nanos";
+
+        /**
+         * Time taken by the slowest operation, in nanoseconds.
+         *
+         * Type: long
+         */
+        public static final String METRIC_MAX_NANOS = "max_nanos";
+
+        /**
+         * Latency histogram. Entry i is the number of operations that took from 2^i to
+         * 2^(i+1) microseconds; entry 0 also counts faster ones and the last entry slower ones.
+         *
+         * Type: long[]
+         */
+        public static final String METRIC_LATENCY_HISTOGRAM = "latency_histogram";
+
+        /**
+         * Number of rows inserted, updated or deleted.
+         *
+         * Type: long
+         */
+        public static final String METRIC_ROWS = "rows";
+
+        /**
+         * Number of rows in the returned cursors.
+         *
+         * Type: long
+         */
+        public static final String METRIC_CURSOR_ROWS = "cursor_rows";
+
+        /**
+         * Number of change notifications sent.
+         *
+         * Type: long
+         */
+        public static final String METRIC_NOTIFICATIONS = "notifications";
+
+        /**
+         * Name of the {@link android.content.ContentProvider#call} method that syncs the
+         * products with the inventory server: the changes made here since the last sync are
+         * pushed, then the changes made on other devices are pulled. Quantities are merged by
+         * adding up the stock moved on every device, so sales on two devices both count. The
+         * argument is the base URL of the server.
+         *
+         * The sync runs on a thread of the provider, the call only starts it and returns right
+         * away, so it may be made from the main thread. The returned bundle holds
+         * {@link #EXTRA_SYNC_STARTED}, false if a sync was still running, in which case no other
+         * one is started. When the sync is done {@link #SYNC_URI} is notified, and
+         * {@link #METHOD_SYNC_RESULT} tells what it did. A failed sync keeps what it did so far,
+         * syncing again carries on from there.
+         */
+        public static final String METHOD_SYNC = "sync";
+
+        /**
+         * Name of the {@link android.content.ContentProvider#call} method that reports the last
+         * sync started with {@link #METHOD_SYNC} that is done. The returned bundle holds
+         * {@link #EXTRA_SYNC_PUSHED}, {@link #EXTRA_SYNC_PULLED}, {@link #EXTRA_SYNC_BYTES_SENT},
+         * {@link #EXTRA_SYNC_BYTES_RECEIVED}, {@link #EXTRA_SYNC_ROWS_PER_SECOND} and, if the
+         * sync failed, {@link #EXTRA_SYNC_ERROR}. It is empty if no sync is done since the
+         * provider started.
+         */
+        public static final String METHOD_SYNC_RESULT = "sync_result";
+
+        /**
+         * URI notified whenever a sync started with {@link #METHOD_SYNC} is done. It can't be
+         * queried.
+         */
+        public static final Uri SYNC_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SYNC);
+
+        /**
+         * Whether {@link #METHOD_SYNC} started a sync.
+         *
+         * Type: boolean
+         */
+        public static final String EXTRA_SYNC_STARTED = "sync_started";
+
+        /**
+         * Number of products sent to the server.
+         *
+         * Type: long
+         */
+        public static final String EXTRA_SYNC_PUSHED = "sync_pushed";
+
+        /**
+         * Number of products received from the server.
+         *
+         * Type: long
+         */
+        public static final String EXTRA_SYNC_PULLED = "sync_pulled";
+
+        /**
+         * Size of the request bodies sent to the server, in bytes.
+         *
+         * Type: long
+         */
+        public static final String EXTRA_SYNC_BYTES_SENT = "sync_bytes_sent";
+
+        /**
+         * Size of the response bodies received from the server, in bytes.
+         *
+         * Type: long
+         */
+        public static final String EXTRA_SYNC_BYTES_RECEIVED = "sync_bytes_received";
+
+        /**
+         * Products sent and received per second over the whole sync.
+         *
+         * Type: double
+         */
+        public static final String EXTRA_SYNC_ROWS_PER_SECOND = "sync_rows_per_second";
+
+        /**
+         * Why the sync failed, absent if it succeeded.
+         *
+         * Type: String
+         */
+        public static final String EXTRA_SYNC_ERROR = "sync_error";
+
+        /**
+         * Query parameter of {@link #CONTENT_URI} and {@link #SEARCH_URI} limiting the number
+         * of rows returned, for reading the products a page at a time.
+         */
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+        /**
+         * Query parameter for keyset paging in ID order: only rows with an ID greater than this
+         * one are returned, ordered by ID. Pass the ID of the last row of the previous page.
+         */
+        public static final String QUERY_PARAMETER_AFTER_ID = "after_id";
+        /**
+         * Query parameter for keyset paging in name order: only rows that sort after this name
+         * (and, if {@link #QUERY_PARAMETER_AFTER_ID} is also given, after that ID among rows
+         * with the same name) are returned, ordered by {@link #SORT_ORDER_NAME}. Pass the name
+         * and ID of the last row of the previous page.
+         */
+        public static final String QUERY_PARAMETER_AFTER_NAME = "after_name";
+        /**
+         * Query parameter skipping the given number of rows. Slower than the keyset parameters
+         * for deep pages, so only use it to jump to a page whose predecessor isn't known.
+         */
+        public static final String QUERY_PARAMETER_OFFSET = "offset";
+        /**
+         * Sort order of paged queries using {@link #QUERY_PARAMETER_AFTER_ID}, and the default
+         * sort order of any paged query.
+         */
+        public static final String SORT_ORDER_ID = _ID;
+        /**
+         * Sort order of paged queries using {@link #QUERY_PARAMETER_AFTER_NAME}. Pass it as the
+         * sort order of the first page.
+         */
+        public static final String SORT_ORDER_NAME = COLUMN_PRODUCT_NAME + " COLLATE NOCASE, " + _ID;
+
+        /**
+         * Query parameters of {@link #CONTENT_URI} and {@link #SEARCH_URI} filtering the
+         * products, in place of a selection: only products of this type (one of the TYPE
+         * constants) or from this supplier (matched exactly) are returned. Every filter given
+         * applies, together with the selection if there is one. Filtered queries of
+         * {@link #CONTENT_URI} always run through an index, so they stay fast on large catalogs.
+         */
+        public static final String QUERY_PARAMETER_TYPE = "type";
+        public static final String QUERY_PARAMETER_SUPPLIER = "supplier";
+        /**
+         * Query parameters filtering the products to a price or quantity range, both ends
+         * included. Either end can be left out.
+         */
+        public static final String QUERY_PARAMETER_MIN_PRICE = "min_price";
+        public static final String QUERY_PARAMETER_MAX_PRICE = "max_price";
+        public static final String QUERY_PARAMETER_MIN_QUANTITY = "min_quantity";
+        public static final String QUERY_PARAMETER_MAX_QUANTITY = "max_quantity";
+        /**
+         * Query parameter sorting the products by one of the SORT keys, in place of a sort
+         * order. Products with the same key are sorted by ID. Can't be combined with a different
+         * sort order, or with keyset paging in a different order.
+         */
+        public static final String QUERY_PARAMETER_SORT = "sort";
+        /**
+         * Query parameter giving the direction of {@link #QUERY_PARAMETER_SORT},
+         * {@link #ORDER_ASCENDING} unless given.
+         */
+        public static final String QUERY_PARAMETER_ORDER = "order";
+        /**
+         * Sort keys of {@link #QUERY_PARAMETER_SORT}. Names are sorted ignoring case, and
+         * ascending by name is {@link #SORT_ORDER_NAME}, so it can be paged by name.
+         */
+        public static final String SORT_NAME = "name";
+        public static final String SORT_PRICE = "price";
+        public static final String SORT_QUANTITY = "quantity";
+        public static final String SORT_ID = "id";
+        /**
+         * Directions of {@link #QUERY_PARAMETER_ORDER}.
+         */
+        public static final String ORDER_ASCENDING = "asc";
+        public static final String ORDER_DESCENDING = "desc";
+
+        /**
+         * Returns the {@link #CONTENT_URI} filtered to the given query parameters, given as
+         * pairs of a parameter name and its value.
+         */
+        public static Uri buildFilterUri(String... parameters) {
+            Uri.Builder builder = CONTENT_URI.buildUpon();
+            for (int i = 0; i < parameters.length; i += 2) {
+                builder.appendQueryParameter(parameters[i], parameters[i + 1]);
+            }
+            return builder.build();
+        }
+
+        /**
+         * Query parameter of a {@link ContentResolver#bulkInsert} into {@link #CONTENT_URI} naming the
+         * catalog import the rows come from. Together with
+         * {@link #QUERY_PARAMETER_IMPORT_POSITION} the insert also saves the progress of the
+         * import in {@link ImportEntry}, in the same transaction.
+         */
+        public static final String QUERY_PARAMETER_IMPORT = "import";
+        /**
+         * Query parameter giving the number of records of the import that have been read once
+         * the rows of a {@link #QUERY_PARAMETER_IMPORT} bulk insert are written.
+         */
+        public static final String QUERY_PARAMETER_IMPORT_POSITION = "import_position";
+
+        /**
+         * Every product as a file, opened with {@link ContentResolver#openInputStream} and read
+         * as it is written, in ID order. The {@link #QUERY_PARAMETER_FORMAT} query parameter
+         * picks the format, see {@link #buildExportUri}. Products changed while the export runs
+         * may appear as they were before or after the change.
+         *
+         * The provider isn't exported, but this URI, and no other, can be handed to another app
+         * in an intent with {@link android.content.Intent#FLAG_GRANT_READ_URI_PERMISSION}, e.g.
+         * to share the export through {@link android.content.Intent#ACTION_SEND}. The app then
+         * reads the pipe the same way.
+         */
+        public static final Uri EXPORT_URI = Uri.withAppendedPath(CONTENT_URI, PATH_EXPORT);
+        /**
+         * Query parameter of the {@link #EXPORT_URI} giving the format,
+         * {@link #EXPORT_FORMAT_CSV} unless given.
+         */
+        public static final String QUERY_PARAMETER_FORMAT = "format";
+        /**
+         * Export formats: CSV with a header row, which can be imported again, and one JSON
+         * object per line. Every column of the products table is exported.
+         */
+        public static final String EXPORT_FORMAT_CSV = "csv";
+        public static final String EXPORT_FORMAT_NDJSON = "ndjson";
+        /**
+         * The MIME types of the {@link #EXPORT_URI}, by format.
+         */
+        public static final String CONTENT_CSV_TYPE = "text/csv";
+        public static final String CONTENT_NDJSON_TYPE = "application/x-ndjson";
+
+        /**
+         * Returns the {@link #EXPORT_URI} for the given format.
+         */
+        public static Uri buildExportUri(String format) {
+            return EXPORT_URI.buildUpon().appendQueryParameter(QUERY_PARAMETER_FORMAT, format).build();
+        }
+
+        /**
+         * Returns the URI of the stock of a product at every location, see
+         * {@link LocationStockEntry}.
+         */
+        public static Uri buildStockUri(long id) {
+            return CONTENT_URI.buildUpon().appendPath(String.valueOf(id)).appendPath(PATH_STOCK).build();
+        }
+
+        /**
+         * Returns the {@link #SKU_URI} of the product with the given SKU.
+         */
+        public static Uri buildSkuUri(String sku) {
+            return Uri.withAppendedPath(SKU_URI, Uri.encode(sku));
+        }
+
+        /**
+         * Returns the {@link #SEARCH_URI} for the given search text.
+         */
+        public static Uri buildSearchUri(String query) {
+            return SEARCH_URI.buildUpon().appendQueryParameter(QUERY_PARAMETER_SEARCH, query).build();
+        }
+
         /**
          * Returns whether or not the given gender is {@link #TYPE_UNKNOWN}, {@link #GROCERY},
          * or {@link #GOODS}.
          */
         public static boolean isValidType(int type) {
-            if (type == TYPE_UNKNOWN || type == GROCERY || type == GOODS) {
-                return true;
-            }
-            return false;
+            return ProductValidator.isValidType(type);
         }
     }
 
-}
+    /**
+     * Inner class that defines constant values for the stock movements table, the append-only
+     * history of every change to a product's quantity. The quantity of a product is the sum of
+     * its movements, including those already rolled up into {@link StockSummaryEntry}.
+     * Movements are written by {@link ProductEntry} writes and can only be queried.
+     */
+    public static final class StockMovementEntry implements BaseColumns {
+        /**
+         * Every movement, oldest first unless a sort order is given. Movements older than 30
+         * days are moved into {@link StockSummaryEntry} in the background.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_MOVEMENTS);
 
+        /**
+         * The MIME type of the {@link #CONTENT_URI}.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_MOVEMENTS;
+
+        /** Name of database table for stock movements */
+        public static final String TABLE_NAME = "stock_movements";
+
+        /**
+         * {@link ProductEntry#_ID} of the product whose quantity changed.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_PRODUCT_ID = "product_id";
+
+        /**
+         * Change of the quantity, negative when stock went out.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_DELTA = "delta";
+
+        /**
+         * Why the quantity changed, one of the REASON_* constants.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_REASON = "reason";
+
+        /**
+         * When the quantity changed, in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_TIMESTAMP = "timestamp";
+
+        /**
+         * Possible values for the reason of a movement: the quantity was set in the editor, a
+         * sale, the quantity a product was created with (or had when the history started),
+         * the stock that went away with a deleted product, and stock moved on other devices
+         * that a sync brought in.
+         */
+        public static final int REASON_ADJUSTMENT = 0;
+        public static final int REASON_SALE = 1;
+        public static final int REASON_INITIAL = 2;
+        public static final int REASON_DELETED = 3;
+        public static final int REASON_SYNC = 4;
+    }
+
+    /**
+     * Inner class that defines constant values for the daily stock summaries table. Each row
+     * adds up the movements of one product for one reason on one day (UTC). A day can have
+     * more than one row for the same product and reason, so always sum them.
+     */
+    public static final class StockSummaryEntry {
+        /**
+         * Every summary, oldest first unless a sort order is given.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(StockMovementEntry.CONTENT_URI, PATH_DAILY);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI}.
+         */
+        public static final String CONTENT_LIST_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/"
+                + CONTENT_AUTHORITY + "/" + PATH_MOVEMENTS + "/" + PATH_DAILY;
+
+        /** Name of database table for daily stock summaries */
+        public static final String TABLE_NAME = "stock_movement_summaries";
+
+        /**
+         * {@link ProductEntry#_ID} of the product.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_PRODUCT_ID = "product_id";
+
+        /**
+         * Day of the movements, in days since the epoch (UTC).
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_DAY = "day";
+
+        /**
+         * Reason of the movements, one of the StockMovementEntry.REASON_* constants.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_REASON = "reason";
+
+        /**
+         * Sum of the movements' changes of the quantity.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_DELTA = "delta";
+
+        /**
+         * Number of movements summed up.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_MOVEMENTS = "movements";
+    }
+
+    /**
+     * Inner class that defines constant values for the catalog imports table. Each row is the
+     * checkpoint of an import that hasn't finished, so it can resume where it stopped. Rows
+     * are written by {@link ProductEntry} bulk inserts with
+     * {@link ProductEntry#QUERY_PARAMETER_IMPORT}, and can be queried and deleted.
+     */
+    public static final class ImportEntry {
+        /**
+         * Every unfinished import.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_IMPORTS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI}.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_IMPORTS;
+
+        /** Name of database table for catalog imports */
+        public static final String TABLE_NAME = "imports";
+
+        /**
+         * What is being imported, usually the URI of the file. Unique.
+         *
+         * Type: TEXT
+         */
+        public static final String COLUMN_SOURCE = "source";
+
+        /**
+         * Number of records after the header that have been read and either written or
+         * rejected.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_POSITION = "position";
+
+        /**
+         * Number of products written so far. The rest of the records read were rejected.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_IMPORTED = "imported";
+    }
+
+    /**
+     * Inner class that defines constant values for the stock alerts table. Each row is a
+     * product whose quantity went down to its {@link ProductEntry#COLUMN_REORDER_POINT} or
+     * below. Rows are written by {@link ProductEntry} updates and sales, removed when the
+     * product is restocked above its reorder point or deleted, and can be queried and deleted
+     * to dismiss them.
+     */
+    public static final class StockAlertEntry {
+        /**
+         * Every alert. Observers of this URI are notified once for a burst of alerts, a
+         * moment after the last of them, rather than once per write.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_ALERTS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI}.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_ALERTS;
+
+        /** Name of database table for stock alerts */
+        public static final String TABLE_NAME = "stock_alerts";
+
+        /**
+         * {@link ProductEntry#_ID} of the product. Unique.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_PRODUCT_ID = "product_id";
+
+        /**
+         * Quantity of the product when the alert was raised.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_QUANTITY = "quantity";
+
+        /**
+         * Reorder point of the product when the alert was raised.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_REORDER_POINT = "reorder_point";
+
+        /**
+         * When the alert was raised, in milliseconds since the epoch.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_TIMESTAMP = "timestamp";
+    }
+
+    /**
+     * Inner class that defines constant values for the stock locations table: the stockrooms,
+     * shelves or shops the stock of a product is spread over. There is always the
+     * {@link #DEFAULT_LOCATION_ID}, which can't be deleted. Deleting another location moves its
+     * stock back to the default location.
+     */
+    public static final class LocationEntry implements BaseColumns {
+        /**
+         * Every location, by ID unless a sort order is given. Append an ID for one location.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_LOCATIONS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI}.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_LOCATIONS;
+
+        /**
+         * The MIME type of a single location.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_LOCATIONS;
+
+        /** Name of database table for locations */
+        public static final String TABLE_NAME = "locations";
+
+        /**
+         * Name of the location. Unique.
+         *
+         * Type: TEXT
+         */
+        public static final String COLUMN_LOCATION_NAME = "name";
+
+        /**
+         * ID of the location holding all the stock that isn't at another location. Stock added
+         * or sold through {@link ProductEntry} goes in and out of it.
+         */
+        public static final long DEFAULT_LOCATION_ID = 1;
+
+        /**
+         * Returns the URI of the stock of every product at a location, see
+         * {@link LocationStockEntry}.
+         */
+        public static Uri buildStockUri(long id) {
+            return CONTENT_URI.buildUpon().appendPath(String.valueOf(id)).appendPath(PATH_STOCK).build();
+        }
+
+        /**
+         * Returns the URI of the stock of one product at a location, see
+         * {@link LocationStockEntry}.
+         */
+        public static Uri buildStockUri(long id, long productId) {
+            return buildStockUri(id).buildUpon().appendPath(String.valueOf(productId)).build();
+        }
+    }
+
+    /**
+     * Inner class that defines constant values for the stock of products at locations. The
+     * quantity of a product is the sum of its stock at every location, kept up to date in the
+     * same transaction as every change of the stock, so the product list never has to add it
+     * up. Only products with stock at a location have a row for it.
+     *
+     * The stock is read through {@link LocationEntry#buildStockUri(long)}, a location's stock
+     * in product ID order, and {@link ProductEntry#buildStockUri}, a product's stock in
+     * location ID order. Updating the quantity at
+     * {@link LocationEntry#buildStockUri(long, long)} adds or removes stock there and changes
+     * the product's quantity by as much; {@link #METHOD_TRANSFER} moves stock between two
+     * locations without changing it.
+     */
+    public static final class LocationStockEntry {
+        /**
+         * The MIME type of the stock at a location or of a product.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STOCK;
+
+        /**
+         * The MIME type of the stock of one product at one location.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STOCK;
+
+        /** Name of database table for stock at locations */
+        public static final String TABLE_NAME = "product_stock";
+
+        /**
+         * {@link ProductEntry#_ID} of the product.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_PRODUCT_ID = "product_id";
+
+        /**
+         * {@link LocationEntry#_ID} of the location.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_LOCATION_ID = "location_id";
+
+        /**
+         * Quantity of the product at the location.
+         *
+         * Type: INTEGER
+         */
+        public static final String COLUMN_QUANTITY = "quantity";
+
+        /**
+         * Name of the {@link android.content.ContentProvider#call} method that moves stock of a
+         * product from one location to another in a single transaction. The argument is the
+         * product ID, the extras hold {@link #EXTRA_FROM_LOCATION}, {@link #EXTRA_TO_LOCATION}
+         * and {@link ProductEntry#EXTRA_AMOUNT}. Stock only moves if the first location has
+         * enough of it; the returned bundle holds the quantity left there in
+         * {@link ProductEntry#EXTRA_QUANTITY}, or -1 if it didn't have enough.
+         */
+        public static final String METHOD_TRANSFER = "transfer";
+
+        /**
+         * Location {@link #METHOD_TRANSFER} takes the stock from.
+         *
+         * Type: long
+         */
+        public static final String EXTRA_FROM_LOCATION = "from_location";
+
+        /**
+         * Location {@link #METHOD_TRANSFER} puts the stock in.
+         *
+         * Type: long
+         */
+        public static final String EXTRA_TO_LOCATION = "to_location";
+    }
+
+    /**
+     * Inner class that defines constant values for the suppliers table. Each supplier is stored
+     * once and products refer to it by ID, while the product columns
+     * {@link ProductEntry#COLUMN_SUPPLIER_NAME} and {@link ProductEntry#COLUMN_SUPPLIER_PHONE}
+     * still read and write its name and phone. Renaming a supplier renames it for all of its
+     * products. A supplier can only be deleted once no product refers to it.
+     */
+    public static final class SupplierEntry implements BaseColumns {
+        /**
+         * Every supplier, by ID unless a sort order is given. Append an ID for one supplier.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SUPPLIERS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI}.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /**
+         * The MIME type of a single supplier.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /** Name of database table for suppliers */
+        public static final String TABLE_NAME = "suppliers";
+
+        /**
+         * Name of the supplier. Unique.
+         *
+         * Type: TEXT
+         */
+        public static final String COLUMN_SUPPLIER_NAME = "name";
+
+        /**
+         * Phone of the supplier.
+         *
+         * Type: TEXT
+         */
+        public static final String COLUMN_SUPPLIER_PHONE = "phone";
+
+        /**
+         * Returns the URI of every product from a supplier, with the columns of
+         * {@link ProductEntry}, in ID order unless a sort order is given. The products are
+         * found through the index on their supplier ID.
+         */
+        public static Uri buildProductsUri(long id) {
+            return CONTENT_URI.buildUpon().appendPath(String.valueOf(id)).appendPath(PATH_PRODUCTS).build();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.android.inventoryapp2.data;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns the records of a product catalog in CSV into product values. The first record names
+ * the columns, using the column names of {@link ProductContract.ProductEntry} in any case;
+ * columns with other names are ignored and only the name column is required. Empty fields are
+ * left out so the column defaults apply, and a missing type is
+ * {@link ProductContract.ProductEntry#TYPE_UNKNOWN}.
+ *
+ * Plain Java, so the benchmark module can measure it on a desktop JVM.
+ */
+final class ProductCsvFormat {
+
+    /** Product columns that can be imported */
+    private static final String[] COLUMNS = {
+            ProductContract.ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductContract.ProductEntry.COLUMN_SUPPLIER_NAME,
+            ProductContract.ProductEntry.COLUMN_SUPPLIER_PHONE,
+            ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE,
+            ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE,
+            ProductContract.ProductEntry.COLUMN_REORDER_POINT,
+            ProductContract.ProductEntry.COLUMN_SKU};
+
+    /** Product column of every field of a record, null for ignored fields */
+    private final String[] mColumns;
+
+    /**
+     * @param header the first record of the file
+     * @throws IllegalArgumentException if the header has no name column
+     */
+    ProductCsvFormat(List<String> header) {
+        mColumns = new String[header.size()];
+        boolean named = false;
+        for (int i = 0; i < mColumns.length; i++) {
+            String name = header.get(i).trim().toLowerCase(Locale.US);
+            for (String column : COLUMNS) {
+                if (column.equals(name)) {
+                    mColumns[i] = column;
+                    named |= column.equals(ProductContract.ProductEntry.COLUMN_PRODUCT_NAME);
+                }
+            }
+        }
+        if (!named) {
+            throw new IllegalArgumentException("Catalog requires a "
+                    + ProductContract.ProductEntry.COLUMN_PRODUCT_NAME + " column");
+        }
+    }
+
+    /**
+     * Read the product in the given record into the given map, replacing its contents, and
+     * check it like {@link ProductValidator#validateInsert}. Text stays a String and numbers
+     * become Integers. Fields missing at the end of a short record count as empty.
+     *
+     * @throws IllegalArgumentException naming the first invalid value
+     */
+    void read(List<String> record, Map<String, Object> product) {
+        product.clear();
+        int count = Math.min(record.size(), mColumns.length);
+        for (int i = 0; i < count; i++) {
+            String column = mColumns[i];
+            String field = record.get(i);
+            if (column == null || field.isEmpty()) {
+                continue;
+            }
+            switch (column) {
+                case ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE:
+                case ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY:
+                case ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE:
+                case ProductContract.ProductEntry.COLUMN_REORDER_POINT:
+                    product.put(column, parseInteger(column, field));
+                    break;
+                default:
+                    product.put(column, field);
+                    break;
+            }
+        }
+        if (!product.containsKey(ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE)) {
+            product.put(ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE, ProductContract.ProductEntry.TYPE_UNKNOWN);
+        }
+        ProductValidator.validateInsert(product.entrySet());
+    }
+
+    /**
+     * Parse a number, unlike {@link ProductValidator#toInteger} rejecting text that isn't one
+     * instead of leaving it to the column default.
+     */
+    private static Integer parseInteger(String column, String field) {
+        try {
+            return Integer.valueOf(field.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Product requires valid " + column);
+        }
+    }
+}
@@ -19,10 +19,20 @@
 package com.example.android.inventoryapp2.data;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 
+import com.example.android.inventoryapp2.data.ProductContract.ImportEntry;
+import com.example.android.inventoryapp2.data.ProductContract.LocationEntry;
+import com.example.android.inventoryapp2.data.ProductContract.LocationStockEntry;
 import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockAlertEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockMovementEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockSummaryEntry;
+import com.example.android.inventoryapp2.data.ProductContract.SupplierEntry;
 
 /**
  * Database helper for Pets app. Manages database creation and version management.
@@ -35,17 +45,610 @@ public class ProductDbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "products.db";
 
     /**
-     * Database version. If you change the database schema, you must increment the database version.
+     * Schema migrations, in order. Each step upgrades the database by one version, so to
+     * change the schema append a new {@link Migration} whose version is one higher than the
+     * last one. Never edit a step that has already shipped.
      */
-    private static final int DATABASE_VERSION = 1;
+    static final Migration[] MIGRATIONS = {
+            // Version 2: indexes for searching by name, supplier and type
+            new Migration(2) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_NAME_INDEX);
+                    db.execSQL(SQL_CREATE_SUPPLIER_NAME_INDEX);
+                    db.execSQL(SQL_CREATE_TYPE_QUANTITY_INDEX);
+                }
+            },
+            // Version 3: full-text index over the product and supplier names
+            new Migration(3) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_FTS);
+                    db.execSQL(SQL_FILL_FTS);
+                    db.execSQL(SQL_CREATE_FTS_INSERT_TRIGGER_V3);
+                    db.execSQL(SQL_CREATE_FTS_UPDATE_TRIGGER_V3);
+                    db.execSQL(SQL_CREATE_FTS_DELETE_TRIGGER);
+                }
+            },
+            // Version 4: stock movement history and its daily summaries
+            new Migration(4) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_MOVEMENTS);
+                    db.execSQL(SQL_CREATE_MOVEMENT_TIMESTAMP_INDEX);
+                    db.execSQL(SQL_CREATE_SUMMARIES);
+                    db.execSQL(SQL_CREATE_SUMMARY_PRODUCT_DAY_INDEX);
+                    // Open the history with the stock every product has now
+                    db.execSQL(SQL_RECORD_OPENING_STOCK, new Object[]{System.currentTimeMillis()});
+                }
+            },
+            // Version 5: checkpoints of unfinished catalog imports
+            new Migration(5) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_IMPORTS);
+                }
+            },
+            // Version 6: change tracking for syncing with the inventory server
+            new Migration(6) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_SYNC_STATE);
+                    db.execSQL(SQL_FILL_SYNC_STATE);
+                    db.execSQL(SQL_CREATE_SYNC);
+                    db.execSQL(SQL_CREATE_SYNC_VERSION_INDEX);
+                    db.execSQL(SQL_FILL_SYNC);
+                    db.execSQL(SQL_CREATE_SYNC_INSERT_TRIGGER);
+                    db.execSQL(SQL_CREATE_SYNC_UPDATE_TRIGGER_V6);
+                    db.execSQL(SQL_CREATE_SYNC_DELETE_TRIGGER);
+                }
+            },
+            // Version 7: reorder points and the alerts of products that went down to them
+            new Migration(7) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_ADD_REORDER_POINT);
+                    db.execSQL(SQL_CREATE_ALERTS);
+                    db.execSQL(SQL_CREATE_ALERTS_DELETE_TRIGGER);
+                }
+            },
+            // Version 8: indexes for filtering the catalog by price and quantity
+            new Migration(8) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_PRICE_INDEX);
+                    db.execSQL(SQL_CREATE_QUANTITY_INDEX);
+                }
+            },
+            // Version 9: SKUs, unique so a scanned barcode finds exactly one product
+            new Migration(9) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_ADD_SKU);
+                    db.execSQL(SQL_CREATE_SKU_INDEX);
+                }
+            },
+            // Version 10: stock spread over locations, the quantity of a product being the total
+            new Migration(10) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_LOCATIONS);
+                    db.execSQL(SQL_INSERT_DEFAULT_LOCATION);
+                    db.execSQL(SQL_CREATE_LOCATION_STOCK);
+                    db.execSQL(SQL_CREATE_STOCK_LOCATION_INDEX);
+                    db.execSQL(SQL_CREATE_STOCK_DELETE_TRIGGER);
+                }
+            },
+            // Version 11: suppliers stored once, products referring to them by ID
+            new Migration(11) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(SQL_CREATE_SUPPLIERS);
+                    db.execSQL(SQL_FILL_SUPPLIERS);
+                    // SQLite can't drop columns, so the products table is copied without them
+                    db.execSQL(SQL_CREATE_PRODUCTS_NEW);
+                    db.execSQL(SQL_COPY_PRODUCTS);
+                    // Product IDs are never reused, not even those of the latest products deleted
+                    db.execSQL(SQL_CLEAR_PRODUCTS_NEW_SEQUENCE);
+                    db.execSQL(SQL_COPY_PRODUCTS_SEQUENCE);
+                    // Dropping the table drops its indexes and triggers too, they are created again
+                    // below. The full-text index and the sync rows are keyed by product ID, which
+                    // stays the same.
+                    db.execSQL(SQL_DROP_PRODUCTS);
+                    db.execSQL(SQL_RENAME_PRODUCTS_NEW);
+                    db.execSQL(SQL_CREATE_NAME_INDEX);
+                    db.execSQL(SQL_CREATE_SUPPLIER_ID_INDEX);
+                    db.execSQL(SQL_CREATE_TYPE_QUANTITY_INDEX);
+                    db.execSQL(SQL_CREATE_PRICE_INDEX);
+                    db.execSQL(SQL_CREATE_QUANTITY_INDEX);
+                    db.execSQL(SQL_CREATE_SKU_INDEX);
+                    db.execSQL(SQL_CREATE_FTS_INSERT_TRIGGER);
+                    db.execSQL(SQL_CREATE_FTS_UPDATE_TRIGGER);
+                    db.execSQL(SQL_CREATE_FTS_DELETE_TRIGGER);
+                    db.execSQL(SQL_CREATE_SYNC_INSERT_TRIGGER);
+                    db.execSQL(SQL_CREATE_SYNC_UPDATE_TRIGGER);
+                    db.execSQL(SQL_CREATE_SYNC_DELETE_TRIGGER);
+                    db.execSQL(SQL_CREATE_ALERTS_DELETE_TRIGGER);
+                    db.execSQL(SQL_CREATE_STOCK_DELETE_TRIGGER);
+                    db.execSQL(SQL_CREATE_SUPPLIERS_FTS_UPDATE_TRIGGER);
+                    db.execSQL(SQL_CREATE_SUPPLIERS_SYNC_UPDATE_TRIGGER);
+                }
+            },
+    };
 
     /**
-     * Constructs a new instance of {@link ProductDbHelper}.
+     * Database version. This is the version of the last migration, so it is incremented
+     * by appending to {@link #MIGRATIONS}.
+     */
+    private static final int DATABASE_VERSION = MIGRATIONS[MIGRATIONS.length - 1].version;
+
+    /** Full-text index over the product and supplier names, keyed by product ID */
+    static final String FTS_TABLE_NAME = "products_fts";
+
+    /** Case-insensitive index on the product name */
+    static final String INDEX_PRODUCT_NAME = "products_name_index";
+
+    /** Index on the supplier name, replaced by {@link #INDEX_SUPPLIER_ID} in version 11 */
+    static final String INDEX_SUPPLIER_NAME = "products_supplier_index";
+
+    /** Index on the supplier ID, for the products of a supplier */
+    static final String INDEX_SUPPLIER_ID = "products_supplier_id_index";
+
+    /** Index on the product type and quantity, for stock levels per type */
+    static final String INDEX_TYPE_QUANTITY = "products_type_quantity_index";
+
+    /** Index on the price, for price ranges */
+    static final String INDEX_PRICE = "products_price_index";
+
+    /** Index on the quantity, for stock ranges of every type */
+    static final String INDEX_QUANTITY = "products_quantity_index";
+
+    /** Unique index on the SKU, for looking up scanned barcodes */
+    static final String INDEX_SKU = "products_sku_index";
+
+    /** Index on the location and product of the stock at a location, for listing a location */
+    static final String INDEX_STOCK_LOCATION = "product_stock_location_index";
+
+    /**
+     * The columns of {@link ProductEntry} with the name and phone of each product's supplier,
+     * from the products table aliased p, for a FROM clause. An INDEXED BY clause can follow,
+     * then {@link #SQL_JOIN_SUPPLIERS}.
+     */
+    static final String SQL_SELECT_PRODUCTS = "SELECT p." + ProductEntry._ID + " AS " + ProductEntry._ID
+            + ", p." + ProductEntry.COLUMN_PRODUCT_NAME + " AS " + ProductEntry.COLUMN_PRODUCT_NAME
+            + ", s." + SupplierEntry.COLUMN_SUPPLIER_NAME + " AS " + ProductEntry.COLUMN_SUPPLIER_NAME
+            + ", s." + SupplierEntry.COLUMN_SUPPLIER_PHONE + " AS " + ProductEntry.COLUMN_SUPPLIER_PHONE
+            + ", p." + ProductEntry.COLUMN_PRODUCT_TYPE + " AS " + ProductEntry.COLUMN_PRODUCT_TYPE
+            + ", p." + ProductEntry.COLUMN_PRODUCT_QUANTITY + " AS " + ProductEntry.COLUMN_PRODUCT_QUANTITY
+            + ", p." + ProductEntry.COLUMN_PRODUCT_PRICE + " AS " + ProductEntry.COLUMN_PRODUCT_PRICE
+            + ", p." + ProductEntry.COLUMN_REORDER_POINT + " AS " + ProductEntry.COLUMN_REORDER_POINT
+            + ", p." + ProductEntry.COLUMN_SKU + " AS " + ProductEntry.COLUMN_SKU
+            + ", p." + ProductEntry.COLUMN_SUPPLIER_ID + " AS " + ProductEntry.COLUMN_SUPPLIER_ID
+            + " FROM " + ProductEntry.TABLE_NAME + " p";
+
+    /** Joins the supplier of each product to {@link #SQL_SELECT_PRODUCTS} by its primary key */
+    static final String SQL_JOIN_SUPPLIERS = " LEFT JOIN " + SupplierEntry.TABLE_NAME + " s ON s."
+            + SupplierEntry._ID + " = p." + ProductEntry.COLUMN_SUPPLIER_ID;
+
+    /**
+     * The products with the columns of {@link ProductEntry}, for querying in place of the
+     * products table. SQLite flattens it into the outer query, so the selection and sort
+     * order still use the indexes of the products table.
+     */
+    static final String PRODUCTS_WITH_SUPPLIERS = "(" + SQL_SELECT_PRODUCTS + SQL_JOIN_SUPPLIERS + ")";
+
+    /** Table the products are copied to in version 11 */
+    private static final String PRODUCTS_NEW_TABLE_NAME = "products_new";
+
+    /** The supplier name of a new product row in a trigger */
+    static final String SQL_NEW_SUPPLIER_NAME = "(SELECT " + SupplierEntry.COLUMN_SUPPLIER_NAME
+            + " FROM " + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry._ID + " = new."
+            + ProductEntry.COLUMN_SUPPLIER_ID + ")";
+
+    /** The IDs of the products of a new supplier row in a trigger */
+    static final String SQL_SUPPLIER_PRODUCTS = "SELECT " + ProductEntry._ID + " FROM "
+            + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry.COLUMN_SUPPLIER_ID + " = new." + SupplierEntry._ID;
+
+    /** Name of {@link LocationEntry#DEFAULT_LOCATION_ID} */
+    private static final String DEFAULT_LOCATION_NAME = "Main stockroom";
+
+    /** Index on the time of a stock movement, for compaction */
+    static final String INDEX_MOVEMENT_TIMESTAMP = "stock_movements_timestamp_index";
+
+    /** Index on the product and day of a stock summary */
+    static final String INDEX_SUMMARY_PRODUCT_DAY = "stock_movement_summaries_product_index";
+
+    // The statements of the migrations, as constants so the benchmarks can build the same
+    // schema. Statements that more than one migration runs are only defined once.
+
+    /** The products table of version 1, which {@link #onCreate} brings up to date */
+    static final String SQL_CREATE_PRODUCTS_V1 = "CREATE TABLE " + ProductEntry.TABLE_NAME + " ("
+            + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+            + ProductEntry.COLUMN_SUPPLIER_NAME + " TEXT, "
+            + ProductEntry.COLUMN_SUPPLIER_PHONE + " TEXT, "
+            + ProductEntry.COLUMN_PRODUCT_TYPE + " INTEGER NOT NULL, "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER NOT NULL DEFAULT 0,"
+            + ProductEntry.COLUMN_PRODUCT_PRICE + " INTEGER NOT NULL DEFAULT 0);";
+
+    static final String SQL_CREATE_NAME_INDEX = "CREATE INDEX " + INDEX_PRODUCT_NAME + " ON "
+            + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE)";
+
+    static final String SQL_CREATE_SUPPLIER_NAME_INDEX = "CREATE INDEX " + INDEX_SUPPLIER_NAME + " ON "
+            + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_SUPPLIER_NAME + ")";
+
+    static final String SQL_CREATE_TYPE_QUANTITY_INDEX = "CREATE INDEX " + INDEX_TYPE_QUANTITY + " ON "
+            + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_TYPE + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ")";
+
+    static final String SQL_CREATE_FTS = "CREATE VIRTUAL TABLE " + FTS_TABLE_NAME + " USING fts4("
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_SUPPLIER_NAME + ")";
+
+    static final String SQL_FILL_FTS = "INSERT INTO " + FTS_TABLE_NAME + " (docid, "
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_SUPPLIER_NAME
+            + ") SELECT " + ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME
+            + ", " + ProductEntry.COLUMN_SUPPLIER_NAME + " FROM " + ProductEntry.TABLE_NAME;
+
+    // Keep the index in sync with the products table, the docid is the product ID
+    static final String SQL_CREATE_FTS_INSERT_TRIGGER_V3 = "CREATE TRIGGER products_fts_insert AFTER INSERT ON "
+            + ProductEntry.TABLE_NAME + " BEGIN INSERT INTO " + FTS_TABLE_NAME + " (docid, "
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_SUPPLIER_NAME
+            + ") VALUES (new." + ProductEntry._ID + ", new." + ProductEntry.COLUMN_PRODUCT_NAME
+            + ", new." + ProductEntry.COLUMN_SUPPLIER_NAME + "); END";
+
+    static final String SQL_CREATE_FTS_UPDATE_TRIGGER_V3 = "CREATE TRIGGER products_fts_update AFTER UPDATE OF "
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_SUPPLIER_NAME
+            + " ON " + ProductEntry.TABLE_NAME + " BEGIN UPDATE " + FTS_TABLE_NAME + " SET "
+            + ProductEntry.COLUMN_PRODUCT_NAME + " = new." + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_SUPPLIER_NAME + " = new." + ProductEntry.COLUMN_SUPPLIER_NAME
+            + " WHERE docid = new." + ProductEntry._ID + "; END";
+
+    static final String SQL_CREATE_FTS_DELETE_TRIGGER = "CREATE TRIGGER products_fts_delete AFTER DELETE ON "
+            + ProductEntry.TABLE_NAME + " BEGIN DELETE FROM " + FTS_TABLE_NAME
+            + " WHERE docid = old." + ProductEntry._ID + "; END";
+
+    // No AUTOINCREMENT, appending shouldn't also have to update sqlite_sequence
+    static final String SQL_CREATE_MOVEMENTS = "CREATE TABLE " + StockMovementEntry.TABLE_NAME + " ("
+            + StockMovementEntry._ID + " INTEGER PRIMARY KEY, "
+            + StockMovementEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL, "
+            + StockMovementEntry.COLUMN_DELTA + " INTEGER NOT NULL, "
+            + StockMovementEntry.COLUMN_REASON + " INTEGER NOT NULL, "
+            + StockMovementEntry.COLUMN_TIMESTAMP + " INTEGER NOT NULL)";
+
+    // The only index, for compaction; compaction keeps the table small enough to scan for
+    // the history of a single product
+    static final String SQL_CREATE_MOVEMENT_TIMESTAMP_INDEX = "CREATE INDEX " + INDEX_MOVEMENT_TIMESTAMP
+            + " ON " + StockMovementEntry.TABLE_NAME + " (" + StockMovementEntry.COLUMN_TIMESTAMP + ")";
+
+    static final String SQL_CREATE_SUMMARIES = "CREATE TABLE " + StockSummaryEntry.TABLE_NAME + " ("
+            + StockSummaryEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL, "
+            + StockSummaryEntry.COLUMN_DAY + " INTEGER NOT NULL, "
+            + StockSummaryEntry.COLUMN_REASON + " INTEGER NOT NULL, "
+            + StockSummaryEntry.COLUMN_DELTA + " INTEGER NOT NULL, "
+            + StockSummaryEntry.COLUMN_MOVEMENTS + " INTEGER NOT NULL)";
+
+    static final String SQL_CREATE_SUMMARY_PRODUCT_DAY_INDEX = "CREATE INDEX " + INDEX_SUMMARY_PRODUCT_DAY
+            + " ON " + StockSummaryEntry.TABLE_NAME + " (" + StockSummaryEntry.COLUMN_PRODUCT_ID
+            + ", " + StockSummaryEntry.COLUMN_DAY + ")";
+
+    /** Records the stock of every product as of version 4, bound to the time of the migration */
+    private static final String SQL_RECORD_OPENING_STOCK = "INSERT INTO " + StockMovementEntry.TABLE_NAME
+            + " (" + StockMovementEntry.COLUMN_PRODUCT_ID + ", " + StockMovementEntry.COLUMN_DELTA + ", "
+            + StockMovementEntry.COLUMN_REASON + ", " + StockMovementEntry.COLUMN_TIMESTAMP
+            + ") SELECT " + ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + StockMovementEntry.REASON_INITIAL + ", ? FROM " + ProductEntry.TABLE_NAME + " WHERE "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " != 0";
+
+    static final String SQL_CREATE_IMPORTS = "CREATE TABLE " + ImportEntry.TABLE_NAME + " ("
+            + ImportEntry.COLUMN_SOURCE + " TEXT PRIMARY KEY, "
+            + ImportEntry.COLUMN_POSITION + " INTEGER NOT NULL, "
+            + ImportEntry.COLUMN_IMPORTED + " INTEGER NOT NULL)";
+
+    static final String SQL_CREATE_SYNC_STATE = "CREATE TABLE " + ProductSync.STATE_TABLE_NAME + " ("
+            + ProductSync.COLUMN_STATE_NAME + " TEXT PRIMARY KEY, "
+            + ProductSync.COLUMN_STATE_VALUE + " NOT NULL)";
+
+    // Every product there is now is a change the server doesn't have yet
+    static final String SQL_FILL_SYNC_STATE = "INSERT INTO " + ProductSync.STATE_TABLE_NAME + " VALUES ('"
+            + ProductSync.STATE_VERSION + "', 1), ('" + ProductSync.STATE_PUSHED_VERSION
+            + "', 0), ('" + ProductSync.STATE_TOKEN + "', ''), ('" + ProductSync.STATE_DEVICE
+            + "', lower(hex(randomblob(8))))";
+
+    // A deleted product keeps its row as a tombstone until the deletion is pushed, product IDs
+    // are never reused so it can't clash with a new product
+    static final String SQL_CREATE_SYNC = "CREATE TABLE " + ProductSync.TABLE_NAME + " ("
+            + ProductSync.COLUMN_PRODUCT_ID + " INTEGER PRIMARY KEY, "
+            + ProductSync.COLUMN_GLOBAL_ID + " TEXT NOT NULL UNIQUE, "
+            + ProductSync.COLUMN_VERSION + " INTEGER NOT NULL, "
+            + ProductSync.COLUMN_REMOTE_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+            + ProductSync.COLUMN_DELETED + " INTEGER NOT NULL DEFAULT 0)";
+
+    static final String SQL_CREATE_SYNC_VERSION_INDEX = "CREATE INDEX " + ProductSync.INDEX_VERSION + " ON "
+            + ProductSync.TABLE_NAME + " (" + ProductSync.COLUMN_VERSION + ")";
+
+    static final String SQL_FILL_SYNC = "INSERT INTO " + ProductSync.TABLE_NAME + " ("
+            + ProductSync.COLUMN_PRODUCT_ID + ", " + ProductSync.COLUMN_GLOBAL_ID + ", "
+            + ProductSync.COLUMN_VERSION + ") SELECT " + ProductEntry._ID + ", "
+            + ProductSync.SQL_NEW_GLOBAL_ID + ", 1 FROM " + ProductEntry.TABLE_NAME;
+
+    // Every local change takes the next version. Only the product columns fire the update
+    // trigger, so a sync can set the version back after a pulled change without firing it again.
+    static final String SQL_CREATE_SYNC_INSERT_TRIGGER = "CREATE TRIGGER products_sync_insert AFTER INSERT ON "
+            + ProductEntry.TABLE_NAME + " BEGIN " + ProductSync.SQL_NEXT_VERSION
+            + "INSERT INTO " + ProductSync.TABLE_NAME + " (" + ProductSync.COLUMN_PRODUCT_ID
+            + ", " + ProductSync.COLUMN_GLOBAL_ID + ", " + ProductSync.COLUMN_VERSION
+            + ") VALUES (new." + ProductEntry._ID + ", " + ProductSync.SQL_NEW_GLOBAL_ID + ", "
+            + ProductSync.SQL_CURRENT_VERSION + "); END";
+
+    static final String SQL_CREATE_SYNC_UPDATE_TRIGGER_V6 = "CREATE TRIGGER products_sync_update AFTER UPDATE OF "
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_SUPPLIER_NAME + ", "
+            + ProductEntry.COLUMN_SUPPLIER_PHONE + ", " + ProductEntry.COLUMN_PRODUCT_TYPE + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", " + ProductEntry.COLUMN_PRODUCT_PRICE
+            + " ON " + ProductEntry.TABLE_NAME + " BEGIN " + ProductSync.SQL_NEXT_VERSION
+            + "UPDATE " + ProductSync.TABLE_NAME + " SET " + ProductSync.COLUMN_VERSION + " = "
+            + ProductSync.SQL_CURRENT_VERSION + " WHERE " + ProductSync.COLUMN_PRODUCT_ID
+            + " = new." + ProductEntry._ID + "; END";
+
+    static final String SQL_CREATE_SYNC_DELETE_TRIGGER = "CREATE TRIGGER products_sync_delete AFTER DELETE ON "
+            + ProductEntry.TABLE_NAME + " BEGIN " + ProductSync.SQL_NEXT_VERSION
+            + "UPDATE " + ProductSync.TABLE_NAME + " SET " + ProductSync.COLUMN_DELETED + " = 1, "
+            + ProductSync.COLUMN_VERSION + " = " + ProductSync.SQL_CURRENT_VERSION + " WHERE "
+            + ProductSync.COLUMN_PRODUCT_ID + " = old." + ProductEntry._ID + "; END";
+
+    static final String SQL_ADD_REORDER_POINT = "ALTER TABLE " + ProductEntry.TABLE_NAME + " ADD COLUMN "
+            + ProductEntry.COLUMN_REORDER_POINT + " INTEGER NOT NULL DEFAULT 0";
+
+    // Keyed by product so raising and clearing an alert are lookups by rowid
+    static final String SQL_CREATE_ALERTS = "CREATE TABLE " + StockAlertEntry.TABLE_NAME + " ("
+            + StockAlertEntry.COLUMN_PRODUCT_ID + " INTEGER PRIMARY KEY, "
+            + StockAlertEntry.COLUMN_QUANTITY + " INTEGER NOT NULL, "
+            + StockAlertEntry.COLUMN_REORDER_POINT + " INTEGER NOT NULL, "
+            + StockAlertEntry.COLUMN_TIMESTAMP + " INTEGER NOT NULL)";
+
+    static final String SQL_CREATE_ALERTS_DELETE_TRIGGER = "CREATE TRIGGER products_alerts_delete AFTER DELETE ON "
+            + ProductEntry.TABLE_NAME + " BEGIN DELETE FROM " + StockAlertEntry.TABLE_NAME
+            + " WHERE " + StockAlertEntry.COLUMN_PRODUCT_ID + " = old." + ProductEntry._ID + "; END";
+
+    static final String SQL_CREATE_PRICE_INDEX = "CREATE INDEX " + INDEX_PRICE + " ON "
+            + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_PRICE + ")";
+
+    static final String SQL_CREATE_QUANTITY_INDEX = "CREATE INDEX " + INDEX_QUANTITY + " ON "
+            + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_QUANTITY + ")";
+
+    static final String SQL_ADD_SKU = "ALTER TABLE " + ProductEntry.TABLE_NAME + " ADD COLUMN "
+            + ProductEntry.COLUMN_SKU + " TEXT";
+
+    static final String SQL_CREATE_SKU_INDEX = "CREATE UNIQUE INDEX " + INDEX_SKU + " ON "
+            + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_SKU + ")";
+
+    static final String SQL_CREATE_LOCATIONS = "CREATE TABLE " + LocationEntry.TABLE_NAME + " ("
+            + LocationEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + LocationEntry.COLUMN_LOCATION_NAME + " TEXT NOT NULL UNIQUE)";
+
+    // All the stock there is so far is at the default location, which needs no rows
+    static final String SQL_INSERT_DEFAULT_LOCATION = "INSERT INTO " + LocationEntry.TABLE_NAME + " ("
+            + LocationEntry._ID + ", " + LocationEntry.COLUMN_LOCATION_NAME + ") VALUES ("
+            + LocationEntry.DEFAULT_LOCATION_ID + ", '" + DEFAULT_LOCATION_NAME + "')";
+
+    // The primary key is the index for a product's stock and for transfers
+    static final String SQL_CREATE_LOCATION_STOCK = "CREATE TABLE " + LocationStockEntry.TABLE_NAME + " ("
+            + LocationStockEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL, "
+            + LocationStockEntry.COLUMN_LOCATION_ID + " INTEGER NOT NULL, "
+            + LocationStockEntry.COLUMN_QUANTITY + " INTEGER NOT NULL, PRIMARY KEY ("
+            + LocationStockEntry.COLUMN_PRODUCT_ID + ", " + LocationStockEntry.COLUMN_LOCATION_ID + "))";
+
+    static final String SQL_CREATE_STOCK_LOCATION_INDEX = "CREATE INDEX " + INDEX_STOCK_LOCATION + " ON "
+            + LocationStockEntry.TABLE_NAME + " (" + LocationStockEntry.COLUMN_LOCATION_ID + ", "
+            + LocationStockEntry.COLUMN_PRODUCT_ID + ")";
+
+    static final String SQL_CREATE_STOCK_DELETE_TRIGGER = "CREATE TRIGGER products_stock_delete AFTER DELETE ON "
+            + ProductEntry.TABLE_NAME + " BEGIN DELETE FROM " + LocationStockEntry.TABLE_NAME
+            + " WHERE " + LocationStockEntry.COLUMN_PRODUCT_ID + " = old." + ProductEntry._ID + "; END";
+
+    static final String SQL_CREATE_SUPPLIERS = "CREATE TABLE " + SupplierEntry.TABLE_NAME + " ("
+            + SupplierEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + SupplierEntry.COLUMN_SUPPLIER_NAME + " TEXT NOT NULL UNIQUE, "
+            + SupplierEntry.COLUMN_SUPPLIER_PHONE + " TEXT)";
+
+    // One supplier per name, with the phone of its latest product that has one
+    static final String SQL_FILL_SUPPLIERS = "INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+            + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_PHONE
+            + ") SELECT " + ProductEntry.COLUMN_SUPPLIER_NAME + ", (SELECT p."
+            + ProductEntry.COLUMN_SUPPLIER_PHONE + " FROM " + ProductEntry.TABLE_NAME + " p WHERE p."
+            + ProductEntry.COLUMN_SUPPLIER_NAME + " = " + ProductEntry.TABLE_NAME + "."
+            + ProductEntry.COLUMN_SUPPLIER_NAME + " AND p." + ProductEntry.COLUMN_SUPPLIER_PHONE
+            + " IS NOT NULL ORDER BY p." + ProductEntry._ID + " DESC LIMIT 1) FROM "
+            + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry.COLUMN_SUPPLIER_NAME
+            + " IS NOT NULL GROUP BY " + ProductEntry.COLUMN_SUPPLIER_NAME + " ORDER BY MIN("
+            + ProductEntry._ID + ")";
+
+    static final String SQL_CREATE_PRODUCTS_NEW = "CREATE TABLE " + PRODUCTS_NEW_TABLE_NAME + " ("
+            + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+            + ProductEntry.COLUMN_SUPPLIER_ID + " INTEGER REFERENCES "
+            + SupplierEntry.TABLE_NAME + "(" + SupplierEntry._ID + "), "
+            + ProductEntry.COLUMN_PRODUCT_TYPE + " INTEGER NOT NULL, "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+            + ProductEntry.COLUMN_PRODUCT_PRICE + " INTEGER NOT NULL DEFAULT 0, "
+            + ProductEntry.COLUMN_REORDER_POINT + " INTEGER NOT NULL DEFAULT 0, "
+            + ProductEntry.COLUMN_SKU + " TEXT)";
+
+    static final String SQL_COPY_PRODUCTS = "INSERT INTO " + PRODUCTS_NEW_TABLE_NAME + " SELECT "
+            + ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ", (SELECT " + SupplierEntry._ID
+            + " FROM " + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry.COLUMN_SUPPLIER_NAME + " = "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_SUPPLIER_NAME + "), "
+            + ProductEntry.COLUMN_PRODUCT_TYPE + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.COLUMN_PRODUCT_PRICE + ", " + ProductEntry.COLUMN_REORDER_POINT + ", "
+            + ProductEntry.COLUMN_SKU + " FROM " + ProductEntry.TABLE_NAME;
+
+    static final String SQL_CLEAR_PRODUCTS_NEW_SEQUENCE = "DELETE FROM sqlite_sequence WHERE name = '"
+            + PRODUCTS_NEW_TABLE_NAME + "'";
+
+    static final String SQL_COPY_PRODUCTS_SEQUENCE = "INSERT INTO sqlite_sequence (name, seq) SELECT '"
+            + PRODUCTS_NEW_TABLE_NAME + "', seq FROM sqlite_sequence WHERE name = '"
+            + ProductEntry.TABLE_NAME + "'";
+
+    static final String SQL_DROP_PRODUCTS = "DROP TABLE " + ProductEntry.TABLE_NAME;
+
+    static final String SQL_RENAME_PRODUCTS_NEW = "ALTER TABLE " + PRODUCTS_NEW_TABLE_NAME + " RENAME TO "
+            + ProductEntry.TABLE_NAME;
+
+    static final String SQL_CREATE_SUPPLIER_ID_INDEX = "CREATE INDEX " + INDEX_SUPPLIER_ID + " ON "
+            + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_SUPPLIER_ID + ")";
+
+    // The full-text index keeps the supplier name
+    static final String SQL_CREATE_FTS_INSERT_TRIGGER = "CREATE TRIGGER products_fts_insert AFTER INSERT ON "
+            + ProductEntry.TABLE_NAME + " BEGIN INSERT INTO " + FTS_TABLE_NAME + " (docid, "
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_SUPPLIER_NAME
+            + ") VALUES (new." + ProductEntry._ID + ", new." + ProductEntry.COLUMN_PRODUCT_NAME
+            + ", " + SQL_NEW_SUPPLIER_NAME + "); END";
+
+    static final String SQL_CREATE_FTS_UPDATE_TRIGGER = "CREATE TRIGGER products_fts_update AFTER UPDATE OF "
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_SUPPLIER_ID
+            + " ON " + ProductEntry.TABLE_NAME + " BEGIN UPDATE " + FTS_TABLE_NAME + " SET "
+            + ProductEntry.COLUMN_PRODUCT_NAME + " = new." + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_SUPPLIER_NAME + " = " + SQL_NEW_SUPPLIER_NAME
+            + " WHERE docid = new." + ProductEntry._ID + "; END";
+
+    static final String SQL_CREATE_SYNC_UPDATE_TRIGGER = "CREATE TRIGGER products_sync_update AFTER UPDATE OF "
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_SUPPLIER_ID + ", "
+            + ProductEntry.COLUMN_PRODUCT_TYPE + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.COLUMN_PRODUCT_PRICE + " ON " + ProductEntry.TABLE_NAME + " BEGIN "
+            + ProductSync.SQL_NEXT_VERSION + "UPDATE " + ProductSync.TABLE_NAME + " SET "
+            + ProductSync.COLUMN_VERSION + " = " + ProductSync.SQL_CURRENT_VERSION + " WHERE "
+            + ProductSync.COLUMN_PRODUCT_ID + " = new." + ProductEntry._ID + "; END";
+
+    // A supplier's name and phone are part of every one of its products: renaming it renames
+    // them in the full-text index, and either change is synced as a change of the products
+    static final String SQL_CREATE_SUPPLIERS_FTS_UPDATE_TRIGGER = "CREATE TRIGGER suppliers_fts_update "
+            + "AFTER UPDATE OF " + SupplierEntry.COLUMN_SUPPLIER_NAME + " ON " + SupplierEntry.TABLE_NAME
+            + " BEGIN UPDATE " + FTS_TABLE_NAME + " SET " + ProductEntry.COLUMN_SUPPLIER_NAME
+            + " = new." + SupplierEntry.COLUMN_SUPPLIER_NAME + " WHERE docid IN ("
+            + SQL_SUPPLIER_PRODUCTS + "); END";
+
+    static final String SQL_CREATE_SUPPLIERS_SYNC_UPDATE_TRIGGER = "CREATE TRIGGER suppliers_sync_update "
+            + "AFTER UPDATE OF " + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_PHONE
+            + " ON " + SupplierEntry.TABLE_NAME + " BEGIN " + ProductSync.SQL_NEXT_VERSION
+            + "UPDATE " + ProductSync.TABLE_NAME + " SET " + ProductSync.COLUMN_VERSION + " = "
+            + ProductSync.SQL_CURRENT_VERSION + " WHERE " + ProductSync.COLUMN_PRODUCT_ID
+            + " IN (" + SQL_SUPPLIER_PRODUCTS + "); END";
+
+    /** Connection settings applied whenever the database is opened */
+    private final ProductDbSettings mSettings;
+
+    /** Compiled statements for the provider's hot paths */
+    private final StatementCache mStatementCache;
+
+    /**
+     * Constructs a new instance of {@link ProductDbHelper} with the default settings.
      *
      * @param context of the app
      */
     public ProductDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, ProductDbSettings.DEFAULT);
+    }
+
+    /**
+     * Constructs a new instance of {@link ProductDbHelper}.
+     *
+     * @param context of the app
+     * @param settings connection settings to apply when the database is opened
+     */
+    public ProductDbHelper(Context context, ProductDbSettings settings) {
+        this(context, DATABASE_NAME, settings);
+    }
+
+    /**
+     * Constructs a new instance of {@link ProductDbHelper} for a database of another name, e.g.
+     * for a second device in a sync test.
+     *
+     * @param context of the app
+     * @param name of the database file
+     * @param settings connection settings to apply when the database is opened
+     */
+    ProductDbHelper(Context context, String name, ProductDbSettings settings) {
+        super(context, name, null, DATABASE_VERSION);
+        mSettings = settings;
+        mStatementCache = new StatementCache(settings.statementCacheSize);
+    }
+
+    /**
+     * This is called when the database connection is being configured, before it is created
+     * or upgraded. Only called on Jelly Bean and up, see {@link #onOpen} for older releases.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        applySettings(db);
+    }
+
+    /**
+     * This is called when the database has been opened.
+     */
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            applySettings(db);
+        }
+    }
+
+    /**
+     * Apply {@link #mSettings} to the given database, and turn on foreign keys. The page size,
+     * the journal mode and foreign keys are set through the framework, which keeps them in the
+     * database's configuration and applies them to every connection it opens, readers
+     * included. The remaining pragmas only reach the primary connection: that is the one every
+     * write goes through, so it is the only one synchronous matters for, and readers keep
+     * SQLite's default cache and memory map.
+     */
+    private void applySettings(SQLiteDatabase db) {
+        // The page size has to be set before the first table is created to have any effect
+        db.setPageSize(mSettings.pageSize);
+        if (mSettings.writeAheadLogging) {
+            db.enableWriteAheadLogging();
+        }
+        // A product can only refer to a supplier there is
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            db.setForeignKeyConstraintsEnabled(true);
+        } else {
+            setPragma(db, "foreign_keys", "ON");
+        }
+        setPragma(db, "synchronous", mSettings.synchronous);
+        setPragma(db, "cache_size", mSettings.cacheSize);
+        setPragma(db, "mmap_size", mSettings.mmapSize);
+    }
+
+    /**
+     * Set a pragma. Some pragmas return the new value as a row, which execSQL doesn't allow,
+     * so every pragma goes through a query that is stepped once and closed.
+     */
+    private static void setPragma(SQLiteDatabase db, String name, Object value) {
+        Cursor cursor = db.rawQuery("PRAGMA " + name + " = " + value, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Check out a compiled statement for the given SQL against the writable database. Every
+     * statement must be handed back with {@link #releaseStatement}.
+     */
+    SQLiteStatement acquireStatement(String sql) {
+        return mStatementCache.acquire(getWritableDatabase(), sql);
+    }
+
+    /**
+     * Hand a statement from {@link #acquireStatement} back to the cache.
+     */
+    void releaseStatement(String sql, SQLiteStatement statement) {
+        mStatementCache.release(sql, statement);
+    }
+
+    @Override
+    public synchronized void close() {
+        mStatementCache.clear();
+        super.close();
     }
 
     /**
@@ -53,18 +656,11 @@ public class ProductDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // Create a String that contains the SQL statement to create the products table
-        String SQL_CREATE_PRODUCTS_TABLE =  "CREATE TABLE " + ProductContract.ProductEntry.TABLE_NAME + " ("
-                + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
-                + ProductEntry.COLUMN_SUPPLIER_NAME + " TEXT, "
-                + ProductEntry.COLUMN_SUPPLIER_PHONE + " TEXT, "
-                + ProductEntry.COLUMN_PRODUCT_TYPE + " INTEGER NOT NULL, "
-                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER NOT NULL DEFAULT 0,"
-                + ProductEntry.COLUMN_PRODUCT_PRICE + " INTEGER NOT NULL DEFAULT 0);";
-
-        // Execute the SQL statement
-        db.execSQL(SQL_CREATE_PRODUCTS_TABLE);
+        // Create the products table of version 1
+        db.execSQL(SQL_CREATE_PRODUCTS_V1);
+
+        // That is the version 1 schema, bring it up to date
+        migrate(db, 1, DATABASE_VERSION);
     }
 
     /**
@@ -72,6 +668,18 @@ public class ProductDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // The database is still at version 1, so there's nothing to do be done here.
+        migrate(db, oldVersion, newVersion);
+    }
+
+    /**
+     * Run every migration after {@code oldVersion} up to and including {@code newVersion},
+     * in order.
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version > oldVersion && migration.version <= newVersion) {
+                migration.migrate(db);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,57 @@
+package com.example.android.inventoryapp2.data;
+
+/**
+ * Connection settings for the products database, applied by {@link ProductDbHelper} from
+ * {@code onConfigure} every time the database is opened. Use {@link #DEFAULT} unless there is a measured reason not to.
+ */
+public final class ProductDbSettings {
+
+    /** Possible values for {@link #synchronous}. */
+    public static final String SYNCHRONOUS_OFF = "OFF";
+    public static final String SYNCHRONOUS_NORMAL = "NORMAL";
+    public static final String SYNCHRONOUS_FULL = "FULL";
+
+    /**
+     * Settings used by {@link ProductProvider}: write-ahead logging so the catalog can read while
+     * a sale is being written, NORMAL sync (safe in WAL mode, a committed transaction can only be
+     * lost on power failure, never corrupted), 4 KiB pages, a 2000 page cache, a 64 MiB memory
+     * map and room for 24 compiled statements.
+     */
+    public static final ProductDbSettings DEFAULT =
+            new ProductDbSettings(true, SYNCHRONOUS_NORMAL, 4096, 2000, 64L * 1024 * 1024, 24);
+
+    /** Whether to open the database in write-ahead-logging mode */
+    public final boolean writeAheadLogging;
+
+    /** Value of PRAGMA synchronous, one of the SYNCHRONOUS_* constants */
+    public final String synchronous;
+
+    /** Value of PRAGMA page_size in bytes. Only takes effect when the database file is created. */
+    public final int pageSize;
+
+    /** Value of PRAGMA cache_size in pages, for the connection that writes */
+    public final int cacheSize;
+
+    /**
+     * Value of PRAGMA mmap_size in bytes for the connection that writes, 0 disables memory
+     * mapped I/O
+     */
+    public final long mmapSize;
+
+    /** Maximum number of idle compiled statements kept by {@link StatementCache} */
+    public final int statementCacheSize;
+
+    public ProductDbSettings(boolean writeAheadLogging, String synchronous, int pageSize,
+                             int cacheSize, long mmapSize, int statementCacheSize) {
+        if (!SYNCHRONOUS_OFF.equals(synchronous) && !SYNCHRONOUS_NORMAL.equals(synchronous)
+                && !SYNCHRONOUS_FULL.equals(synchronous)) {
+            throw new IllegalArgumentException("Unknown synchronous mode " + synchronous);
+        }
+        this.writeAheadLogging = writeAheadLogging;
+        this.synchronous = synchronous;
+        this.pageSize = pageSize;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.statementCacheSize = statementCacheSize;
+    }
+}
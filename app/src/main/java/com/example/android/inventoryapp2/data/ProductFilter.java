@@ -0,0 +1,203 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.SupplierEntry;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Turns the filter and sort query parameters of {@link ProductEntry#CONTENT_URI} into a
+ * selection and sort order for the products with their suppliers.
+ *
+ * The selection only depends on which parameters are given, never on their values, which are
+ * bound as arguments, so each combination compiles to one statement that SQLite keeps in its
+ * statement cache. Every combination with at least one filter is run through an index with
+ * INDEXED BY, picked in this order: the supplier ID index for a supplier, whose name is looked
+ * up in the suppliers table first, the type and quantity index for a type (which also serves a
+ * quantity range), the price index for a price range and the quantity index for a quantity
+ * range. The other filters are checked on the rows the index finds.
+ *
+ * Plain Java, so the benchmark module can check the query plans on a desktop JVM.
+ */
+final class ProductFilter {
+
+    /** Every query parameter read by {@link #parse} */
+    static final String[] PARAMETERS = {
+            ProductEntry.QUERY_PARAMETER_TYPE,
+            ProductEntry.QUERY_PARAMETER_SUPPLIER,
+            ProductEntry.QUERY_PARAMETER_MIN_PRICE,
+            ProductEntry.QUERY_PARAMETER_MAX_PRICE,
+            ProductEntry.QUERY_PARAMETER_MIN_QUANTITY,
+            ProductEntry.QUERY_PARAMETER_MAX_QUANTITY,
+            ProductEntry.QUERY_PARAMETER_SORT,
+            ProductEntry.QUERY_PARAMETER_ORDER};
+
+    /** A filter that doesn't filter or sort anything */
+    static final ProductFilter NONE = new ProductFilter(null, null, null, null);
+
+    /** The selection, null if nothing is filtered */
+    final String selection;
+
+    /** Arguments of {@link #selection} */
+    final String[] selectionArgs;
+
+    /** The sort order, null if none was asked for */
+    final String sortOrder;
+
+    /** The index {@link #selection} is run through, null if nothing is filtered */
+    final String index;
+
+    private ProductFilter(String selection, String[] selectionArgs, String sortOrder, String index) {
+        this.selection = selection;
+        this.selectionArgs = selectionArgs;
+        this.sortOrder = sortOrder;
+        this.index = index;
+    }
+
+    /**
+     * Return the table to query, with the INDEXED BY clause on the products if anything is
+     * filtered.
+     */
+    String getTable() {
+        return index == null ? ProductDbHelper.PRODUCTS_WITH_SUPPLIERS
+                : "(" + ProductDbHelper.SQL_SELECT_PRODUCTS + " INDEXED BY " + index
+                + ProductDbHelper.SQL_JOIN_SUPPLIERS + ")";
+    }
+
+    /**
+     * Build the filter of the given query parameters, keyed by their names in
+     * {@link #PARAMETERS}. Parameters that aren't there aren't applied.
+     *
+     * @throws IllegalArgumentException naming the first invalid parameter
+     */
+    static ProductFilter parse(Map<String, String> parameters) {
+        StringBuilder selection = new StringBuilder();
+        ArrayList<String> selectionArgs = new ArrayList<>();
+        String index = null;
+
+        String type = parameters.get(ProductEntry.QUERY_PARAMETER_TYPE);
+        if (type != null) {
+            long value = parseNumber(ProductEntry.QUERY_PARAMETER_TYPE, type);
+            if (!ProductValidator.isValidType((int) value) || value != (int) value) {
+                throw new IllegalArgumentException("Invalid query parameter "
+                        + ProductEntry.QUERY_PARAMETER_TYPE + "=" + type);
+            }
+            addTerm(selection, ProductEntry.COLUMN_PRODUCT_TYPE + " = ?");
+            selectionArgs.add(String.valueOf(value));
+        }
+        String supplier = parameters.get(ProductEntry.QUERY_PARAMETER_SUPPLIER);
+        if (supplier != null) {
+            addTerm(selection, ProductEntry.COLUMN_SUPPLIER_ID + " = (SELECT " + SupplierEntry._ID + " FROM "
+                    + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry.COLUMN_SUPPLIER_NAME + " = ?)");
+            selectionArgs.add(supplier);
+        }
+        boolean priceRange = addRange(selection, selectionArgs, ProductEntry.COLUMN_PRODUCT_PRICE,
+                parameters, ProductEntry.QUERY_PARAMETER_MIN_PRICE, ProductEntry.QUERY_PARAMETER_MAX_PRICE);
+        boolean quantityRange = addRange(selection, selectionArgs, ProductEntry.COLUMN_PRODUCT_QUANTITY,
+                parameters, ProductEntry.QUERY_PARAMETER_MIN_QUANTITY, ProductEntry.QUERY_PARAMETER_MAX_QUANTITY);
+
+        if (supplier != null) {
+            index = ProductDbHelper.INDEX_SUPPLIER_ID;
+        } else if (type != null) {
+            index = ProductDbHelper.INDEX_TYPE_QUANTITY;
+        } else if (priceRange) {
+            index = ProductDbHelper.INDEX_PRICE;
+        } else if (quantityRange) {
+            index = ProductDbHelper.INDEX_QUANTITY;
+        }
+
+        String sortOrder = parseSortOrder(parameters.get(ProductEntry.QUERY_PARAMETER_SORT),
+                parameters.get(ProductEntry.QUERY_PARAMETER_ORDER));
+        if (index == null && sortOrder == null) {
+            return NONE;
+        }
+        return new ProductFilter(index == null ? null : selection.toString(),
+                index == null ? null : selectionArgs.toArray(new String[selectionArgs.size()]),
+                sortOrder, index);
+    }
+
+    /**
+     * Add the terms of a range of a column, either end being optional. Return whether there
+     * was either end.
+     */
+    private static boolean addRange(StringBuilder selection, ArrayList<String> selectionArgs, String column,
+                                    Map<String, String> parameters, String minParameter, String maxParameter) {
+        String min = parameters.get(minParameter);
+        String max = parameters.get(maxParameter);
+        if (min != null) {
+            addTerm(selection, column + " >= ?");
+            selectionArgs.add(String.valueOf(parseNumber(minParameter, min)));
+        }
+        if (max != null) {
+            addTerm(selection, column + " <= ?");
+            selectionArgs.add(String.valueOf(parseNumber(maxParameter, max)));
+        }
+        return min != null || max != null;
+    }
+
+    private static void addTerm(StringBuilder selection, String term) {
+        if (selection.length() > 0) {
+            selection.append(" AND ");
+        }
+        selection.append(term);
+    }
+
+    /**
+     * Return the sort order of a sort key and direction, or null if there is no sort key.
+     * Rows with the same key are ordered by ID, so pages of a sorted list are stable.
+     */
+    private static String parseSortOrder(String sort, String order) {
+        boolean descending;
+        if (order == null || order.equals(ProductEntry.ORDER_ASCENDING)) {
+            descending = false;
+        } else if (order.equals(ProductEntry.ORDER_DESCENDING)) {
+            descending = true;
+        } else {
+            throw new IllegalArgumentException("Invalid query parameter " + ProductEntry.QUERY_PARAMETER_ORDER
+                    + "=" + order);
+        }
+        if (sort == null) {
+            if (order != null) {
+                throw new IllegalArgumentException("Query parameter " + ProductEntry.QUERY_PARAMETER_ORDER
+                        + " requires " + ProductEntry.QUERY_PARAMETER_SORT);
+            }
+            return null;
+        }
+        String column;
+        switch (sort) {
+            case ProductEntry.SORT_NAME:
+                if (!descending) {
+                    // The same as keyset paging by name, so the two can be combined
+                    return ProductEntry.SORT_ORDER_NAME;
+                }
+                column = ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE";
+                break;
+            case ProductEntry.SORT_PRICE:
+                column = ProductEntry.COLUMN_PRODUCT_PRICE;
+                break;
+            case ProductEntry.SORT_QUANTITY:
+                column = ProductEntry.COLUMN_PRODUCT_QUANTITY;
+                break;
+            case ProductEntry.SORT_ID:
+                return descending ? ProductEntry._ID + " DESC" : ProductEntry.SORT_ORDER_ID;
+            default:
+                throw new IllegalArgumentException("Invalid query parameter " + ProductEntry.QUERY_PARAMETER_SORT
+                        + "=" + sort);
+        }
+        return descending ? column + " DESC, " + ProductEntry._ID + " DESC"
+                : column + ", " + ProductEntry._ID;
+    }
+
+    private static long parseNumber(String parameter, String value) {
+        try {
+            long number = Long.parseLong(value);
+            if (number >= 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through to the exception below
+        }
+        throw new IllegalArgumentException("Invalid query parameter " + parameter + "=" + value);
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Imports a product catalog from a CSV file, see {@link ProductCsvFormat} for the format. The
+ * file is streamed a record at a time, so memory use doesn't depend on its size. Every record
+ * is checked with the rules of a product insert; invalid records are logged and skipped.
+ *
+ * Valid records are written in chunks through {@link ProductProvider} bulk inserts, each in
+ * one transaction together with the checkpoint of the import in
+ * {@link ProductContract.ImportEntry}. Starting an import of a file that has a checkpoint
+ * resumes after the last chunk written, so an import that failed or was killed can simply be
+ * started again. The checkpoint is deleted once the whole file is imported.
+ *
+ * Imports run one at a time off the main thread, progress is delivered to the main thread.
+ */
+public final class ProductImporter {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = ProductImporter.class.getSimpleName();
+
+    /**
+     * Records per chunk. Large enough that a transaction's commit is a small part of its cost,
+     * small enough that the provider isn't held up long and little is redone on resume.
+     */
+    static final int CHUNK_SIZE = 500;
+
+    /** Invalid records logged per import, the rest are only counted */
+    private static final int MAX_LOGGED_REJECTIONS = 20;
+
+    /**
+     * Receives the progress of an import on the main thread.
+     */
+    public interface Listener {
+        /**
+         * Called after every chunk written.
+         */
+        void onProgress(Progress progress);
+
+        /**
+         * Called once when the import ends.
+         *
+         * @param error null if the whole file was imported, otherwise why the import stopped;
+         *              starting it again resumes after the last chunk written
+         */
+        void onFinished(Progress progress, Exception error);
+    }
+
+    /**
+     * Counts of an import so far, including the records of earlier attempts it resumed.
+     */
+    public static final class Progress {
+        /** Records after the header that have been read and written or rejected */
+        public final long position;
+        /** Products written */
+        public final long imported;
+        /** Records rejected */
+        public final long rejected;
+
+        Progress(long position, long imported) {
+            this.position = position;
+            this.imported = imported;
+            this.rejected = position - imported;
+        }
+
+        @Override
+        public String toString() {
+            return position + " records read, " + imported + " imported, " + rejected + " rejected";
+        }
+    }
+
+    /** Imports run one at a time */
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private final ContentResolver mResolver;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    public ProductImporter(Context context) {
+        mResolver = context.getApplicationContext().getContentResolver();
+    }
+
+    /**
+     * Start importing the CSV file at the given URI, or resume its import. The URI also names
+     * the checkpoint, so pass the same URI to resume.
+     */
+    public void start(final Uri source, final Listener listener) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Progress[] progress = {new Progress(0, 0)};
+                Exception error = null;
+                try {
+                    importCsv(source, source.toString(), progress, listener);
+                } catch (IOException | RuntimeException e) {
+                    Log.e(LOG_TAG, "Failed to import " + source, e);
+                    error = e;
+                }
+                deliverFinished(listener, progress[0], error);
+            }
+        });
+    }
+
+    /**
+     * Import the CSV file at the given URI, resuming from the checkpoint saved under the given
+     * key. The latest progress is kept in {@code progress[0]}, also when the import fails.
+     */
+    private void importCsv(Uri source, String key, Progress[] progress, Listener listener) throws IOException {
+        progress[0] = readCheckpoint(key);
+        long skip = progress[0].position;
+        if (skip != 0) {
+            Log.i(LOG_TAG, "Resuming import of " + source + " after " + progress[0]);
+        }
+
+        InputStream in = mResolver.openInputStream(source);
+        if (in == null) {
+            throw new FileNotFoundException("Cannot open " + source);
+        }
+        CsvReader reader = new CsvReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            ArrayList<String> record = new ArrayList<>();
+            if (!reader.readRecord(record)) {
+                // Nothing but maybe blank lines
+                finish(key);
+                return;
+            }
+            ProductCsvFormat format = new ProductCsvFormat(record);
+
+            // Records of the chunks already written
+            reader.skipRecords(skip);
+
+            long position = skip;
+            long rejected = progress[0].rejected;
+            Map<String, Object> product = new HashMap<>();
+            ArrayList<ContentValues> chunk = new ArrayList<>(CHUNK_SIZE);
+            int chunkRecords = 0;
+            boolean more = true;
+            while (more) {
+                more = reader.readRecord(record);
+                if (more) {
+                    chunkRecords++;
+                    try {
+                        format.read(record, product);
+                        chunk.add(toContentValues(product));
+                    } catch (IllegalArgumentException e) {
+                        if (rejected++ < MAX_LOGGED_REJECTIONS) {
+                            Log.w(LOG_TAG, "Skipping line " + reader.getRecordLine() + " of " + source
+                                    + ": " + e.getMessage());
+                        }
+                    }
+                }
+                if (chunkRecords == CHUNK_SIZE || (!more && chunkRecords != 0)) {
+                    position += chunkRecords;
+                    int inserted = insertChunk(key, position, chunk);
+                    progress[0] = new Progress(position, progress[0].imported + inserted);
+                    deliverProgress(listener, progress[0]);
+                    chunk.clear();
+                    chunkRecords = 0;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        finish(key);
+    }
+
+    /**
+     * Return the progress saved by an earlier attempt to import under the given key.
+     */
+    private Progress readCheckpoint(String key) {
+        Cursor cursor = mResolver.query(ProductContract.ImportEntry.CONTENT_URI,
+                new String[]{ProductContract.ImportEntry.COLUMN_POSITION, ProductContract.ImportEntry.COLUMN_IMPORTED},
+                ProductContract.ImportEntry.COLUMN_SOURCE + "=?", new String[]{key}, null);
+        if (cursor == null) {
+            return new Progress(0, 0);
+        }
+        try {
+            return cursor.moveToFirst() ? new Progress(cursor.getLong(0), cursor.getLong(1)) : new Progress(0, 0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Write the products of a chunk and move the checkpoint to the given position, both in one
+     * transaction. Return the number of products written.
+     */
+    private int insertChunk(String key, long position, ArrayList<ContentValues> chunk) {
+        Uri uri = ProductContract.ProductEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(ProductContract.ProductEntry.QUERY_PARAMETER_IMPORT, key)
+                .appendQueryParameter(ProductContract.ProductEntry.QUERY_PARAMETER_IMPORT_POSITION,
+                        String.valueOf(position))
+                .build();
+        return mResolver.bulkInsert(uri, chunk.toArray(new ContentValues[chunk.size()]));
+    }
+
+    /**
+     * Delete the checkpoint of a finished import.
+     */
+    private void finish(String key) {
+        mResolver.delete(ProductContract.ImportEntry.CONTENT_URI,
+                ProductContract.ImportEntry.COLUMN_SOURCE + "=?", new String[]{key});
+    }
+
+    /**
+     * Copy a product read by {@link ProductCsvFormat}, whose values are Strings and Integers.
+     */
+    private static ContentValues toContentValues(Map<String, Object> product) {
+        ContentValues values = new ContentValues(product.size());
+        for (Map.Entry<String, Object> entry : product.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Integer) {
+                values.put(entry.getKey(), (Integer) value);
+            } else {
+                values.put(entry.getKey(), (String) value);
+            }
+        }
+        return values;
+    }
+
+    private void deliverProgress(final Listener listener, final Progress progress) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onProgress(progress);
+            }
+        });
+    }
+
+    private void deliverFinished(final Listener listener, final Progress progress, final Exception error) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFinished(progress, error);
+            }
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@link ContentObserver} for products that only wakes up for the products and columns it
+ * is interested in. Changes are described by {@link ProductChange}s.
+ */
+public abstract class ProductObserver extends ContentObserver {
+
+    /** Products to observe, null for all of them */
+    private final long[] mIds;
+
+    /** Columns to observe, null for all of them */
+    private final Set<String> mColumns;
+
+    /**
+     * @param handler to run {@link #onProductChanged} on, or null to run it on a binder thread
+     * @param ids     products to observe, null for all products (including new ones)
+     * @param columns columns to observe, null for all columns
+     */
+    public ProductObserver(Handler handler, long[] ids, String[] columns) {
+        super(handler);
+        mIds = ids == null ? null : Arrays.copyOf(ids, ids.length);
+        mColumns = columns == null ? null : Collections.unmodifiableSet(new HashSet<>(Arrays.asList(columns)));
+    }
+
+    /**
+     * Start observing. Observing specific products registers on their URIs only, so changes
+     * to other products never reach this observer.
+     */
+    public void register(ContentResolver resolver) {
+        if (mIds == null) {
+            resolver.registerContentObserver(ProductEntry.CONTENT_URI, true, this);
+        } else {
+            for (long id : mIds) {
+                resolver.registerContentObserver(ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id), false, this);
+            }
+        }
+    }
+
+    public void unregister(ContentResolver resolver) {
+        resolver.unregisterContentObserver(this);
+    }
+
+    @Override
+    public void onChange(boolean selfChange) {
+        // Only called before Jelly Bean, which doesn't pass the URI
+        onChange(selfChange, null);
+    }
+
+    @Override
+    public void onChange(boolean selfChange, Uri uri) {
+        ProductChange change = uri == null ? null : ProductChange.fromUri(uri);
+        if (change == null || (matchesId(change) && (mColumns == null || change.affectsAny(mColumns)))) {
+            onProductChanged(change);
+        }
+    }
+
+    private boolean matchesId(ProductChange change) {
+        if (mIds == null || change.id == ProductChange.NO_ID) {
+            return true;
+        }
+        for (long id : mIds) {
+            if (id == change.id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Called when an observed product or column may have changed.
+     *
+     * @param change what changed, or null if the platform didn't say
+     */
+    public abstract void onProductChanged(ProductChange change);
+}
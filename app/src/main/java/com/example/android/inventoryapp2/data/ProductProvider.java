@@ -5,15 +5,47 @@ package com.example.android.inventoryapp2.data;
  */
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 
 
 import android.content.ContentValues;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.util.Log;
+
+import com.example.android.inventoryapp2.BuildConfig;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * Created by clarissajarem on 11/9/18.
  */
@@ -34,6 +66,79 @@ public class ProductProvider extends ContentProvider {
      * URI matcher code for the content URI for a single pet in the products table
      */
     private static final int PRODUCT_ID = 101;
+    /**
+     * URI matcher code for the full-text search over the products table
+     */
+    private static final int PRODUCT_SEARCH = 102;
+    /**
+     * URI matcher code for the inventory totals
+     */
+    private static final int PRODUCT_STATS = 103;
+    /**
+     * URI matcher code for the stock movements table
+     */
+    private static final int MOVEMENTS = 104;
+    /**
+     * URI matcher code for the daily stock summaries table
+     */
+    private static final int MOVEMENT_SUMMARIES = 105;
+    /**
+     * URI matcher code for the catalog imports table
+     */
+    private static final int IMPORTS = 106;
+    /**
+     * URI matcher code for the export of the products table
+     */
+    private static final int PRODUCT_EXPORT = 107;
+    /**
+     * URI matcher code for the stock alerts table
+     */
+    private static final int STOCK_ALERTS = 108;
+    /**
+     * URI matcher code for a product looked up by its SKU
+     */
+    private static final int PRODUCT_SKU = 109;
+    /**
+     * URI matcher code for the stock locations table
+     */
+    private static final int LOCATIONS = 110;
+    /**
+     * URI matcher code for a single stock location
+     */
+    private static final int LOCATION_ID = 111;
+    /**
+     * URI matcher code for the stock of every product at a location
+     */
+    private static final int LOCATION_STOCK = 112;
+    /**
+     * URI matcher code for the stock of one product at a location
+     */
+    private static final int LOCATION_STOCK_ID = 113;
+    /**
+     * URI matcher code for the stock of a product at every location
+     */
+    private static final int PRODUCT_STOCK = 114;
+    /**
+     * URI matcher code for the suppliers table
+     */
+    private static final int SUPPLIERS = 115;
+    /**
+     * URI matcher code for a single supplier
+     */
+    private static final int SUPPLIER_ID = 116;
+    /**
+     * URI matcher code for the products of a supplier
+     */
+    private static final int SUPPLIER_PRODUCTS = 117;
+    /**
+     * Names of the URI matcher codes in {@link #mMetrics}, indexed by {@link #metricsTarget}.
+     * Batches aren't made on any URI and are recorded under {@link #METRICS_TARGET_NONE}.
+     */
+    private static final String[] METRICS_TARGETS = {
+            "products", "product_id", "search", "stats", "movements", "movements_daily", "imports", "export",
+            "alerts", "product_sku", "locations", "location_id", "location_stock", "location_stock_id",
+            "product_stock", "suppliers", "supplier_id", "supplier_products", "none"};
+    private static final int METRICS_TARGET_NONE = 18;
     /**
      * UriMatcher object to match a content URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
@@ -49,22 +154,333 @@ public class ProductProvider extends ContentProvider {
 
         sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_PRODUCTS, PRODUCTS);
         sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_PRODUCTS + "/#", PRODUCT_ID);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
+                ProductContract.PATH_PRODUCTS + "/" + ProductContract.PATH_SEARCH, PRODUCT_SEARCH);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
+                ProductContract.PATH_PRODUCTS + "/" + ProductContract.PATH_STATS, PRODUCT_STATS);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_MOVEMENTS, MOVEMENTS);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
+                ProductContract.PATH_MOVEMENTS + "/" + ProductContract.PATH_DAILY, MOVEMENT_SUMMARIES);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_IMPORTS, IMPORTS);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
+                ProductContract.PATH_PRODUCTS + "/" + ProductContract.PATH_EXPORT, PRODUCT_EXPORT);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_ALERTS, STOCK_ALERTS);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
+                ProductContract.PATH_PRODUCTS + "/" + ProductContract.PATH_SKU + "/*", PRODUCT_SKU);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_LOCATIONS, LOCATIONS);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_LOCATIONS + "/#", LOCATION_ID);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
+                ProductContract.PATH_LOCATIONS + "/#/" + ProductContract.PATH_STOCK, LOCATION_STOCK);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
+                ProductContract.PATH_LOCATIONS + "/#/" + ProductContract.PATH_STOCK + "/#", LOCATION_STOCK_ID);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
+                ProductContract.PATH_PRODUCTS + "/#/" + ProductContract.PATH_STOCK, PRODUCT_STOCK);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_SUPPLIERS, SUPPLIERS);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_SUPPLIERS + "/#", SUPPLIER_ID);
+        sUriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
+                ProductContract.PATH_SUPPLIERS + "/#/" + ProductContract.PATH_PRODUCTS, SUPPLIER_PRODUCTS);
     }
 
+    /**
+     * Insert statement for a single product, taken from the statement cache and re-bound for
+     * every row. The column order matches {@link #bindProduct}.
+     */
+    private static final String SQL_INSERT_PRODUCT = "INSERT INTO "
+            + ProductContract.ProductEntry.TABLE_NAME + " ("
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductContract.ProductEntry.COLUMN_SUPPLIER_ID + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE + ", "
+            + ProductContract.ProductEntry.COLUMN_REORDER_POINT + ", "
+            + ProductContract.ProductEntry.COLUMN_SKU + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Reads back the quantity of one product.
+     */
+    private static final String SQL_QUERY_QUANTITY = "SELECT "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY + " FROM "
+            + ProductContract.ProductEntry.TABLE_NAME + " WHERE "
+            + ProductContract.ProductEntry._ID + " = ?";
+
+    /**
+     * Looks up the ID of the product with a SKU, through the unique SKU index.
+     */
+    private static final String SQL_QUERY_SKU = "SELECT "
+            + ProductContract.ProductEntry._ID + " FROM "
+            + ProductContract.ProductEntry.TABLE_NAME + " WHERE "
+            + ProductContract.ProductEntry.COLUMN_SKU + " = ?";
+
+    /**
+     * Restricts a query to the products whose name or supplier matches a full-text query.
+     */
+    private static final String SELECTION_SEARCH = ProductContract.ProductEntry._ID
+            + " IN (SELECT docid FROM " + ProductDbHelper.FTS_TABLE_NAME + " WHERE "
+            + ProductDbHelper.FTS_TABLE_NAME + " MATCH ?)";
+
+    /**
+     * Reads the columns of {@link InventorySnapshot}, in ID order so loading only appends.
+     */
+    private static final String SQL_QUERY_INVENTORY = "SELECT "
+            + ProductContract.ProductEntry._ID + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE + " FROM "
+            + ProductContract.ProductEntry.TABLE_NAME + " ORDER BY "
+            + ProductContract.ProductEntry._ID;
+
+    /**
+     * Reads the columns of {@link InventorySnapshot} for the products with IDs in a range.
+     */
+    private static final String SQL_QUERY_INVENTORY_RANGE = "SELECT "
+            + ProductContract.ProductEntry._ID + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE + " FROM "
+            + ProductContract.ProductEntry.TABLE_NAME + " WHERE "
+            + ProductContract.ProductEntry._ID + " BETWEEN ? AND ? ORDER BY "
+            + ProductContract.ProductEntry._ID;
+
+    /**
+     * Columns of the {@link ProductContract.ProductEntry#STATS_URI}.
+     */
+    private static final String[] STATS_COLUMNS = {
+            ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE,
+            ProductContract.ProductEntry.COLUMN_STATS_PRODUCT_COUNT,
+            ProductContract.ProductEntry.COLUMN_STATS_QUANTITY,
+            ProductContract.ProductEntry.COLUMN_STATS_VALUE,
+            ProductContract.ProductEntry.COLUMN_STATS_LOW_STOCK_COUNT};
+
+    /**
+     * Saves the checkpoint of a catalog import, adding the rows just inserted to the ones
+     * imported before.
+     */
+    private static final String SQL_SAVE_IMPORT = "INSERT OR REPLACE INTO "
+            + ProductContract.ImportEntry.TABLE_NAME + " ("
+            + ProductContract.ImportEntry.COLUMN_SOURCE + ", "
+            + ProductContract.ImportEntry.COLUMN_POSITION + ", "
+            + ProductContract.ImportEntry.COLUMN_IMPORTED + ") VALUES (?, ?, COALESCE((SELECT "
+            + ProductContract.ImportEntry.COLUMN_IMPORTED + " FROM " + ProductContract.ImportEntry.TABLE_NAME
+            + " WHERE " + ProductContract.ImportEntry.COLUMN_SOURCE + " = ?), 0) + ?)";
+
+    /**
+     * Rows the export reads per query. Each chunk fills one cursor window, so the export
+     * takes the same memory whatever the size of the table.
+     */
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+
+    /**
+     * Reads the next chunk of the export, the rows after the last ID exported. The columns are
+     * those of the products table before suppliers had a table of their own, in that order.
+     */
+    private static final String SQL_EXPORT_CHUNK = "SELECT "
+            + ProductContract.ProductEntry._ID + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductContract.ProductEntry.COLUMN_SUPPLIER_NAME + ", "
+            + ProductContract.ProductEntry.COLUMN_SUPPLIER_PHONE + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE + ", "
+            + ProductContract.ProductEntry.COLUMN_REORDER_POINT + ", "
+            + ProductContract.ProductEntry.COLUMN_SKU + " FROM "
+            + ProductDbHelper.PRODUCTS_WITH_SUPPLIERS + " WHERE "
+            + ProductContract.ProductEntry._ID + " > ? ORDER BY "
+            + ProductContract.ProductEntry._ID + " LIMIT " + EXPORT_CHUNK_SIZE;
+
+    /**
+     * Reads the columns of the catalog snapshot, in list order.
+     */
+    private static final String SQL_QUERY_CATALOG_SNAPSHOT = "SELECT "
+            + ProductContract.ProductEntry._ID + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductContract.ProductEntry.COLUMN_SUPPLIER_NAME + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE + ", "
+            + ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY + " FROM "
+            + ProductDbHelper.PRODUCTS_WITH_SUPPLIERS + " ORDER BY "
+            + ProductContract.ProductEntry._ID;
+
+    /**
+     * The products with their suppliers, read through the supplier ID index for
+     * {@link #SUPPLIER_PRODUCTS}.
+     */
+    private static final String SUPPLIER_PRODUCTS_TABLE = "(" + ProductDbHelper.SQL_SELECT_PRODUCTS
+            + " INDEXED BY " + ProductDbHelper.INDEX_SUPPLIER_ID + ProductDbHelper.SQL_JOIN_SUPPLIERS + ")";
+
+    /**
+     * Deletes one product by ID.
+     */
+    private static final String SQL_DELETE_PRODUCT = "DELETE FROM "
+            + ProductContract.ProductEntry.TABLE_NAME + " WHERE "
+            + ProductContract.ProductEntry._ID + " = ?";
+
+    /**
+     * Columns of a product row that {@link #SQL_INSERT_PRODUCT} binds.
+     */
+    private static final Set<String> INSERT_COLUMNS = new TreeSet<>(Arrays.asList(
+            ProductContract.ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductContract.ProductEntry.COLUMN_SUPPLIER_ID,
+            ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE,
+            ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE,
+            ProductContract.ProductEntry.COLUMN_REORDER_POINT,
+            ProductContract.ProductEntry.COLUMN_SKU));
+
+    /**
+     * Number of products kept by {@link #mProductCache}. A product is a few hundred bytes, so
+     * this stays well under 100 KiB.
+     */
+    private static final int PRODUCT_CACHE_SIZE = 256;
+
     /**
      * database helper object
      */
     private ProductDbHelper localDbHelper;
 
+    /**
+     * Recently read products, serving queries on a single product's URI without going to the
+     * database. Every write below drops what it changed once it has committed.
+     */
+    private final ProductCache mProductCache = new ProductCache(PRODUCT_CACHE_SIZE);
+
+    /**
+     * Columns of the products with their suppliers, learned from the first row read into
+     * {@link #mProductCache} and used for queries without a projection.
+     */
+    private volatile String[] mTableColumns;
+
+    /**
+     * The numbers of every product, column by column, for answering
+     * {@link ProductContract.ProductEntry#STATS_URI} without scanning the table. Loaded on the
+     * first query and brought up to date by every write below once it has committed.
+     */
+    private final InventorySnapshot mInventory = new InventorySnapshot(256);
+
+    /**
+     * Timing and row counts of every operation, recorded in debug builds or when turned on
+     * through {@link ProductContract.ProductEntry#METHOD_METRICS}.
+     */
+    private final ProviderMetrics mMetrics = new ProviderMetrics(METRICS_TARGETS);
+
+    /**
+     * How long after startup, and then how often, old stock movements are rolled up into
+     * daily summaries.
+     */
+    private static final long COMPACTION_DELAY_MINUTES = 1;
+    private static final long COMPACTION_INTERVAL_MINUTES = 24 * 60;
+
+    /**
+     * Appends a stock movement for every change of a product's quantity
+     */
+    private StockLedger mLedger;
+
+    /**
+     * Pushes and pulls product changes to and from the inventory server
+     */
+    private ProductSync mSync;
+
+    /**
+     * Raises and clears stock alerts as writes move quantities across reorder points
+     */
+    private StockAlerts mAlerts;
+
+    /**
+     * Reads and moves the stock of products at locations
+     */
+    private StockLocations mLocations;
+
+    /**
+     * Turns the supplier names written to products into supplier IDs
+     */
+    private Suppliers mSuppliers;
+
+    /**
+     * Runs {@link StockLedger#compact}, writes the catalog snapshot and notifies stock alerts in
+     * the background
+     */
+    private ScheduledExecutorService mBackground;
+
+    /**
+     * How long the catalog snapshot is written after a change, so a burst of changes only
+     * writes it once.
+     */
+    private static final long CATALOG_SNAPSHOT_DELAY_SECONDS = 2;
+
+    /**
+     * Shortest time between two writes of the catalog snapshot, so a long import or a stream
+     * of sales rewrites it at most this often instead of after every burst.
+     */
+    private static final long CATALOG_SNAPSHOT_INTERVAL_SECONDS = 30;
+
+    /** Set while a write of the catalog snapshot is scheduled and hasn't started yet */
+    private final AtomicBoolean mCatalogSnapshotScheduled = new AtomicBoolean();
+
+    /** When the last write of the catalog snapshot started, in {@link SystemClock#elapsedRealtime} */
+    private volatile long mCatalogSnapshotWrittenAt = -TimeUnit.SECONDS.toMillis(CATALOG_SNAPSHOT_INTERVAL_SECONDS);
+
+    /**
+     * How long observers of {@link ProductContract.StockAlertEntry#CONTENT_URI} are notified
+     * after an alert changes, so a burst of sales going below their reorder points is
+     * notified once.
+     */
+    private static final long ALERT_NOTIFICATION_DELAY_SECONDS = 1;
+
+    /** Set while a notification of the stock alerts is scheduled and hasn't been sent yet */
+    private final AtomicBoolean mAlertNotificationScheduled = new AtomicBoolean();
+
+    /**
+     * Runs the syncs started by {@link ProductContract.ProductEntry#METHOD_SYNC}, apart from
+     * {@link #mBackground} so a slow server doesn't hold up its work
+     */
+    private ExecutorService mSyncExecutor;
+
+    /** Set from the time a sync is started until it is done */
+    private final AtomicBoolean mSyncRunning = new AtomicBoolean();
+
+    /** Outcome of the last sync that is done, null if there is none */
+    private volatile Bundle mSyncResult;
+
+    /**
+     * Set while the calling thread is inside {@link #applyBatch}. The individual operations
+     * record their changes instead of notifying, and the notifications are sent once the
+     * batch has committed.
+     */
+    private final ThreadLocal<BatchState> mBatchState = new ThreadLocal<>();
+
+    /**
+     * Batches that changed more products than this send one notification for the whole table
+     * instead of one per product.
+     */
+    private static final int MAX_BATCH_NOTIFICATIONS = 32;
+
+    /**
+     * Per-thread bookkeeping for a running {@link #applyBatch}.
+     */
+    private static final class BatchState {
+        final ArrayList<ProductChange> changes = new ArrayList<>();
+    }
+
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
+        long start = mMetrics.start();
+        Uri newUri;
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case PRODUCTS:
-                return insertPet(uri, contentValues);
+                newUri = insertPet(uri, contentValues);
+                break;
+            case LOCATIONS:
+                newUri = insertLocation(uri, contentValues);
+                break;
+            case SUPPLIERS:
+                newUri = insertSupplier(uri, contentValues);
+                break;
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
+        if (start != ProviderMetrics.OFF) {
+            mMetrics.record(ProviderMetrics.OP_INSERT, metricsTarget(match), start, newUri == null ? 0 : 1, 0);
+        }
+        return newUri;
     }
 
     /**
@@ -72,220 +488,1822 @@ public class ProductProvider extends ContentProvider {
      * for that specific row in the database.
      */
     private Uri insertPet(Uri uri, ContentValues values) {
-
-// Get writeable database
+        // Get writeable database
         SQLiteDatabase database = localDbHelper.getWritableDatabase();
-        // Insert the new pet with the given values
-        long id = database.insert(ProductContract.ProductEntry.TABLE_NAME, null, values);
+
+        long id;
+        boolean phoneChanged;
+        // The product, its supplier and the movement of its initial stock are written together
+        database.beginTransaction();
+        try {
+            ContentValues row = new ContentValues(values.size());
+            phoneChanged = mSuppliers.toNewProductRow(values, row);
+            if (INSERT_COLUMNS.containsAll(row.keySet())) {
+                // The usual case, insert through the cached statement
+                SQLiteStatement statement = localDbHelper.acquireStatement(SQL_INSERT_PRODUCT);
+                try {
+                    bindProduct(statement, row);
+                    id = statement.executeInsert();
+                } catch (SQLiteConstraintException e) {
+                    id = -1;
+                } finally {
+                    localDbHelper.releaseStatement(SQL_INSERT_PRODUCT, statement);
+                }
+            } else {
+                // Insert the new pet with the given values
+                id = database.insert(ProductContract.ProductEntry.TABLE_NAME, null, row);
+            }
+            if (id != -1) {
+                mSuppliers.insertMissing(id, values, row);
+                recordInitialStock(id, values, System.currentTimeMillis());
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
         // If the ID is -1, then the insertion failed. Log an error and return null.
         if (id == -1) {
             Log.e(LOG_TAG, "Failed to insert row for " + uri);
             return null;
         }
+        refreshInventory(id, id);
+        if (phoneChanged) {
+            supplierPhoneChanged();
+        }
         //updating for content://com.example.inventoryapp2.data/products/row
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(new ProductChange(ProductChange.OP_INSERT, id, null));
         // Once we know the ID of the new row in the table,
         // return the new URI with the ID appended to the end of it
         return ContentUris.withAppendedId(uri, id);
     }
 
     /**
-     * Initialize the provider and the database helper object.
+     * Insert a stock location. Return its content URI, or null if the name is already taken.
      */
-    @Override
-    public boolean onCreate() {
-        // Create database helper
-        localDbHelper = new ProductDbHelper(getContext());
-        // Make sure the variable is a global variable, so it can be referenced from other
-        // ContentProvider methods.
-        return true;
+    private Uri insertLocation(Uri uri, ContentValues values) {
+        validateLocation(values);
+        long id = localDbHelper.getWritableDatabase().insert(ProductContract.LocationEntry.TABLE_NAME, null, values);
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+        getContext().getContentResolver().notifyChange(ProductContract.LocationEntry.CONTENT_URI, null);
+        return ContentUris.withAppendedId(uri, id);
     }
 
     /**
-     * Perform the query for the given URI. Use the given projection, selection, selection arguments, and sort order.
+     * Check that a location is only given a name, and that it isn't empty.
      */
-    @Override
-    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
-                        String sortOrder) {
-        // Get readable database
-        SQLiteDatabase database = localDbHelper.getReadableDatabase();
-
-        // This cursor will hold the result of the query
-        Cursor cursor;
-
-        // Figure out if the URI matcher can match the URI to a specific code
-        int match = sUriMatcher.match(uri);
-        switch (match) {
-            case PRODUCTS:
-                // For the PRODUCTS code, query the products table directly with the given
-                // projection, selection, selection arguments, and sort order. The cursor
-                // could contain multiple rows of the products table.
-                cursor = database.query(ProductContract.ProductEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, sortOrder);
-                break;
-            case PRODUCT_ID:
-                // For the PRODUCT_ID code, extract out the ID from the URI.
-                // For an example URI such as "content://com.example.android.inventoryapp2/products/3",
-                // the selection will be "_id=?" and the selection argument will be a
-                // String array containing the actual ID of 3 in this case.
-                //
-                // For every "?" in the selection, we need to have an element in the selection
-                // arguments that will fill in the "?". Since we have 1 question mark in the
-                // selection, we have 1 String in the selection arguments' String array.
-                selection = ProductContract.ProductEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+    private static void validateLocation(ContentValues values) {
+        String name = values.getAsString(ProductContract.LocationEntry.COLUMN_LOCATION_NAME);
+        if (values.size() != 1 || name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Location requires a name");
+        }
+    }
 
-                // This will perform a query on the products table where the _id equals 3 to return a
-                // Cursor containing that row of the table.
-                cursor = database.query(ProductContract.ProductEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
-                break;
-            default:
-                throw new IllegalArgumentException("Cannot query unknown URI " + uri);
+    /**
+     * Insert a supplier. Return its content URI, or null if the name is already taken.
+     */
+    private Uri insertSupplier(Uri uri, ContentValues values) {
+        validateSupplier(values, true);
+        long id = localDbHelper.getWritableDatabase().insert(ProductContract.SupplierEntry.TABLE_NAME, null, values);
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
         }
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
-        return cursor;
+        getContext().getContentResolver().notifyChange(ProductContract.SupplierEntry.CONTENT_URI, null);
+        return ContentUris.withAppendedId(uri, id);
     }
 
+    /**
+     * Check that a supplier is only given a name and a phone, and that the name isn't empty.
+     */
+    private static void validateSupplier(ContentValues values, boolean requireName) {
+        int size = values.size();
+        if (values.containsKey(ProductContract.SupplierEntry.COLUMN_SUPPLIER_NAME)) {
+            String name = values.getAsString(ProductContract.SupplierEntry.COLUMN_SUPPLIER_NAME);
+            if (name == null || name.trim().isEmpty()) {
+                throw new IllegalArgumentException("Supplier requires a name");
+            }
+            size--;
+        } else if (requireName) {
+            throw new IllegalArgumentException("Supplier requires a name");
+        }
+        if (values.containsKey(ProductContract.SupplierEntry.COLUMN_SUPPLIER_PHONE)) {
+            size--;
+        }
+        if (size != 0 || values.size() == 0) {
+            throw new IllegalArgumentException("Supplier only has a name and a phone");
+        }
+    }
 
     /**
-     * Updates the data at the given selection and selection arguments, with the new ContentValues.
+     * Insert a batch of products in a single transaction. The insert statement is compiled once
+     * and re-bound for every row, and listeners are notified once after the commit instead of
+     * once per row. Rows that violate a table constraint are logged and skipped.
      */
     @Override
-    public int update(Uri uri, ContentValues contentValues, String selection,
-                      String[] selectionArgs) {
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        long start = mMetrics.start();
+        int rowsInserted;
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case PRODUCTS:
-                return updateProduct(uri, contentValues, selection, selectionArgs);
-            case PRODUCT_ID:
-                // For the PRODUCT_ID code, extract out the ID from the URI,
-                // so we know which row to update. Selection will be "_id=?" and selection
-                // arguments will be a String array containing the actual ID.
-                selection = ProductContract.ProductEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                return updateProduct(uri, contentValues, selection, selectionArgs);
+                rowsInserted = bulkInsertProducts(uri, values);
+                break;
             default:
-                throw new IllegalArgumentException("Update is not supported for " + uri);
+                throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
+        if (start != ProviderMetrics.OFF) {
+            mMetrics.record(ProviderMetrics.OP_BULK_INSERT, metricsTarget(match), start, rowsInserted, 0);
+        }
+        return rowsInserted;
     }
 
-    /**
-     * Update pets in the database with the given content values. Apply the changes to the rows
-     * specified in the selection and selection arguments (which could be 0 or 1 or more pets).
-     * Return the number of rows that were successfully updated.
-     */
-    private int updateProduct(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
-
-// If the {@link ProductEntry#COLUMN_PRODUCT_NAME} key is present,
-        // check that the name value is not null.
-        if (values.containsKey(ProductContract.ProductEntry.COLUMN_PRODUCT_NAME)) {
-            String name = values.getAsString(ProductContract.ProductEntry.COLUMN_PRODUCT_NAME);
-            if (name == null) {
-                throw new IllegalArgumentException("Product requires a name");
+    private int bulkInsertProducts(Uri uri, ContentValues[] values) {
+        // Rows of a catalog import also move its checkpoint forward
+        String importSource = uri.getQueryParameter(ProductContract.ProductEntry.QUERY_PARAMETER_IMPORT);
+        long importPosition = 0;
+        if (importSource != null) {
+            String position = uri.getQueryParameter(ProductContract.ProductEntry.QUERY_PARAMETER_IMPORT_POSITION);
+            if (position == null) {
+                throw new IllegalArgumentException("Import requires a position for " + uri);
             }
+            importPosition = parseLong(position, uri);
         }
-        // If the {@link ProductEntry#COLUMN_SUPPLIEr_NAME} key is present,
-        // check that the name value is not null.
-        if (values.containsKey(ProductContract.ProductEntry.COLUMN_SUPPLIER_NAME)) {
-            String name = values.getAsString(ProductContract.ProductEntry.COLUMN_SUPPLIER_NAME);
-            if (name == null) {
-                throw new IllegalArgumentException("Supplier requires a name");
+        // Get writeable database
+        SQLiteDatabase database = localDbHelper.getWritableDatabase();
+        // Track the number of rows that were inserted
+        int rowsInserted = 0;
+
+        boolean committed = false;
+        boolean phoneChanged = false;
+        long firstId = -1;
+        long lastId = -1;
+        long now = System.currentTimeMillis();
+        ContentValues productRow = new ContentValues();
+        database.beginTransaction();
+        SQLiteStatement statement = localDbHelper.acquireStatement(SQL_INSERT_PRODUCT);
+        try {
+            for (ContentValues row : values) {
+                productRow.clear();
+                phoneChanged |= mSuppliers.toNewProductRow(row, productRow);
+                bindProduct(statement, productRow);
+                try {
+                    long id = statement.executeInsert();
+                    if (id != -1) {
+                        mSuppliers.insertMissing(id, row, productRow);
+                        recordInitialStock(id, row, now);
+                        if (firstId == -1) {
+                            firstId = id;
+                        }
+                        lastId = id;
+                        rowsInserted++;
+                    }
+                } catch (SQLiteConstraintException e) {
+                    // Only this row is rolled back, the rest of the batch carries on.
+                    Log.e(LOG_TAG, "Failed to insert row for " + uri, e);
+                }
             }
-        }
-        // If the {@link ProductEntry#COLUMN_SUPPLIER_PHONE} key is present,
-        // check that the name value is not null.
-        if (values.containsKey(ProductContract.ProductEntry.COLUMN_SUPPLIER_PHONE)) {
-            String name = values.getAsString(ProductContract.ProductEntry.COLUMN_SUPPLIER_PHONE);
-            if (name == null) {
-                throw new IllegalArgumentException("Supplier requires a phone");
+            if (importSource != null) {
+                // Committed together with the rows, so a resumed import neither skips nor
+                // repeats any of them
+                saveImport(importSource, importPosition, rowsInserted);
             }
+            database.setTransactionSuccessful();
+            committed = true;
+        } finally {
+            localDbHelper.releaseStatement(SQL_INSERT_PRODUCT, statement);
+            database.endTransaction();
         }
 
-        // If the {@link ProductEntry#COLUMN_P_GENDER} key is present,
-        // check that the gender value is valid.
-        if (values.containsKey(ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE)) {
-            Integer gender = values.getAsInteger(ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE);
-            if (gender == null || !ProductContract.ProductEntry.isValidType(gender)) {
-                throw new IllegalArgumentException("Product requires valid type");
-            }
+        if (rowsInserted != 0) {
+            // Nobody else writes while the transaction is open, so the IDs in between are all
+            // the rows inserted
+            refreshInventory(firstId, lastId);
         }
-        // If the {@link ProductEntry#COLUMN_PRODUCT_QUANTITY} key is present,
-        // check that the quantity value is valid.
-        if (values.containsKey(ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY)) {
-            // Check that the quantity is greater than or equal to 0
-            Integer quantity = values.getAsInteger(ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY);
-            if (quantity != null && quantity < 0) {
-                throw new IllegalArgumentException("Product requires valid quantity");
-            }
-            // If there are no values to update, then don't try to update the database
-            if (values.size() == 0) {
-                return 0;
-            }
+        if (committed && phoneChanged) {
+            supplierPhoneChanged();
         }
-
-        // If the {@link ProductEntry#COLUMN_PRODUCT_PRICE} key is present,
-        // check that the weight value is valid.
-        if (values.containsKey(ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE)) {
-            // Check that the weight is greater than or equal to 0 kg
-            Integer price = values.getAsInteger(ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE);
-            if (price != null && price < 0) {
-                throw new IllegalArgumentException("Product requires valid price");
-            }
-            // If there are no values to update, then don't try to update the database
-            if (values.size() == 0) {
-                return 0;
-            }
+        // Notify once for the whole batch
+        if (rowsInserted != 0) {
+            notifyChange(new ProductChange(ProductChange.OP_INSERT, ProductChange.NO_ID, null));
+        }
+        if (importSource != null) {
+            getContext().getContentResolver().notifyChange(ProductContract.ImportEntry.CONTENT_URI, null);
         }
+        return rowsInserted;
+    }
 
-// Otherwise, get writeable database to update the data
-        SQLiteDatabase database = localDbHelper.getWritableDatabase();
+    /**
+     * Save the checkpoint of a catalog import. Called inside the transaction of its rows.
+     */
+    private void saveImport(String source, long position, int rowsInserted) {
+        SQLiteStatement statement = localDbHelper.acquireStatement(SQL_SAVE_IMPORT);
+        try {
+            statement.bindString(1, source);
+            statement.bindLong(2, position);
+            statement.bindString(3, source);
+            statement.bindLong(4, rowsInserted);
+            statement.executeInsert();
+        } finally {
+            localDbHelper.releaseStatement(SQL_SAVE_IMPORT, statement);
+        }
+    }
 
-        // Perform the update on the database and get the number of rows affected
-        int rowsUpdated = database.update(ProductContract.ProductEntry.TABLE_NAME, values, selection, selectionArgs);
+    /**
+     * Record the stock a new product was inserted with, if any. Called inside the transaction
+     * of the insert.
+     */
+    private void recordInitialStock(long id, ContentValues values, long timestamp) {
+        Integer quantity = values.getAsInteger(ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY);
+        if (quantity != null && quantity != 0) {
+            mLedger.recordMovement(id, quantity, ProductContract.StockMovementEntry.REASON_INITIAL, timestamp);
+        }
+    }
+
+    /**
+     * Bind the columns of the given product row, as {@link Suppliers#toNewProductRow} makes it,
+     * to {@link #SQL_INSERT_PRODUCT}. Missing numbers fall back to the column defaults, missing
+     * required columns are bound as null so the NOT NULL constraint rejects the row.
+     */
+    private static void bindProduct(SQLiteStatement statement, ContentValues row) {
+        statement.clearBindings();
+        bindString(statement, 1, row.getAsString(ProductContract.ProductEntry.COLUMN_PRODUCT_NAME));
+        Long supplierId = row.getAsLong(ProductContract.ProductEntry.COLUMN_SUPPLIER_ID);
+        if (supplierId == null) {
+            statement.bindNull(2);
+        } else {
+            statement.bindLong(2, supplierId);
+        }
+        Integer type = row.getAsInteger(ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE);
+        if (type == null) {
+            statement.bindNull(3);
+        } else {
+            statement.bindLong(3, type);
+        }
+        Integer quantity = row.getAsInteger(ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY);
+        statement.bindLong(4, quantity == null ? 0 : quantity);
+        Integer price = row.getAsInteger(ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE);
+        statement.bindLong(5, price == null ? 0 : price);
+        Integer reorderPoint = row.getAsInteger(ProductContract.ProductEntry.COLUMN_REORDER_POINT);
+        statement.bindLong(6, reorderPoint == null ? 0 : reorderPoint);
+        bindString(statement, 7, row.getAsString(ProductContract.ProductEntry.COLUMN_SKU));
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Apply a batch of operations in a single transaction. Either every operation is committed
+     * or none is, and listeners are notified once after the commit.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        long start = mMetrics.start();
+        SQLiteDatabase database = localDbHelper.getWritableDatabase();
+        BatchState batch = new BatchState();
+        mBatchState.set(batch);
+        boolean committed = false;
+        long rows = 0;
+        database.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+            for (ContentProviderResult result : results) {
+                rows += result.count != null ? result.count : (result.uri != null ? 1 : 0);
+            }
+            committed = true;
+            return results;
+        } finally {
+            database.endTransaction();
+            mBatchState.remove();
+            // The operations only evicted what they touched, now that the outcome is known
+            // evict it again in case a reader cached the old row in the meantime
+            invalidateCache(batch.changes);
+            if (!batch.changes.isEmpty()) {
+                // The operations left the snapshot to be loaded again, see refreshInventory
+                mInventory.invalidate();
+            }
+            if (committed) {
+                if (batch.changes.size() > MAX_BATCH_NOTIFICATIONS) {
+                    notifyChange(new ProductChange(ProductChange.OP_UNKNOWN, ProductChange.NO_ID, null));
+                } else {
+                    for (ProductChange change : batch.changes) {
+                        notifyChange(change);
+                    }
+                }
+                if (start != ProviderMetrics.OFF) {
+                    mMetrics.record(ProviderMetrics.OP_BATCH, METRICS_TARGET_NONE, start, rows, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evict the products touched by the given changes from {@link #mProductCache}, or every
+     * product if a change isn't limited to one.
+     */
+    private void invalidateCache(ArrayList<ProductChange> changes) {
+        for (ProductChange change : changes) {
+            if (change.id == ProductChange.NO_ID) {
+                mProductCache.clear();
+                return;
+            }
+        }
+        for (ProductChange change : changes) {
+            mProductCache.remove(change.id);
+        }
+    }
+
+    /**
+     * Notify listeners of the given change. Changes to a single product are notified on the
+     * product's URI, so observers of other products aren't woken up. Inside
+     * {@link #applyBatch} the notification is deferred until the batch commits.
+     */
+    private void notifyChange(ProductChange change) {
+        BatchState batch = mBatchState.get();
+        if (batch != null) {
+            batch.changes.add(change);
+            return;
+        }
+        getContext().getContentResolver().notifyChange(change.toUri(), null);
+        mMetrics.notified();
+        scheduleCatalogSnapshot();
+    }
+
+    /**
+     * Write the catalog snapshot a little later, but no sooner than
+     * {@link #CATALOG_SNAPSHOT_INTERVAL_SECONDS} after the last write, unless a write is
+     * already waiting.
+     */
+    private void scheduleCatalogSnapshot() {
+        if (!mCatalogSnapshotScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        long nextWrite = mCatalogSnapshotWrittenAt + TimeUnit.SECONDS.toMillis(CATALOG_SNAPSHOT_INTERVAL_SECONDS);
+        long delay = Math.max(TimeUnit.SECONDS.toMillis(CATALOG_SNAPSHOT_DELAY_SECONDS),
+                nextWrite - SystemClock.elapsedRealtime());
+        mBackground.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // Changes from now on schedule another write
+                mCatalogSnapshotScheduled.set(false);
+                mCatalogSnapshotWrittenAt = SystemClock.elapsedRealtime();
+                writeCatalogSnapshot();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write the catalog list to {@link CatalogSnapshotCursor}'s file. It is written next to it
+     * and renamed over it, so readers see either the old or the new snapshot. Runs on
+     * {@link #mBackground}.
+     */
+    private void writeCatalogSnapshot() {
+        File file = CatalogSnapshotCursor.getFile(getContext());
+        File temp = new File(file.getPath() + ".tmp");
+        boolean written = false;
+        Cursor cursor = localDbHelper.getReadableDatabase().rawQuery(SQL_QUERY_CATALOG_SNAPSHOT, null);
+        try {
+            CatalogSnapshotFormat.Writer writer = new CatalogSnapshotFormat.Writer(new FileOutputStream(temp));
+            try {
+                while (cursor.moveToNext()) {
+                    writer.writeRow(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                            cursor.getInt(3), cursor.getInt(4));
+                }
+                writer.finish();
+            } finally {
+                writer.close();
+            }
+            written = temp.renameTo(file);
+            if (!written) {
+                Log.e(LOG_TAG, "Failed to replace the catalog snapshot");
+            }
+        } catch (IOException | RuntimeException e) {
+            // The old snapshot stays, the next change tries again
+            Log.e(LOG_TAG, "Failed to write the catalog snapshot", e);
+        } finally {
+            cursor.close();
+            if (!written) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Notify observers of the stock alerts a little later, unless a notification is already
+     * waiting.
+     */
+    private void scheduleAlertNotification() {
+        if (!mAlertNotificationScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        mBackground.schedule(new Runnable() {
+            @Override
+            public void run() {
+                // Alerts from now on schedule another notification
+                mAlertNotificationScheduled.set(false);
+                getContext().getContentResolver().notifyChange(ProductContract.StockAlertEntry.CONTENT_URI, null);
+            }
+        }, ALERT_NOTIFICATION_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Initialize the provider and the database helper object.
+     */
+    @Override
+    public boolean onCreate() {
+        // Create database helper
+        localDbHelper = new ProductDbHelper(getContext());
+        mMetrics.setEnabled(BuildConfig.DEBUG);
+        mLedger = new StockLedger(localDbHelper);
+        mSuppliers = new Suppliers(localDbHelper);
+        mAlerts = new StockAlerts(localDbHelper);
+        mLocations = new StockLocations(localDbHelper);
+        mSync = new ProductSync(localDbHelper, mLedger, mSuppliers, mAlerts, mLocations);
+        mBackground = Executors.newSingleThreadScheduledExecutor();
+        mSyncExecutor = Executors.newSingleThreadExecutor();
+        mBackground.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                compactLedger();
+            }
+        }, COMPACTION_DELAY_MINUTES, COMPACTION_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        if (!CatalogSnapshotCursor.getFile(getContext()).exists()) {
+            // First start, or the app was upgraded from a version without snapshots
+            scheduleCatalogSnapshot();
+        }
+        // Make sure the variable is a global variable, so it can be referenced from other
+        // ContentProvider methods.
+        return true;
+    }
+
+    /**
+     * Roll old stock movements into daily summaries. Runs on {@link #mBackground}.
+     */
+    private void compactLedger() {
+        try {
+            if (mLedger.compact(System.currentTimeMillis()) != 0) {
+                getContext().getContentResolver().notifyChange(ProductContract.StockMovementEntry.CONTENT_URI, null);
+            }
+        } catch (RuntimeException e) {
+            // Don't let one failure cancel the following runs, the movements are still there
+            Log.e(LOG_TAG, "Failed to compact the stock movements", e);
+        }
+    }
+
+    /**
+     * Perform the query for the given URI. Use the given projection, selection, selection arguments, and sort order.
+     */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Perform the query for the given URI, like the query above. Product list and search
+     * queries stop with an {@link android.os.OperationCanceledException} as soon as the
+     * signal is canceled, including when the returned cursor fills its window later on. The
+     * other queries are small and only check the signal before they start.
+     *
+     * The platform only calls this from Jelly Bean on, so the signal is always null before.
+     */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder, CancellationSignal cancellationSignal) {
+        if (cancellationSignal != null) {
+            cancellationSignal.throwIfCanceled();
+        }
+        long start = mMetrics.start();
+        // Get readable database
+        SQLiteDatabase database = localDbHelper.getReadableDatabase();
+
+        // This cursor will hold the result of the query
+        Cursor cursor;
+
+        // Figure out if the URI matcher can match the URI to a specific code
+        int match = sUriMatcher.match(uri);
+        switch (match) {
+            case PRODUCTS:
+                // For the PRODUCTS code, query the products table directly with the given
+                // projection, selection, selection arguments, and sort order. The cursor
+                // could contain multiple rows of the products table.
+                cursor = queryProducts(database, uri, projection, selection, selectionArgs, sortOrder, true,
+                        cancellationSignal);
+                break;
+            case PRODUCT_ID:
+                // For the PRODUCT_ID code, extract out the ID from the URI.
+                // For an example URI such as "content://com.example.android.inventoryapp2/products/3",
+                // the selection will be "_id=?" and the selection argument will be a
+                // String array containing the actual ID of 3 in this case.
+                //
+                // For every "?" in the selection, we need to have an element in the selection
+                // arguments that will fill in the "?". Since we have 1 question mark in the
+                // selection, we have 1 String in the selection arguments' String array.
+                long id = ContentUris.parseId(uri);
+                if (selection == null) {
+                    // Serve the plain lookup of a product from the cache when possible
+                    cursor = queryCachedProduct(database, id, projection);
+                    if (cursor != null) {
+                        break;
+                    }
+                }
+                selection = DatabaseUtils.concatenateWhere(selection, ProductContract.ProductEntry._ID + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, new String[]{String.valueOf(id)});
+
+                // This will perform a query on the products table where the _id equals 3 to return a
+                // Cursor containing that row of the table.
+                cursor = database.query(ProductDbHelper.PRODUCTS_WITH_SUPPLIERS, projection, selection, selectionArgs,
+                        null, null, sortOrder);
+                break;
+            case PRODUCT_SKU:
+                // For the PRODUCT_SKU code, the last path segment is the SKU, which the unique
+                // index finds without looking at any other product.
+                selection = DatabaseUtils.concatenateWhere(selection, ProductContract.ProductEntry.COLUMN_SKU + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, new String[]{uri.getLastPathSegment()});
+                cursor = database.query(ProductDbHelper.PRODUCTS_WITH_SUPPLIERS, projection, selection, selectionArgs,
+                        null, null, sortOrder);
+                // The product with the SKU changes whenever any product changes
+                uri = ProductContract.ProductEntry.CONTENT_URI;
+                break;
+            case PRODUCT_SEARCH:
+                // For the PRODUCT_SEARCH code, restrict the selection to the rows the full-text
+                // index matches. Without any search text this is the same as PRODUCTS.
+                String searchMatch = buildSearchMatch(uri.getQueryParameter(ProductContract.ProductEntry.QUERY_PARAMETER_SEARCH));
+                if (searchMatch != null) {
+                    selection = DatabaseUtils.concatenateWhere(selection, SELECTION_SEARCH);
+                    selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, new String[]{searchMatch});
+                }
+                // The full-text index finds the rows, so the filters don't pick an index
+                cursor = queryProducts(database, uri, projection, selection, selectionArgs, sortOrder, false,
+                        cancellationSignal);
+                // Search results change whenever any product changes
+                uri = ProductContract.ProductEntry.CONTENT_URI;
+                break;
+            case PRODUCT_STATS:
+                cursor = queryStats(database, uri, projection);
+                // The totals change whenever any product changes
+                uri = ProductContract.ProductEntry.CONTENT_URI;
+                break;
+            case MOVEMENTS:
+                cursor = database.query(ProductContract.StockMovementEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                // Movements are added by product changes and removed by compaction
+                uri = ProductContract.BASE_CONTENT_URI;
+                break;
+            case MOVEMENT_SUMMARIES:
+                cursor = database.query(ProductContract.StockSummaryEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                uri = ProductContract.BASE_CONTENT_URI;
+                break;
+            case IMPORTS:
+                cursor = database.query(ProductContract.ImportEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                break;
+            case STOCK_ALERTS:
+                cursor = database.query(ProductContract.StockAlertEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                break;
+            case LOCATIONS:
+                cursor = database.query(ProductContract.LocationEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                break;
+            case LOCATION_ID:
+                selection = DatabaseUtils.concatenateWhere(selection, ProductContract.LocationEntry._ID + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[]{String.valueOf(ContentUris.parseId(uri))});
+                cursor = database.query(ProductContract.LocationEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                break;
+            case LOCATION_STOCK:
+            case LOCATION_STOCK_ID:
+                cursor = queryLocationStock(database, uri, match, projection, selection, selectionArgs, sortOrder);
+                // The stock changes with the products and the locations
+                uri = ProductContract.BASE_CONTENT_URI;
+                break;
+            case PRODUCT_STOCK:
+                // The product ID is bound twice in the table, before the selection
+                String productId = uri.getPathSegments().get(1);
+                selectionArgs = DatabaseUtils.appendSelectionArgs(new String[]{productId, productId}, selectionArgs);
+                if (sortOrder == null) {
+                    sortOrder = ProductContract.LocationStockEntry.COLUMN_LOCATION_ID;
+                }
+                cursor = database.query(StockLocations.PRODUCT_STOCK_TABLE, projection, selection, selectionArgs,
+                        null, null, sortOrder);
+                uri = ProductContract.BASE_CONTENT_URI;
+                break;
+            case SUPPLIERS:
+                cursor = database.query(ProductContract.SupplierEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                // Writing a product adds suppliers and changes their phones
+                uri = ProductContract.BASE_CONTENT_URI;
+                break;
+            case SUPPLIER_ID:
+                selection = DatabaseUtils.concatenateWhere(selection, ProductContract.SupplierEntry._ID + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[]{String.valueOf(ContentUris.parseId(uri))});
+                cursor = database.query(ProductContract.SupplierEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                uri = ProductContract.BASE_CONTENT_URI;
+                break;
+            case SUPPLIER_PRODUCTS:
+                // The products of a supplier, found through the supplier ID index
+                selection = DatabaseUtils.concatenateWhere(selection,
+                        ProductContract.ProductEntry.COLUMN_SUPPLIER_ID + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[]{uri.getPathSegments().get(1)});
+                cursor = database.query(SUPPLIER_PRODUCTS_TABLE, projection, selection, selectionArgs, null, null,
+                        sortOrder == null ? ProductContract.ProductEntry.SORT_ORDER_ID : sortOrder);
+                uri = ProductContract.BASE_CONTENT_URI;
+                break;
+            default:
+                throw new IllegalArgumentException("Cannot query unknown URI " + uri);
+        }
+        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        if (start != ProviderMetrics.OFF) {
+            // Counting the rows runs the query, so the time includes reading them
+            mMetrics.record(ProviderMetrics.OP_QUERY, metricsTarget(match), start, 0, cursor.getCount());
+        }
+        return cursor;
+    }
+
+    /**
+     * Query the stock of every product, or of one product, at a location, in product ID order
+     * unless a sort order is given. Only the products with stock there have a row. The stock
+     * at the default location is read from the products table, which lists every product, so
+     * its rows are the ones with anything left beyond the other locations.
+     */
+    private static Cursor queryLocationStock(SQLiteDatabase database, Uri uri, int match, String[] projection,
+                                             String selection, String[] selectionArgs, String sortOrder) {
+        List<String> segments = uri.getPathSegments();
+        long locationId = Long.parseLong(segments.get(1));
+        if (match == LOCATION_STOCK_ID) {
+            selection = DatabaseUtils.concatenateWhere(selection,
+                    ProductContract.LocationStockEntry.COLUMN_PRODUCT_ID + "=?");
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, new String[]{segments.get(3)});
+        }
+        String table;
+        if (locationId == ProductContract.LocationEntry.DEFAULT_LOCATION_ID) {
+            table = StockLocations.DEFAULT_STOCK_TABLE;
+            selection = DatabaseUtils.concatenateWhere(selection,
+                    ProductContract.LocationStockEntry.COLUMN_QUANTITY + "!=0");
+        } else {
+            table = ProductContract.LocationStockEntry.TABLE_NAME;
+            selection = DatabaseUtils.concatenateWhere(selection,
+                    ProductContract.LocationStockEntry.COLUMN_LOCATION_ID + "=?");
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, new String[]{String.valueOf(locationId)});
+        }
+        return database.query(table, projection, selection, selectionArgs, null, null,
+                sortOrder == null ? ProductContract.LocationStockEntry.COLUMN_PRODUCT_ID : sortOrder);
+    }
+
+    /**
+     * Return the {@link #METRICS_TARGETS} index of a URI matcher code.
+     */
+    private static int metricsTarget(int match) {
+        return match - PRODUCTS;
+    }
+
+    /**
+     * Compute the inventory totals from {@link #mInventory}, loading it first if it is out of
+     * date. The first row holds the totals of all products, the others those of each type.
+     */
+    private Cursor queryStats(SQLiteDatabase database, Uri uri, String[] projection) {
+        String lowStock = uri.getQueryParameter(ProductContract.ProductEntry.QUERY_PARAMETER_LOW_STOCK);
+        int threshold = lowStock == null ? ProductContract.ProductEntry.DEFAULT_LOW_STOCK_THRESHOLD
+                : (int) parseLong(lowStock, uri);
+
+        InventorySnapshot.Totals totals;
+        // Holding the lock while loading makes writers wait, so none of them is applied to the
+        // snapshot before the rows it is loaded from
+        synchronized (mInventory) {
+            if (!mInventory.isValid()) {
+                loadInventory(database);
+            }
+            totals = mInventory.aggregate(threshold);
+        }
+
+        String[] columns = projection != null ? projection : STATS_COLUMNS;
+        int[] columnIndexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columnIndexes[i] = Arrays.asList(STATS_COLUMNS).indexOf(columns[i]);
+            if (columnIndexes[i] == -1) {
+                throw new IllegalArgumentException("Unknown column " + columns[i] + " for " + uri);
+            }
+        }
+
+        long[] all = new long[STATS_COLUMNS.length];
+        all[0] = ProductContract.ProductEntry.STATS_TYPE_ALL;
+        for (int i = 0; i < totals.typeCount; i++) {
+            all[1] += totals.productCounts[i];
+            all[2] += totals.stockQuantities[i];
+            all[3] += totals.stockValues[i];
+            all[4] += totals.lowStockCounts[i];
+        }
+        MatrixCursor cursor = new MatrixCursor(columns, totals.typeCount + 1);
+        addStatsRow(cursor, columnIndexes, all);
+        for (int i = 0; i < totals.typeCount; i++) {
+            addStatsRow(cursor, columnIndexes, new long[]{totals.types[i], totals.productCounts[i],
+                    totals.stockQuantities[i], totals.stockValues[i], totals.lowStockCounts[i]});
+        }
+        return cursor;
+    }
+
+    private static void addStatsRow(MatrixCursor cursor, int[] columnIndexes, long[] row) {
+        Object[] values = new Object[columnIndexes.length];
+        for (int i = 0; i < columnIndexes.length; i++) {
+            values[i] = row[columnIndexes[i]];
+        }
+        cursor.addRow(values);
+    }
+
+    /**
+     * Load {@link #mInventory} from the products table. The caller holds its lock.
+     */
+    private void loadInventory(SQLiteDatabase database) {
+        boolean loaded = false;
+        Cursor cursor = database.rawQuery(SQL_QUERY_INVENTORY, null);
+        try {
+            mInventory.clear();
+            while (cursor.moveToNext()) {
+                mInventory.put(cursor.getLong(0), cursor.getInt(1), cursor.getInt(2), cursor.getInt(3));
+            }
+            loaded = true;
+        } finally {
+            cursor.close();
+            if (!loaded) {
+                mInventory.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Bring the products with IDs from first to last in {@link #mInventory} up to date with
+     * the table, after a write of them has committed. The rows are read again rather than taken
+     * from the write, since two writes of the same product may get here in another order than
+     * they committed, and whichever reads last reads the latest commit. Inside
+     * {@link #applyBatch} nothing has committed yet, the batch invalidates the snapshot once it
+     * has.
+     */
+    private void refreshInventory(long firstId, long lastId) {
+        if (mBatchState.get() != null) {
+            return;
+        }
+        synchronized (mInventory) {
+            if (!mInventory.isValid()) {
+                // The next load reads them anyway
+                return;
+            }
+            boolean refreshed = false;
+            Cursor cursor = localDbHelper.getReadableDatabase().rawQuery(SQL_QUERY_INVENTORY_RANGE,
+                    new String[]{String.valueOf(firstId), String.valueOf(lastId)});
+            try {
+                long next = firstId;
+                while (cursor.moveToNext()) {
+                    long id = cursor.getLong(0);
+                    // IDs without a row were deleted in the meantime
+                    for (; next < id; next++) {
+                        mInventory.remove(next);
+                    }
+                    mInventory.put(id, cursor.getInt(1), cursor.getInt(2), cursor.getInt(3));
+                    next = id + 1;
+                }
+                for (; next <= lastId; next++) {
+                    mInventory.remove(next);
+                }
+                refreshed = true;
+            } finally {
+                cursor.close();
+                if (!refreshed) {
+                    mInventory.invalidate();
+                }
+            }
+        }
+    }
+
+    /**
+     * Query a single product through {@link #mProductCache}, reading and caching the whole row
+     * on a miss. Return null if the product doesn't exist or the projection asks for something
+     * other than plain columns, so the caller queries the database instead.
+     */
+    private Cursor queryCachedProduct(SQLiteDatabase database, long id, String[] projection) {
+        ContentValues row = mProductCache.get(id);
+        if (row == null) {
+            // Taken before reading, so a write racing with the read keeps the row out of the cache
+            long generation = mProductCache.generation();
+            Cursor cursor = database.query(ProductDbHelper.PRODUCTS_WITH_SUPPLIERS, null,
+                    ProductContract.ProductEntry._ID + "=?", new String[]{String.valueOf(id)},
+                    null, null, null);
+            try {
+                if (!cursor.moveToFirst()) {
+                    return null;
+                }
+                row = readRow(cursor);
+                mTableColumns = cursor.getColumnNames();
+            } finally {
+                cursor.close();
+            }
+            mProductCache.put(id, row, generation);
+        }
+
+        String[] columns = projection != null ? projection : mTableColumns;
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (!row.containsKey(columns[i])) {
+                return null;
+            }
+            values[i] = row.get(columns[i]);
+        }
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        cursor.addRow(values);
+        return cursor;
+    }
+
+    /**
+     * Copy the current row of the given cursor, keeping the storage class of every value.
+     */
+    private static ContentValues readRow(Cursor cursor) {
+        ContentValues row = new ContentValues(cursor.getColumnCount());
+        for (int i = 0; i < cursor.getColumnCount(); i++) {
+            String column = cursor.getColumnName(i);
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    row.put(column, cursor.getLong(i));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    row.put(column, cursor.getDouble(i));
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    row.put(column, cursor.getString(i));
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    row.put(column, cursor.getBlob(i));
+                    break;
+                default:
+                    row.putNull(column);
+                    break;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Query the products table, applying the filter, sort and paging query parameters of the
+     * given URI. The sort and keyset parameters decide the sort order, so they can't be
+     * combined with a different one. If asked to, filtered queries are run through the index
+     * {@link ProductFilter} picks for them. The signal may be null.
+     */
+    private static Cursor queryProducts(SQLiteDatabase database, Uri uri, String[] projection,
+                                        String selection, String[] selectionArgs, String sortOrder,
+                                        boolean useFilterIndex, CancellationSignal cancellationSignal) {
+        ProductFilter filter = parseFilter(uri);
+        if (filter.selection != null) {
+            selection = DatabaseUtils.concatenateWhere(selection, filter.selection);
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, filter.selectionArgs);
+        }
+        if (filter.sortOrder != null) {
+            if (sortOrder != null && !sortOrder.equals(filter.sortOrder)) {
+                throw new IllegalArgumentException("Sort parameters conflict with sort order " + sortOrder
+                        + " for " + uri);
+            }
+            sortOrder = filter.sortOrder;
+        }
+
+        String limit = uri.getQueryParameter(ProductContract.ProductEntry.QUERY_PARAMETER_LIMIT);
+        String offset = uri.getQueryParameter(ProductContract.ProductEntry.QUERY_PARAMETER_OFFSET);
+        String afterId = uri.getQueryParameter(ProductContract.ProductEntry.QUERY_PARAMETER_AFTER_ID);
+        String afterName = uri.getQueryParameter(ProductContract.ProductEntry.QUERY_PARAMETER_AFTER_NAME);
+
+        String keysetOrder = null;
+        if (afterName != null) {
+            // Rows after (name, _id) in name order, served by the name index
+            keysetOrder = ProductContract.ProductEntry.SORT_ORDER_NAME;
+            if (afterId == null) {
+                selection = DatabaseUtils.concatenateWhere(selection,
+                        ProductContract.ProductEntry.COLUMN_PRODUCT_NAME + " > ? COLLATE NOCASE");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, new String[]{afterName});
+            } else {
+                selection = DatabaseUtils.concatenateWhere(selection,
+                        ProductContract.ProductEntry.COLUMN_PRODUCT_NAME + " > ? COLLATE NOCASE OR ("
+                                + ProductContract.ProductEntry.COLUMN_PRODUCT_NAME + " = ? COLLATE NOCASE AND "
+                                + ProductContract.ProductEntry._ID + " > ?)");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[]{afterName, afterName, String.valueOf(parseLong(afterId, uri))});
+            }
+        } else if (afterId != null) {
+            // Rows after _id in ID order, served by the primary key
+            keysetOrder = ProductContract.ProductEntry.SORT_ORDER_ID;
+            selection = DatabaseUtils.concatenateWhere(selection, ProductContract.ProductEntry._ID + " > ?");
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                    new String[]{String.valueOf(parseLong(afterId, uri))});
+        }
+        if (keysetOrder != null) {
+            if (sortOrder != null && !sortOrder.equals(keysetOrder)) {
+                throw new IllegalArgumentException("Keyset paging requires sort order " + keysetOrder + " for " + uri);
+            }
+            sortOrder = keysetOrder;
+        } else if (sortOrder == null && (limit != null || offset != null)) {
+            // Pages have to come back in a stable order
+            sortOrder = ProductContract.ProductEntry.SORT_ORDER_ID;
+        }
+
+        String limitClause = null;
+        if (limit != null) {
+            limitClause = String.valueOf(parseLong(limit, uri));
+            if (offset != null) {
+                limitClause = parseLong(offset, uri) + "," + limitClause;
+            }
+        } else if (offset != null) {
+            // SQLite only takes an offset together with a limit, -1 means no limit
+            limitClause = parseLong(offset, uri) + ",-1";
+        }
+
+        String table = useFilterIndex ? filter.getTable() : ProductDbHelper.PRODUCTS_WITH_SUPPLIERS;
+        if (cancellationSignal == null) {
+            return database.query(table, projection, selection, selectionArgs, null, null, sortOrder, limitClause);
+        }
+        return database.query(false, table, projection, selection, selectionArgs, null, null, sortOrder,
+                limitClause, cancellationSignal);
+    }
+
+    /**
+     * Parse the filter and sort query parameters of the given URI.
+     */
+    private static ProductFilter parseFilter(Uri uri) {
+        if (uri.getEncodedQuery() == null) {
+            return ProductFilter.NONE;
+        }
+        HashMap<String, String> parameters = new HashMap<>();
+        for (String name : ProductFilter.PARAMETERS) {
+            String value = uri.getQueryParameter(name);
+            if (value != null) {
+                parameters.put(name, value);
+            }
+        }
+        try {
+            return ProductFilter.parse(parameters);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(e.getMessage() + " for " + uri, e);
+        }
+    }
+
+    /**
+     * Parse a non-negative number from a query parameter of the given URI.
+     */
+    private static long parseLong(String value, Uri uri) {
+        try {
+            long number = Long.parseLong(value);
+            if (number >= 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through to the exception below
+        }
+        throw new IllegalArgumentException("Invalid query parameter " + value + " for " + uri);
+    }
+
+    /**
+     * Turn the search text typed by the user into a full-text query that matches every word as
+     * a prefix, e.g. "cat ha" becomes "cat* ha*". Characters with a meaning in the query syntax
+     * are dropped. Return null if there is nothing left to search for.
+     */
+    static String buildSearchMatch(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : text.trim().split("\\s+")) {
+            StringBuilder token = new StringBuilder(word.length());
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    token.append(c);
+                }
+            }
+            if (token.length() > 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(token).append('*');
+            }
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+
+    /**
+     * Updates the data at the given selection and selection arguments, with the new ContentValues.
+     */
+    @Override
+    public int update(Uri uri, ContentValues contentValues, String selection,
+                      String[] selectionArgs) {
+        long start = mMetrics.start();
+        int rowsUpdated;
+        final int match = sUriMatcher.match(uri);
+        switch (match) {
+            case PRODUCTS:
+                rowsUpdated = updateProduct(uri, contentValues, selection, selectionArgs);
+                break;
+            case PRODUCT_ID:
+                // For the PRODUCT_ID code, extract out the ID from the URI,
+                // so we know which row to update. Selection will be "_id=?" and selection
+                // arguments will be a String array containing the actual ID.
+                selection = ProductContract.ProductEntry._ID + "=?";
+                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                rowsUpdated = updateProduct(uri, contentValues, selection, selectionArgs);
+                break;
+            case LOCATION_ID:
+                selection = DatabaseUtils.concatenateWhere(selection, ProductContract.LocationEntry._ID + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[]{String.valueOf(ContentUris.parseId(uri))});
+                // Fall through, renaming is all there is to update
+            case LOCATIONS:
+                validateLocation(contentValues);
+                rowsUpdated = localDbHelper.getWritableDatabase().update(ProductContract.LocationEntry.TABLE_NAME,
+                        contentValues, selection, selectionArgs);
+                if (rowsUpdated != 0) {
+                    getContext().getContentResolver().notifyChange(ProductContract.LocationEntry.CONTENT_URI, null);
+                }
+                break;
+            case LOCATION_STOCK_ID:
+                rowsUpdated = updateLocationStock(uri, contentValues);
+                break;
+            case SUPPLIER_ID:
+                selection = DatabaseUtils.concatenateWhere(selection, ProductContract.SupplierEntry._ID + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[]{String.valueOf(ContentUris.parseId(uri))});
+                // Fall through
+            case SUPPLIERS:
+                rowsUpdated = updateSupplier(contentValues, selection, selectionArgs);
+                break;
+            default:
+                throw new IllegalArgumentException("Update is not supported for " + uri);
+        }
+        if (start != ProviderMetrics.OFF) {
+            mMetrics.record(ProviderMetrics.OP_UPDATE, metricsTarget(match), start, rowsUpdated, 0);
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Update pets in the database with the given content values. Apply the changes to the rows
+     * specified in the selection and selection arguments (which could be 0 or 1 or more pets).
+     * Return the number of rows that were successfully updated.
+     */
+    private int updateProduct(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+
+        // If there are no values to update, then don't try to update the database
+        if (values.size() == 0) {
+            return 0;
+        }
+        // Check every value that is present, e.g. that the name isn't null and the quantity
+        // isn't negative
+        ProductValidator.validateUpdate(values.valueSet());
+
+        int rowsUpdated;
+        long id = ProductChange.NO_ID;
+        boolean phoneChanged;
+        selection = selectProductRows(selection);
+        // Get writeable database to update the data
+        SQLiteDatabase database = localDbHelper.getWritableDatabase();
+        // Setting the quantity records the difference as a movement in the same transaction
+        Integer quantity = values.getAsInteger(ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY);
+        // Only a new quantity or reorder point can raise or clear a stock alert
+        Integer reorderPoint = values.getAsInteger(ProductContract.ProductEntry.COLUMN_REORDER_POINT);
+        boolean alertsChanged = false;
+        long now = System.currentTimeMillis();
+        database.beginTransaction();
+        try {
+            ContentValues row = new ContentValues(values.size());
+            if (mSuppliers.isMissing(values) && DatabaseUtils.queryNumEntries(database,
+                    ProductContract.ProductEntry.TABLE_NAME, selection, selectionArgs) == 0) {
+                // Nothing is going to refer to a supplier there is none of yet, so don't add it
+                phoneChanged = mSuppliers.toNewProductRow(values, row);
+            } else {
+                phoneChanged = mSuppliers.toProductRow(values, row);
+            }
+            if (values.containsKey(ProductContract.ProductEntry.COLUMN_SUPPLIER_PHONE)
+                    && !values.containsKey(ProductContract.ProductEntry.COLUMN_SUPPLIER_NAME)) {
+                // A phone on its own is the phone of the suppliers of the products
+                phoneChanged = mSuppliers.setPhones(selection, selectionArgs,
+                        values.getAsString(ProductContract.ProductEntry.COLUMN_SUPPLIER_PHONE)) != 0;
+            }
+            if (sUriMatcher.match(uri) == PRODUCT_ID) {
+                // Editing a single product is the hot path, run it through a cached statement
+                id = ContentUris.parseId(uri);
+                if (quantity != null && quantity < mLocations.getLocated(id)) {
+                    throw new IllegalArgumentException("Product quantity is below its stock at other locations");
+                }
+                if (quantity != null) {
+                    mLedger.recordAdjustment(id, quantity, now);
+                }
+                if (quantity != null || reorderPoint != null) {
+                    alertsChanged = mAlerts.recordUpdate(id, quantity, reorderPoint, now);
+                }
+                rowsUpdated = updateProductById(id, row);
+            } else {
+                if (quantity != null && mLocations.anyLocatedAbove(selection, selectionArgs, quantity)) {
+                    throw new IllegalArgumentException("Product quantity is below its stock at other locations");
+                }
+                if (quantity != null) {
+                    mLedger.recordAdjustments(selection, selectionArgs, quantity, now);
+                }
+                if (quantity != null || reorderPoint != null) {
+                    alertsChanged = mAlerts.recordUpdates(selection, selectionArgs, quantity, reorderPoint, now);
+                }
+                // Perform the update on the database and get the number of rows affected
+                rowsUpdated = row.size() == 0 ? 0
+                        : database.update(ProductContract.ProductEntry.TABLE_NAME, row, selection, selectionArgs);
+            }
+            if (row.size() == 0) {
+                // Only the phone was set, which only the products with a supplier have
+                rowsUpdated = (int) DatabaseUtils.queryNumEntries(database, ProductContract.ProductEntry.TABLE_NAME,
+                        DatabaseUtils.concatenateWhere(selection,
+                                ProductContract.ProductEntry.COLUMN_SUPPLIER_ID + " IS NOT NULL"), selectionArgs);
+            }
+            // Always successful, even if nothing matched: inside applyBatch this transaction is
+            // nested, and ending it unsuccessfully would roll back the whole batch
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
         // If 1 or more rows were updated, then notify all listeners that the data at the
         // given URI has changed
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            updateCache(id);
+            notifyChange(new ProductChange(ProductChange.OP_UPDATE, id, values.keySet()));
+        }
+        if (phoneChanged) {
+            supplierPhoneChanged();
+        }
+        if (alertsChanged) {
+            scheduleAlertNotification();
         }
         // Return the number of rows updated
         return rowsUpdated;
     }
 
 
+    /**
+     * Rename suppliers or change their phones, which changes every product from them. Return
+     * the number of suppliers updated.
+     */
+    private int updateSupplier(ContentValues values, String selection, String[] selectionArgs) {
+        validateSupplier(values, false);
+        int rowsUpdated = localDbHelper.getWritableDatabase().update(ProductContract.SupplierEntry.TABLE_NAME,
+                values, selection, selectionArgs);
+        if (rowsUpdated != 0) {
+            // The supplier columns of the products change with the suppliers
+            List<String> columns = new ArrayList<>(2);
+            if (values.containsKey(ProductContract.SupplierEntry.COLUMN_SUPPLIER_NAME)) {
+                columns.add(ProductContract.ProductEntry.COLUMN_SUPPLIER_NAME);
+            }
+            if (values.containsKey(ProductContract.SupplierEntry.COLUMN_SUPPLIER_PHONE)) {
+                columns.add(ProductContract.ProductEntry.COLUMN_SUPPLIER_PHONE);
+            }
+            mProductCache.clear();
+            getContext().getContentResolver().notifyChange(ProductContract.SupplierEntry.CONTENT_URI, null);
+            notifyChange(new ProductChange(ProductChange.OP_UPDATE, ProductChange.NO_ID, columns));
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Set the stock of one product at one location, changing the quantity of the product by as
+     * much in the same transaction, along with its stock movement and alert. Return the number
+     * of products updated, 0 if there is no such product.
+     */
+    private int updateLocationStock(Uri uri, ContentValues values) {
+        List<String> segments = uri.getPathSegments();
+        long locationId = Long.parseLong(segments.get(1));
+        long id = Long.parseLong(segments.get(3));
+        Integer stock = values.getAsInteger(ProductContract.LocationStockEntry.COLUMN_QUANTITY);
+        if (values.size() != 1 || stock == null || stock < 0) {
+            throw new IllegalArgumentException("Stock requires valid quantity");
+        }
+
+        SQLiteDatabase database = localDbHelper.getWritableDatabase();
+        ContentValues productValues = new ContentValues(1);
+        long total;
+        boolean alertsChanged = false;
+        database.beginTransaction();
+        try {
+            if (!mLocations.exists(locationId)) {
+                throw new IllegalArgumentException("Unknown location " + uri);
+            }
+            total = mLocations.getTotal(id);
+            long difference = total == -1 ? 0 : stock - mLocations.getStock(id, locationId);
+            if (difference != 0) {
+                int quantity = (int) (total + difference);
+                long now = System.currentTimeMillis();
+                mLedger.recordMovement(id, difference, ProductContract.StockMovementEntry.REASON_ADJUSTMENT, now);
+                alertsChanged = mAlerts.recordUpdate(id, quantity, null, now);
+                if (locationId != ProductContract.LocationEntry.DEFAULT_LOCATION_ID) {
+                    mLocations.setStock(id, locationId, stock);
+                }
+                productValues.put(ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY, quantity);
+                updateProductById(id, productValues);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (total == -1) {
+            return 0;
+        }
+        if (productValues.size() != 0) {
+            updateCache(id);
+            notifyChange(new ProductChange(ProductChange.OP_UPDATE, id, productValues.keySet()));
+        }
+        if (alertsChanged) {
+            scheduleAlertNotification();
+        }
+        return 1;
+    }
+
+    /**
+     * Refresh an updated product in {@link #mInventory} and drop it from
+     * {@link #mProductCache}, or drop every product if the update wasn't limited to one.
+     * Called after the commit, when two writes of the same product may get here in another
+     * order than they committed, so the cached row is dropped rather than updated and the next
+     * read loads the committed one.
+     */
+    private void updateCache(long id) {
+        if (id == ProductChange.NO_ID) {
+            mProductCache.clear();
+            mInventory.invalidate();
+            return;
+        }
+        refreshInventory(id, id);
+        mProductCache.remove(id);
+    }
+
+    /**
+     * Drop every product from {@link #mProductCache} and notify a change of the phone of every
+     * product, after a write set the phone of a supplier that other products may share.
+     */
+    private void supplierPhoneChanged() {
+        mProductCache.clear();
+        notifyChange(new ProductChange(ProductChange.OP_UPDATE, ProductChange.NO_ID,
+                Collections.singleton(ProductContract.ProductEntry.COLUMN_SUPPLIER_PHONE)));
+    }
+
+    /**
+     * Rewrite a selection of products, which may name the supplier columns, into one on the
+     * products table alone. Return null for no selection.
+     */
+    private static String selectProductRows(String selection) {
+        if (selection == null) {
+            return null;
+        }
+        return ProductContract.ProductEntry._ID + " IN (SELECT " + ProductContract.ProductEntry._ID + " FROM "
+                + ProductDbHelper.PRODUCTS_WITH_SUPPLIERS + " WHERE " + selection + ")";
+    }
+
+    /**
+     * Update a single product through a cached statement. The columns are sorted so the same
+     * set of columns always maps to the same SQL and reuses the same compiled statement.
+     * Return the number of rows updated.
+     */
+    private int updateProductById(long id, ContentValues values) {
+        if (values.size() == 0) {
+            return 0;
+        }
+        Set<String> columns = new TreeSet<>(values.keySet());
+        StringBuilder sql = new StringBuilder("UPDATE ")
+                .append(ProductContract.ProductEntry.TABLE_NAME).append(" SET ");
+        boolean first = true;
+        for (String column : columns) {
+            if (!first) {
+                sql.append(", ");
+            }
+            sql.append(column).append(" = ?");
+            first = false;
+        }
+        sql.append(" WHERE ").append(ProductContract.ProductEntry._ID).append(" = ?");
+
+        String updateSql = sql.toString();
+        SQLiteStatement statement = localDbHelper.acquireStatement(updateSql);
+        try {
+            int index = 1;
+            for (String column : columns) {
+                DatabaseUtils.bindObjectToProgram(statement, index++, values.get(column));
+            }
+            statement.bindLong(index, id);
+            return statement.executeUpdateDelete();
+        } finally {
+            localDbHelper.releaseStatement(updateSql, statement);
+        }
+    }
+
     /**
      * Delete the data at the given selection and selection arguments.
      */
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
+        long start = mMetrics.start();
         // Get writeable database
         SQLiteDatabase database = localDbHelper.getWritableDatabase();
         // Track the number of rows that were deleted
         int rowsDeleted;
+        long id = ProductChange.NO_ID;
 
         final int match = sUriMatcher.match(uri);
-        switch (match) {
-            case PRODUCTS:
-                //delete all products that match selection criteria
-                rowsDeleted = database.delete(ProductContract.ProductEntry.TABLE_NAME, selection, selectionArgs);
-                break;
-            case PRODUCT_ID:
-                // Delete a single row given by the ID in the URI
-                selection = ProductContract.ProductEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                rowsDeleted = database.delete(ProductContract.ProductEntry.TABLE_NAME, selection, selectionArgs);
-                break;
-            default:
-                throw new IllegalArgumentException("Deletion is not supported for " + uri);
+        if (match == IMPORTS || match == STOCK_ALERTS) {
+            // Only checkpoints or dismissed alerts, the products stay
+            rowsDeleted = database.delete(match == IMPORTS ? ProductContract.ImportEntry.TABLE_NAME
+                    : ProductContract.StockAlertEntry.TABLE_NAME, selection, selectionArgs);
+            if (rowsDeleted != 0) {
+                getContext().getContentResolver().notifyChange(uri, null);
+            }
+            if (start != ProviderMetrics.OFF) {
+                mMetrics.record(ProviderMetrics.OP_DELETE, metricsTarget(match), start, rowsDeleted, 0);
+            }
+            return rowsDeleted;
+        }
+        if (match == LOCATION_ID || match == SUPPLIER_ID) {
+            rowsDeleted = match == LOCATION_ID ? deleteLocation(ContentUris.parseId(uri))
+                    : deleteSupplier(ContentUris.parseId(uri));
+            if (start != ProviderMetrics.OFF) {
+                mMetrics.record(ProviderMetrics.OP_DELETE, metricsTarget(match), start, rowsDeleted, 0);
+            }
+            return rowsDeleted;
+        }
+        if (match != PRODUCTS && match != PRODUCT_ID) {
+            throw new IllegalArgumentException("Deletion is not supported for " + uri);
+        }
+        // The stock of the deleted products is recorded as a movement in the same transaction
+        database.beginTransaction();
+        try {
+            switch (match) {
+                case PRODUCTS:
+                    //delete all products that match selection criteria
+                    selection = selectProductRows(selection);
+                    mLedger.recordDeletions(selection, selectionArgs, System.currentTimeMillis());
+                    rowsDeleted = database.delete(ProductContract.ProductEntry.TABLE_NAME, selection, selectionArgs);
+                    break;
+                default:
+                    // Delete a single row given by the ID in the URI
+                    id = ContentUris.parseId(uri);
+                    mLedger.recordDeletion(id, System.currentTimeMillis());
+                    SQLiteStatement statement = localDbHelper.acquireStatement(SQL_DELETE_PRODUCT);
+                    try {
+                        statement.bindLong(1, id);
+                        rowsDeleted = statement.executeUpdateDelete();
+                    } finally {
+                        localDbHelper.releaseStatement(SQL_DELETE_PRODUCT, statement);
+                    }
+                    break;
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
         }
         // If 1 or more rows were deleted, then notify all listeners that the data at the
         // given URI has changed
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            if (id != ProductChange.NO_ID) {
+                mProductCache.remove(id);
+                mInventory.remove(id);
+            } else {
+                mProductCache.clear();
+                mInventory.invalidate();
+            }
+            notifyChange(new ProductChange(ProductChange.OP_DELETE, id, null));
+        }
+        if (start != ProviderMetrics.OFF) {
+            mMetrics.record(ProviderMetrics.OP_DELETE, metricsTarget(match), start, rowsDeleted, 0);
         }
         // Return the number of rows deleted
         return rowsDeleted;
     }
 
+    /**
+     * Delete a stock location, moving its stock back to the default location in the same
+     * transaction. The quantities of the products stay the same. Return the number of
+     * locations deleted.
+     */
+    private int deleteLocation(long locationId) {
+        if (locationId == ProductContract.LocationEntry.DEFAULT_LOCATION_ID) {
+            throw new IllegalArgumentException("The default location can't be deleted");
+        }
+        SQLiteDatabase database = localDbHelper.getWritableDatabase();
+        int rowsDeleted;
+        database.beginTransaction();
+        try {
+            mLocations.returnToDefault(locationId);
+            rowsDeleted = database.delete(ProductContract.LocationEntry.TABLE_NAME,
+                    ProductContract.LocationEntry._ID + "=?", new String[]{String.valueOf(locationId)});
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (rowsDeleted != 0) {
+            getContext().getContentResolver().notifyChange(ProductContract.LocationEntry.CONTENT_URI, null);
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Delete a supplier that no product is from anymore. Return the number of suppliers
+     * deleted.
+     */
+    private int deleteSupplier(long supplierId) {
+        SQLiteDatabase database = localDbHelper.getWritableDatabase();
+        int rowsDeleted;
+        database.beginTransaction();
+        try {
+            if (mSuppliers.hasProducts(supplierId)) {
+                throw new IllegalArgumentException("Supplier " + supplierId + " still has products");
+            }
+            rowsDeleted = database.delete(ProductContract.SupplierEntry.TABLE_NAME,
+                    ProductContract.SupplierEntry._ID + "=?", new String[]{String.valueOf(supplierId)});
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (rowsDeleted != 0) {
+            getContext().getContentResolver().notifyChange(ProductContract.SupplierEntry.CONTENT_URI, null);
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Open the {@link ProductContract.ProductEntry#EXPORT_URI} for reading. The products are
+     * written into a pipe by a background thread while the caller reads the other end, so
+     * nothing is staged in a file.
+     */
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != PRODUCT_EXPORT) {
+            throw new FileNotFoundException("No file at " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Export can only be read: " + uri);
+        }
+        return openPipeHelper(uri, getType(uri), null, exportFormat(uri), new PipeDataWriter<String>() {
+            @Override
+            public void writeDataToPipe(ParcelFileDescriptor output, Uri uri, String mimeType, Bundle opts,
+                                        String format) {
+                long start = mMetrics.start();
+                long rows = 0;
+                // Not closed, the descriptor belongs to the pipe, which closes it after this
+                FileOutputStream out = new FileOutputStream(output.getFileDescriptor());
+                try {
+                    rows = exportProducts(out.getChannel(), format);
+                } catch (IOException e) {
+                    // Usually the reader closed its end before the end of the export
+                    Log.w(LOG_TAG, "Export of " + uri + " stopped", e);
+                }
+                if (start != ProviderMetrics.OFF) {
+                    mMetrics.record(ProviderMetrics.OP_EXPORT, metricsTarget(PRODUCT_EXPORT), start, 0, rows);
+                }
+            }
+        });
+    }
+
+    /**
+     * Return the export format asked for by the given URI.
+     */
+    private static String exportFormat(Uri uri) {
+        String format = uri.getQueryParameter(ProductContract.ProductEntry.QUERY_PARAMETER_FORMAT);
+        if (format == null) {
+            return ProductContract.ProductEntry.EXPORT_FORMAT_CSV;
+        }
+        if (!format.equals(ProductContract.ProductEntry.EXPORT_FORMAT_CSV)
+                && !format.equals(ProductContract.ProductEntry.EXPORT_FORMAT_NDJSON)) {
+            throw new IllegalArgumentException("Unknown export format " + format + " for " + uri);
+        }
+        return format;
+    }
+
+    /**
+     * Write every product to the given channel in ID order, reading them
+     * {@link #EXPORT_CHUNK_SIZE} at a time. Each chunk is a query of its own, so writers are
+     * never held up for longer than one chunk. Return the number of products written.
+     */
+    private long exportProducts(WritableByteChannel channel, String format) throws IOException {
+        SQLiteDatabase database = localDbHelper.getReadableDatabase();
+        ExportWriter writer = null;
+        long rows = 0;
+        long lastId = 0;
+        int chunkRows;
+        do {
+            Cursor cursor = database.rawQuery(SQL_EXPORT_CHUNK, new String[]{String.valueOf(lastId)});
+            try {
+                if (writer == null) {
+                    writer = new ExportWriter(channel, format, cursor.getColumnNames());
+                }
+                int idIndex = cursor.getColumnIndexOrThrow(ProductContract.ProductEntry._ID);
+                chunkRows = cursor.getCount();
+                while (cursor.moveToNext()) {
+                    for (int i = 0; i < cursor.getColumnCount(); i++) {
+                        switch (cursor.getType(i)) {
+                            case Cursor.FIELD_TYPE_INTEGER:
+                                writer.writeLong(cursor.getLong(i));
+                                break;
+                            case Cursor.FIELD_TYPE_NULL:
+                                writer.writeString(null);
+                                break;
+                            default:
+                                writer.writeString(cursor.getString(i));
+                                break;
+                        }
+                    }
+                    writer.endRow();
+                    lastId = cursor.getLong(idIndex);
+                }
+            } finally {
+                cursor.close();
+            }
+            rows += chunkRows;
+        } while (chunkRows == EXPORT_CHUNK_SIZE);
+        writer.flush();
+        return rows;
+    }
+
+    /**
+     * Handle the provider specific methods declared in {@link ProductContract.ProductEntry}.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        switch (method) {
+            case ProductContract.ProductEntry.METHOD_SELL:
+                long start = mMetrics.start();
+                int amount = extras == null ? 1 : extras.getInt(ProductContract.ProductEntry.EXTRA_AMOUNT, 1);
+                int quantity = sellProduct(parseProductId(arg, "Sale"), null, amount).quantity;
+                if (start != ProviderMetrics.OFF) {
+                    mMetrics.record(ProviderMetrics.OP_SELL, metricsTarget(PRODUCT_ID), start, quantity == -1 ? 0 : 1, 0);
+                }
+                Bundle result = new Bundle();
+                result.putInt(ProductContract.ProductEntry.EXTRA_QUANTITY, quantity);
+                return result;
+            case ProductContract.ProductEntry.METHOD_SELL_SKU:
+                if (arg == null) {
+                    throw new IllegalArgumentException("Sale requires a SKU");
+                }
+                long skuStart = mMetrics.start();
+                int skuAmount = extras == null ? 1 : extras.getInt(ProductContract.ProductEntry.EXTRA_AMOUNT, 1);
+                Sale sale = sellProduct(-1, arg, skuAmount);
+                if (skuStart != ProviderMetrics.OFF) {
+                    mMetrics.record(ProviderMetrics.OP_SELL, metricsTarget(PRODUCT_SKU), skuStart,
+                            sale.quantity == -1 ? 0 : 1, 0);
+                }
+                Bundle skuResult = new Bundle();
+                skuResult.putInt(ProductContract.ProductEntry.EXTRA_QUANTITY, sale.quantity);
+                skuResult.putLong(ProductContract.ProductEntry.EXTRA_PRODUCT_ID, sale.id);
+                return skuResult;
+            case ProductContract.ProductEntry.METHOD_CACHE_STATS:
+                Bundle stats = new Bundle();
+                stats.putLong(ProductContract.ProductEntry.EXTRA_CACHE_HITS, mProductCache.getHits());
+                stats.putLong(ProductContract.ProductEntry.EXTRA_CACHE_MISSES, mProductCache.getMisses());
+                stats.putLong(ProductContract.ProductEntry.EXTRA_CACHE_EVICTIONS, mProductCache.getEvictions());
+                stats.putInt(ProductContract.ProductEntry.EXTRA_CACHE_SIZE, mProductCache.size());
+                stats.putInt(ProductContract.ProductEntry.EXTRA_CACHE_CAPACITY, mProductCache.capacity());
+                return stats;
+            case ProductContract.ProductEntry.METHOD_METRICS:
+                Bundle metrics = mMetrics.snapshot();
+                if (ProductContract.ProductEntry.METRICS_ENABLE.equals(arg)) {
+                    mMetrics.setEnabled(true);
+                } else if (ProductContract.ProductEntry.METRICS_DISABLE.equals(arg)) {
+                    mMetrics.setEnabled(false);
+                } else if (ProductContract.ProductEntry.METRICS_RESET.equals(arg)) {
+                    mMetrics.reset();
+                }
+                return metrics;
+            case ProductContract.ProductEntry.METHOD_SYNC:
+                if (arg == null) {
+                    throw new IllegalArgumentException("Sync requires a server URL");
+                }
+                Bundle started = new Bundle();
+                started.putBoolean(ProductContract.ProductEntry.EXTRA_SYNC_STARTED, startSync(arg));
+                return started;
+            case ProductContract.ProductEntry.METHOD_SYNC_RESULT:
+                Bundle syncResult = mSyncResult;
+                return syncResult == null ? new Bundle() : new Bundle(syncResult);
+            case ProductContract.LocationStockEntry.METHOD_TRANSFER:
+                long transferId = parseProductId(arg, "Transfer");
+                if (extras == null
+                        || !extras.containsKey(ProductContract.LocationStockEntry.EXTRA_FROM_LOCATION)
+                        || !extras.containsKey(ProductContract.LocationStockEntry.EXTRA_TO_LOCATION)) {
+                    throw new IllegalArgumentException("Transfer requires two locations");
+                }
+                long transferStart = mMetrics.start();
+                long left = transferStock(transferId,
+                        extras.getLong(ProductContract.LocationStockEntry.EXTRA_FROM_LOCATION),
+                        extras.getLong(ProductContract.LocationStockEntry.EXTRA_TO_LOCATION),
+                        extras.getInt(ProductContract.ProductEntry.EXTRA_AMOUNT, 1));
+                if (transferStart != ProviderMetrics.OFF) {
+                    mMetrics.record(ProviderMetrics.OP_UPDATE, metricsTarget(LOCATION_STOCK_ID), transferStart,
+                            left == -1 ? 0 : 2, 0);
+                }
+                Bundle transferResult = new Bundle();
+                transferResult.putInt(ProductContract.ProductEntry.EXTRA_QUANTITY, (int) left);
+                return transferResult;
+            default:
+                return super.call(method, arg, extras);
+        }
+    }
+
+    /**
+     * Parse the product ID passed as the argument of a {@link #call} method, named by the given
+     * operation in the exception thrown for a missing or malformed ID.
+     */
+    private static long parseProductId(String arg, String operation) {
+        if (arg != null) {
+            try {
+                return Long.parseLong(arg);
+            } catch (NumberFormatException e) {
+                // Fall through to the exception below
+            }
+        }
+        throw new IllegalArgumentException(operation + " requires a product ID, not " + arg);
+    }
+
+    /**
+     * Result of {@link #sellProduct}.
+     */
+    private static final class Sale {
+        /** The product sold, -1 if no product has the SKU */
+        long id;
+        /** The quantity left, -1 if nothing was sold */
+        int quantity = -1;
+
+        Sale(long id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Sell the given amount of a product, given either its ID or, if the SKU isn't null, its
+     * SKU. The SKU is resolved in the same transaction as the sale, so a scanned product can't
+     * be deleted or change its SKU in between. The quantity is decremented in the database
+     * itself, so there is no read-modify-write race between concurrent sales, and the sale is
+     * appended to the stock movements in the same transaction. The quantity left is -1 if the
+     * product doesn't exist or doesn't have enough stock.
+     */
+    private Sale sellProduct(long id, String sku, int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Sale requires a positive amount");
+        }
+        // Get writeable database
+        SQLiteDatabase database = localDbHelper.getWritableDatabase();
+        Sale sale = new Sale(id);
+        boolean alertRaised = false;
+
+        database.beginTransaction();
+        SQLiteStatement lookup = sku == null ? null : localDbHelper.acquireStatement(SQL_QUERY_SKU);
+        SQLiteStatement sell = localDbHelper.acquireStatement(StockLocations.SQL_SELL_PRODUCT);
+        SQLiteStatement readBack = localDbHelper.acquireStatement(SQL_QUERY_QUANTITY);
+        try {
+            if (lookup != null) {
+                lookup.bindString(1, sku);
+                try {
+                    id = lookup.simpleQueryForLong();
+                } catch (SQLiteDoneException e) {
+                    // No product has the SKU, there is nothing to sell
+                    id = -1;
+                }
+                sale.id = id;
+            }
+            sell.bindLong(1, amount);
+            sell.bindLong(2, id);
+            sell.bindLong(3, amount);
+            if (sell.executeUpdateDelete() == 1) {
+                readBack.bindLong(1, id);
+                sale.quantity = (int) readBack.simpleQueryForLong();
+                long now = System.currentTimeMillis();
+                mLedger.recordMovement(id, -amount, ProductContract.StockMovementEntry.REASON_SALE, now);
+                alertRaised = mAlerts.recordSale(id, amount, now);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            if (lookup != null) {
+                localDbHelper.releaseStatement(SQL_QUERY_SKU, lookup);
+            }
+            localDbHelper.releaseStatement(StockLocations.SQL_SELL_PRODUCT, sell);
+            localDbHelper.releaseStatement(SQL_QUERY_QUANTITY, readBack);
+            database.endTransaction();
+        }
+
+        // Only the sold product has changed
+        if (sale.quantity != -1) {
+            updateCache(id);
+            notifyChange(new ProductChange(ProductChange.OP_UPDATE, id,
+                    Collections.singleton(ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY)));
+        }
+        if (alertRaised) {
+            scheduleAlertNotification();
+        }
+        return sale;
+    }
+
+    /**
+     * Move the given amount of a product from one location to another in a single transaction.
+     * The quantity of the product stays the same, so neither the product list nor the stock
+     * movements change. Return the stock left at the first location, or -1 if it didn't have
+     * enough or there is no such product.
+     */
+    private long transferStock(long id, long fromLocationId, long toLocationId, int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Transfer requires a positive amount");
+        }
+        if (fromLocationId == toLocationId) {
+            throw new IllegalArgumentException("Transfer requires two different locations");
+        }
+        SQLiteDatabase database = localDbHelper.getWritableDatabase();
+        long left;
+        database.beginTransaction();
+        try {
+            if (!mLocations.exists(fromLocationId) || !mLocations.exists(toLocationId)) {
+                throw new IllegalArgumentException("Transfer requires two existing locations");
+            }
+            left = mLocations.transfer(id, fromLocationId, toLocationId, amount);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (left != -1) {
+            getContext().getContentResolver().notifyChange(ProductContract.LocationEntry.CONTENT_URI, null);
+        }
+        return left;
+    }
+
+    /**
+     * Sync the products with the server at the given URL on {@link #mSyncExecutor}, unless a
+     * sync is still running. Return whether it was started.
+     */
+    private boolean startSync(final String server) {
+        if (!mSyncRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        mSyncExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mSyncResult = syncProducts(server);
+                } finally {
+                    mSyncRunning.set(false);
+                }
+                getContext().getContentResolver().notifyChange(ProductContract.ProductEntry.SYNC_URI, null);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Sync the products with the server at the given URL. Failures are reported in the
+     * returned bundle rather than thrown, along with what was synced before them. Runs on
+     * {@link #mSyncExecutor}.
+     */
+    private Bundle syncProducts(String server) {
+        long start = mMetrics.start();
+        ProductSync.Result result = new ProductSync.Result();
+        String error = null;
+        try {
+            mSync.sync(new SyncClient(server, mSync.getDevice()), result);
+            Log.i(LOG_TAG, "Synced with " + server + ": " + result);
+        } catch (IOException | RuntimeException e) {
+            Log.e(LOG_TAG, "Failed to sync with " + server + " after " + result, e);
+            error = e.toString();
+        }
+
+        if (result.pulled != 0) {
+            // Pulled changes went straight to the tables, possibly to any product
+            mProductCache.clear();
+            mInventory.invalidate();
+            notifyChange(new ProductChange(ProductChange.OP_UNKNOWN, ProductChange.NO_ID, null));
+        }
+        if (result.alertsChanged) {
+            scheduleAlertNotification();
+        }
+        if (result.locationsChanged) {
+            getContext().getContentResolver().notifyChange(ProductContract.LocationEntry.CONTENT_URI, null);
+        }
+        if (start != ProviderMetrics.OFF) {
+            mMetrics.record(ProviderMetrics.OP_SYNC, METRICS_TARGET_NONE, start, result.pulled, 0);
+        }
+
+        Bundle bundle = new Bundle();
+        bundle.putLong(ProductContract.ProductEntry.EXTRA_SYNC_PUSHED, result.pushed);
+        bundle.putLong(ProductContract.ProductEntry.EXTRA_SYNC_PULLED, result.pulled);
+        bundle.putLong(ProductContract.ProductEntry.EXTRA_SYNC_BYTES_SENT, result.bytesSent);
+        bundle.putLong(ProductContract.ProductEntry.EXTRA_SYNC_BYTES_RECEIVED, result.bytesReceived);
+        bundle.putDouble(ProductContract.ProductEntry.EXTRA_SYNC_ROWS_PER_SECOND, result.rowsPerSecond());
+        if (error != null) {
+            bundle.putString(ProductContract.ProductEntry.EXTRA_SYNC_ERROR, error);
+        }
+        return bundle;
+    }
+
     /**
      * Returns the MIME type of data for the content URI.
      */
@@ -297,6 +2315,40 @@ public class ProductProvider extends ContentProvider {
                 return ProductContract.ProductEntry.CONTENT_LIST_TYPE;
             case PRODUCT_ID:
                 return ProductContract.ProductEntry.CONTENT_ITEM_TYPE;
+            case PRODUCT_SKU:
+                return ProductContract.ProductEntry.CONTENT_ITEM_TYPE;
+            case PRODUCT_SEARCH:
+                return ProductContract.ProductEntry.CONTENT_LIST_TYPE;
+            case PRODUCT_STATS:
+                return ProductContract.ProductEntry.CONTENT_STATS_TYPE;
+            case MOVEMENTS:
+                return ProductContract.StockMovementEntry.CONTENT_LIST_TYPE;
+            case MOVEMENT_SUMMARIES:
+                return ProductContract.StockSummaryEntry.CONTENT_LIST_TYPE;
+            case IMPORTS:
+                return ProductContract.ImportEntry.CONTENT_LIST_TYPE;
+            case STOCK_ALERTS:
+                return ProductContract.StockAlertEntry.CONTENT_LIST_TYPE;
+            case LOCATIONS:
+                return ProductContract.LocationEntry.CONTENT_LIST_TYPE;
+            case LOCATION_ID:
+                return ProductContract.LocationEntry.CONTENT_ITEM_TYPE;
+            case LOCATION_STOCK:
+                return ProductContract.LocationStockEntry.CONTENT_LIST_TYPE;
+            case LOCATION_STOCK_ID:
+                return ProductContract.LocationStockEntry.CONTENT_ITEM_TYPE;
+            case PRODUCT_STOCK:
+                return ProductContract.LocationStockEntry.CONTENT_LIST_TYPE;
+            case SUPPLIERS:
+                return ProductContract.SupplierEntry.CONTENT_LIST_TYPE;
+            case SUPPLIER_ID:
+                return ProductContract.SupplierEntry.CONTENT_ITEM_TYPE;
+            case SUPPLIER_PRODUCTS:
+                return ProductContract.ProductEntry.CONTENT_LIST_TYPE;
+            case PRODUCT_EXPORT:
+                return exportFormat(uri).equals(ProductContract.ProductEntry.EXPORT_FORMAT_CSV)
+                        ? ProductContract.ProductEntry.CONTENT_CSV_TYPE
+                        : ProductContract.ProductEntry.CONTENT_NDJSON_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
@@ -0,0 +1,452 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockMovementEntry;
+import com.example.android.inventoryapp2.data.ProductContract.SupplierEntry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Exchanges product changes with the inventory server for {@link ProductProvider}, see
+ * {@link SyncClient} for the protocol.
+ *
+ * Every product has a row in {@link #TABLE_NAME}, kept by triggers on the products table: a
+ * global ID shared by every device, the version of its last local change, taken from a
+ * counter in {@link #STATE_TABLE_NAME}, and the stock other devices have moved. Deleting a
+ * product keeps its row as a tombstone until the deletion is pushed. A sync first pushes
+ * every change with a version above the last one pushed, then pulls the server's changes
+ * after the last token pulled, {@link #BATCH_SIZE} at a time. Each batch commits together
+ * with its progress, so a sync that fails part way resumes after the last batch.
+ *
+ * Quantities are merged rather than overwritten: a product's quantity is the stock other
+ * devices have moved, as of the last pull, plus every movement made on this device. A pull
+ * replaces the first part and keeps the second, and records the difference as a
+ * {@link StockMovementEntry#REASON_SYNC} movement. The other columns are last writer wins,
+ * except that a pull doesn't overwrite a local change that hasn't been pushed yet.
+ *
+ * A pulled quantity goes through the same checks as a local edit of it: it raises and clears
+ * stock alerts through {@link StockAlerts}, and stock moved on other devices comes out of the
+ * default location first and out of the other {@link StockLocations} once that has run out,
+ * so the default location never holds less than nothing.
+ *
+ * The server knows the supplier of a product by name, with its phone. A pulled phone is the
+ * phone of the supplier, so it changes the other products from it too, which are pushed with
+ * it next.
+ */
+final class ProductSync {
+
+    /** Tag for the log messages */
+    private static final String LOG_TAG = ProductSync.class.getSimpleName();
+
+    /** Changes per request, and per transaction when pulling */
+    static final int BATCH_SIZE = 500;
+
+    /** Sync columns of every product, keyed by product ID */
+    static final String TABLE_NAME = "product_sync";
+    static final String COLUMN_PRODUCT_ID = "product_id";
+    static final String COLUMN_GLOBAL_ID = "global_id";
+    static final String COLUMN_VERSION = "version";
+    static final String COLUMN_REMOTE_QUANTITY = "remote_quantity";
+    static final String COLUMN_DELETED = "deleted";
+
+    /** Index on the version, for finding the changes to push */
+    static final String INDEX_VERSION = "product_sync_version_index";
+
+    /** Named values of the sync: the keys below */
+    static final String STATE_TABLE_NAME = "sync_state";
+    static final String COLUMN_STATE_NAME = "name";
+    static final String COLUMN_STATE_VALUE = "value";
+
+    /** Version of the latest local change, incremented by the triggers */
+    static final String STATE_VERSION = "version";
+    /** Version of the latest local change the server has */
+    static final String STATE_PUSHED_VERSION = "pushed_version";
+    /** Token to pull the next changes from, empty before the first pull */
+    static final String STATE_TOKEN = "token";
+    /** ID of this device, random */
+    static final String STATE_DEVICE = "device";
+
+    /** SQL expression for a new random global ID */
+    static final String SQL_NEW_GLOBAL_ID = "lower(hex(randomblob(16)))";
+
+    /** Statements of a trigger that take the next version */
+    static final String SQL_NEXT_VERSION = "UPDATE " + STATE_TABLE_NAME + " SET " + COLUMN_STATE_VALUE
+            + " = " + COLUMN_STATE_VALUE + " + 1 WHERE " + COLUMN_STATE_NAME + " = '" + STATE_VERSION + "'; ";
+    static final String SQL_CURRENT_VERSION = "(SELECT " + COLUMN_STATE_VALUE + " FROM " + STATE_TABLE_NAME
+            + " WHERE " + COLUMN_STATE_NAME + " = '" + STATE_VERSION + "')";
+
+    private static final String SQL_QUERY_STATE = "SELECT " + COLUMN_STATE_VALUE + " FROM "
+            + STATE_TABLE_NAME + " WHERE " + COLUMN_STATE_NAME + " = ?";
+
+    private static final String SQL_SAVE_STATE = "UPDATE " + STATE_TABLE_NAME + " SET "
+            + COLUMN_STATE_VALUE + " = ? WHERE " + COLUMN_STATE_NAME + " = ?";
+
+    /**
+     * Reads the next changes to push: every product and tombstone changed after a version, in
+     * version order. The quantity pushed is what this device moved, the quantity less what
+     * other devices moved.
+     */
+    private static final String SQL_QUERY_CHANGES = "SELECT s." + COLUMN_GLOBAL_ID + ", s." + COLUMN_VERSION
+            + ", s." + COLUMN_DELETED + ", p." + ProductEntry.COLUMN_PRODUCT_NAME
+            + ", sup." + SupplierEntry.COLUMN_SUPPLIER_NAME + ", sup." + SupplierEntry.COLUMN_SUPPLIER_PHONE
+            + ", p." + ProductEntry.COLUMN_PRODUCT_TYPE + ", p." + ProductEntry.COLUMN_PRODUCT_PRICE
+            + ", p." + ProductEntry.COLUMN_PRODUCT_QUANTITY + " - s." + COLUMN_REMOTE_QUANTITY
+            + " FROM " + TABLE_NAME + " s LEFT JOIN " + ProductEntry.TABLE_NAME + " p ON p." + ProductEntry._ID
+            + " = s." + COLUMN_PRODUCT_ID + " LEFT JOIN " + SupplierEntry.TABLE_NAME + " sup ON sup."
+            + SupplierEntry._ID + " = p." + ProductEntry.COLUMN_SUPPLIER_ID + " WHERE s." + COLUMN_VERSION + " > ? ORDER BY s." + COLUMN_VERSION
+            + " LIMIT " + BATCH_SIZE;
+
+    /** Drops the tombstones the server has */
+    private static final String SQL_PURGE_TOMBSTONES = "DELETE FROM " + TABLE_NAME + " WHERE "
+            + COLUMN_DELETED + " = 1 AND " + COLUMN_VERSION + " <= ?";
+
+    private static final String SQL_QUERY_LOCAL = "SELECT " + COLUMN_PRODUCT_ID + ", " + COLUMN_VERSION + ", "
+            + COLUMN_REMOTE_QUANTITY + ", " + COLUMN_DELETED + " FROM " + TABLE_NAME + " WHERE "
+            + COLUMN_GLOBAL_ID + " = ?";
+
+    /** Replaces the attributes of a product and moves its stock */
+    private static final String SQL_APPLY_CHANGE = "UPDATE " + ProductEntry.TABLE_NAME + " SET "
+            + ProductEntry.COLUMN_PRODUCT_NAME + " = ?, "
+            + ProductEntry.COLUMN_SUPPLIER_ID + " = ?, "
+            + ProductEntry.COLUMN_PRODUCT_TYPE + " = ?, "
+            + ProductEntry.COLUMN_PRODUCT_PRICE + " = ?, "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " + ? WHERE "
+            + ProductEntry._ID + " = ?";
+
+    /** Only moves the stock of a product */
+    private static final String SQL_APPLY_QUANTITY = "UPDATE " + ProductEntry.TABLE_NAME + " SET "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " + ? WHERE "
+            + ProductEntry._ID + " = ?";
+
+    /**
+     * Sets the sync columns of a product written by a pull. The triggers gave it a new
+     * version, which is set back, since the change came from the server.
+     */
+    private static final String SQL_SET_SYNCED = "UPDATE " + TABLE_NAME + " SET " + COLUMN_GLOBAL_ID + " = ?, "
+            + COLUMN_VERSION + " = ?, " + COLUMN_REMOTE_QUANTITY + " = ? WHERE " + COLUMN_PRODUCT_ID + " = ?";
+
+    private static final String SQL_DELETE_PRODUCT = "DELETE FROM " + ProductEntry.TABLE_NAME + " WHERE "
+            + ProductEntry._ID + " = ?";
+
+    private static final String SQL_DELETE_SYNC = "DELETE FROM " + TABLE_NAME + " WHERE "
+            + COLUMN_PRODUCT_ID + " = ?";
+
+    /**
+     * Counts of a sync.
+     */
+    static final class Result {
+        /** Changes sent and received */
+        long pushed;
+        long pulled;
+        long bytesSent;
+        long bytesReceived;
+        long nanos;
+        /** Whether pulled quantities raised or cleared stock alerts */
+        boolean alertsChanged;
+        /** Whether pulled quantities took stock from other locations than the default one */
+        boolean locationsChanged;
+
+        /** Changes sent and received per second */
+        double rowsPerSecond() {
+            return nanos == 0 ? 0 : (pushed + pulled) * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return pushed + " pushed, " + pulled + " pulled, " + bytesSent + " bytes sent, " + bytesReceived
+                    + " bytes received in " + nanos / 1000000 + " ms, " + Math.round(rowsPerSecond()) + " rows/s";
+        }
+    }
+
+    private final ProductDbHelper mDbHelper;
+    private final StockLedger mLedger;
+    private final Suppliers mSuppliers;
+    private final StockAlerts mAlerts;
+    private final StockLocations mLocations;
+
+    ProductSync(ProductDbHelper dbHelper, StockLedger ledger, Suppliers suppliers, StockAlerts alerts,
+                StockLocations locations) {
+        mDbHelper = dbHelper;
+        mLedger = ledger;
+        mSuppliers = suppliers;
+        mAlerts = alerts;
+        mLocations = locations;
+    }
+
+    /**
+     * The ID this device syncs as.
+     */
+    String getDevice() {
+        return readState(STATE_DEVICE);
+    }
+
+    /**
+     * Push the local changes to the server and pull the server's changes. Syncs run one at a
+     * time. The counts in {@code result} are kept up to date as the sync goes, so they are
+     * also there when it fails.
+     */
+    synchronized void sync(SyncClient client, Result result) throws IOException {
+        long start = System.nanoTime();
+        try {
+            push(client, result);
+            pull(client, result);
+        } finally {
+            result.bytesSent = client.getBytesSent();
+            result.bytesReceived = client.getBytesReceived();
+            result.nanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Push every local change the server doesn't have yet, see {@link #sync}.
+     */
+    void push(SyncClient client, Result result) throws IOException {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        long pushedVersion = Long.parseLong(readState(STATE_PUSHED_VERSION));
+        ArrayList<SyncClient.Change> changes = new ArrayList<>(BATCH_SIZE);
+        do {
+            changes.clear();
+            Cursor cursor = database.rawQuery(SQL_QUERY_CHANGES, new String[]{String.valueOf(pushedVersion)});
+            try {
+                while (cursor.moveToNext()) {
+                    SyncClient.Change change = new SyncClient.Change();
+                    change.globalId = cursor.getString(0);
+                    change.version = cursor.getLong(1);
+                    change.deleted = cursor.getInt(2) != 0;
+                    if (!change.deleted) {
+                        change.name = cursor.getString(3);
+                        change.supplier = cursor.getString(4);
+                        change.phone = cursor.getString(5);
+                        change.type = cursor.getInt(6);
+                        change.price = cursor.getInt(7);
+                        change.quantity = cursor.getLong(8);
+                    }
+                    changes.add(change);
+                }
+            } finally {
+                cursor.close();
+            }
+            if (changes.isEmpty()) {
+                break;
+            }
+            client.push(changes);
+
+            // Products changed since they were read have a higher version by now, so they are
+            // pushed again by the next batch or sync
+            pushedVersion = changes.get(changes.size() - 1).version;
+            database.beginTransaction();
+            SQLiteStatement purge = mDbHelper.acquireStatement(SQL_PURGE_TOMBSTONES);
+            try {
+                saveState(STATE_PUSHED_VERSION, String.valueOf(pushedVersion));
+                purge.bindLong(1, pushedVersion);
+                purge.executeUpdateDelete();
+                database.setTransactionSuccessful();
+            } finally {
+                mDbHelper.releaseStatement(SQL_PURGE_TOMBSTONES, purge);
+                database.endTransaction();
+            }
+            result.pushed += changes.size();
+        } while (changes.size() == BATCH_SIZE);
+    }
+
+    /**
+     * Pull and apply the server's changes after the last token pulled, see {@link #sync}.
+     */
+    void pull(SyncClient client, Result result) throws IOException {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        String token = readState(STATE_TOKEN);
+        SyncClient.Page page;
+        do {
+            page = client.pull(token.isEmpty() ? null : token, BATCH_SIZE);
+            long pushedVersion = Long.parseLong(readState(STATE_PUSHED_VERSION));
+            long now = System.currentTimeMillis();
+            database.beginTransaction();
+            try {
+                for (SyncClient.Change change : page.changes) {
+                    applyChange(database, change, pushedVersion, now, result);
+                }
+                // Committed together with the changes, so none is applied twice
+                saveState(STATE_TOKEN, page.token);
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            token = page.token;
+            result.pulled += page.changes.size();
+        } while (page.more);
+    }
+
+    /**
+     * Apply one change pulled from the server. Called inside the transaction of its page.
+     */
+    private void applyChange(SQLiteDatabase database, SyncClient.Change change, long pushedVersion, long now,
+                             Result result) {
+        long productId = -1;
+        long version = 0;
+        long remoteQuantity = 0;
+        boolean tombstone = false;
+        Cursor cursor = database.rawQuery(SQL_QUERY_LOCAL, new String[]{change.globalId});
+        try {
+            if (cursor.moveToFirst()) {
+                productId = cursor.getLong(0);
+                version = cursor.getLong(1);
+                remoteQuantity = cursor.getLong(2);
+                tombstone = cursor.getInt(3) != 0;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (change.deleted) {
+            if (productId != -1) {
+                if (!tombstone) {
+                    mLedger.recordDeletion(productId, now);
+                    execute(SQL_DELETE_PRODUCT, productId);
+                }
+                // The server has the deletion, nothing to push
+                execute(SQL_DELETE_SYNC, productId);
+            }
+            return;
+        }
+        if (tombstone) {
+            // Deleted here after the server's change, the deletion is pushed next
+            return;
+        }
+
+        if (productId == -1) {
+            ContentValues values = new ContentValues(6);
+            values.put(ProductEntry.COLUMN_PRODUCT_NAME, change.name);
+            values.put(ProductEntry.COLUMN_SUPPLIER_NAME, change.supplier);
+            values.put(ProductEntry.COLUMN_SUPPLIER_PHONE, change.phone);
+            values.put(ProductEntry.COLUMN_PRODUCT_TYPE, change.type);
+            values.put(ProductEntry.COLUMN_PRODUCT_PRICE, change.price);
+            values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, change.quantity);
+            ContentValues row = new ContentValues(values.size());
+            mSuppliers.toNewProductRow(values, row);
+            try {
+                productId = database.insertOrThrow(ProductEntry.TABLE_NAME, null, row);
+            } catch (SQLiteConstraintException e) {
+                Log.e(LOG_TAG, "Skipping invalid product " + change.globalId + " from the server", e);
+                return;
+            }
+            mSuppliers.insertMissing(productId, values, row);
+            if (change.quantity != 0) {
+                mLedger.recordMovement(productId, change.quantity, StockMovementEntry.REASON_SYNC, now);
+            }
+        } else {
+            boolean localWins = version > pushedVersion;
+            if (!localWins && change.name == null) {
+                // Rejected before anything is written, like an insert the constraints reject
+                Log.e(LOG_TAG, "Skipping invalid product " + change.globalId + " from the server");
+                return;
+            }
+            long delta = change.quantity - remoteQuantity;
+            if (delta != 0) {
+                // Like a local edit of the quantity, checked against the rows before the update
+                long quantity = mLocations.getTotal(productId) + delta;
+                if (mLocations.limitLocated(productId, quantity)) {
+                    result.locationsChanged = true;
+                }
+                if (mAlerts.recordUpdate(productId, (int) quantity, null, now)) {
+                    result.alertsChanged = true;
+                }
+            }
+            if (localWins) {
+                // Changed here since the last push, the local attributes win and are pushed next
+                SQLiteStatement statement = mDbHelper.acquireStatement(SQL_APPLY_QUANTITY);
+                try {
+                    statement.bindLong(1, delta);
+                    statement.bindLong(2, productId);
+                    statement.executeUpdateDelete();
+                } finally {
+                    mDbHelper.releaseStatement(SQL_APPLY_QUANTITY, statement);
+                }
+            } else {
+                // A supplier there is none of yet is only added once the product took the change
+                long supplierId = change.supplier == null ? -1 : mSuppliers.getId(change.supplier);
+                SQLiteStatement statement = mDbHelper.acquireStatement(SQL_APPLY_CHANGE);
+                try {
+                    bindString(statement, 1, change.name);
+                    if (supplierId == -1) {
+                        statement.bindNull(2);
+                    } else {
+                        statement.bindLong(2, supplierId);
+                    }
+                    statement.bindLong(3, change.type);
+                    statement.bindLong(4, change.price);
+                    statement.bindLong(5, delta);
+                    statement.bindLong(6, productId);
+                    statement.executeUpdateDelete();
+                } finally {
+                    mDbHelper.releaseStatement(SQL_APPLY_CHANGE, statement);
+                }
+                if (supplierId != -1) {
+                    mSuppliers.setPhone(supplierId, change.phone);
+                } else if (change.supplier != null) {
+                    mSuppliers.insertFor(productId, change.supplier, change.phone);
+                }
+            }
+            if (delta != 0) {
+                mLedger.recordMovement(productId, delta, StockMovementEntry.REASON_SYNC, now);
+            }
+        }
+
+        SQLiteStatement statement = mDbHelper.acquireStatement(SQL_SET_SYNCED);
+        try {
+            statement.bindString(1, change.globalId);
+            statement.bindLong(2, version);
+            statement.bindLong(3, change.quantity);
+            statement.bindLong(4, productId);
+            statement.executeUpdateDelete();
+        } finally {
+            mDbHelper.releaseStatement(SQL_SET_SYNCED, statement);
+        }
+    }
+
+    private void execute(String sql, long id) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(sql);
+        try {
+            statement.bindLong(1, id);
+            statement.executeUpdateDelete();
+        } finally {
+            mDbHelper.releaseStatement(sql, statement);
+        }
+    }
+
+    private String readState(String name) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(SQL_QUERY_STATE);
+        try {
+            statement.bindString(1, name);
+            return statement.simpleQueryForString();
+        } finally {
+            mDbHelper.releaseStatement(SQL_QUERY_STATE, statement);
+        }
+    }
+
+    private void saveState(String name, String value) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(SQL_SAVE_STATE);
+        try {
+            statement.bindString(1, value);
+            statement.bindString(2, name);
+            statement.executeUpdateDelete();
+        } finally {
+            mDbHelper.releaseStatement(SQL_SAVE_STATE, statement);
+        }
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.android.inventoryapp2.data;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks product values before {@link ProductProvider} writes them. It only uses plain Java
+ * and compile-time constants of {@link ProductContract}, so the benchmark module can compile
+ * and measure it on a desktop JVM.
+ */
+final class ProductValidator {
+
+    private ProductValidator() {}
+
+    /**
+     * Returns whether or not the given type is {@link ProductContract.ProductEntry#TYPE_UNKNOWN},
+     * {@link ProductContract.ProductEntry#GROCERY}, or {@link ProductContract.ProductEntry#GOODS}.
+     */
+    static boolean isValidType(int type) {
+        return type == ProductContract.ProductEntry.TYPE_UNKNOWN
+                || type == ProductContract.ProductEntry.GROCERY
+                || type == ProductContract.ProductEntry.GOODS;
+    }
+
+    /**
+     * Check the values of a product update, as returned by
+     * {@link android.content.ContentValues#valueSet}. Only the columns present are checked,
+     * numbers may be given as text just like {@link android.content.ContentValues#getAsInteger}
+     * accepts them. Throws an {@link IllegalArgumentException} naming the first invalid value.
+     */
+    static void validateUpdate(Set<Map.Entry<String, Object>> values) {
+        for (Map.Entry<String, Object> entry : values) {
+            Object value = entry.getValue();
+            switch (entry.getKey()) {
+                case ProductContract.ProductEntry.COLUMN_PRODUCT_NAME:
+                    if (value == null) {
+                        throw new IllegalArgumentException("Product requires a name");
+                    }
+                    break;
+                case ProductContract.ProductEntry.COLUMN_SUPPLIER_NAME:
+                    if (value == null) {
+                        throw new IllegalArgumentException("Supplier requires a name");
+                    }
+                    break;
+                case ProductContract.ProductEntry.COLUMN_SUPPLIER_PHONE:
+                    if (value == null) {
+                        throw new IllegalArgumentException("Supplier requires a phone");
+                    }
+                    break;
+                case ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE:
+                    Integer type = toInteger(value);
+                    if (type == null || !isValidType(type)) {
+                        throw new IllegalArgumentException("Product requires valid type");
+                    }
+                    break;
+                case ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY:
+                    Integer quantity = toInteger(value);
+                    if (quantity != null && quantity < 0) {
+                        throw new IllegalArgumentException("Product requires valid quantity");
+                    }
+                    break;
+                case ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE:
+                    Integer price = toInteger(value);
+                    if (price != null && price < 0) {
+                        throw new IllegalArgumentException("Product requires valid price");
+                    }
+                    break;
+                case ProductContract.ProductEntry.COLUMN_REORDER_POINT:
+                    Integer reorderPoint = toInteger(value);
+                    if (reorderPoint != null && reorderPoint < 0) {
+                        throw new IllegalArgumentException("Product requires valid reorder point");
+                    }
+                    break;
+                case ProductContract.ProductEntry.COLUMN_SKU:
+                    // Null clears the SKU, but a blank one would be a barcode nobody can scan
+                    if (value != null && value.toString().trim().isEmpty()) {
+                        throw new IllegalArgumentException("Product requires valid SKU");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Check the values of a new product: the same checks as {@link #validateUpdate}, and the
+     * product has to have a name.
+     */
+    static void validateInsert(Set<Map.Entry<String, Object>> values) {
+        boolean named = false;
+        for (Map.Entry<String, Object> entry : values) {
+            if (entry.getKey().equals(ProductContract.ProductEntry.COLUMN_PRODUCT_NAME)) {
+                named = entry.getValue() != null;
+                break;
+            }
+        }
+        if (!named) {
+            throw new IllegalArgumentException("Product requires a name");
+        }
+        validateUpdate(values);
+    }
+
+    /**
+     * Convert a value the way {@link android.content.ContentValues#getAsInteger} does: numbers
+     * are narrowed, text is parsed, anything else is null.
+     */
+    static Integer toInteger(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        if (value instanceof CharSequence) {
+            try {
+                return Integer.valueOf(value.toString());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,406 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs product writes off the main thread. Writes are queued and executed in order by a single
+ * writer thread, which takes everything queued at once, merges writes that can be merged and
+ * sends the rest to {@link ProductProvider} as one batch. Results are delivered to the main
+ * thread.
+ *
+ * Merged writes:
+ * - consecutive updates of the same product URI become one update,
+ * - consecutive sales of the same product, or of the same SKU, become one sale, unless there
+ *   isn't enough stock for all of them, in which case they are sold one by one.
+ */
+public final class ProductWriter {
+
+    /** Tag for the log messages */
+    public static final String LOG_TAG = ProductWriter.class.getSimpleName();
+
+    /**
+     * Receives the result of a write on the main thread.
+     */
+    public interface Callback<T> {
+        /**
+         * @param result the inserted URI (null if the insert failed), the number of updated or
+         *               deleted rows, or the quantity left after a sale (-1 if the sale failed)
+         */
+        void onComplete(T result);
+    }
+
+    /**
+     * Latency of the writes executed so far, in nanoseconds. Queue time is from enqueueing a
+     * write until the writer thread picks it up, SQLite time is how long the provider call
+     * that executed it took (shared by all writes of a batch).
+     */
+    public static final class Stats {
+        public long writes;
+        public long batches;
+        public long coalesced;
+        public long totalQueueNanos;
+        public long maxQueueNanos;
+        public long totalSqliteNanos;
+        public long maxSqliteNanos;
+
+        Stats copy() {
+            Stats copy = new Stats();
+            copy.writes = writes;
+            copy.batches = batches;
+            copy.coalesced = coalesced;
+            copy.totalQueueNanos = totalQueueNanos;
+            copy.maxQueueNanos = maxQueueNanos;
+            copy.totalSqliteNanos = totalSqliteNanos;
+            copy.maxSqliteNanos = maxSqliteNanos;
+            return copy;
+        }
+
+        @Override
+        public String toString() {
+            long divisor = Math.max(writes, 1) * 1000;
+            return writes + " writes in " + batches + " batches (" + coalesced + " coalesced), queue avg "
+                    + totalQueueNanos / divisor + "us max " + maxQueueNanos / 1000 + "us, sqlite avg "
+                    + totalSqliteNanos / divisor + "us max " + maxSqliteNanos / 1000 + "us";
+        }
+    }
+
+    private static final int KIND_INSERT = 0;
+    private static final int KIND_UPDATE = 1;
+    private static final int KIND_DELETE = 2;
+    private static final int KIND_SELL = 3;
+
+    /**
+     * One queued write and its timings.
+     */
+    private static final class Write {
+        final int kind;
+        final Uri uri;
+        final ContentValues values;
+        final long id;
+        final String sku;
+        final int amount;
+        final Callback<Object> callback;
+        final long enqueuedAt = System.nanoTime();
+        long startedAt;
+        long sqliteNanos;
+        Object result;
+
+        @SuppressWarnings("unchecked")
+        Write(int kind, Uri uri, ContentValues values, long id, String sku, int amount, Callback<?> callback) {
+            this.kind = kind;
+            this.uri = uri;
+            this.values = values;
+            this.id = id;
+            this.sku = sku;
+            this.amount = amount;
+            this.callback = (Callback<Object>) callback;
+        }
+
+        /**
+         * Returns whether this sale and the given one sell the same product ID or SKU.
+         */
+        boolean sellsSameAs(Write other) {
+            return sku == null ? other.sku == null && id == other.id : sku.equals(other.sku);
+        }
+    }
+
+    private static ProductWriter sInstance;
+
+    private final ContentResolver mResolver;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    /** Writes waiting for the writer thread, guarded by this */
+    private final ArrayList<Write> mPending = new ArrayList<>();
+    private boolean mDrainScheduled;
+
+    /** Guarded by itself */
+    private final Stats mStats = new Stats();
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private ProductWriter(Context context) {
+        mResolver = context.getContentResolver();
+    }
+
+    /**
+     * Returns the writer of this process.
+     */
+    public static synchronized ProductWriter getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ProductWriter(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Insert a product into {@link ProductContract.ProductEntry#CONTENT_URI}.
+     */
+    public void insert(ContentValues values, Callback<Uri> callback) {
+        enqueue(new Write(KIND_INSERT, ProductContract.ProductEntry.CONTENT_URI, values, 0, null, 0, callback));
+    }
+
+    /**
+     * Update the products at the given URI.
+     */
+    public void update(Uri uri, ContentValues values, Callback<Integer> callback) {
+        enqueue(new Write(KIND_UPDATE, uri, values, 0, null, 0, callback));
+    }
+
+    /**
+     * Delete the products at the given URI.
+     */
+    public void delete(Uri uri, Callback<Integer> callback) {
+        enqueue(new Write(KIND_DELETE, uri, null, 0, null, 0, callback));
+    }
+
+    /**
+     * Sell the given amount of a product, see {@link ProductContract.ProductEntry#METHOD_SELL}.
+     */
+    public void sell(long id, int amount, Callback<Integer> callback) {
+        enqueue(new Write(KIND_SELL, null, null, id, null, amount, callback));
+    }
+
+    /**
+     * Sell the given amount of the product with a SKU, e.g. a scanned barcode, see
+     * {@link ProductContract.ProductEntry#METHOD_SELL_SKU}. The result is -1 as well if no
+     * product has the SKU.
+     */
+    public void sellSku(String sku, int amount, Callback<Integer> callback) {
+        enqueue(new Write(KIND_SELL, null, null, -1, sku, amount, callback));
+    }
+
+    /**
+     * Returns the latency of the writes executed so far.
+     */
+    public Stats getStats() {
+        synchronized (mStats) {
+            return mStats.copy();
+        }
+    }
+
+    private void enqueue(Write write) {
+        synchronized (this) {
+            mPending.add(write);
+            if (mDrainScheduled) {
+                return;
+            }
+            mDrainScheduled = true;
+        }
+        mExecutor.execute(mDrain);
+    }
+
+    /**
+     * Execute everything queued so far. Runs on the writer thread.
+     */
+    private void drain() {
+        ArrayList<Write> writes;
+        synchronized (this) {
+            writes = new ArrayList<>(mPending);
+            mPending.clear();
+            mDrainScheduled = false;
+        }
+        long startedAt = System.nanoTime();
+        for (Write write : writes) {
+            write.startedAt = startedAt;
+        }
+
+        // Sales go through ContentProvider.call, which can't be part of a batch, so run the
+        // writes between them as batches
+        int start = 0;
+        while (start < writes.size()) {
+            int end = start + 1;
+            if (writes.get(start).kind == KIND_SELL) {
+                while (end < writes.size() && writes.get(end).kind == KIND_SELL
+                        && writes.get(end).sellsSameAs(writes.get(start))) {
+                    end++;
+                }
+                executeSales(writes.subList(start, end));
+            } else {
+                while (end < writes.size() && writes.get(end).kind != KIND_SELL) {
+                    end++;
+                }
+                executeBatch(writes.subList(start, end));
+            }
+            start = end;
+        }
+
+        for (Write write : writes) {
+            deliver(write);
+        }
+    }
+
+    /**
+     * Sell a product for consecutive sales of it, at once if there is enough stock.
+     */
+    private void executeSales(List<Write> sales) {
+        int total = 0;
+        for (Write sale : sales) {
+            total += sale.amount;
+        }
+        long start = System.nanoTime();
+        int quantity = sell(sales.get(0), total);
+        if (quantity >= 0 || sales.size() == 1) {
+            for (Write sale : sales) {
+                sale.result = quantity;
+            }
+        } else {
+            // Not enough stock for all of them, sell as many as possible in order
+            for (Write sale : sales) {
+                sale.result = sell(sale, sale.amount);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        for (Write sale : sales) {
+            sale.sqliteNanos = elapsed;
+        }
+        recordBatch(sales.size() - 1);
+    }
+
+    /**
+     * Sell the given amount of the product of a sale, by ID or SKU.
+     */
+    private int sell(Write sale, int amount) {
+        String product = sale.sku == null ? String.valueOf(sale.id) : sale.sku;
+        try {
+            Bundle extras = new Bundle();
+            extras.putInt(ProductContract.ProductEntry.EXTRA_AMOUNT, amount);
+            Bundle result = mResolver.call(ProductContract.ProductEntry.CONTENT_URI,
+                    sale.sku == null ? ProductContract.ProductEntry.METHOD_SELL
+                            : ProductContract.ProductEntry.METHOD_SELL_SKU, product, extras);
+            return result == null ? -1 : result.getInt(ProductContract.ProductEntry.EXTRA_QUANTITY, -1);
+        } catch (RuntimeException e) {
+            Log.e(LOG_TAG, "Failed to sell product " + product, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Execute inserts, updates and deletes as one batch, merging consecutive updates of the
+     * same URI.
+     */
+    private void executeBatch(List<Write> writes) {
+        // Groups of writes that share one operation
+        ArrayList<List<Write>> groups = new ArrayList<>();
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        int start = 0;
+        while (start < writes.size()) {
+            Write first = writes.get(start);
+            int end = start + 1;
+            ContentValues values = first.values;
+            if (first.kind == KIND_UPDATE) {
+                while (end < writes.size() && writes.get(end).kind == KIND_UPDATE
+                        && writes.get(end).uri.equals(first.uri)) {
+                    if (values == first.values) {
+                        values = new ContentValues(first.values);
+                    }
+                    values.putAll(writes.get(end).values);
+                    end++;
+                }
+            }
+            groups.add(writes.subList(start, end));
+            operations.add(toOperation(first, values));
+            start = end;
+        }
+
+        long begin = System.nanoTime();
+        try {
+            ContentProviderResult[] results =
+                    mResolver.applyBatch(ProductContract.CONTENT_AUTHORITY, operations);
+            for (int i = 0; i < results.length; i++) {
+                for (Write write : groups.get(i)) {
+                    write.result = write.kind == KIND_INSERT ? results[i].uri : results[i].count;
+                }
+            }
+        } catch (Exception e) {
+            // One of them is invalid, run them one by one so only that one fails
+            Log.e(LOG_TAG, "Batch of " + operations.size() + " writes failed, retrying one by one", e);
+            for (int i = 0; i < groups.size(); i++) {
+                Object result = executeSingle(groups.get(i).get(0), operations.get(i));
+                for (Write write : groups.get(i)) {
+                    write.result = result;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        for (Write write : writes) {
+            write.sqliteNanos = elapsed;
+        }
+        recordBatch(writes.size() - groups.size());
+    }
+
+    private static ContentProviderOperation toOperation(Write write, ContentValues values) {
+        switch (write.kind) {
+            case KIND_INSERT:
+                return ContentProviderOperation.newInsert(write.uri).withValues(values).build();
+            case KIND_UPDATE:
+                return ContentProviderOperation.newUpdate(write.uri).withValues(values).build();
+            default:
+                return ContentProviderOperation.newDelete(write.uri).build();
+        }
+    }
+
+    private Object executeSingle(Write write, ContentProviderOperation operation) {
+        try {
+            ArrayList<ContentProviderOperation> single = new ArrayList<>(1);
+            single.add(operation);
+            ContentProviderResult result = mResolver.applyBatch(ProductContract.CONTENT_AUTHORITY, single)[0];
+            return write.kind == KIND_INSERT ? result.uri : result.count;
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "Failed to write " + write.uri, e);
+            return write.kind == KIND_INSERT ? null : 0;
+        }
+    }
+
+    private void recordBatch(int coalesced) {
+        synchronized (mStats) {
+            mStats.batches++;
+            mStats.coalesced += coalesced;
+        }
+    }
+
+    /**
+     * Record the timings of a finished write and hand its result to the main thread.
+     */
+    private void deliver(final Write write) {
+        long queueNanos = write.startedAt - write.enqueuedAt;
+        synchronized (mStats) {
+            mStats.writes++;
+            mStats.totalQueueNanos += queueNanos;
+            mStats.maxQueueNanos = Math.max(mStats.maxQueueNanos, queueNanos);
+            mStats.totalSqliteNanos += write.sqliteNanos;
+            mStats.maxSqliteNanos = Math.max(mStats.maxSqliteNanos, write.sqliteNanos);
+        }
+        if (Log.isLoggable(LOG_TAG, Log.VERBOSE)) {
+            Log.v(LOG_TAG, "Write " + write.kind + " queued " + queueNanos / 1000 + "us, sqlite "
+                    + write.sqliteNanos / 1000 + "us");
+        }
+        if (write.callback != null) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    write.callback.onComplete(write.result);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.android.inventoryapp2.data;
+
+import android.os.Bundle;
+
+/**
+ * Counters for the operations of {@link ProductProvider}, split by operation and by the URI
+ * they were made on: how many there were, how long they took, how many rows they wrote or
+ * returned and how many change notifications they sent.
+ *
+ * Recording is off unless {@link #setEnabled} turns it on. Every operation then costs a
+ * volatile read, without taking the time or touching any counter:
+ *
+ *     long start = metrics.start();
+ *     ...
+ *     if (start != ProviderMetrics.OFF) {
+ *         metrics.record(ProviderMetrics.OP_QUERY, target, start, 0, cursor.getCount());
+ *     }
+ */
+final class ProviderMetrics {
+
+    /** Operations */
+    static final int OP_QUERY = 0;
+    static final int OP_INSERT = 1;
+    static final int OP_BULK_INSERT = 2;
+    static final int OP_UPDATE = 3;
+    static final int OP_DELETE = 4;
+    static final int OP_BATCH = 5;
+    static final int OP_SELL = 6;
+    static final int OP_EXPORT = 7;
+    static final int OP_SYNC = 8;
+    private static final String[] OP_NAMES = {
+            "query", "insert", "bulk_insert", "update", "delete", "batch", "sell", "export", "sync"};
+
+    /** Returned by {@link #start} while recording is off */
+    static final long OFF = Long.MIN_VALUE;
+
+    /**
+     * Number of latency histogram buckets. Bucket i counts the operations that took from 2^i
+     * to 2^(i+1) microseconds, bucket 0 also those under a microsecond and the last bucket
+     * everything from about 8 seconds up.
+     */
+    static final int HISTOGRAM_BUCKETS = 24;
+
+    private final String[] mTargetNames;
+
+    /** Counters by operation and target, created when first recorded */
+    private final Cell[][] mCells;
+
+    private volatile boolean mEnabled;
+
+    /** Notifications sent by the operation running on this thread */
+    private final ThreadLocal<int[]> mNotifications = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    /**
+     * @param targetNames names of the URIs operations are made on, the target passed to
+     *                    {@link #record} is an index into this array
+     */
+    ProviderMetrics(String[] targetNames) {
+        mTargetNames = targetNames;
+        mCells = new Cell[OP_NAMES.length][targetNames.length];
+    }
+
+    boolean isEnabled() {
+        return mEnabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * Start timing an operation on the calling thread. Return the start time to pass to
+     * {@link #record}, or {@link #OFF} if recording is off.
+     */
+    long start() {
+        if (!mEnabled) {
+            return OFF;
+        }
+        mNotifications.get()[0] = 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * Count a change notification sent by the operation running on the calling thread.
+     */
+    void notified() {
+        if (mEnabled) {
+            mNotifications.get()[0]++;
+        }
+    }
+
+    /**
+     * Record an operation started with {@link #start} on the calling thread.
+     *
+     * @param rows       number of rows the operation wrote
+     * @param cursorRows number of rows in the cursor the operation returned, or that an
+     *                   export streamed
+     */
+    void record(int op, int target, long start, long rows, long cursorRows) {
+        long nanos = System.nanoTime() - start;
+        int notifications = mNotifications.get()[0];
+        Cell cell;
+        synchronized (mCells) {
+            cell = mCells[op][target];
+            if (cell == null) {
+                cell = new Cell();
+                mCells[op][target] = cell;
+            }
+        }
+        synchronized (cell) {
+            cell.count++;
+            cell.totalNanos += nanos;
+            cell.maxNanos = Math.max(cell.maxNanos, nanos);
+            cell.histogram[bucketOf(nanos)]++;
+            cell.rows += rows;
+            cell.cursorRows += cursorRows;
+            cell.notifications += notifications;
+        }
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    void reset() {
+        synchronized (mCells) {
+            for (Cell[] cells : mCells) {
+                for (int target = 0; target < cells.length; target++) {
+                    cells[target] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the counters into a bundle, with one nested bundle per operation and target that
+     * was recorded. See {@link ProductContract.ProductEntry#METHOD_METRICS} for the keys.
+     */
+    Bundle snapshot() {
+        Bundle snapshot = new Bundle();
+        snapshot.putBoolean(ProductContract.ProductEntry.EXTRA_METRICS_ENABLED, mEnabled);
+        StringBuilder dump = new StringBuilder();
+        for (int op = 0; op < OP_NAMES.length; op++) {
+            for (int target = 0; target < mTargetNames.length; target++) {
+                Cell cell;
+                synchronized (mCells) {
+                    cell = mCells[op][target];
+                }
+                if (cell == null) {
+                    continue;
+                }
+                String key = OP_NAMES[op] + ":" + mTargetNames[target];
+                Bundle metrics = new Bundle();
+                synchronized (cell) {
+                    metrics.putLong(ProductContract.ProductEntry.METRIC_COUNT, cell.count);
+                    metrics.putLong(ProductContract.ProductEntry.METRIC_TOTAL_NANOS, cell.totalNanos);
+                    metrics.putLong(ProductContract.ProductEntry.METRIC_MAX_NANOS, cell.maxNanos);
+                    metrics.putLongArray(ProductContract.ProductEntry.METRIC_LATENCY_HISTOGRAM, cell.histogram.clone());
+                    metrics.putLong(ProductContract.ProductEntry.METRIC_ROWS, cell.rows);
+                    metrics.putLong(ProductContract.ProductEntry.METRIC_CURSOR_ROWS, cell.cursorRows);
+                    metrics.putLong(ProductContract.ProductEntry.METRIC_NOTIFICATIONS, cell.notifications);
+                    dump.append(key).append(": ").append(cell).append('\n');
+                }
+                snapshot.putBundle(key, metrics);
+            }
+        }
+        snapshot.putString(ProductContract.ProductEntry.EXTRA_METRICS_DUMP, dump.toString());
+        return snapshot;
+    }
+
+    private static int bucketOf(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = micros <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+    }
+
+    /**
+     * Counters of one operation on one target, guarded by its own lock.
+     */
+    private static final class Cell {
+        long count;
+        long totalNanos;
+        long maxNanos;
+        final long[] histogram = new long[HISTOGRAM_BUCKETS];
+        long rows;
+        long cursorRows;
+        long notifications;
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder()
+                    .append(count).append(" ops, avg ").append(totalNanos / Math.max(count, 1) / 1000)
+                    .append("us max ").append(maxNanos / 1000).append("us, ")
+                    .append(rows).append(" rows written, ")
+                    .append(cursorRows).append(" rows returned, ")
+                    .append(notifications).append(" notifications, histogram");
+            for (long bucket : histogram) {
+                text.append(' ').append(bucket);
+            }
+            return text.toString();
+        }
+    }
+}
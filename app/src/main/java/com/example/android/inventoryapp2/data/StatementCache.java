@@ -0,0 +1,73 @@
+package com.example.android.inventoryapp2.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small pool of compiled {@link SQLiteStatement}s keyed by their SQL, so the provider's hot
+ * write paths don't parse and plan the same statement on every call.
+ *
+ * A statement can't be bound by two threads at once, so callers check a statement out with
+ * {@link #acquire} and hand it back with {@link #release} when they are done. Idle statements
+ * are kept in least-recently-used order and the oldest one is closed when the cache is full.
+ */
+final class StatementCache {
+
+    private final int mMaxSize;
+
+    private final LinkedHashMap<String, SQLiteStatement> mIdle;
+
+    StatementCache(int maxSize) {
+        mMaxSize = maxSize;
+        mIdle = new LinkedHashMap<String, SQLiteStatement>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+                if (size() > mMaxSize) {
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Check out a compiled statement for the given SQL, compiling it against the given
+     * database if no idle one is cached. The statement has no bindings.
+     */
+    synchronized SQLiteStatement acquire(SQLiteDatabase db, String sql) {
+        SQLiteStatement statement = mIdle.remove(sql);
+        if (statement == null) {
+            statement = db.compileStatement(sql);
+        }
+        return statement;
+    }
+
+    /**
+     * Hand a statement from {@link #acquire} back to the cache. If another statement for the
+     * same SQL was returned in the meantime this one is closed.
+     */
+    synchronized void release(String sql, SQLiteStatement statement) {
+        statement.clearBindings();
+        if (mMaxSize == 0 || mIdle.containsKey(sql)) {
+            statement.close();
+        } else {
+            mIdle.put(sql, statement);
+        }
+    }
+
+    /**
+     * Close every idle statement. Must be called before the database they were compiled
+     * against is closed.
+     */
+    synchronized void clear() {
+        for (SQLiteStatement statement : new ArrayList<>(mIdle.values())) {
+            statement.close();
+        }
+        mIdle.clear();
+    }
+}
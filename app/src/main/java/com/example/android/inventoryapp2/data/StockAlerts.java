@@ -0,0 +1,180 @@
+package com.example.android.inventoryapp2.data;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockAlertEntry;
+
+/**
+ * Raises and clears stock alerts for {@link ProductProvider}.
+ *
+ * A product is low on stock when its quantity is at or below its reorder point. An alert is
+ * raised when a write takes a product from above its reorder point to low, and cleared when a
+ * write takes it back above. Only the rows a write touches are looked at, by the same
+ * selection, so a single product costs a few primary key lookups whatever the size of the
+ * catalog, and writes that change neither the quantity nor the reorder point cost nothing.
+ *
+ * Like {@link StockLedger}, the record* methods must be called inside the transaction of the
+ * write. Alerts of an update are computed from the rows as they are before it, alerts of a
+ * sale from the row after it.
+ */
+final class StockAlerts {
+
+    /**
+     * Start of the statements raising alerts, which compute them from the products they
+     * select.
+     */
+    private static final String SQL_INSERT_ALERTS = "INSERT OR REPLACE INTO " + StockAlertEntry.TABLE_NAME + " ("
+            + StockAlertEntry.COLUMN_PRODUCT_ID + ", "
+            + StockAlertEntry.COLUMN_QUANTITY + ", "
+            + StockAlertEntry.COLUMN_REORDER_POINT + ", "
+            + StockAlertEntry.COLUMN_TIMESTAMP + ") SELECT " + ProductEntry._ID + ", ";
+
+    /**
+     * Raises the alert of a product that a sale has just taken down to its reorder point or
+     * below. Bound to the time, the product ID and the amount sold.
+     */
+    static final String SQL_RECORD_SALE = SQL_INSERT_ALERTS
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", " + ProductEntry.COLUMN_REORDER_POINT + ", ? FROM "
+            + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = ? AND "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " <= " + ProductEntry.COLUMN_REORDER_POINT + " AND "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " + ? > " + ProductEntry.COLUMN_REORDER_POINT;
+
+    private final ProductDbHelper mDbHelper;
+
+    StockAlerts(ProductDbHelper dbHelper) {
+        mDbHelper = dbHelper;
+    }
+
+    /**
+     * Record that the quantity or reorder point of a product is about to be set, either being
+     * null if it stays as it is. Return whether an alert was raised or cleared.
+     */
+    boolean recordUpdate(long productId, Integer quantity, Integer reorderPoint, long timestamp) {
+        String where = ProductEntry._ID + " = ? AND ";
+        String[] selectionArgs = {String.valueOf(productId)};
+        // A handful of statements, one per combination of the columns, so they are cached
+        return execute(buildRaise(where, quantity, reorderPoint),
+                raiseArgs(selectionArgs, quantity, reorderPoint, timestamp), true)
+                + execute(buildClear(where, quantity, reorderPoint),
+                clearArgs(selectionArgs, quantity, reorderPoint), true) != 0;
+    }
+
+    /**
+     * Record that the quantity or reorder point of the products matching a selection is about
+     * to be set, either being null if it stays as it is. Return whether an alert was raised or
+     * cleared.
+     */
+    boolean recordUpdates(String selection, String[] selectionArgs, Integer quantity, Integer reorderPoint,
+                          long timestamp) {
+        String where = selection == null ? "" : "(" + selection + ") AND ";
+        return execute(buildRaise(where, quantity, reorderPoint),
+                raiseArgs(selectionArgs, quantity, reorderPoint, timestamp), false)
+                + execute(buildClear(where, quantity, reorderPoint),
+                clearArgs(selectionArgs, quantity, reorderPoint), false) != 0;
+    }
+
+    /**
+     * Record that the given amount of a product has just been sold. Return whether an alert
+     * was raised.
+     */
+    boolean recordSale(long productId, long amount, long timestamp) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(SQL_RECORD_SALE);
+        try {
+            statement.bindLong(1, timestamp);
+            statement.bindLong(2, productId);
+            statement.bindLong(3, amount);
+            return statement.executeUpdateDelete() != 0;
+        } finally {
+            mDbHelper.releaseStatement(SQL_RECORD_SALE, statement);
+        }
+    }
+
+    /**
+     * Build the statement raising the alerts of the selected products that go from above
+     * their reorder point to low. Bound to {@link #raiseArgs}.
+     */
+    private static String buildRaise(String where, Integer quantity, Integer reorderPoint) {
+        String newQuantity = quantity == null ? ProductEntry.COLUMN_PRODUCT_QUANTITY : "?";
+        String newReorderPoint = reorderPoint == null ? ProductEntry.COLUMN_REORDER_POINT : "?";
+        return SQL_INSERT_ALERTS + newQuantity + ", " + newReorderPoint + ", ? FROM "
+                + ProductEntry.TABLE_NAME + " WHERE " + where
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " > " + ProductEntry.COLUMN_REORDER_POINT + " AND "
+                + newQuantity + " <= " + newReorderPoint;
+    }
+
+    private static Object[] raiseArgs(String[] selectionArgs, Integer quantity, Integer reorderPoint,
+                                      long timestamp) {
+        int selectionCount = selectionArgs == null ? 0 : selectionArgs.length;
+        Object[] bindArgs = new Object[selectionCount + 1
+                + 2 * ((quantity == null ? 0 : 1) + (reorderPoint == null ? 0 : 1))];
+        int index = 0;
+        if (quantity != null) {
+            bindArgs[index++] = quantity;
+        }
+        if (reorderPoint != null) {
+            bindArgs[index++] = reorderPoint;
+        }
+        bindArgs[index++] = timestamp;
+        if (selectionArgs != null) {
+            System.arraycopy(selectionArgs, 0, bindArgs, index, selectionCount);
+            index += selectionCount;
+        }
+        if (quantity != null) {
+            bindArgs[index++] = quantity;
+        }
+        if (reorderPoint != null) {
+            bindArgs[index] = reorderPoint;
+        }
+        return bindArgs;
+    }
+
+    /**
+     * Build the statement clearing the alerts of the selected products that end up above
+     * their reorder point. Bound to {@link #clearArgs}.
+     */
+    private static String buildClear(String where, Integer quantity, Integer reorderPoint) {
+        return "DELETE FROM " + StockAlertEntry.TABLE_NAME + " WHERE " + StockAlertEntry.COLUMN_PRODUCT_ID
+                + " IN (SELECT " + ProductEntry._ID + " FROM " + ProductEntry.TABLE_NAME + " WHERE " + where
+                + (quantity == null ? ProductEntry.COLUMN_PRODUCT_QUANTITY : "?") + " > "
+                + (reorderPoint == null ? ProductEntry.COLUMN_REORDER_POINT : "?") + ")";
+    }
+
+    private static Object[] clearArgs(String[] selectionArgs, Integer quantity, Integer reorderPoint) {
+        int selectionCount = selectionArgs == null ? 0 : selectionArgs.length;
+        Object[] bindArgs = new Object[selectionCount + (quantity == null ? 0 : 1) + (reorderPoint == null ? 0 : 1)];
+        if (selectionArgs != null) {
+            System.arraycopy(selectionArgs, 0, bindArgs, 0, selectionCount);
+        }
+        int index = selectionCount;
+        if (quantity != null) {
+            bindArgs[index++] = quantity;
+        }
+        if (reorderPoint != null) {
+            bindArgs[index] = reorderPoint;
+        }
+        return bindArgs;
+    }
+
+    /**
+     * Run an insert or delete, through the statement cache if asked to. Return the number of
+     * rows it changed.
+     */
+    private int execute(String sql, Object[] bindArgs, boolean cached) {
+        SQLiteStatement statement = cached ? mDbHelper.acquireStatement(sql)
+                : mDbHelper.getWritableDatabase().compileStatement(sql);
+        try {
+            for (int i = 0; i < bindArgs.length; i++) {
+                DatabaseUtils.bindObjectToProgram(statement, i + 1, bindArgs[i]);
+            }
+            return statement.executeUpdateDelete();
+        } finally {
+            if (cached) {
+                mDbHelper.releaseStatement(sql, statement);
+            } else {
+                statement.close();
+            }
+        }
+    }
+}
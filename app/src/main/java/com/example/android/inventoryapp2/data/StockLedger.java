@@ -0,0 +1,210 @@
+package com.example.android.inventoryapp2.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockMovementEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockSummaryEntry;
+
+/**
+ * Writes the stock movement history for {@link ProductProvider} and keeps it small.
+ *
+ * Every change of a product's quantity appends a movement in the same transaction as the
+ * change itself, so the quantity stays the running total of the movements. The record*
+ * methods must be called inside that transaction: movements of an update or delete are
+ * computed from the rows as they are before it, so they are recorded first.
+ *
+ * {@link #compact} rolls movements older than {@link #RETENTION_MILLIS} into daily summaries,
+ * one day per transaction so it never holds the write lock for long.
+ */
+final class StockLedger {
+
+    /** How long movements are kept one by one before they are summed up per day */
+    static final long RETENTION_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /** Records one movement. Bound to the product ID, the delta, the reason and the time. */
+    static final String SQL_INSERT_MOVEMENT = "INSERT INTO " + StockMovementEntry.TABLE_NAME + " ("
+            + StockMovementEntry.COLUMN_PRODUCT_ID + ", "
+            + StockMovementEntry.COLUMN_DELTA + ", "
+            + StockMovementEntry.COLUMN_REASON + ", "
+            + StockMovementEntry.COLUMN_TIMESTAMP + ") VALUES (?, ?, ?, ?)";
+
+    /**
+     * Start of the statements below, which compute the movements from the products they
+     * select.
+     */
+    private static final String SQL_INSERT_MOVEMENTS = "INSERT INTO " + StockMovementEntry.TABLE_NAME + " ("
+            + StockMovementEntry.COLUMN_PRODUCT_ID + ", "
+            + StockMovementEntry.COLUMN_DELTA + ", "
+            + StockMovementEntry.COLUMN_REASON + ", "
+            + StockMovementEntry.COLUMN_TIMESTAMP + ") SELECT " + ProductEntry._ID + ", ";
+
+    /**
+     * Records setting the quantity of the selected products, for those whose quantity changes.
+     * Bound to the new quantity and the time, followed by the selection arguments and the new
+     * quantity again.
+     */
+    private static final String SQL_RECORD_ADJUSTMENTS = SQL_INSERT_MOVEMENTS
+            + "? - " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + StockMovementEntry.REASON_ADJUSTMENT + ", ? FROM " + ProductEntry.TABLE_NAME + " WHERE ";
+
+    /**
+     * Records removing the stock of the selected products. Bound to the time, followed by the
+     * selection arguments.
+     */
+    private static final String SQL_RECORD_DELETIONS = SQL_INSERT_MOVEMENTS
+            + "-" + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + StockMovementEntry.REASON_DELETED + ", ? FROM " + ProductEntry.TABLE_NAME + " WHERE ";
+
+    private static final String SQL_RECORD_ADJUSTMENT = SQL_RECORD_ADJUSTMENTS + ProductEntry._ID
+            + " = ? AND " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " != ?";
+
+    private static final String SQL_RECORD_DELETION = SQL_RECORD_DELETIONS + ProductEntry._ID
+            + " = ? AND " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " != 0";
+
+    private static final String SQL_QUERY_OLDEST = "SELECT MIN(" + StockMovementEntry.COLUMN_TIMESTAMP
+            + ") FROM " + StockMovementEntry.TABLE_NAME;
+
+    /**
+     * Adds up the movements before a time per product, day and reason.
+     */
+    private static final String SQL_SUMMARIZE = "INSERT INTO " + StockSummaryEntry.TABLE_NAME + " ("
+            + StockSummaryEntry.COLUMN_PRODUCT_ID + ", "
+            + StockSummaryEntry.COLUMN_DAY + ", "
+            + StockSummaryEntry.COLUMN_REASON + ", "
+            + StockSummaryEntry.COLUMN_DELTA + ", "
+            + StockSummaryEntry.COLUMN_MOVEMENTS + ") SELECT "
+            + StockMovementEntry.COLUMN_PRODUCT_ID + ", "
+            + StockMovementEntry.COLUMN_TIMESTAMP + " / " + DAY_MILLIS + " AS day, "
+            + StockMovementEntry.COLUMN_REASON + ", SUM(" + StockMovementEntry.COLUMN_DELTA + "), COUNT(*) FROM "
+            + StockMovementEntry.TABLE_NAME + " WHERE " + StockMovementEntry.COLUMN_TIMESTAMP + " < ? GROUP BY "
+            + StockMovementEntry.COLUMN_PRODUCT_ID + ", day, " + StockMovementEntry.COLUMN_REASON;
+
+    private static final String SQL_DELETE_BEFORE = "DELETE FROM " + StockMovementEntry.TABLE_NAME
+            + " WHERE " + StockMovementEntry.COLUMN_TIMESTAMP + " < ?";
+
+    private final ProductDbHelper mDbHelper;
+
+    StockLedger(ProductDbHelper dbHelper) {
+        mDbHelper = dbHelper;
+    }
+
+    /**
+     * Append a single movement.
+     */
+    void recordMovement(long productId, long delta, int reason, long timestamp) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(SQL_INSERT_MOVEMENT);
+        try {
+            statement.bindLong(1, productId);
+            statement.bindLong(2, delta);
+            statement.bindLong(3, reason);
+            statement.bindLong(4, timestamp);
+            statement.executeInsert();
+        } finally {
+            mDbHelper.releaseStatement(SQL_INSERT_MOVEMENT, statement);
+        }
+    }
+
+    /**
+     * Record that the quantity of a product is about to be set.
+     */
+    void recordAdjustment(long productId, long quantity, long timestamp) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(SQL_RECORD_ADJUSTMENT);
+        try {
+            statement.bindLong(1, quantity);
+            statement.bindLong(2, timestamp);
+            statement.bindLong(3, productId);
+            statement.bindLong(4, quantity);
+            statement.executeInsert();
+        } finally {
+            mDbHelper.releaseStatement(SQL_RECORD_ADJUSTMENT, statement);
+        }
+    }
+
+    /**
+     * Record that the quantity of the products matching a selection is about to be set.
+     */
+    void recordAdjustments(String selection, String[] selectionArgs, long quantity, long timestamp) {
+        String where = selection == null ? "" : "(" + selection + ") AND ";
+        Object[] bindArgs = new Object[(selectionArgs == null ? 0 : selectionArgs.length) + 3];
+        bindArgs[0] = quantity;
+        bindArgs[1] = timestamp;
+        if (selectionArgs != null) {
+            System.arraycopy(selectionArgs, 0, bindArgs, 2, selectionArgs.length);
+        }
+        bindArgs[bindArgs.length - 1] = quantity;
+        mDbHelper.getWritableDatabase().execSQL(SQL_RECORD_ADJUSTMENTS + where
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " != ?", bindArgs);
+    }
+
+    /**
+     * Record that a product is about to be deleted.
+     */
+    void recordDeletion(long productId, long timestamp) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(SQL_RECORD_DELETION);
+        try {
+            statement.bindLong(1, timestamp);
+            statement.bindLong(2, productId);
+            statement.executeInsert();
+        } finally {
+            mDbHelper.releaseStatement(SQL_RECORD_DELETION, statement);
+        }
+    }
+
+    /**
+     * Record that the products matching a selection are about to be deleted.
+     */
+    void recordDeletions(String selection, String[] selectionArgs, long timestamp) {
+        String where = selection == null ? "" : "(" + selection + ") AND ";
+        Object[] bindArgs = new Object[(selectionArgs == null ? 0 : selectionArgs.length) + 1];
+        bindArgs[0] = timestamp;
+        if (selectionArgs != null) {
+            System.arraycopy(selectionArgs, 0, bindArgs, 1, selectionArgs.length);
+        }
+        mDbHelper.getWritableDatabase().execSQL(SQL_RECORD_DELETIONS + where
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " != 0", bindArgs);
+    }
+
+    /**
+     * Roll every whole day of movements older than {@link #RETENTION_MILLIS} into daily
+     * summaries. Return the number of movements rolled up.
+     */
+    int compact(long now) {
+        long cutoff = (now - RETENTION_MILLIS) / DAY_MILLIS * DAY_MILLIS;
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        int compacted = 0;
+        while (true) {
+            long oldest;
+            Cursor cursor = database.rawQuery(SQL_QUERY_OLDEST, null);
+            try {
+                if (!cursor.moveToFirst() || cursor.isNull(0)) {
+                    break;
+                }
+                oldest = cursor.getLong(0);
+            } finally {
+                cursor.close();
+            }
+            if (oldest >= cutoff) {
+                break;
+            }
+            // Up to the end of the oldest day, everything before it is already rolled up
+            long end = Math.min((oldest / DAY_MILLIS + 1) * DAY_MILLIS, cutoff);
+            database.beginTransaction();
+            SQLiteStatement delete = mDbHelper.acquireStatement(SQL_DELETE_BEFORE);
+            try {
+                database.execSQL(SQL_SUMMARIZE, new Object[]{end});
+                delete.bindLong(1, end);
+                compacted += delete.executeUpdateDelete();
+                database.setTransactionSuccessful();
+            } finally {
+                mDbHelper.releaseStatement(SQL_DELETE_BEFORE, delete);
+                database.endTransaction();
+            }
+        }
+        return compacted;
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.android.inventoryapp2.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.inventoryapp2.data.ProductContract.LocationEntry;
+import com.example.android.inventoryapp2.data.ProductContract.LocationStockEntry;
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+/**
+ * Reads and moves the stock of products at locations for {@link ProductProvider}.
+ *
+ * The quantity of a product stays the total of its stock, so the catalog list never reads
+ * the stock table. Only the other locations have rows: the stock at
+ * {@link LocationEntry#DEFAULT_LOCATION_ID} is whatever the quantity has beyond them, so
+ * everything written through the product itself, sales, edits, imports and syncs, goes in and
+ * out of the default location without touching this table. Rows whose stock runs out are
+ * deleted, so the table only grows with the stock that is actually spread out.
+ *
+ * Every lookup is by the primary key of the stock table. Like {@link StockLedger}, the
+ * writing methods must be called inside the transaction of the write.
+ */
+final class StockLocations {
+
+    /**
+     * The stock at the default location of every product, with the columns of the stock
+     * table, for querying in place of it. The location ID is cast so it compares with the
+     * string arguments of a selection the way a column does.
+     */
+    static final String DEFAULT_STOCK_TABLE = "(SELECT p." + ProductEntry._ID + " AS "
+            + LocationStockEntry.COLUMN_PRODUCT_ID + ", CAST(" + LocationEntry.DEFAULT_LOCATION_ID + " AS INTEGER) AS "
+            + LocationStockEntry.COLUMN_LOCATION_ID + ", p." + ProductEntry.COLUMN_PRODUCT_QUANTITY
+            + " - (SELECT IFNULL(SUM(s." + LocationStockEntry.COLUMN_QUANTITY + "), 0) FROM "
+            + LocationStockEntry.TABLE_NAME + " s WHERE s." + LocationStockEntry.COLUMN_PRODUCT_ID + " = p."
+            + ProductEntry._ID + ") AS " + LocationStockEntry.COLUMN_QUANTITY + " FROM "
+            + ProductEntry.TABLE_NAME + " p)";
+
+    /**
+     * The stock of one product at every location, with the columns of the stock table, for
+     * querying in place of it. Bound to the product ID twice, before any other argument.
+     */
+    static final String PRODUCT_STOCK_TABLE = "(SELECT * FROM " + DEFAULT_STOCK_TABLE + " WHERE "
+            + LocationStockEntry.COLUMN_PRODUCT_ID + " = ? AND " + LocationStockEntry.COLUMN_QUANTITY
+            + " != 0 UNION ALL SELECT " + LocationStockEntry.COLUMN_PRODUCT_ID + ", "
+            + LocationStockEntry.COLUMN_LOCATION_ID + ", " + LocationStockEntry.COLUMN_QUANTITY + " FROM "
+            + LocationStockEntry.TABLE_NAME + " WHERE " + LocationStockEntry.COLUMN_PRODUCT_ID + " = ?)";
+
+    /**
+     * Decrements the quantity of one product, but only if enough stock is left, so concurrent
+     * sales can never drive the quantity below zero or overwrite each other. Sales take the
+     * stock from the default location, so only what isn't at another location counts. Bound to
+     * the amount, the product ID and the amount again.
+     */
+    static final String SQL_SELL_PRODUCT = "UPDATE " + ProductEntry.TABLE_NAME + " SET "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " - ? WHERE "
+            + ProductEntry._ID + " = ? AND " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " - (SELECT IFNULL(SUM("
+            + LocationStockEntry.COLUMN_QUANTITY + "), 0) FROM " + LocationStockEntry.TABLE_NAME + " WHERE "
+            + LocationStockEntry.COLUMN_PRODUCT_ID + " = " + ProductEntry.TABLE_NAME + "." + ProductEntry._ID
+            + ") >= ?";
+
+    private static final String SQL_QUERY_LOCATION = "SELECT COUNT(*) FROM " + LocationEntry.TABLE_NAME
+            + " WHERE " + LocationEntry._ID + " = ?";
+
+    private static final String SQL_QUERY_TOTAL = "SELECT " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " FROM "
+            + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = ?";
+
+    private static final String SQL_QUERY_LOCATED = "SELECT IFNULL(SUM(" + LocationStockEntry.COLUMN_QUANTITY
+            + "), 0) FROM " + LocationStockEntry.TABLE_NAME + " WHERE " + LocationStockEntry.COLUMN_PRODUCT_ID
+            + " = ?";
+
+    private static final String WHERE_STOCK = " WHERE " + LocationStockEntry.COLUMN_PRODUCT_ID + " = ? AND "
+            + LocationStockEntry.COLUMN_LOCATION_ID + " = ?";
+
+    private static final String SQL_QUERY_STOCK = "SELECT " + LocationStockEntry.COLUMN_QUANTITY + " FROM "
+            + LocationStockEntry.TABLE_NAME + WHERE_STOCK;
+
+    /**
+     * Sets the stock of a product at a location. Bound to the quantity, the product ID and the
+     * location ID.
+     */
+    private static final String SQL_SET_STOCK = "UPDATE " + LocationStockEntry.TABLE_NAME + " SET "
+            + LocationStockEntry.COLUMN_QUANTITY + " = ?" + WHERE_STOCK;
+
+    /**
+     * Takes stock of a product from a location, but only if it has enough. Bound to the
+     * amount, the product ID, the location ID and the amount again.
+     */
+    private static final String SQL_TAKE_STOCK = "UPDATE " + LocationStockEntry.TABLE_NAME + " SET "
+            + LocationStockEntry.COLUMN_QUANTITY + " = " + LocationStockEntry.COLUMN_QUANTITY + " - ?"
+            + WHERE_STOCK + " AND " + LocationStockEntry.COLUMN_QUANTITY + " >= ?";
+
+    private static final String SQL_ADD_STOCK = "UPDATE " + LocationStockEntry.TABLE_NAME + " SET "
+            + LocationStockEntry.COLUMN_QUANTITY + " = " + LocationStockEntry.COLUMN_QUANTITY + " + ?"
+            + WHERE_STOCK;
+
+    private static final String SQL_INSERT_STOCK = "INSERT INTO " + LocationStockEntry.TABLE_NAME + " ("
+            + LocationStockEntry.COLUMN_QUANTITY + ", " + LocationStockEntry.COLUMN_PRODUCT_ID + ", "
+            + LocationStockEntry.COLUMN_LOCATION_ID + ") VALUES (?, ?, ?)";
+
+    private static final String SQL_DELETE_STOCK = "DELETE FROM " + LocationStockEntry.TABLE_NAME + WHERE_STOCK;
+
+    private static final String SQL_QUERY_PRODUCT_STOCK = "SELECT " + LocationStockEntry.COLUMN_LOCATION_ID + ", "
+            + LocationStockEntry.COLUMN_QUANTITY + " FROM " + LocationStockEntry.TABLE_NAME + " WHERE "
+            + LocationStockEntry.COLUMN_PRODUCT_ID + " = ? ORDER BY " + LocationStockEntry.COLUMN_LOCATION_ID;
+
+    /**
+     * Finds a product with more stock at the other locations than a quantity, among the products
+     * of a selection that follows.
+     */
+    private static final String SQL_QUERY_LOCATED_ABOVE = "SELECT 1 FROM " + LocationStockEntry.TABLE_NAME
+            + " WHERE " + LocationStockEntry.COLUMN_PRODUCT_ID + " IN (SELECT " + ProductEntry._ID + " FROM "
+            + ProductEntry.TABLE_NAME;
+
+    private static final String SQL_DELETE_LOCATION_STOCK = "DELETE FROM " + LocationStockEntry.TABLE_NAME
+            + " WHERE " + LocationStockEntry.COLUMN_LOCATION_ID + " = ?";
+
+    private final ProductDbHelper mDbHelper;
+
+    StockLocations(ProductDbHelper dbHelper) {
+        mDbHelper = dbHelper;
+    }
+
+    /**
+     * Returns whether there is a location with the given ID.
+     */
+    boolean exists(long locationId) {
+        return queryLong(SQL_QUERY_LOCATION, 0, locationId) != 0;
+    }
+
+    /**
+     * Returns the quantity of a product, the total at every location, or -1 if there is no
+     * such product.
+     */
+    long getTotal(long productId) {
+        return queryLong(SQL_QUERY_TOTAL, -1, productId);
+    }
+
+    /**
+     * Returns the stock of a product at every location but the default one.
+     */
+    long getLocated(long productId) {
+        return queryLong(SQL_QUERY_LOCATED, 0, productId);
+    }
+
+    /**
+     * Returns whether any product matching a selection has more stock at the other locations
+     * than the given quantity, so setting its quantity to it would leave less than nothing at
+     * the default location.
+     */
+    boolean anyLocatedAbove(String selection, String[] selectionArgs, long quantity) {
+        String where = selection == null ? "" : " WHERE " + selection;
+        // The quantity is written into the SQL, bound as a string it would never compare as less
+        Cursor cursor = mDbHelper.getReadableDatabase().rawQuery(SQL_QUERY_LOCATED_ABOVE + where + ") GROUP BY "
+                + LocationStockEntry.COLUMN_PRODUCT_ID + " HAVING SUM(" + LocationStockEntry.COLUMN_QUANTITY
+                + ") > " + quantity + " LIMIT 1", selectionArgs);
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the stock of a product at a location, 0 if there is no such product.
+     */
+    long getStock(long productId, long locationId) {
+        if (locationId == LocationEntry.DEFAULT_LOCATION_ID) {
+            return Math.max(getTotal(productId), 0) - getLocated(productId);
+        }
+        return queryLong(SQL_QUERY_STOCK, 0, productId, locationId);
+    }
+
+    /**
+     * Set the stock of a product at a location, other than the default one. The caller changes
+     * the quantity of the product by as much.
+     */
+    void setStock(long productId, long locationId, long quantity) {
+        if (quantity == 0) {
+            update(SQL_DELETE_STOCK, productId, locationId);
+        } else if (update(SQL_SET_STOCK, quantity, productId, locationId) == 0) {
+            update(SQL_INSERT_STOCK, quantity, productId, locationId);
+        }
+    }
+
+    /**
+     * Take stock of a product from the other locations, in location order, until they have no
+     * more than the given quantity, so the quantity of the product can be set to it without
+     * leaving less than nothing at the default location. For quantities that change without a
+     * local write, e.g. stock moved on another device. Return whether any stock was taken.
+     */
+    boolean limitLocated(long productId, long quantity) {
+        long excess = getLocated(productId) - Math.max(quantity, 0);
+        if (excess <= 0) {
+            return false;
+        }
+        Cursor cursor = mDbHelper.getReadableDatabase().rawQuery(SQL_QUERY_PRODUCT_STOCK,
+                new String[]{String.valueOf(productId)});
+        try {
+            while (excess > 0 && cursor.moveToNext()) {
+                long stock = cursor.getLong(1);
+                long taken = Math.min(stock, excess);
+                setStock(productId, cursor.getLong(0), stock - taken);
+                excess -= taken;
+            }
+        } finally {
+            cursor.close();
+        }
+        return true;
+    }
+
+    /**
+     * Move the given amount of a product from one location to another, if the first has enough
+     * of it. The quantity of the product stays the same. Return the stock left at the first
+     * location, or -1 if it didn't have enough.
+     */
+    long transfer(long productId, long fromLocationId, long toLocationId, long amount) {
+        long left;
+        if (fromLocationId == LocationEntry.DEFAULT_LOCATION_ID) {
+            long available = getStock(productId, fromLocationId);
+            if (available < amount) {
+                return -1;
+            }
+            left = available - amount;
+        } else {
+            if (update(SQL_TAKE_STOCK, amount, productId, fromLocationId, amount) == 0) {
+                return -1;
+            }
+            left = getStock(productId, fromLocationId);
+            if (left == 0) {
+                update(SQL_DELETE_STOCK, productId, fromLocationId);
+            }
+        }
+        if (toLocationId != LocationEntry.DEFAULT_LOCATION_ID
+                && update(SQL_ADD_STOCK, amount, productId, toLocationId) == 0) {
+            update(SQL_INSERT_STOCK, amount, productId, toLocationId);
+        }
+        return left;
+    }
+
+    /**
+     * Move all the stock at a location back to the default location, before the location is
+     * deleted. Return the number of products that had stock there.
+     */
+    int returnToDefault(long locationId) {
+        return update(SQL_DELETE_LOCATION_STOCK, locationId);
+    }
+
+    /**
+     * Run a cached query for a single number bound to the given numbers. Return the default
+     * if there is no row.
+     */
+    private long queryLong(String sql, long defaultValue, long... bindArgs) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(sql);
+        try {
+            for (int i = 0; i < bindArgs.length; i++) {
+                statement.bindLong(i + 1, bindArgs[i]);
+            }
+            return statement.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            return defaultValue;
+        } finally {
+            mDbHelper.releaseStatement(sql, statement);
+        }
+    }
+
+    /**
+     * Run a cached insert, update or delete bound to the given numbers. Return the number of
+     * rows it changed.
+     */
+    private int update(String sql, long... bindArgs) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(sql);
+        try {
+            for (int i = 0; i < bindArgs.length; i++) {
+                statement.bindLong(i + 1, bindArgs[i]);
+            }
+            return statement.executeUpdateDelete();
+        } finally {
+            mDbHelper.releaseStatement(sql, statement);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.SupplierEntry;
+
+/**
+ * Turns the supplier names and phones written to products into supplier IDs for
+ * {@link ProductProvider} and {@link ProductSync}.
+ *
+ * Every supplier is stored once, so a product row only holds the ID of its supplier. Writing a
+ * supplier name to a product looks the supplier up by its unique name and adds it if there is
+ * none; a phone written along with it becomes the phone of the supplier, and so of every one of
+ * its products. Every lookup is by the unique name or the primary key. A new product comes
+ * before its new supplier, so a product that can't be inserted doesn't leave one behind.
+ *
+ * Like {@link StockLedger}, the methods must be called inside the transaction of the write.
+ */
+final class Suppliers {
+
+    private static final String SQL_QUERY_ID = "SELECT " + SupplierEntry._ID + " FROM "
+            + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry.COLUMN_SUPPLIER_NAME + " = ?";
+
+    private static final String SQL_INSERT = "INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+            + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_PHONE + ") VALUES (?, ?)";
+
+    /**
+     * Sets the phone of a supplier, unless it has that phone already. Bound to the phone, the
+     * supplier ID and the phone again.
+     */
+    private static final String SQL_SET_PHONE = "UPDATE " + SupplierEntry.TABLE_NAME + " SET "
+            + SupplierEntry.COLUMN_SUPPLIER_PHONE + " = ? WHERE " + SupplierEntry._ID + " = ? AND "
+            + SupplierEntry.COLUMN_SUPPLIER_PHONE + " IS NOT ?";
+
+    /**
+     * Start of the statement setting the phone of the suppliers of the products of a
+     * selection that follows.
+     */
+    private static final String SQL_SET_PHONES = SupplierEntry._ID + " IN (SELECT "
+            + ProductEntry.COLUMN_SUPPLIER_ID + " FROM " + ProductEntry.TABLE_NAME;
+
+    private static final String SQL_SET_SUPPLIER = "UPDATE " + ProductEntry.TABLE_NAME + " SET "
+            + ProductEntry.COLUMN_SUPPLIER_ID + " = ? WHERE " + ProductEntry._ID + " = ?";
+
+    private static final String SQL_QUERY_PRODUCT = "SELECT " + ProductEntry._ID + " FROM "
+            + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry.COLUMN_SUPPLIER_ID + " = ? LIMIT 1";
+
+    private final ProductDbHelper mDbHelper;
+
+    Suppliers(ProductDbHelper dbHelper) {
+        mDbHelper = dbHelper;
+    }
+
+    /**
+     * Copy the values of a product into the given row of the products table, with its
+     * supplier name replaced by the supplier ID. A phone without a supplier name isn't copied,
+     * see {@link #setPhones}. Return whether the phone of an existing supplier changed, which
+     * changes every product from it.
+     */
+    boolean toProductRow(ContentValues values, ContentValues row) {
+        return toProductRow(values, row, true);
+    }
+
+    /**
+     * Like {@link #toProductRow}, for a product about to be inserted: a supplier there is none
+     * of yet is left out of the row, to be added by {@link #insertMissing} once the product is
+     * in. A product the insert rejects then leaves no supplier behind.
+     */
+    boolean toNewProductRow(ContentValues values, ContentValues row) {
+        return toProductRow(values, row, false);
+    }
+
+    private boolean toProductRow(ContentValues values, ContentValues row, boolean insertMissing) {
+        row.putAll(values);
+        row.remove(ProductEntry.COLUMN_SUPPLIER_NAME);
+        row.remove(ProductEntry.COLUMN_SUPPLIER_PHONE);
+        // Only ever set through the name
+        row.remove(ProductEntry.COLUMN_SUPPLIER_ID);
+        if (!values.containsKey(ProductEntry.COLUMN_SUPPLIER_NAME)) {
+            return false;
+        }
+        String name = values.getAsString(ProductEntry.COLUMN_SUPPLIER_NAME);
+        if (name == null) {
+            row.putNull(ProductEntry.COLUMN_SUPPLIER_ID);
+            return false;
+        }
+        String phone = values.getAsString(ProductEntry.COLUMN_SUPPLIER_PHONE);
+        long id = getId(name);
+        if (id == -1) {
+            if (insertMissing) {
+                row.put(ProductEntry.COLUMN_SUPPLIER_ID, insert(name, phone));
+            }
+            return false;
+        }
+        row.put(ProductEntry.COLUMN_SUPPLIER_ID, id);
+        return values.containsKey(ProductEntry.COLUMN_SUPPLIER_PHONE) && setPhone(id, phone);
+    }
+
+    /**
+     * Returns whether the given values name a supplier there is none of yet, which
+     * {@link #toProductRow} would add.
+     */
+    boolean isMissing(ContentValues values) {
+        String name = values.getAsString(ProductEntry.COLUMN_SUPPLIER_NAME);
+        return name != null && getId(name) == -1;
+    }
+
+    /**
+     * Add the supplier {@link #toNewProductRow} left out of the row of a product that has been
+     * inserted, if it did, and make it the supplier of the product.
+     */
+    void insertMissing(long productId, ContentValues values, ContentValues row) {
+        String name = values.getAsString(ProductEntry.COLUMN_SUPPLIER_NAME);
+        if (name != null && !row.containsKey(ProductEntry.COLUMN_SUPPLIER_ID)) {
+            insertFor(productId, name, values.getAsString(ProductEntry.COLUMN_SUPPLIER_PHONE));
+        }
+    }
+
+    /**
+     * Add a supplier there is none of yet and make it the supplier of the given product.
+     */
+    void insertFor(long productId, String name, String phone) {
+        long id = insert(name, phone);
+        SQLiteStatement statement = mDbHelper.acquireStatement(SQL_SET_SUPPLIER);
+        try {
+            statement.bindLong(1, id);
+            statement.bindLong(2, productId);
+            statement.executeUpdateDelete();
+        } finally {
+            mDbHelper.releaseStatement(SQL_SET_SUPPLIER, statement);
+        }
+    }
+
+    /**
+     * Returns the ID of the supplier with the given name, or -1 if there is none.
+     */
+    long getId(String name) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(SQL_QUERY_ID);
+        try {
+            statement.bindString(1, name);
+            return statement.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            return -1;
+        } finally {
+            mDbHelper.releaseStatement(SQL_QUERY_ID, statement);
+        }
+    }
+
+    private long insert(String name, String phone) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(SQL_INSERT);
+        try {
+            statement.bindString(1, name);
+            bindString(statement, 2, phone);
+            return statement.executeInsert();
+        } finally {
+            mDbHelper.releaseStatement(SQL_INSERT, statement);
+        }
+    }
+
+    /**
+     * Set the phone of a supplier. Return whether it changed.
+     */
+    boolean setPhone(long id, String phone) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(SQL_SET_PHONE);
+        try {
+            bindString(statement, 1, phone);
+            statement.bindLong(2, id);
+            bindString(statement, 3, phone);
+            return statement.executeUpdateDelete() != 0;
+        } finally {
+            mDbHelper.releaseStatement(SQL_SET_PHONE, statement);
+        }
+    }
+
+    /**
+     * Set the phone of the suppliers of the products matching a selection. Return the number
+     * of suppliers whose phone changed.
+     */
+    int setPhones(String selection, String[] selectionArgs, String phone) {
+        String where = SQL_SET_PHONES + (selection == null ? "" : " WHERE " + selection) + ") AND "
+                + SupplierEntry.COLUMN_SUPPLIER_PHONE + (phone == null ? " IS NOT NULL" : " IS NOT ?");
+        if (phone != null) {
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, new String[]{phone});
+        }
+        ContentValues values = new ContentValues(1);
+        values.put(SupplierEntry.COLUMN_SUPPLIER_PHONE, phone);
+        return mDbHelper.getWritableDatabase().update(SupplierEntry.TABLE_NAME, values, where, selectionArgs);
+    }
+
+    /**
+     * Returns whether any product is from the given supplier.
+     */
+    boolean hasProducts(long id) {
+        SQLiteStatement statement = mDbHelper.acquireStatement(SQL_QUERY_PRODUCT);
+        try {
+            statement.bindLong(1, id);
+            statement.simpleQueryForLong();
+            return true;
+        } catch (SQLiteDoneException e) {
+            return false;
+        } finally {
+            mDbHelper.releaseStatement(SQL_QUERY_PRODUCT, statement);
+        }
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
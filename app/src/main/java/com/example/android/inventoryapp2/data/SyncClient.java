@@ -0,0 +1,285 @@
+package com.example.android.inventoryapp2.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Talks to the inventory server for {@link ProductSync}. Changes travel as CSV in both
+ * directions, one row per product, with the columns of {@link #COLUMNS}:
+ *
+ *     POST {server}/push?device={device}
+ *         the changes of this device, quantity being the device's running total of its own
+ *         stock movements for the product. Being a total rather than a difference, a push
+ *         that is sent again after a lost response is applied only once.
+ *     GET {server}/pull?device={device}&since={token}&limit={limit}
+ *         the changes after the token in the order the server made them, quantity being the
+ *         stock every other device has moved. The response headers {@link #HEADER_TOKEN} and
+ *         {@link #HEADER_MORE} give the token to pull from next and whether there is more.
+ *
+ * Counts the bytes of the request and response bodies. Plain Java, so the benchmark module
+ * can run it against its stand-in server on a desktop JVM.
+ */
+final class SyncClient {
+
+    /** Columns of a change, in order */
+    static final String[] COLUMNS = {
+            "global_id", "version", "deleted",
+            ProductContract.ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductContract.ProductEntry.COLUMN_SUPPLIER_NAME,
+            ProductContract.ProductEntry.COLUMN_SUPPLIER_PHONE,
+            ProductContract.ProductEntry.COLUMN_PRODUCT_TYPE,
+            ProductContract.ProductEntry.COLUMN_PRODUCT_PRICE,
+            ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY};
+
+    static final String PATH_PUSH = "/push";
+    static final String PATH_PULL = "/pull";
+    static final String HEADER_TOKEN = "X-Sync-Token";
+    static final String HEADER_MORE = "X-Sync-More";
+    static final String CONTENT_TYPE = "text/csv; charset=utf-8";
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 15 * 1000;
+    private static final int READ_TIMEOUT_MILLIS = 30 * 1000;
+
+    /**
+     * The change of one product. A deleted product only has its global ID and version.
+     */
+    static final class Change {
+        /** ID of the product on every device */
+        String globalId;
+        /** Order of the change on the device or server that sent it */
+        long version;
+        boolean deleted;
+        String name;
+        String supplier;
+        String phone;
+        int type;
+        int price;
+        long quantity;
+    }
+
+    /**
+     * A page of changes pulled from the server.
+     */
+    static final class Page {
+        final List<Change> changes;
+        /** The token to pull the next page from */
+        final String token;
+        final boolean more;
+
+        Page(List<Change> changes, String token, boolean more) {
+            this.changes = changes;
+            this.token = token;
+            this.more = more;
+        }
+    }
+
+    private final String mServer;
+    private final String mDevice;
+    private long mBytesSent;
+    private long mBytesReceived;
+
+    /**
+     * @param server base URL of the server, without a trailing slash
+     * @param device ID of this device
+     */
+    SyncClient(String server, String device) {
+        mServer = server;
+        mDevice = device;
+    }
+
+    /**
+     * Send changes of this device to the server.
+     */
+    void push(List<Change> changes) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(changes.size() * 64);
+        writeChanges(body, changes);
+        byte[] bytes = body.toByteArray();
+
+        HttpURLConnection connection = open(PATH_PUSH + "?device=" + encode(mDevice));
+        try {
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+            connection.setFixedLengthStreamingMode(bytes.length);
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+            mBytesSent += bytes.length;
+            checkResponse(connection);
+            // Drain the response so the connection can be reused
+            InputStream in = new CountingInputStream(connection.getInputStream());
+            try {
+                byte[] buffer = new byte[256];
+                while (in.read(buffer) != -1) {
+                    // Nothing in it
+                }
+            } finally {
+                in.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Fetch up to {@code limit} changes made on the server after the given token, null for
+     * every change.
+     */
+    Page pull(String token, int limit) throws IOException {
+        HttpURLConnection connection = open(PATH_PULL + "?device=" + encode(mDevice)
+                + "&since=" + encode(token == null ? "" : token) + "&limit=" + limit);
+        try {
+            checkResponse(connection);
+            String nextToken = connection.getHeaderField(HEADER_TOKEN);
+            if (nextToken == null) {
+                throw new IOException("Sync server sent no " + HEADER_TOKEN);
+            }
+            boolean more = Boolean.parseBoolean(connection.getHeaderField(HEADER_MORE));
+            ArrayList<Change> changes = new ArrayList<>();
+            Reader reader = new InputStreamReader(new CountingInputStream(connection.getInputStream()), "UTF-8");
+            try {
+                readChanges(reader, changes);
+            } finally {
+                reader.close();
+            }
+            return new Page(changes, nextToken, more);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    long getBytesSent() {
+        return mBytesSent;
+    }
+
+    long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(mServer + path).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        return connection;
+    }
+
+    private static void checkResponse(HttpURLConnection connection) throws IOException {
+        int code = connection.getResponseCode();
+        if (code < 200 || code >= 300) {
+            throw new IOException("Sync server returned " + code + " for " + connection.getURL());
+        }
+    }
+
+    private static String encode(String value) throws IOException {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+
+    /**
+     * Write changes as CSV with a header.
+     */
+    static void writeChanges(OutputStream out, List<Change> changes) throws IOException {
+        ExportWriter writer = new ExportWriter(Channels.newChannel(out),
+                ProductContract.ProductEntry.EXPORT_FORMAT_CSV, COLUMNS);
+        for (Change change : changes) {
+            writer.writeString(change.globalId);
+            writer.writeLong(change.version);
+            writer.writeLong(change.deleted ? 1 : 0);
+            if (change.deleted) {
+                for (int i = 3; i < COLUMNS.length; i++) {
+                    writer.writeString(null);
+                }
+            } else {
+                writer.writeString(change.name);
+                writer.writeString(change.supplier);
+                writer.writeString(change.phone);
+                writer.writeLong(change.type);
+                writer.writeLong(change.price);
+                writer.writeLong(change.quantity);
+            }
+            writer.endRow();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Read changes written by {@link #writeChanges}, adding them to the given list.
+     */
+    static void readChanges(Reader in, List<Change> changes) throws IOException {
+        CsvReader reader = new CsvReader(in);
+        ArrayList<String> record = new ArrayList<>(COLUMNS.length);
+        if (!reader.readRecord(record)) {
+            return;
+        }
+        if (record.size() != COLUMNS.length) {
+            throw new IOException("Unexpected sync columns " + record);
+        }
+        while (reader.readRecord(record)) {
+            if (record.size() != COLUMNS.length) {
+                throw new IOException("Sync change on line " + reader.getRecordLine() + " has "
+                        + record.size() + " columns");
+            }
+            try {
+                Change change = new Change();
+                change.globalId = record.get(0);
+                change.version = Long.parseLong(record.get(1));
+                change.deleted = !record.get(2).equals("0");
+                if (!change.deleted) {
+                    change.name = emptyToNull(record.get(3));
+                    change.supplier = emptyToNull(record.get(4));
+                    change.phone = emptyToNull(record.get(5));
+                    change.type = Integer.parseInt(record.get(6));
+                    change.price = Integer.parseInt(record.get(7));
+                    change.quantity = Long.parseLong(record.get(8));
+                }
+                changes.add(change);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid sync change on line " + reader.getRecordLine(), e);
+            }
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Counts the bytes read into {@link #mBytesReceived}.
+     */
+    private final class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mBytesReceived++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                mBytesReceived += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentValues;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks {@link ProductCache} against a {@link LinkedHashMap} in access order. The rows are
+ * only compared by identity. Small caches over a small range of IDs make most IDs share probe
+ * sequences, so removals shift entries back and move the last entry into the hole all the time.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ProductCacheTest {
+
+    @Test
+    public void getReturnsWhatWasPut() {
+        ProductCache cache = new ProductCache(4);
+        ContentValues row = new ContentValues();
+        cache.put(7, row, cache.generation());
+        assertSame(row, cache.get(7));
+        assertNull(cache.get(8));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ProductCache cache = new ProductCache(3);
+        ContentValues[] rows = put(cache, 1, 2, 3);
+        // 1 becomes the most recently used, so 2 is evicted
+        cache.get(1);
+        cache.put(4, new ContentValues(), cache.generation());
+        assertNull(cache.get(2));
+        assertSame(rows[0], cache.get(1));
+        assertSame(rows[2], cache.get(3));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void removeKeepsTheOtherEntries() {
+        ProductCache cache = new ProductCache(8);
+        ContentValues[] rows = put(cache, 1, 2, 3, 4, 5, 6, 7, 8);
+        // The head, the tail, the last entry and one in the middle
+        cache.remove(8);
+        cache.remove(1);
+        cache.remove(4);
+        assertEquals(5, cache.size());
+        for (long id : new long[]{2, 3, 5, 6, 7}) {
+            assertSame(rows[(int) id - 1], cache.get(id));
+        }
+        // Refilling evicts in the order of use: 2 was used first
+        put(cache, 9, 10, 11, 12);
+        assertNull(cache.get(2));
+        assertSame(rows[2], cache.get(3));
+        assertEquals(8, cache.size());
+    }
+
+    @Test
+    public void putAfterAWriteIsIgnored() {
+        ProductCache cache = new ProductCache(4);
+        long generation = cache.generation();
+        cache.remove(5);
+        cache.put(1, new ContentValues(), generation);
+        assertNull(cache.get(1));
+
+        generation = cache.generation();
+        cache.clear();
+        cache.put(1, new ContentValues(), generation);
+        assertNull(cache.get(1));
+
+        ContentValues row = new ContentValues();
+        cache.put(1, row, cache.generation());
+        assertSame(row, cache.get(1));
+    }
+
+    @Test
+    public void capacityZeroCachesNothing() {
+        ProductCache cache = new ProductCache(0);
+        cache.put(1, new ContentValues(), cache.generation());
+        assertNull(cache.get(1));
+        cache.remove(1);
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void matchesAnLruMapWithCollidingIds() {
+        for (int capacity = 1; capacity <= 9; capacity++) {
+            ProductCache cache = new ProductCache(capacity);
+            Map<Long, ContentValues> model = newModel(capacity);
+            Random random = new Random(capacity);
+            for (int i = 0; i < 20000; i++) {
+                long id = 1 + random.nextInt(4 * capacity);
+                int operation = random.nextInt(10);
+                if (operation < 4) {
+                    ContentValues row = new ContentValues();
+                    cache.put(id, row, cache.generation());
+                    model.put(id, row);
+                } else if (operation < 7) {
+                    assertSame("Capacity " + capacity + ", step " + i, model.get(id), cache.get(id));
+                } else if (operation < 9) {
+                    cache.remove(id);
+                    model.remove(id);
+                } else if (random.nextInt(50) == 0) {
+                    cache.clear();
+                    model.clear();
+                }
+                assertEquals(model.size(), cache.size());
+            }
+            // Everything the model still holds is found
+            for (Map.Entry<Long, ContentValues> entry : model.entrySet()) {
+                assertSame(entry.getValue(), cache.get(entry.getKey()));
+            }
+        }
+    }
+
+    private static ContentValues[] put(ProductCache cache, long... ids) {
+        ContentValues[] rows = new ContentValues[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            rows[i] = new ContentValues();
+            cache.put(ids[i], rows[i], cache.generation());
+        }
+        return rows;
+    }
+
+    private static Map<Long, ContentValues> newModel(final int capacity) {
+        return new LinkedHashMap<Long, ContentValues>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ContentValues> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+}
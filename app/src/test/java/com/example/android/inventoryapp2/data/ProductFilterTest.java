@@ -0,0 +1,155 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.SupplierEntry;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the selections, arguments, sort orders and indexes {@link ProductFilter#parse} builds
+ * from query parameters. The query plans they lead to are checked by the benchmark module,
+ * against SQLite.
+ */
+public class ProductFilterTest {
+
+    @Test
+    public void noParameters() {
+        assertSame(ProductFilter.NONE, parse());
+        assertEquals(ProductDbHelper.PRODUCTS_WITH_SUPPLIERS, ProductFilter.NONE.getTable());
+    }
+
+    @Test
+    public void type() {
+        ProductFilter filter = parse(ProductEntry.QUERY_PARAMETER_TYPE, String.valueOf(ProductEntry.GOODS));
+        assertEquals(ProductEntry.COLUMN_PRODUCT_TYPE + " = ?", filter.selection);
+        assertArrayEquals(new String[]{String.valueOf(ProductEntry.GOODS)}, filter.selectionArgs);
+        assertEquals(ProductDbHelper.INDEX_TYPE_QUANTITY, filter.index);
+        assertNull(filter.sortOrder);
+        assertEquals("(" + ProductDbHelper.SQL_SELECT_PRODUCTS + " INDEXED BY "
+                + ProductDbHelper.INDEX_TYPE_QUANTITY + ProductDbHelper.SQL_JOIN_SUPPLIERS + ")", filter.getTable());
+    }
+
+    @Test
+    public void supplierIsLookedUpByName() {
+        ProductFilter filter = parse(ProductEntry.QUERY_PARAMETER_SUPPLIER, "tea Co");
+        assertEquals(ProductEntry.COLUMN_SUPPLIER_ID + " = (SELECT " + SupplierEntry._ID + " FROM "
+                + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry.COLUMN_SUPPLIER_NAME + " = ?)", filter.selection);
+        assertArrayEquals(new String[]{"tea Co"}, filter.selectionArgs);
+        assertEquals(ProductDbHelper.INDEX_SUPPLIER_ID, filter.index);
+    }
+
+    @Test
+    public void supplierIndexWinsOverType() {
+        ProductFilter filter = parse(ProductEntry.QUERY_PARAMETER_TYPE, String.valueOf(ProductEntry.GROCERY),
+                ProductEntry.QUERY_PARAMETER_SUPPLIER, "tea Co",
+                ProductEntry.QUERY_PARAMETER_MIN_PRICE, "100");
+        assertEquals(ProductDbHelper.INDEX_SUPPLIER_ID, filter.index);
+        // The arguments are in the order of the terms, whatever the order of the parameters
+        assertArrayEquals(new String[]{String.valueOf(ProductEntry.GROCERY), "tea Co", "100"},
+                filter.selectionArgs);
+    }
+
+    @Test
+    public void typeIndexServesQuantityRange() {
+        ProductFilter filter = parse(ProductEntry.QUERY_PARAMETER_TYPE, String.valueOf(ProductEntry.GOODS),
+                ProductEntry.QUERY_PARAMETER_MAX_QUANTITY, "10");
+        assertEquals(ProductEntry.COLUMN_PRODUCT_TYPE + " = ? AND "
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " <= ?", filter.selection);
+        assertEquals(ProductDbHelper.INDEX_TYPE_QUANTITY, filter.index);
+    }
+
+    @Test
+    public void priceRange() {
+        ProductFilter filter = parse(ProductEntry.QUERY_PARAMETER_MIN_PRICE, "100",
+                ProductEntry.QUERY_PARAMETER_MAX_PRICE, "150",
+                ProductEntry.QUERY_PARAMETER_MIN_QUANTITY, "1");
+        assertEquals(ProductEntry.COLUMN_PRODUCT_PRICE + " >= ? AND " + ProductEntry.COLUMN_PRODUCT_PRICE
+                + " <= ? AND " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " >= ?", filter.selection);
+        assertArrayEquals(new String[]{"100", "150", "1"}, filter.selectionArgs);
+        assertEquals(ProductDbHelper.INDEX_PRICE, filter.index);
+    }
+
+    @Test
+    public void quantityRange() {
+        ProductFilter filter = parse(ProductEntry.QUERY_PARAMETER_MIN_QUANTITY, "1");
+        assertEquals(ProductEntry.COLUMN_PRODUCT_QUANTITY + " >= ?", filter.selection);
+        assertEquals(ProductDbHelper.INDEX_QUANTITY, filter.index);
+    }
+
+    @Test
+    public void numbersAreNormalized() {
+        ProductFilter filter = parse(ProductEntry.QUERY_PARAMETER_MIN_PRICE, "0100");
+        assertArrayEquals(new String[]{"100"}, filter.selectionArgs);
+    }
+
+    @Test
+    public void sortWithoutFilter() {
+        ProductFilter filter = parse(ProductEntry.QUERY_PARAMETER_SORT, ProductEntry.SORT_PRICE);
+        assertNull(filter.selection);
+        assertNull(filter.selectionArgs);
+        assertNull(filter.index);
+        assertEquals(ProductEntry.COLUMN_PRODUCT_PRICE + ", " + ProductEntry._ID, filter.sortOrder);
+        assertEquals(ProductDbHelper.PRODUCTS_WITH_SUPPLIERS, filter.getTable());
+    }
+
+    @Test
+    public void sortOrders() {
+        assertEquals(ProductEntry.SORT_ORDER_NAME, sortOrder(ProductEntry.SORT_NAME, null));
+        assertEquals(ProductEntry.SORT_ORDER_NAME, sortOrder(ProductEntry.SORT_NAME, ProductEntry.ORDER_ASCENDING));
+        assertEquals(ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE DESC, " + ProductEntry._ID + " DESC",
+                sortOrder(ProductEntry.SORT_NAME, ProductEntry.ORDER_DESCENDING));
+        assertEquals(ProductEntry.COLUMN_PRODUCT_QUANTITY + " DESC, " + ProductEntry._ID + " DESC",
+                sortOrder(ProductEntry.SORT_QUANTITY, ProductEntry.ORDER_DESCENDING));
+        assertEquals(ProductEntry.SORT_ORDER_ID, sortOrder(ProductEntry.SORT_ID, null));
+        assertEquals(ProductEntry._ID + " DESC", sortOrder(ProductEntry.SORT_ID, ProductEntry.ORDER_DESCENDING));
+    }
+
+    @Test
+    public void invalidParameters() {
+        assertInvalid(ProductEntry.QUERY_PARAMETER_TYPE, "7");
+        assertInvalid(ProductEntry.QUERY_PARAMETER_TYPE, "4294967298");
+        assertInvalid(ProductEntry.QUERY_PARAMETER_TYPE, "goods");
+        assertInvalid(ProductEntry.QUERY_PARAMETER_MIN_PRICE, "-1");
+        assertInvalid(ProductEntry.QUERY_PARAMETER_MAX_QUANTITY, "");
+        assertInvalid(ProductEntry.QUERY_PARAMETER_SORT, "supplier");
+        assertInvalid(ProductEntry.QUERY_PARAMETER_SORT, ProductEntry.SORT_PRICE,
+                ProductEntry.QUERY_PARAMETER_ORDER, "down");
+        // A direction means nothing without a sort key
+        assertInvalid(ProductEntry.QUERY_PARAMETER_ORDER, ProductEntry.ORDER_ASCENDING);
+    }
+
+    private static String sortOrder(String sort, String order) {
+        return order == null ? parse(ProductEntry.QUERY_PARAMETER_SORT, sort).sortOrder
+                : parse(ProductEntry.QUERY_PARAMETER_SORT, sort, ProductEntry.QUERY_PARAMETER_ORDER, order).sortOrder;
+    }
+
+    private static void assertInvalid(String... parameters) {
+        try {
+            parse(parameters);
+            fail("Parsed invalid parameters " + toMap(parameters));
+        } catch (IllegalArgumentException expected) {
+            // The parameters were rejected
+        }
+    }
+
+    private static ProductFilter parse(String... parameters) {
+        return ProductFilter.parse(toMap(parameters));
+    }
+
+    private static Map<String, String> toMap(String... parameters) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            map.put(parameters[i], parameters[i + 1]);
+        }
+        return map;
+    }
+}
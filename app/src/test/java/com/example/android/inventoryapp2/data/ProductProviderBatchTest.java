@@ -0,0 +1,120 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.SupplierEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs batches through {@link ProductProvider#applyBatch} against the platform SQLite. Every
+ * write of a batch runs in a transaction nested in the batch's, so one that ends unsuccessfully
+ * would roll back the writes before and after it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ProductProviderBatchTest {
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(ProductProvider.class, ProductContract.CONTENT_AUTHORITY);
+        mResolver = RuntimeEnvironment.application.getContentResolver();
+    }
+
+    @Test
+    public void updateMatchingNothingKeepsTheRestOfTheBatch() throws Exception {
+        Uri tea = mResolver.insert(ProductEntry.CONTENT_URI, product("tea", "tea Co"));
+        Uri missing = ContentUris.withAppendedId(ProductEntry.CONTENT_URI, ContentUris.parseId(tea) + 1000);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(ProductEntry.CONTENT_URI)
+                .withValues(product("rice", "rice Co")).build());
+        operations.add(ContentProviderOperation.newUpdate(missing)
+                .withValue(ProductEntry.COLUMN_PRODUCT_QUANTITY, 3).build());
+        operations.add(ContentProviderOperation.newUpdate(tea)
+                .withValue(ProductEntry.COLUMN_PRODUCT_QUANTITY, 7).build());
+        ContentProviderResult[] results = mResolver.applyBatch(ProductContract.CONTENT_AUTHORITY, operations);
+
+        assertEquals(0, (int) results[1].count);
+        assertEquals(1, (int) results[2].count);
+        assertEquals(2, count(ProductEntry.CONTENT_URI));
+        assertEquals(7, getQuantity(tea));
+        assertTrue(hasSupplier("rice Co"));
+    }
+
+    @Test
+    public void updateMatchingNothingAddsNoSupplier() throws Exception {
+        Uri tea = mResolver.insert(ProductEntry.CONTENT_URI, product("tea", "tea Co"));
+        Uri missing = ContentUris.withAppendedId(ProductEntry.CONTENT_URI, ContentUris.parseId(tea) + 1000);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newUpdate(missing)
+                .withValue(ProductEntry.COLUMN_SUPPLIER_NAME, "gone Co").build());
+        operations.add(ContentProviderOperation.newUpdate(tea)
+                .withValue(ProductEntry.COLUMN_SUPPLIER_NAME, "salt Co").build());
+        ContentProviderResult[] results = mResolver.applyBatch(ProductContract.CONTENT_AUTHORITY, operations);
+
+        assertEquals(0, (int) results[0].count);
+        assertEquals(1, (int) results[1].count);
+        assertFalse(hasSupplier("gone Co"));
+        assertTrue(hasSupplier("salt Co"));
+    }
+
+    private static ContentValues product(String name, String supplier) {
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, name);
+        values.put(ProductEntry.COLUMN_PRODUCT_TYPE, ProductEntry.GOODS);
+        values.put(ProductEntry.COLUMN_PRODUCT_PRICE, 100);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 1);
+        values.put(ProductEntry.COLUMN_SUPPLIER_NAME, supplier);
+        return values;
+    }
+
+    private int count(Uri uri) {
+        Cursor cursor = mResolver.query(uri, new String[]{ProductEntry._ID}, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int getQuantity(Uri uri) {
+        Cursor cursor = mResolver.query(uri, new String[]{ProductEntry.COLUMN_PRODUCT_QUANTITY}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private boolean hasSupplier(String name) {
+        Cursor cursor = mResolver.query(SupplierEntry.CONTENT_URI, new String[]{SupplierEntry._ID},
+                SupplierEntry.COLUMN_SUPPLIER_NAME + " = ?", new String[]{name}, null);
+        try {
+            return cursor.getCount() != 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
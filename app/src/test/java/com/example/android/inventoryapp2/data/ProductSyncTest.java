@@ -0,0 +1,185 @@
+package com.example.android.inventoryapp2.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Syncs two devices, each with a database of its own, through {@link StandInSyncServer} and
+ * checks what {@link ProductSync} merges: quantities moved on both devices add up, deletions
+ * reach the other device, and a local change that hasn't been pushed keeps its attributes.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ProductSyncTest {
+
+    private StandInSyncServer mServer;
+    private Device mDeviceA;
+    private Device mDeviceB;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = StandInSyncServer.start();
+        mDeviceA = new Device("device_a.db");
+        mDeviceB = new Device("device_b.db");
+    }
+
+    @After
+    public void tearDown() {
+        mDeviceA.dbHelper.close();
+        mDeviceB.dbHelper.close();
+        mServer.close();
+    }
+
+    @Test
+    public void quantitiesMovedOnBothDevicesAddUp() throws IOException {
+        long teaA = mDeviceA.insert("tea", 10);
+        mDeviceA.sync();
+        mDeviceB.sync();
+        long teaB = mDeviceB.findId("tea");
+        assertEquals(10, mDeviceB.getQuantity(teaB));
+
+        // Both sell before hearing of the other's sale
+        mDeviceA.update(teaA, ProductEntry.COLUMN_PRODUCT_QUANTITY, 7);
+        mDeviceB.update(teaB, ProductEntry.COLUMN_PRODUCT_QUANTITY, 8);
+        mDeviceA.sync();
+        mDeviceB.sync();
+        mDeviceA.sync();
+
+        assertEquals(5, mDeviceA.getQuantity(teaA));
+        assertEquals(5, mDeviceB.getQuantity(teaB));
+        assertEquals(Long.valueOf(5), mServer.getQuantity(mDeviceA.getGlobalId(teaA)));
+    }
+
+    @Test
+    public void deletionReachesTheOtherDevice() throws IOException {
+        long teaA = mDeviceA.insert("tea", 10);
+        mDeviceA.sync();
+        mDeviceB.sync();
+        String globalId = mDeviceA.getGlobalId(teaA);
+
+        mDeviceA.delete(teaA);
+        mDeviceA.sync();
+        // The tombstone is gone once the server has the deletion
+        assertEquals(0, mDeviceA.countSyncRows());
+        mDeviceB.sync();
+
+        assertEquals(-1, mDeviceB.findId("tea"));
+        assertEquals(0, mDeviceB.countSyncRows());
+        assertNull(mServer.getQuantity(globalId));
+    }
+
+    @Test
+    public void unpushedLocalAttributesWin() throws IOException {
+        long teaA = mDeviceA.insert("tea", 10);
+        mDeviceA.sync();
+        mDeviceB.sync();
+        long teaB = mDeviceB.findId("tea");
+
+        mDeviceA.update(teaA, ProductEntry.COLUMN_PRODUCT_PRICE, 200);
+        mDeviceA.update(teaA, ProductEntry.COLUMN_PRODUCT_QUANTITY, 9);
+        mDeviceA.sync();
+        // Renamed on B, and pulled before B pushed the new name
+        mDeviceB.update(teaB, ProductEntry.COLUMN_PRODUCT_NAME, "black tea");
+        mDeviceB.sync.pull(mDeviceB.newClient(), new ProductSync.Result());
+
+        // B keeps its attributes, but takes the quantity A moved
+        assertEquals("black tea", mDeviceB.getString(teaB, ProductEntry.COLUMN_PRODUCT_NAME));
+        assertEquals("100", mDeviceB.getString(teaB, ProductEntry.COLUMN_PRODUCT_PRICE));
+        assertEquals(9, mDeviceB.getQuantity(teaB));
+
+        // The name is pushed with the next sync
+        mDeviceB.sync();
+        mDeviceA.sync();
+        assertEquals("black tea", mDeviceA.getString(teaA, ProductEntry.COLUMN_PRODUCT_NAME));
+        assertEquals(9, mDeviceA.getQuantity(teaA));
+    }
+
+    /**
+     * One device: its database and its sync, writing the products table directly.
+     */
+    private final class Device {
+        final ProductDbHelper dbHelper;
+        final ProductSync sync;
+
+        Device(String databaseName) {
+            dbHelper = new ProductDbHelper(RuntimeEnvironment.application, databaseName, ProductDbSettings.DEFAULT);
+            sync = new ProductSync(dbHelper, new StockLedger(dbHelper), new Suppliers(dbHelper),
+                    new StockAlerts(dbHelper), new StockLocations(dbHelper));
+        }
+
+        SyncClient newClient() {
+            return new SyncClient(mServer.getUrl(), sync.getDevice());
+        }
+
+        void sync() throws IOException {
+            sync.sync(newClient(), new ProductSync.Result());
+        }
+
+        long insert(String name, int quantity) {
+            ContentValues values = new ContentValues();
+            values.put(ProductEntry.COLUMN_PRODUCT_NAME, name);
+            values.put(ProductEntry.COLUMN_PRODUCT_TYPE, ProductEntry.GOODS);
+            values.put(ProductEntry.COLUMN_PRODUCT_PRICE, 100);
+            values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, quantity);
+            return database().insertOrThrow(ProductEntry.TABLE_NAME, null, values);
+        }
+
+        void update(long id, String column, Object value) {
+            ContentValues values = new ContentValues();
+            values.put(column, value.toString());
+            assertEquals(1, database().update(ProductEntry.TABLE_NAME, values,
+                    ProductEntry._ID + " = ?", new String[]{String.valueOf(id)}));
+        }
+
+        void delete(long id) {
+            assertEquals(1, database().delete(ProductEntry.TABLE_NAME, ProductEntry._ID + " = ?",
+                    new String[]{String.valueOf(id)}));
+        }
+
+        /**
+         * Returns the ID of the product with the given name, -1 if there is none.
+         */
+        long findId(String name) {
+            return DatabaseUtils.longForQuery(database(), "SELECT coalesce(max(" + ProductEntry._ID + "), -1) FROM "
+                    + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry.COLUMN_PRODUCT_NAME + " = ?",
+                    new String[]{name});
+        }
+
+        long getQuantity(long id) {
+            return Long.parseLong(getString(id, ProductEntry.COLUMN_PRODUCT_QUANTITY));
+        }
+
+        String getString(long id, String column) {
+            return DatabaseUtils.stringForQuery(database(), "SELECT " + column + " FROM "
+                    + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = ?", new String[]{String.valueOf(id)});
+        }
+
+        String getGlobalId(long id) {
+            return DatabaseUtils.stringForQuery(database(), "SELECT " + ProductSync.COLUMN_GLOBAL_ID + " FROM "
+                    + ProductSync.TABLE_NAME + " WHERE " + ProductSync.COLUMN_PRODUCT_ID + " = ?",
+                    new String[]{String.valueOf(id)});
+        }
+
+        long countSyncRows() {
+            return DatabaseUtils.queryNumEntries(database(), ProductSync.TABLE_NAME);
+        }
+
+        private SQLiteDatabase database() {
+            return dbHelper.getWritableDatabase();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.android.inventoryapp2.data;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-process stand-in for the inventory server {@link SyncClient} talks to, serving the same
+ * protocol over HTTP on a loopback port and keeping everything in memory.
+ *
+ * Every change it accepts takes the next server version, which is also the pull token. The
+ * attributes of a product are those of the last push. Its quantity is the sum of what every
+ * device has moved, each device's share being the running total it last pushed, so a push
+ * that arrives twice counts once. A pull returns the quantity without the pulling device's
+ * own share.
+ */
+final class StandInSyncServer implements Closeable {
+
+    /**
+     * A product as the server keeps it.
+     */
+    private static final class Product {
+        final SyncClient.Change latest = new SyncClient.Change();
+        long quantity;
+        final Map<String, Long> shares = new HashMap<>();
+    }
+
+    private final HttpServer mServer;
+
+    /** Products by global ID, and the same products by the version of their last change */
+    private final Map<String, Product> mProducts = new HashMap<>();
+    private final TreeMap<Long, Product> mChanges = new TreeMap<>();
+    private long mVersion;
+
+    private StandInSyncServer(HttpServer server) {
+        mServer = server;
+    }
+
+    /**
+     * Start a server on a free loopback port.
+     */
+    static StandInSyncServer start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        final StandInSyncServer standIn = new StandInSyncServer(server);
+        server.createContext(SyncClient.PATH_PUSH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                standIn.handlePush(exchange);
+            }
+        });
+        server.createContext(SyncClient.PATH_PULL, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                standIn.handlePull(exchange);
+            }
+        });
+        server.start();
+        return standIn;
+    }
+
+    /**
+     * The base URL to hand to {@link SyncClient}.
+     */
+    String getUrl() {
+        return "http://" + mServer.getAddress().getHostString() + ":" + mServer.getAddress().getPort();
+    }
+
+    /**
+     * The quantity of a product summed over every device, or null if there is no such product.
+     */
+    synchronized Long getQuantity(String globalId) {
+        Product product = mProducts.get(globalId);
+        return product == null || product.latest.deleted ? null : product.quantity;
+    }
+
+    @Override
+    public void close() {
+        mServer.stop(0);
+    }
+
+    private void handlePush(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String device = parseQuery(exchange).get("device");
+            ArrayList<SyncClient.Change> changes = new ArrayList<>();
+            SyncClient.readChanges(new InputStreamReader(exchange.getRequestBody(), "UTF-8"), changes);
+            if (device == null) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            push(device, changes);
+            exchange.sendResponseHeaders(204, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handlePull(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> query = parseQuery(exchange);
+            String device = query.get("device");
+            String since = query.get("since");
+            String limit = query.get("limit");
+            if (device == null || limit == null) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            ArrayList<SyncClient.Change> changes = new ArrayList<>();
+            boolean more = pull(device, since == null || since.isEmpty() ? 0 : Long.parseLong(since),
+                    Integer.parseInt(limit), changes);
+            ByteArrayOutputStream body = new ByteArrayOutputStream(changes.size() * 64);
+            SyncClient.writeChanges(body, changes);
+
+            String token = changes.isEmpty() ? (since == null || since.isEmpty() ? "0" : since)
+                    : String.valueOf(changes.get(changes.size() - 1).version);
+            exchange.getResponseHeaders().set("Content-Type", SyncClient.CONTENT_TYPE);
+            exchange.getResponseHeaders().set(SyncClient.HEADER_TOKEN, token);
+            exchange.getResponseHeaders().set(SyncClient.HEADER_MORE, String.valueOf(more));
+            exchange.sendResponseHeaders(200, body.size());
+            OutputStream out = exchange.getResponseBody();
+            body.writeTo(out);
+            out.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private synchronized void push(String device, List<SyncClient.Change> changes) {
+        for (SyncClient.Change change : changes) {
+            Product product = mProducts.get(change.globalId);
+            if (product == null) {
+                product = new Product();
+                product.latest.globalId = change.globalId;
+                mProducts.put(change.globalId, product);
+            } else if (product.latest.deleted) {
+                // A deletion is final
+                continue;
+            } else {
+                mChanges.remove(product.latest.version);
+            }
+            if (change.deleted) {
+                product.latest.deleted = true;
+            } else {
+                product.latest.name = change.name;
+                product.latest.supplier = change.supplier;
+                product.latest.phone = change.phone;
+                product.latest.type = change.type;
+                product.latest.price = change.price;
+                Long share = product.shares.put(device, change.quantity);
+                product.quantity += change.quantity - (share == null ? 0 : share);
+            }
+            product.latest.version = ++mVersion;
+            mChanges.put(product.latest.version, product);
+        }
+    }
+
+    /**
+     * Add up to {@code limit} changes after the given version to {@code changes}, return
+     * whether there are more.
+     */
+    private synchronized boolean pull(String device, long since, int limit, List<SyncClient.Change> changes) {
+        Iterator<Product> products = mChanges.tailMap(since, false).values().iterator();
+        while (products.hasNext() && changes.size() < limit) {
+            Product product = products.next();
+            SyncClient.Change change = new SyncClient.Change();
+            change.globalId = product.latest.globalId;
+            change.version = product.latest.version;
+            change.deleted = product.latest.deleted;
+            change.name = product.latest.name;
+            change.supplier = product.latest.supplier;
+            change.phone = product.latest.phone;
+            change.type = product.latest.type;
+            change.price = product.latest.price;
+            Long share = product.shares.get(device);
+            change.quantity = product.quantity - (share == null ? 0 : share);
+            changes.add(change);
+        }
+        return products.hasNext();
+    }
+
+    private static Map<String, String> parseQuery(HttpExchange exchange) throws UnsupportedEncodingException {
+        HashMap<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals != -1) {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+                }
+            }
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.android.inventoryapp2;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binding 10000 catalog rows to a list item, the way {@link ProductListAdapter} binds them and
+ * the way ProductCursorAdapter did before it. The views are replaced by fields that keep what
+ * would have been set on them and the cursor window by columns in memory, so what is left is
+ * the work a bind does on the Java heap. The score is the time per bind, the
+ * {@link Allocations} counter the bytes allocated per bind.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductBindBenchmark {
+
+    private static final int ROWS = 10000;
+
+    private static final String[] WORDS = {
+            "cat", "hat", "tea", "rice", "soap", "lamp", "mug", "pen", "rope", "salt"};
+
+    /** Rows as the cursor window holds them, text as characters */
+    private final long[] mIds = new long[ROWS];
+    private final char[][] mNames = new char[ROWS][];
+    private final char[][] mSuppliers = new char[ROWS][];
+    private final long[] mPrices = new long[ROWS];
+    private final long[] mQuantities = new long[ROWS];
+
+    /** The list item being bound, reused for every row as a recycled view would be */
+    private final Item mItem = new Item();
+
+    /** Listener shared by every row, as {@link ProductListAdapter} shares its listeners */
+    private final Listener mSharedListener = new Listener() {
+        @Override
+        public void onClick(Item item) {
+            item.quantity = item.quantityBuffer;
+        }
+    };
+
+    /**
+     * Bytes allocated on the benchmark thread per bound row.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Allocations {
+        public double bytesPerBind;
+
+        private final com.sun.management.ThreadMXBean mThreads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private long mBytes;
+        private long mBinds;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerBind = 0;
+            mBytes = 0;
+            mBinds = 0;
+        }
+
+        long allocatedBytes() {
+            return mThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        void add(long bytes, int binds) {
+            mBytes += bytes;
+            mBinds += binds;
+            bytesPerBind = (double) mBytes / mBinds;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        for (int i = 0; i < ROWS; i++) {
+            mIds[i] = i + 1;
+            mNames[i] = (WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)])
+                    .toCharArray();
+            // Some products have no supplier, and show the unknown supplier text
+            mSuppliers[i] = i % 10 == 0 ? new char[0] : (WORDS[random.nextInt(WORDS.length)] + " Co")
+                    .toCharArray();
+            mPrices[i] = random.nextInt(100000);
+            mQuantities[i] = random.nextInt(1000);
+        }
+    }
+
+    /**
+     * {@link ProductListAdapter#onBindViewHolder}: columns resolved once, text copied into the
+     * holder's buffers, numbers formatted into its char arrays and no listener created.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long bindToHolder(Allocations allocations) {
+        long before = allocations.allocatedBytes();
+        Item item = mItem;
+        long checksum = 0;
+        for (int row = 0; row < ROWS; row++) {
+            item.id = mIds[row];
+            copyStringToBuffer(mNames[row], item.nameBuffer);
+            item.name = item.nameBuffer.data;
+            copyStringToBuffer(mSuppliers[row], item.supplierBuffer);
+            item.supplier = item.supplierBuffer.sizeCopied == 0 ? Item.UNKNOWN_SUPPLIER : item.supplierBuffer.data;
+            item.priceStart = DecimalText.format(mPrices[row], item.priceBuffer);
+            item.price = item.priceBuffer;
+            item.quantityStart = DecimalText.format(mQuantities[row], item.quantityBuffer);
+            item.quantity = item.quantityBuffer;
+            item.listener = mSharedListener;
+            checksum += item.nameBuffer.sizeCopied + item.priceStart + item.quantityStart;
+        }
+        allocations.add(allocations.allocatedBytes() - before, ROWS);
+        return checksum;
+    }
+
+    /**
+     * ProductCursorAdapter.bindView before the holder: a String for every column read, prices
+     * and quantities read as strings, and a new click listener for the sale button of every row.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long bindWithStrings(Allocations allocations) {
+        long before = allocations.allocatedBytes();
+        final Item item = mItem;
+        long checksum = 0;
+        for (int row = 0; row < ROWS; row++) {
+            final long id = mIds[row];
+            // Cursor.getString copies the characters out of the window
+            String name = new String(mNames[row]);
+            String supplier = new String(mSuppliers[row]);
+            String price = Long.toString(mPrices[row]);
+            final String quantity = Long.toString(mQuantities[row]);
+            if (supplier.isEmpty()) {
+                supplier = Item.UNKNOWN_SUPPLIER_TEXT;
+            }
+            item.id = id;
+            item.name = name;
+            item.supplier = supplier;
+            item.price = price;
+            item.quantity = quantity;
+            item.listener = new Listener() {
+                @Override
+                public void onClick(Item clicked) {
+                    clicked.id = id;
+                    clicked.quantity = quantity;
+                }
+            };
+            checksum += name.length() + price.length() + quantity.length();
+        }
+        allocations.add(allocations.allocatedBytes() - before, ROWS);
+        return checksum;
+    }
+
+    /**
+     * CursorWindow.copyStringToBuffer, which only grows the buffer for a longer string.
+     */
+    private static void copyStringToBuffer(char[] value, CharBuffer buffer) {
+        if (buffer.data.length < value.length) {
+            buffer.data = new char[value.length];
+        }
+        System.arraycopy(value, 0, buffer.data, 0, value.length);
+        buffer.sizeCopied = value.length;
+    }
+
+    /**
+     * Stand-in for CharArrayBuffer.
+     */
+    static final class CharBuffer {
+        char[] data = new char[64];
+        int sizeCopied;
+    }
+
+    /**
+     * Stand-in for View.OnClickListener.
+     */
+    interface Listener {
+        void onClick(Item item);
+    }
+
+    /**
+     * Stand-in for a list item, holding whatever would have been set on its views.
+     */
+    static final class Item {
+        static final char[] UNKNOWN_SUPPLIER = "Unknown supplier".toCharArray();
+        static final String UNKNOWN_SUPPLIER_TEXT = "Unknown supplier";
+
+        final CharBuffer nameBuffer = new CharBuffer();
+        final CharBuffer supplierBuffer = new CharBuffer();
+        final char[] priceBuffer = new char[DecimalText.MAX_LENGTH];
+        final char[] quantityBuffer = new char[DecimalText.MAX_LENGTH];
+
+        long id;
+        int priceStart;
+        int quantityStart;
+        Object name;
+        Object supplier;
+        Object price;
+        Object quantity;
+        Listener listener;
+    }
+}
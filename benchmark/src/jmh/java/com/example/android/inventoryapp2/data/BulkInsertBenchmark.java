@@ -0,0 +1,130 @@
+package com.example.android.inventoryapp2.data;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a supplier catalog into the provider one product at a time with {@code insert},
+ * against all of it in one {@code bulkInsert} or {@code applyBatch}. Every product is inserted
+ * together with the movement of its initial stock, as the provider records it.
+ * <ul>
+ * <li>singleRows: every product compiles its statements and commits in a transaction of its
+ * own, what a loop of inserts costs</li>
+ * <li>batch: one transaction around every product, through statements compiled once, what the
+ * batched path does</li>
+ * </ul>
+ * The {@link Rows} counter is the score to compare, in rows per second. Notifying the changes
+ * isn't part of it: the single row path notifies once per product, the batched path once.
+ *
+ * Every load goes into a new, empty database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BulkInsertBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    /**
+     * Products inserted.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rows {
+        public long inserted;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            inserted = 0;
+        }
+    }
+
+    /**
+     * A new, empty database for every invocation.
+     */
+    @State(Scope.Thread)
+    public static class EmptyDatabase {
+        BenchmarkDatabase database;
+
+        @Setup(Level.Invocation)
+        public void create() throws IOException, SQLException {
+            database = BenchmarkDatabase.create(0);
+        }
+
+        @TearDown(Level.Invocation)
+        public void close() throws SQLException {
+            database.close();
+        }
+    }
+
+    @Benchmark
+    public void singleRows(EmptyDatabase empty, Rows counter) throws SQLException {
+        Connection connection = empty.database.connection;
+        Random random = new Random(42);
+        connection.setAutoCommit(false);
+        try {
+            for (int i = 0; i < rows; i++) {
+                try (PreparedStatement insert = connection.prepareStatement(BenchmarkDatabase.SQL_INSERT_PRODUCT);
+                     PreparedStatement recordStock = connection.prepareStatement(
+                             BenchmarkDatabase.SQL_RECORD_INITIAL_STOCK)) {
+                    insertProduct(insert, recordStock, random);
+                }
+                connection.commit();
+            }
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        counter.inserted += rows;
+    }
+
+    @Benchmark
+    public void batch(EmptyDatabase empty, Rows counter) throws SQLException {
+        Connection connection = empty.database.connection;
+        Random random = new Random(42);
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(BenchmarkDatabase.SQL_INSERT_PRODUCT);
+             PreparedStatement recordStock = connection.prepareStatement(BenchmarkDatabase.SQL_RECORD_INITIAL_STOCK)) {
+            for (int i = 0; i < rows; i++) {
+                insertProduct(insert, recordStock, random);
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        counter.inserted += rows;
+    }
+
+    /**
+     * Insert a random product and record its initial stock, if it has any.
+     */
+    private static void insertProduct(PreparedStatement insert, PreparedStatement recordStock, Random random)
+            throws SQLException {
+        BenchmarkDatabase.bindProduct(insert, random);
+        // Bound over the random quantity, to know it for the movement
+        int quantity = random.nextInt(100);
+        insert.setInt(4, quantity);
+        insert.executeUpdate();
+        if (quantity != 0) {
+            recordStock.setInt(1, quantity);
+            recordStock.setLong(2, System.currentTimeMillis());
+            recordStock.executeUpdate();
+        }
+    }
+}
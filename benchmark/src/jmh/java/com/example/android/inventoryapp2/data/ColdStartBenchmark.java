@@ -0,0 +1,129 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to the first row of the catalog on a cold start: opening the database and querying
+ * the list the way the loader does, against mapping the catalog snapshot. The database is
+ * opened afresh every time, but the operating system keeps the file cached, so the database
+ * side is a lower bound of what a device sees after boot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ColdStartBenchmark {
+
+    private static final String LIST_COLUMNS = ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_SUPPLIER_NAME + ", " + ProductEntry.COLUMN_PRODUCT_PRICE + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY;
+
+    @Param({"50000"})
+    public int tableSize;
+
+    private BenchmarkDatabase mDatabase;
+    private File mSnapshot;
+
+    @Setup
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(tableSize);
+        mSnapshot = File.createTempFile("catalog", ".snapshot");
+        try (Statement statement = mDatabase.connection.createStatement();
+             ResultSet products = statement.executeQuery("SELECT " + LIST_COLUMNS + " FROM "
+                     + ProductDbHelper.PRODUCTS_WITH_SUPPLIERS + " ORDER BY " + ProductEntry._ID)) {
+            CatalogSnapshotFormat.Writer writer = new CatalogSnapshotFormat.Writer(new FileOutputStream(mSnapshot));
+            while (products.next()) {
+                writer.writeRow(products.getLong(1), products.getString(2), products.getString(3),
+                        products.getInt(4), products.getInt(5));
+            }
+            writer.finish();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mDatabase.close();
+        mSnapshot.delete();
+    }
+
+    /**
+     * The paged loader: count the rows, then read the first page.
+     */
+    @Benchmark
+    public void firstRowFromPagedQuery(Blackhole blackhole) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(mDatabase.getUrl());
+             Statement statement = connection.createStatement()) {
+            try (ResultSet count = statement.executeQuery("SELECT count(*) FROM " + ProductEntry.TABLE_NAME)) {
+                count.next();
+                blackhole.consume(count.getInt(1));
+            }
+            try (ResultSet page = statement.executeQuery("SELECT " + LIST_COLUMNS + " FROM "
+                    + ProductDbHelper.PRODUCTS_WITH_SUPPLIERS + " WHERE " + ProductEntry._ID + " > 0 ORDER BY "
+                    + ProductEntry._ID + " LIMIT 50")) {
+                consumeFirstRow(page, blackhole);
+            }
+        }
+    }
+
+    /**
+     * A plain cursor loader: the whole list is read before the first row can be shown, as
+     * filling the first cursor window reads up to 2 MB of it.
+     */
+    @Benchmark
+    public void firstRowFromFullQuery(Blackhole blackhole) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(mDatabase.getUrl());
+             Statement statement = connection.createStatement();
+             ResultSet products = statement.executeQuery("SELECT " + LIST_COLUMNS + " FROM "
+                     + ProductDbHelper.PRODUCTS_WITH_SUPPLIERS + " ORDER BY " + ProductEntry._ID)) {
+            consumeFirstRow(products, blackhole);
+            while (products.next()) {
+                blackhole.consume(products.getLong(1));
+                blackhole.consume(products.getString(2));
+                blackhole.consume(products.getString(3));
+                blackhole.consume(products.getInt(4));
+                blackhole.consume(products.getInt(5));
+            }
+        }
+    }
+
+    @Benchmark
+    public void firstRowFromSnapshot(Blackhole blackhole) throws IOException {
+        CatalogSnapshotFormat.Reader reader = CatalogSnapshotFormat.Reader.map(mSnapshot);
+        blackhole.consume(reader.size());
+        blackhole.consume(reader.getId(0));
+        blackhole.consume(reader.getName(0));
+        blackhole.consume(reader.getSupplier(0));
+        blackhole.consume(reader.getPrice(0));
+        blackhole.consume(reader.getQuantity(0));
+    }
+
+    private static void consumeFirstRow(ResultSet rows, Blackhole blackhole) throws SQLException {
+        if (rows.next()) {
+            blackhole.consume(rows.getLong(1));
+            blackhole.consume(rows.getString(2));
+            blackhole.consume(rows.getString(3));
+            blackhole.consume(rows.getInt(4));
+            blackhole.consume(rows.getInt(5));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockMovementEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the catalog list's reads while sales are written, on a catalog of 10000
+ * products. Three threads read pages of the list, each on a connection of its own as the
+ * connection pool gives the loaders, while one thread sells on the connection that writes:
+ * <ul>
+ * <li>platform: the settings the database had before {@link ProductDbSettings}, the rollback
+ * journal, FULL sync, SQLite's default cache, no memory map, and every statement compiled for
+ * every operation</li>
+ * <li>tuned: {@link ProductDbSettings#DEFAULT}, write-ahead logging, NORMAL sync, the larger
+ * cache, the memory map, and compiled statements kept, as {@link StatementCache} keeps them</li>
+ * </ul>
+ * Every connection waits for locks the way the platform does. The scores of {@code read} and
+ * {@code write} are the latencies of each side, sampled, so the results include their
+ * percentiles.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConcurrentAccessBenchmark {
+
+    @Param({"platform", "tuned"})
+    public String settings;
+
+    private static final int PRODUCTS = 10000;
+
+    /** How long the platform's connections wait for a lock before failing */
+    private static final int BUSY_TIMEOUT_MILLIS = 2500;
+
+    /** Settings before {@link ProductDbSettings}, with SQLite's default cache of 2000 KiB */
+    private static final ProductDbSettings PLATFORM = new ProductDbSettings(false,
+            ProductDbSettings.SYNCHRONOUS_FULL, 4096, 500, 0, 0);
+
+    /** A page of ProductPagedCursor */
+    private static final String SQL_QUERY_PAGE = "SELECT " + ProductEntry._ID + ", "
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_SUPPLIER_NAME + ", "
+            + ProductEntry.COLUMN_PRODUCT_PRICE + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " FROM "
+            + ProductDbHelper.PRODUCTS_WITH_SUPPLIERS + " WHERE " + ProductEntry._ID + " > ? ORDER BY "
+            + ProductEntry.SORT_ORDER_ID + " LIMIT 50";
+
+    private BenchmarkDatabase mDatabase;
+    private boolean mCacheStatements;
+
+    @Setup
+    public void setUp() throws Exception {
+        ProductDbSettings productDbSettings = "tuned".equals(settings) ? ProductDbSettings.DEFAULT : PLATFORM;
+        mDatabase = BenchmarkDatabase.create(PRODUCTS, productDbSettings);
+        mCacheStatements = productDbSettings.statementCacheSize != 0;
+        setBusyTimeout(mDatabase.connection);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mDatabase.close();
+    }
+
+    /**
+     * A loader thread, with a connection of its own.
+     */
+    @State(Scope.Thread)
+    public static class Reader {
+        Connection connection;
+        boolean cacheStatements;
+        PreparedStatement queryPage;
+        Random random;
+
+        @Setup
+        public void setUp(ConcurrentAccessBenchmark benchmark) throws SQLException {
+            connection = DriverManager.getConnection(benchmark.mDatabase.getUrl());
+            setBusyTimeout(connection);
+            cacheStatements = benchmark.mCacheStatements;
+            if (cacheStatements) {
+                queryPage = connection.prepareStatement(SQL_QUERY_PAGE);
+            }
+            random = new Random(Thread.currentThread().getId());
+        }
+
+        @TearDown
+        public void tearDown() throws SQLException {
+            if (queryPage != null) {
+                queryPage.close();
+            }
+            connection.close();
+        }
+    }
+
+    /**
+     * The thread that writes, on the connection that writes.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+        Connection connection;
+        boolean cacheStatements;
+        PreparedStatement sell;
+        PreparedStatement recordSale;
+        Random random;
+
+        @Setup
+        public void setUp(ConcurrentAccessBenchmark benchmark) throws SQLException {
+            connection = benchmark.mDatabase.connection;
+            cacheStatements = benchmark.mCacheStatements;
+            if (cacheStatements) {
+                sell = connection.prepareStatement(StockLocations.SQL_SELL_PRODUCT);
+                recordSale = connection.prepareStatement(StockLedger.SQL_INSERT_MOVEMENT);
+            }
+            random = new Random(7);
+        }
+
+        @TearDown
+        public void tearDown() throws SQLException {
+            if (sell != null) {
+                sell.close();
+                recordSale.close();
+            }
+        }
+    }
+
+    /**
+     * Read a page of the list from a random product on.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public int read(Reader reader) throws SQLException {
+        PreparedStatement queryPage = reader.cacheStatements ? reader.queryPage
+                : reader.connection.prepareStatement(SQL_QUERY_PAGE);
+        try {
+            queryPage.setLong(1, reader.random.nextInt(PRODUCTS));
+            int rows = 0;
+            try (ResultSet page = queryPage.executeQuery()) {
+                while (page.next()) {
+                    page.getLong(1);
+                    page.getString(2);
+                    page.getString(3);
+                    page.getInt(4);
+                    page.getInt(5);
+                    rows++;
+                }
+            }
+            return rows;
+        } finally {
+            if (!reader.cacheStatements) {
+                queryPage.close();
+            }
+        }
+    }
+
+    /**
+     * Sell one of a random product and record the movement in one transaction, as the provider
+     * does.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public int write(Writer writer) throws SQLException {
+        long id = 1 + writer.random.nextInt(PRODUCTS);
+        Connection connection = writer.connection;
+        PreparedStatement sell = writer.cacheStatements ? writer.sell
+                : connection.prepareStatement(StockLocations.SQL_SELL_PRODUCT);
+        PreparedStatement recordSale = writer.cacheStatements ? writer.recordSale
+                : connection.prepareStatement(StockLedger.SQL_INSERT_MOVEMENT);
+        connection.setAutoCommit(false);
+        try {
+            sell.setInt(1, 1);
+            sell.setLong(2, id);
+            sell.setInt(3, 1);
+            int sold = sell.executeUpdate();
+            if (sold == 1) {
+                recordSale.setLong(1, id);
+                recordSale.setInt(2, -1);
+                recordSale.setInt(3, StockMovementEntry.REASON_SALE);
+                recordSale.setLong(4, System.currentTimeMillis());
+                recordSale.executeUpdate();
+            }
+            connection.commit();
+            return sold;
+        } finally {
+            connection.setAutoCommit(true);
+            if (!writer.cacheStatements) {
+                sell.close();
+                recordSale.close();
+            }
+        }
+    }
+
+    private static void setBusyTimeout(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ImportEntry;
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.SupplierEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A catalog import as {@link ProductImporter} runs it: the file is parsed a record at a time,
+ * every record is checked, and the products are written in chunks of
+ * {@link ProductImporter#CHUNK_SIZE}, each in one transaction together with the movements of
+ * their initial stock and the checkpoint of the import. The scores are records per second.
+ * Every record's supplier is looked up by name, and its phone set, as {@link Suppliers} does.
+ *
+ * Every import goes into a new, empty database. One in a hundred records is invalid.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CsvImportBenchmark {
+
+    private static final int RECORDS = 100000;
+
+    private static final String SQL_SAVE_IMPORT = "INSERT OR REPLACE INTO " + ImportEntry.TABLE_NAME + " ("
+            + ImportEntry.COLUMN_SOURCE + ", " + ImportEntry.COLUMN_POSITION + ", "
+            + ImportEntry.COLUMN_IMPORTED + ") VALUES (?, ?, COALESCE((SELECT " + ImportEntry.COLUMN_IMPORTED
+            + " FROM " + ImportEntry.TABLE_NAME + " WHERE " + ImportEntry.COLUMN_SOURCE + " = ?), 0) + ?)";
+
+    private static final String SQL_QUERY_SUPPLIER = "SELECT " + SupplierEntry._ID + " FROM "
+            + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry.COLUMN_SUPPLIER_NAME + " = ?";
+
+    private static final String SQL_INSERT_SUPPLIER = "INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+            + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_PHONE + ") VALUES (?, ?)";
+
+    private static final String SQL_SET_PHONE = "UPDATE " + SupplierEntry.TABLE_NAME + " SET "
+            + SupplierEntry.COLUMN_SUPPLIER_PHONE + " = ? WHERE " + SupplierEntry._ID + " = ? AND "
+            + SupplierEntry.COLUMN_SUPPLIER_PHONE + " IS NOT ?";
+
+    private static final String[] WORDS = {
+            "cat", "hat", "tea", "rice", "soap", "lamp", "mug", "pen", "rope", "salt"};
+
+    private String mCsv;
+
+    /**
+     * A new, empty database for every invocation of {@link #importCatalog}.
+     */
+    @State(Scope.Thread)
+    public static class EmptyDatabase {
+        BenchmarkDatabase database;
+
+        @Setup(Level.Invocation)
+        public void create() throws IOException, SQLException {
+            database = BenchmarkDatabase.create(0);
+        }
+
+        @TearDown(Level.Invocation)
+        public void close() throws SQLException {
+            database.close();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(11);
+        StringBuilder csv = new StringBuilder(RECORDS * 48);
+        csv.append("name,supplier,phone,type,quantity,price\r\n");
+        for (int i = 0; i < RECORDS; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            // Some names need quoting
+            if (i % 10 == 0) {
+                csv.append('"').append(name).append(", \"\"large\"\"").append('"');
+            } else {
+                csv.append(name);
+            }
+            csv.append(',').append(WORDS[random.nextInt(WORDS.length)]).append(" Co,555-555-5555,")
+                    .append(random.nextInt(ProductEntry.GOODS + 1)).append(',')
+                    .append(i % 100 == 0 ? -1 : random.nextInt(100)).append(',')
+                    .append(random.nextInt(1000)).append("\r\n");
+        }
+        mCsv = csv.toString();
+    }
+
+    /**
+     * Parse and check every record without writing anything.
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public int parse() throws IOException {
+        int valid = 0;
+        try (CsvReader reader = new CsvReader(new StringReader(mCsv))) {
+            ArrayList<String> record = new ArrayList<>();
+            reader.readRecord(record);
+            ProductCsvFormat format = new ProductCsvFormat(record);
+            Map<String, Object> product = new HashMap<>();
+            while (reader.readRecord(record)) {
+                try {
+                    format.read(record, product);
+                    valid++;
+                } catch (IllegalArgumentException e) {
+                    // Rejected
+                }
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * The whole import.
+     */
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long importCatalog(EmptyDatabase empty) throws IOException, SQLException {
+        BenchmarkDatabase database = empty.database;
+        long imported = 0;
+        try (CsvReader reader = new CsvReader(new StringReader(mCsv));
+             PreparedStatement insert = database.connection.prepareStatement(BenchmarkDatabase.SQL_INSERT_PRODUCT);
+             PreparedStatement querySupplier = database.connection.prepareStatement(SQL_QUERY_SUPPLIER);
+             PreparedStatement insertSupplier = database.connection.prepareStatement(SQL_INSERT_SUPPLIER);
+             PreparedStatement setPhone = database.connection.prepareStatement(SQL_SET_PHONE);
+             PreparedStatement recordStock = database.connection.prepareStatement(BenchmarkDatabase.SQL_RECORD_INITIAL_STOCK);
+             PreparedStatement saveImport = database.connection.prepareStatement(SQL_SAVE_IMPORT)) {
+            ArrayList<String> record = new ArrayList<>();
+            reader.readRecord(record);
+            ProductCsvFormat format = new ProductCsvFormat(record);
+            Map<String, Object> product = new HashMap<>();
+            long position = 0;
+            int chunkRecords = 0;
+            int chunkImported = 0;
+            database.connection.setAutoCommit(false);
+            boolean more = true;
+            while (more) {
+                more = reader.readRecord(record);
+                if (more) {
+                    chunkRecords++;
+                    try {
+                        format.read(record, product);
+                        bindProduct(insert, product, getSupplierId(querySupplier, insertSupplier, setPhone,
+                                (String) product.get(ProductEntry.COLUMN_SUPPLIER_NAME),
+                                (String) product.get(ProductEntry.COLUMN_SUPPLIER_PHONE)));
+                        insert.executeUpdate();
+                        Integer quantity = (Integer) product.get(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+                        if (quantity != null && quantity != 0) {
+                            recordStock.setInt(1, quantity);
+                            recordStock.setLong(2, System.currentTimeMillis());
+                            recordStock.executeUpdate();
+                        }
+                        chunkImported++;
+                    } catch (IllegalArgumentException e) {
+                        // Rejected
+                    }
+                }
+                if (chunkRecords == ProductImporter.CHUNK_SIZE || (!more && chunkRecords != 0)) {
+                    position += chunkRecords;
+                    saveImport.setString(1, "catalog.csv");
+                    saveImport.setLong(2, position);
+                    saveImport.setString(3, "catalog.csv");
+                    saveImport.setInt(4, chunkImported);
+                    saveImport.executeUpdate();
+                    database.connection.commit();
+                    imported += chunkImported;
+                    chunkRecords = 0;
+                    chunkImported = 0;
+                }
+            }
+        } finally {
+            database.connection.setAutoCommit(true);
+        }
+        return imported;
+    }
+
+    /**
+     * Return the ID of a supplier, adding it with the given phone if there is none, or setting
+     * its phone if there is, as {@link Suppliers#toProductRow} does. Null for no supplier.
+     */
+    private static Long getSupplierId(PreparedStatement query, PreparedStatement insert, PreparedStatement setPhone,
+                                      String name, String phone) throws SQLException {
+        if (name == null) {
+            return null;
+        }
+        query.setString(1, name);
+        try (ResultSet row = query.executeQuery()) {
+            if (row.next()) {
+                long id = row.getLong(1);
+                setPhone.setString(1, phone);
+                setPhone.setLong(2, id);
+                setPhone.setString(3, phone);
+                setPhone.executeUpdate();
+                return id;
+            }
+        }
+        insert.setString(1, name);
+        insert.setString(2, phone);
+        insert.executeUpdate();
+        try (ResultSet id = insert.getGeneratedKeys()) {
+            id.next();
+            return id.getLong(1);
+        }
+    }
+
+    /**
+     * Bind a product read by {@link ProductCsvFormat} the way the provider binds its insert.
+     */
+    private static void bindProduct(PreparedStatement insert, Map<String, Object> product, Long supplierId)
+            throws SQLException {
+        insert.setObject(1, product.get(ProductEntry.COLUMN_PRODUCT_NAME));
+        insert.setObject(2, supplierId);
+        insert.setObject(3, product.get(ProductEntry.COLUMN_PRODUCT_TYPE));
+        Integer quantity = (Integer) product.get(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+        insert.setInt(4, quantity == null ? 0 : quantity);
+        Integer price = (Integer) product.get(ProductEntry.COLUMN_PRODUCT_PRICE);
+        insert.setInt(5, price == null ? 0 : price);
+        Integer reorderPoint = (Integer) product.get(ProductEntry.COLUMN_REORDER_POINT);
+        insert.setInt(6, reorderPoint == null ? 0 : reorderPoint);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The export behind {@link ProductEntry#EXPORT_URI}: the products are read in ID order a chunk
+ * at a time and written through {@link ExportWriter} to a channel that throws the bytes away,
+ * so only reading and formatting are measured. The scores are exports per second; divide by
+ * the table size for rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExportBenchmark {
+
+    /** The provider's chunk size */
+    private static final int CHUNK_SIZE = 1000;
+
+    @Param({"10000", "100000"})
+    public int tableSize;
+
+    @Param({ProductEntry.EXPORT_FORMAT_CSV, ProductEntry.EXPORT_FORMAT_NDJSON})
+    public String format;
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mChunk;
+
+    /** Counts the bytes written */
+    private final WritableByteChannel mChannel = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer source) {
+            int written = source.remaining();
+            source.position(source.limit());
+            mBytes += written;
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    private long mBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(tableSize);
+        // ProductProvider.SQL_EXPORT_CHUNK
+        mChunk = mDatabase.connection.prepareStatement("SELECT " + ProductEntry._ID + ", "
+                + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_SUPPLIER_NAME + ", "
+                + ProductEntry.COLUMN_SUPPLIER_PHONE + ", " + ProductEntry.COLUMN_PRODUCT_TYPE + ", "
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", " + ProductEntry.COLUMN_PRODUCT_PRICE + ", "
+                + ProductEntry.COLUMN_REORDER_POINT + ", " + ProductEntry.COLUMN_SKU + " FROM "
+                + ProductDbHelper.PRODUCTS_WITH_SUPPLIERS + " WHERE " + ProductEntry._ID + " > ? ORDER BY " + ProductEntry._ID + " LIMIT " + CHUNK_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mChunk.close();
+        mDatabase.close();
+    }
+
+    @Benchmark
+    public long export() throws IOException, SQLException {
+        mBytes = 0;
+        ExportWriter writer = null;
+        long lastId = 0;
+        int chunkRows;
+        do {
+            chunkRows = 0;
+            mChunk.setLong(1, lastId);
+            try (ResultSet products = mChunk.executeQuery()) {
+                ResultSetMetaData metaData = products.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                if (writer == null) {
+                    String[] columns = new String[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        columns[i] = metaData.getColumnName(i + 1);
+                    }
+                    writer = new ExportWriter(mChannel, format, columns);
+                }
+                while (products.next()) {
+                    for (int i = 1; i <= columnCount; i++) {
+                        Object value = products.getObject(i);
+                        // Integer storage comes back as Integer or Long, like Cursor.FIELD_TYPE_INTEGER
+                        if (value instanceof Integer || value instanceof Long) {
+                            writer.writeLong(((Number) value).longValue());
+                        } else {
+                            writer.writeString(value == null ? null : value.toString());
+                        }
+                    }
+                    writer.endRow();
+                    lastId = products.getLong(1);
+                    chunkRows++;
+                }
+            }
+        } while (chunkRows == CHUNK_SIZE);
+        writer.flush();
+        return mBytes;
+    }
+}
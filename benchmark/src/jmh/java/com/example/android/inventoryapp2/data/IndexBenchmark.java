@@ -0,0 +1,117 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The searches the first indexes are for, on a catalog of 100000 products from 500 suppliers,
+ * before the migration to version 2, when every one of them scans the table, and after it:
+ * <ul>
+ * <li>productsByName: the products with a name, in any case, through the name index</li>
+ * <li>productsBySupplier: the products of a supplier, through the supplier index</li>
+ * <li>lowStockOfType: the products of a type at or below the low stock threshold, through the
+ * type and quantity index</li>
+ * <li>firstPageByName: the first page of the catalog in name order, which the name index
+ * returns already sorted</li>
+ * </ul>
+ * Both versions hold the same products.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IndexBenchmark {
+
+    @Param({"1", "2"})
+    public int version;
+
+    private static final int PRODUCTS = 100000;
+
+    private static final int SUPPLIERS = 500;
+
+    /** Names of the benchmark data, typed in another case than they are stored in */
+    private static final String[] NAMES = {"Cat Hat", "Tea Rice", "Soap Lamp", "Mug Pen", "Rope Salt"};
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mProductsByName;
+    private PreparedStatement mProductsBySupplier;
+    private PreparedStatement mLowStockOfType;
+    private PreparedStatement mFirstPageByName;
+    private Random mRandom;
+
+    @Setup
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(PRODUCTS, SUPPLIERS, version);
+        mProductsByName = mDatabase.connection.prepareStatement("SELECT " + ProductEntry._ID + " FROM "
+                + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry.COLUMN_PRODUCT_NAME + " = ? COLLATE NOCASE");
+        mProductsBySupplier = mDatabase.connection.prepareStatement("SELECT " + ProductEntry._ID + " FROM "
+                + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry.COLUMN_SUPPLIER_NAME + " = ?");
+        mLowStockOfType = mDatabase.connection.prepareStatement("SELECT " + ProductEntry._ID + " FROM "
+                + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry.COLUMN_PRODUCT_TYPE + " = ? AND "
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " <= " + ProductEntry.DEFAULT_LOW_STOCK_THRESHOLD);
+        mFirstPageByName = mDatabase.connection.prepareStatement("SELECT " + ProductEntry._ID + " FROM "
+                + ProductEntry.TABLE_NAME + " ORDER BY " + ProductEntry.COLUMN_PRODUCT_NAME
+                + " COLLATE NOCASE LIMIT 50");
+        mRandom = new Random(7);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mProductsByName.close();
+        mProductsBySupplier.close();
+        mLowStockOfType.close();
+        mFirstPageByName.close();
+        mDatabase.close();
+    }
+
+    @Benchmark
+    public int productsByName() throws SQLException {
+        mProductsByName.setString(1, NAMES[mRandom.nextInt(NAMES.length)]);
+        return count(mProductsByName);
+    }
+
+    @Benchmark
+    public int productsBySupplier() throws SQLException {
+        mProductsBySupplier.setString(1, BenchmarkDatabase.supplierName(mRandom.nextInt(SUPPLIERS)));
+        return count(mProductsBySupplier);
+    }
+
+    @Benchmark
+    public int lowStockOfType() throws SQLException {
+        mLowStockOfType.setInt(1, mRandom.nextInt(ProductEntry.GOODS + 1));
+        return count(mLowStockOfType);
+    }
+
+    @Benchmark
+    public int firstPageByName() throws SQLException {
+        return count(mFirstPageByName);
+    }
+
+    /**
+     * Run a query and read every row, return the number of rows.
+     */
+    private static int count(PreparedStatement query) throws SQLException {
+        int rows = 0;
+        try (ResultSet products = query.executeQuery()) {
+            while (products.next()) {
+                products.getLong(1);
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
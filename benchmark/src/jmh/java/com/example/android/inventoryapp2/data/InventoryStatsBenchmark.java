@@ -0,0 +1,96 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The inventory totals of the stats URI, computed from {@link InventorySnapshot} as the
+ * provider does, against the same totals computed by SQLite.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InventoryStatsBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int tableSize;
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mTotals;
+    private InventorySnapshot mSnapshot;
+
+    @Setup
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(tableSize);
+        mTotals = mDatabase.connection.prepareStatement("SELECT "
+                + ProductEntry.COLUMN_PRODUCT_TYPE + ", COUNT(*), SUM("
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + "), SUM("
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " * " + ProductEntry.COLUMN_PRODUCT_PRICE + "), SUM("
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " <= ?) FROM " + ProductEntry.TABLE_NAME
+                + " GROUP BY " + ProductEntry.COLUMN_PRODUCT_TYPE);
+        mSnapshot = loadSnapshot();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mTotals.close();
+        mDatabase.close();
+    }
+
+    @Benchmark
+    public void sql(Blackhole blackhole) throws SQLException {
+        mTotals.setInt(1, ProductEntry.DEFAULT_LOW_STOCK_THRESHOLD);
+        try (ResultSet totals = mTotals.executeQuery()) {
+            while (totals.next()) {
+                blackhole.consume(totals.getInt(1));
+                blackhole.consume(totals.getInt(2));
+                blackhole.consume(totals.getLong(3));
+                blackhole.consume(totals.getLong(4));
+                blackhole.consume(totals.getInt(5));
+            }
+        }
+    }
+
+    @Benchmark
+    public InventorySnapshot.Totals snapshot() {
+        return mSnapshot.aggregate(ProductEntry.DEFAULT_LOW_STOCK_THRESHOLD);
+    }
+
+    /**
+     * The one-off cost the provider pays on the first stats query and after an invalidation.
+     */
+    @Benchmark
+    public InventorySnapshot load() throws SQLException {
+        return loadSnapshot();
+    }
+
+    private InventorySnapshot loadSnapshot() throws SQLException {
+        InventorySnapshot snapshot = new InventorySnapshot(tableSize);
+        try (PreparedStatement query = mDatabase.connection.prepareStatement("SELECT "
+                + ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_TYPE + ", "
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", " + ProductEntry.COLUMN_PRODUCT_PRICE
+                + " FROM " + ProductEntry.TABLE_NAME + " ORDER BY " + ProductEntry._ID);
+             ResultSet products = query.executeQuery()) {
+            snapshot.clear();
+            while (products.next()) {
+                snapshot.put(products.getLong(1), products.getInt(2), products.getInt(3), products.getInt(4));
+            }
+        }
+        return snapshot;
+    }
+}
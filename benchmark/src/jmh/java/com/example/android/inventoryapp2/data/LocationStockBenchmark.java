@@ -0,0 +1,255 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.LocationEntry;
+import com.example.android.inventoryapp2.data.ProductContract.LocationStockEntry;
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stock spread over locations on a catalog of 100000 products, each with stock at up to two
+ * locations besides the default one, as the provider reads and moves it through
+ * {@link StockLocations}:
+ * <ul>
+ * <li>catalogFirstPage: the row count and first page of the catalog list, which only reads
+ * the maintained quantity, so it should take the same time however many locations there
+ * are</li>
+ * <li>transfer: a {@link LocationStockEntry#METHOD_TRANSFER} transaction, moving one item out
+ * of the default location and back on the next call</li>
+ * <li>listLocation: the stock at one location, through the location index</li>
+ * <li>productStock: the stock of one product at every location</li>
+ * </ul>
+ * The setup fails if listing a location or a product's stock scans a table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocationStockBenchmark {
+
+    /** Number of locations besides the default one */
+    @Param({"1", "10", "100"})
+    public int locations;
+
+    private static final int PRODUCTS = 100000;
+
+    /** The catalog list projection */
+    private static final String LIST_COLUMNS = ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_SUPPLIER_NAME + ", " + ProductEntry.COLUMN_PRODUCT_PRICE + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY;
+
+    private static final String STOCK_COLUMNS = LocationStockEntry.COLUMN_PRODUCT_ID + ", "
+            + LocationStockEntry.COLUMN_LOCATION_ID + ", " + LocationStockEntry.COLUMN_QUANTITY;
+
+    private static final String SQL_LIST_LOCATION = "SELECT " + STOCK_COLUMNS + " FROM "
+            + LocationStockEntry.TABLE_NAME + " WHERE " + LocationStockEntry.COLUMN_LOCATION_ID + " = ? ORDER BY "
+            + LocationStockEntry.COLUMN_PRODUCT_ID;
+
+    private static final String SQL_PRODUCT_STOCK = "SELECT " + STOCK_COLUMNS + " FROM "
+            + StockLocations.PRODUCT_STOCK_TABLE + " ORDER BY " + LocationStockEntry.COLUMN_LOCATION_ID;
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mCount;
+    private PreparedStatement mFirstPage;
+    private PreparedStatement mDefaultStock;
+    private PreparedStatement mTakeStock;
+    private PreparedStatement mAddStock;
+    private PreparedStatement mInsertStock;
+    private PreparedStatement mDeleteStock;
+    private PreparedStatement mListLocation;
+    private PreparedStatement mProductStock;
+    private Random mRandom;
+
+    /** The transfer to undo on the next call, null if the last call didn't move anything */
+    private long[] mTransferred;
+
+    @Setup
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(PRODUCTS);
+        try (Statement statement = mDatabase.connection.createStatement()) {
+            for (int i = 0; i < locations; i++) {
+                statement.executeUpdate("INSERT INTO " + LocationEntry.TABLE_NAME + " ("
+                        + LocationEntry.COLUMN_LOCATION_NAME + ") VALUES ('Shelf " + i + "')");
+            }
+            // A quarter of the stock at one location, and with more than one, another quarter
+            // at the next one
+            int spread = Math.min(locations, 2);
+            for (int i = 0; i < spread; i++) {
+                statement.executeUpdate("INSERT INTO " + LocationStockEntry.TABLE_NAME + " (" + STOCK_COLUMNS
+                        + ") SELECT " + ProductEntry._ID + ", " + (LocationEntry.DEFAULT_LOCATION_ID + 1) + " + ("
+                        + ProductEntry._ID + " + " + i + ") % " + locations + ", "
+                        + ProductEntry.COLUMN_PRODUCT_QUANTITY + " / 4 FROM " + ProductEntry.TABLE_NAME
+                        + " WHERE " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " / 4 > 0");
+            }
+            checkQueryPlan(statement, SQL_LIST_LOCATION);
+            checkQueryPlan(statement, SQL_PRODUCT_STOCK);
+        }
+
+        mCount = mDatabase.connection.prepareStatement("SELECT count(*) FROM " + ProductEntry.TABLE_NAME);
+        // The first page of ProductPagedCursor
+        mFirstPage = mDatabase.connection.prepareStatement("SELECT " + LIST_COLUMNS + " FROM "
+                + ProductDbHelper.PRODUCTS_WITH_SUPPLIERS + " WHERE " + ProductEntry._ID + " > 0 ORDER BY "
+                + ProductEntry.SORT_ORDER_ID + " LIMIT 50");
+        // The statements of StockLocations.getStock and StockLocations.transfer
+        mDefaultStock = mDatabase.connection.prepareStatement("SELECT " + LocationStockEntry.COLUMN_QUANTITY
+                + " FROM " + StockLocations.DEFAULT_STOCK_TABLE + " WHERE " + LocationStockEntry.COLUMN_PRODUCT_ID
+                + " = ?");
+        mTakeStock = mDatabase.connection.prepareStatement("UPDATE " + LocationStockEntry.TABLE_NAME + " SET "
+                + LocationStockEntry.COLUMN_QUANTITY + " = " + LocationStockEntry.COLUMN_QUANTITY + " - ? WHERE "
+                + LocationStockEntry.COLUMN_PRODUCT_ID + " = ? AND " + LocationStockEntry.COLUMN_LOCATION_ID
+                + " = ? AND " + LocationStockEntry.COLUMN_QUANTITY + " >= ?");
+        mAddStock = mDatabase.connection.prepareStatement("UPDATE " + LocationStockEntry.TABLE_NAME + " SET "
+                + LocationStockEntry.COLUMN_QUANTITY + " = " + LocationStockEntry.COLUMN_QUANTITY + " + ? WHERE "
+                + LocationStockEntry.COLUMN_PRODUCT_ID + " = ? AND " + LocationStockEntry.COLUMN_LOCATION_ID
+                + " = ?");
+        mInsertStock = mDatabase.connection.prepareStatement("INSERT INTO " + LocationStockEntry.TABLE_NAME + " ("
+                + LocationStockEntry.COLUMN_QUANTITY + ", " + LocationStockEntry.COLUMN_PRODUCT_ID + ", "
+                + LocationStockEntry.COLUMN_LOCATION_ID + ") VALUES (?, ?, ?)");
+        mDeleteStock = mDatabase.connection.prepareStatement("DELETE FROM " + LocationStockEntry.TABLE_NAME
+                + " WHERE " + LocationStockEntry.COLUMN_PRODUCT_ID + " = ? AND "
+                + LocationStockEntry.COLUMN_LOCATION_ID + " = ? AND " + LocationStockEntry.COLUMN_QUANTITY + " = 0");
+        mListLocation = mDatabase.connection.prepareStatement(SQL_LIST_LOCATION);
+        mProductStock = mDatabase.connection.prepareStatement(SQL_PRODUCT_STOCK);
+        mRandom = new Random(7);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mCount.close();
+        mFirstPage.close();
+        mDefaultStock.close();
+        mTakeStock.close();
+        mAddStock.close();
+        mInsertStock.close();
+        mDeleteStock.close();
+        mListLocation.close();
+        mProductStock.close();
+        mDatabase.close();
+    }
+
+    @Benchmark
+    public long catalogFirstPage() throws SQLException {
+        return read(mCount) + read(mFirstPage);
+    }
+
+    /**
+     * Move one item of a random product from the default location to another one, or back if
+     * the last call moved one.
+     */
+    @Benchmark
+    public boolean transfer() throws SQLException {
+        mDatabase.connection.setAutoCommit(false);
+        try {
+            boolean moved;
+            if (mTransferred == null) {
+                long id = 1 + mRandom.nextInt(PRODUCTS);
+                long locationId = LocationEntry.DEFAULT_LOCATION_ID + 1 + mRandom.nextInt(locations);
+                moved = takeFromDefault(id) && add(id, locationId);
+                mTransferred = moved ? new long[]{id, locationId} : null;
+            } else {
+                moved = take(mTransferred[0], mTransferred[1]);
+                mTransferred = null;
+            }
+            mDatabase.connection.commit();
+            return moved;
+        } finally {
+            mDatabase.connection.setAutoCommit(true);
+        }
+    }
+
+    @Benchmark
+    public long listLocation() throws SQLException {
+        mListLocation.setLong(1, LocationEntry.DEFAULT_LOCATION_ID + 1 + mRandom.nextInt(locations));
+        return read(mListLocation);
+    }
+
+    @Benchmark
+    public long productStock() throws SQLException {
+        String id = String.valueOf(1 + mRandom.nextInt(PRODUCTS));
+        mProductStock.setString(1, id);
+        mProductStock.setString(2, id);
+        return read(mProductStock);
+    }
+
+    private boolean takeFromDefault(long id) throws SQLException {
+        mDefaultStock.setLong(1, id);
+        try (ResultSet row = mDefaultStock.executeQuery()) {
+            return row.next() && row.getLong(1) >= 1;
+        }
+    }
+
+    private boolean add(long id, long locationId) throws SQLException {
+        mAddStock.setInt(1, 1);
+        mAddStock.setLong(2, id);
+        mAddStock.setLong(3, locationId);
+        if (mAddStock.executeUpdate() == 0) {
+            mInsertStock.setInt(1, 1);
+            mInsertStock.setLong(2, id);
+            mInsertStock.setLong(3, locationId);
+            mInsertStock.executeUpdate();
+        }
+        return true;
+    }
+
+    /**
+     * Take one item back from a location, deleting its row if that was the last one. The
+     * default location needs no write.
+     */
+    private boolean take(long id, long locationId) throws SQLException {
+        mTakeStock.setInt(1, 1);
+        mTakeStock.setLong(2, id);
+        mTakeStock.setLong(3, locationId);
+        mTakeStock.setInt(4, 1);
+        if (mTakeStock.executeUpdate() == 0) {
+            return false;
+        }
+        mDeleteStock.setLong(1, id);
+        mDeleteStock.setLong(2, locationId);
+        mDeleteStock.executeUpdate();
+        return true;
+    }
+
+    /**
+     * Fail if a query scans a table or an index from start to end.
+     */
+    private static void checkQueryPlan(Statement statement, String sql) throws SQLException {
+        try (ResultSet plan = statement.executeQuery("EXPLAIN QUERY PLAN " + sql.replace("?", "2"))) {
+            while (plan.next()) {
+                String detail = plan.getString("detail");
+                // Reading the rows of a subquery is no scan of a table
+                if (detail.startsWith("SCAN") && !detail.toUpperCase(Locale.ROOT).contains("SUBQUERY")) {
+                    throw new IllegalStateException("Full scan in " + sql + ": " + detail);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read every row of a query, return the sum of the first column so none of it is
+     * optimized away.
+     */
+    private static long read(PreparedStatement query) throws SQLException {
+        long sum = 0;
+        try (ResultSet rows = query.executeQuery()) {
+            while (rows.next()) {
+                sum += rows.getLong(1);
+            }
+        }
+        return sum;
+    }
+}
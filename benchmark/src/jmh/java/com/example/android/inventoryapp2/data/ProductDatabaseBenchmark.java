@@ -0,0 +1,186 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockMovementEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The statements behind the provider's insert, single product query, catalog scan, update and
+ * delete, run through prepared statements the way its statement cache runs them.
+ *
+ * The table keeps its size: the row an insert adds is deleted after the invocation, and a
+ * deleted row is put back within it. Every operation takes microseconds, long enough for the
+ * per-invocation fixtures not to skew the numbers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductDatabaseBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int tableSize;
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mInsert;
+    private PreparedStatement mQueryProduct;
+    private PreparedStatement mScan;
+    private PreparedStatement mUpdate;
+    private PreparedStatement mDelete;
+    private PreparedStatement mRestore;
+    private PreparedStatement mRecordAdjustment;
+    private Random mRandom;
+    private long mId;
+
+    @Setup
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(tableSize);
+        mInsert = mDatabase.connection.prepareStatement(BenchmarkDatabase.SQL_INSERT_PRODUCT);
+        mQueryProduct = mDatabase.connection.prepareStatement("SELECT * FROM "
+                + ProductDbHelper.PRODUCTS_WITH_SUPPLIERS + " WHERE " + ProductEntry._ID + " = ?");
+        // The catalog list projection
+        mScan = mDatabase.connection.prepareStatement("SELECT " + ProductEntry._ID + ", "
+                + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                + ProductEntry.COLUMN_PRODUCT_PRICE + " FROM " + ProductEntry.TABLE_NAME
+                + " ORDER BY " + ProductEntry._ID);
+        mUpdate = mDatabase.connection.prepareStatement("UPDATE " + ProductEntry.TABLE_NAME + " SET "
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = ? WHERE " + ProductEntry._ID + " = ?");
+        mDelete = mDatabase.connection.prepareStatement("DELETE FROM " + ProductEntry.TABLE_NAME
+                + " WHERE " + ProductEntry._ID + " = ?");
+        mRestore = mDatabase.connection.prepareStatement("INSERT INTO " + ProductEntry.TABLE_NAME + " ("
+                + ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_TYPE + ") VALUES (?, 'restored', 0)");
+        // The movement the provider records before setting a quantity
+        mRecordAdjustment = mDatabase.connection.prepareStatement("INSERT INTO "
+                + StockMovementEntry.TABLE_NAME + " (" + StockMovementEntry.COLUMN_PRODUCT_ID + ", "
+                + StockMovementEntry.COLUMN_DELTA + ", " + StockMovementEntry.COLUMN_REASON + ", "
+                + StockMovementEntry.COLUMN_TIMESTAMP + ") SELECT " + ProductEntry._ID + ", ? - "
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", " + StockMovementEntry.REASON_ADJUSTMENT
+                + ", ? FROM " + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = ? AND "
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " != ?");
+        mRandom = new Random(7);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mInsert.close();
+        mQueryProduct.close();
+        mScan.close();
+        mUpdate.close();
+        mDelete.close();
+        mRestore.close();
+        mRecordAdjustment.close();
+        mDatabase.close();
+    }
+
+    /**
+     * Pick the product the next invocation works on.
+     */
+    @Setup(Level.Invocation)
+    public void pickProduct() {
+        mId = 1 + mRandom.nextInt(tableSize);
+    }
+
+    @Benchmark
+    public long insert() throws SQLException {
+        BenchmarkDatabase.bindProduct(mInsert, mRandom);
+        mInsert.executeUpdate();
+        try (Statement statement = mDatabase.connection.createStatement();
+             ResultSet id = statement.executeQuery("SELECT last_insert_rowid()")) {
+            id.next();
+            mId = id.getLong(1);
+        }
+        return mId;
+    }
+
+    @TearDown(Level.Invocation)
+    public void removeInserted() throws SQLException {
+        if (mId > tableSize) {
+            mDelete.setLong(1, mId);
+            mDelete.executeUpdate();
+        }
+    }
+
+    @Benchmark
+    public void queryProduct(Blackhole blackhole) throws SQLException {
+        mQueryProduct.setLong(1, mId);
+        try (ResultSet product = mQueryProduct.executeQuery()) {
+            if (product.next()) {
+                blackhole.consume(product.getString(ProductEntry.COLUMN_PRODUCT_NAME));
+                blackhole.consume(product.getInt(ProductEntry.COLUMN_PRODUCT_QUANTITY));
+            }
+        }
+    }
+
+    @Benchmark
+    public void scanCatalog(Blackhole blackhole) throws SQLException {
+        try (ResultSet products = mScan.executeQuery()) {
+            while (products.next()) {
+                blackhole.consume(products.getLong(1));
+                blackhole.consume(products.getString(2));
+                blackhole.consume(products.getInt(3));
+                blackhole.consume(products.getInt(4));
+            }
+        }
+    }
+
+    @Benchmark
+    public int update() throws SQLException {
+        mUpdate.setInt(1, mRandom.nextInt(100));
+        mUpdate.setLong(2, mId);
+        return mUpdate.executeUpdate();
+    }
+
+    /**
+     * Set the quantity of a product and append the stock movement in the same transaction, as
+     * the provider does for edits.
+     */
+    @Benchmark
+    public int updateQuantity() throws SQLException {
+        int quantity = mRandom.nextInt(100);
+        mDatabase.connection.setAutoCommit(false);
+        try {
+            mRecordAdjustment.setInt(1, quantity);
+            mRecordAdjustment.setLong(2, System.currentTimeMillis());
+            mRecordAdjustment.setLong(3, mId);
+            mRecordAdjustment.setInt(4, quantity);
+            mRecordAdjustment.executeUpdate();
+            mUpdate.setInt(1, quantity);
+            mUpdate.setLong(2, mId);
+            int updated = mUpdate.executeUpdate();
+            mDatabase.connection.commit();
+            return updated;
+        } finally {
+            mDatabase.connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Delete a product and put it back under the same ID, so the next invocations still find it.
+     */
+    @Benchmark
+    public int deleteAndRestore() throws SQLException {
+        mDelete.setLong(1, mId);
+        int deleted = mDelete.executeUpdate();
+        mRestore.setLong(1, mId);
+        mRestore.executeUpdate();
+        return deleted;
+    }
+}
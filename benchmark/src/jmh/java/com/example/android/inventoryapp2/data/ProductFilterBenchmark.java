@@ -0,0 +1,134 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtered catalog queries as the provider builds them from {@link ProductFilter}, against the
+ * same queries with the indexes turned off. ProductFilterQueryPlanTest checks that every
+ * combination of filters keeps its index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductFilterBenchmark {
+
+    @Param({"10000", "100000"})
+    public int tableSize;
+
+    /** The catalog list projection */
+    private static final String LIST_COLUMNS = ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", " + ProductEntry.COLUMN_PRODUCT_PRICE;
+
+    /** The products with their suppliers, with the indexes of the products table turned off */
+    private static final String PRODUCTS_NOT_INDEXED = "(" + ProductDbHelper.SQL_SELECT_PRODUCTS + " NOT INDEXED"
+            + ProductDbHelper.SQL_JOIN_SUPPLIERS + ")";
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mPriceRange;
+    private PreparedStatement mPriceRangeNotIndexed;
+    private PreparedStatement mLowStockOfType;
+    private PreparedStatement mLowStockOfTypeNotIndexed;
+
+    @Setup
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(tableSize);
+
+        // A price band, cheapest first
+        ProductFilter priceRange = parse(ProductEntry.QUERY_PARAMETER_MIN_PRICE, "100",
+                ProductEntry.QUERY_PARAMETER_MAX_PRICE, "150", ProductEntry.QUERY_PARAMETER_SORT, ProductEntry.SORT_PRICE);
+        mPriceRange = prepare(priceRange, priceRange.getTable());
+        mPriceRangeNotIndexed = prepare(priceRange, PRODUCTS_NOT_INDEXED);
+        // What to reorder of one type, by name
+        ProductFilter lowStockOfType = parse(ProductEntry.QUERY_PARAMETER_TYPE, String.valueOf(ProductEntry.GOODS),
+                ProductEntry.QUERY_PARAMETER_MAX_QUANTITY, "10", ProductEntry.QUERY_PARAMETER_SORT, ProductEntry.SORT_NAME);
+        mLowStockOfType = prepare(lowStockOfType, lowStockOfType.getTable());
+        mLowStockOfTypeNotIndexed = prepare(lowStockOfType, PRODUCTS_NOT_INDEXED);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mPriceRange.close();
+        mPriceRangeNotIndexed.close();
+        mLowStockOfType.close();
+        mLowStockOfTypeNotIndexed.close();
+        mDatabase.close();
+    }
+
+    @Benchmark
+    public long priceRange() throws SQLException {
+        return read(mPriceRange);
+    }
+
+    @Benchmark
+    public long priceRangeNotIndexed() throws SQLException {
+        return read(mPriceRangeNotIndexed);
+    }
+
+    @Benchmark
+    public long lowStockOfType() throws SQLException {
+        return read(mLowStockOfType);
+    }
+
+    @Benchmark
+    public long lowStockOfTypeNotIndexed() throws SQLException {
+        return read(mLowStockOfTypeNotIndexed);
+    }
+
+    private PreparedStatement prepare(ProductFilter filter, String table) throws SQLException {
+        PreparedStatement statement = mDatabase.connection.prepareStatement(buildQuery(filter, table));
+        bind(statement, filter);
+        return statement;
+    }
+
+    private static ProductFilter parse(String... parameters) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            map.put(parameters[i], parameters[i + 1]);
+        }
+        return ProductFilter.parse(map);
+    }
+
+    /**
+     * The query the provider runs for a filter on {@link ProductEntry#CONTENT_URI}.
+     */
+    private static String buildQuery(ProductFilter filter, String table) {
+        return "SELECT " + LIST_COLUMNS + " FROM " + table + " WHERE " + filter.selection
+                + (filter.sortOrder == null ? "" : " ORDER BY " + filter.sortOrder);
+    }
+
+    private static void bind(PreparedStatement statement, ProductFilter filter) throws SQLException {
+        for (int i = 0; i < filter.selectionArgs.length; i++) {
+            statement.setString(i + 1, filter.selectionArgs[i]);
+        }
+    }
+
+    /**
+     * Read every row of a query, return the sum of the IDs so none of it is optimized away.
+     */
+    private static long read(PreparedStatement query) throws SQLException {
+        long sum = 0;
+        try (ResultSet rows = query.executeQuery()) {
+            while (rows.next()) {
+                sum += rows.getLong(1) + rows.getString(2).length() + rows.getInt(3) + rows.getInt(4);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The checks {@link ProductProvider} runs on every update. The values are kept in a HashMap,
+ * which is what ContentValues wraps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductValidatorBenchmark {
+
+    private Set<Map.Entry<String, Object>> mEditorValues;
+    private Set<Map.Entry<String, Object>> mSaleValues;
+    private int mType;
+
+    @Setup
+    public void setUp() {
+        // What the editor saves, the quantity comes straight from the text field
+        Map<String, Object> editor = new HashMap<>();
+        editor.put(ProductEntry.COLUMN_PRODUCT_NAME, "Thing");
+        editor.put(ProductEntry.COLUMN_SUPPLIER_NAME, "Cat Hat Co");
+        editor.put(ProductEntry.COLUMN_SUPPLIER_PHONE, "555-555-5555");
+        editor.put(ProductEntry.COLUMN_PRODUCT_TYPE, ProductEntry.GROCERY);
+        editor.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, "12");
+        editor.put(ProductEntry.COLUMN_PRODUCT_PRICE, 3);
+        mEditorValues = editor.entrySet();
+
+        Map<String, Object> sale = new HashMap<>();
+        sale.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 11);
+        mSaleValues = sale.entrySet();
+
+        mType = ProductEntry.GOODS;
+    }
+
+    @Benchmark
+    public void validateEditorUpdate() {
+        ProductValidator.validateUpdate(mEditorValues);
+    }
+
+    @Benchmark
+    public void validateQuantityUpdate() {
+        ProductValidator.validateUpdate(mSaleValues);
+    }
+
+    @Benchmark
+    public boolean isValidType() {
+        return ProductValidator.isValidType(mType);
+    }
+}
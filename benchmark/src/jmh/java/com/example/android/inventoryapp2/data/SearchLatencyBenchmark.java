@@ -0,0 +1,269 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keystroke-to-results latency of search as you type on a catalog of 100000 products. A word
+ * is typed a letter every {@link #KEYSTROKE_MILLIS}, each change of the text asking for a
+ * search, and the score is the time from the last letter until its results are in. Searches
+ * run on one loader thread, as the catalog list's loader runs them: the row count and the
+ * first page of the search URI.
+ *
+ * The drivers are how the catalog starts the searches:
+ * <ul>
+ * <li>restart: a search per keystroke, a running search finishes before the latest one
+ * starts, the way the loader manager restarts a loader that can't be canceled</li>
+ * <li>cancel: a search per keystroke, each one canceling the running one</li>
+ * <li>debounce: what the catalog does, a search once the text hasn't changed for
+ * {@code CatalogActivity.SEARCH_DELAY_MILLIS}, canceling the running one</li>
+ * </ul>
+ * The {@link Loads} counters show how many searches ran to the end and how many were
+ * canceled. The scores are sampled, so the results include the p95 latency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SearchLatencyBenchmark {
+
+    @Param({"restart", "cancel", "debounce"})
+    public String driver;
+
+    private static final int PRODUCTS = 100000;
+
+    /** Time between keystrokes of a fast typist */
+    private static final long KEYSTROKE_MILLIS = 80;
+
+    /** CatalogActivity.SEARCH_DELAY_MILLIS */
+    private static final long SEARCH_DELAY_MILLIS = 100;
+
+    /** Words of the benchmark data, matching more products the shorter they are typed */
+    private static final String[] WORDS = {"salt", "soap", "rice", "rope", "lamp"};
+
+    private static final String SELECTION_SEARCH = ProductEntry._ID + " IN (SELECT docid FROM products_fts"
+            + " WHERE products_fts MATCH ?)";
+
+    /**
+     * Searches that ran to the end and searches that were canceled.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Loads {
+        public long completed;
+        public long canceled;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            completed = 0;
+            canceled = 0;
+        }
+    }
+
+    /**
+     * One search on the loader thread.
+     */
+    private final class Load implements Runnable {
+        final String text;
+        volatile boolean canceled;
+        volatile PreparedStatement running;
+
+        Load(String text) {
+            this.text = text;
+        }
+
+        void cancel() {
+            canceled = true;
+            PreparedStatement statement = running;
+            if (statement != null) {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            SQLException failure = null;
+            boolean done = false;
+            try {
+                done = query(mCount) && query(mFirstPage);
+            } catch (SQLException e) {
+                if (!canceled) {
+                    failure = e;
+                }
+            }
+            finished(this, done, failure);
+        }
+
+        /**
+         * Run one query of the search and read every row, return false if it was canceled.
+         */
+        private boolean query(PreparedStatement statement) throws SQLException {
+            statement.setString(1, text + "*");
+            running = statement;
+            if (canceled) {
+                running = null;
+                return false;
+            }
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    rows.getLong(1);
+                }
+            } finally {
+                running = null;
+            }
+            return !canceled;
+        }
+    }
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mCount;
+    private PreparedStatement mFirstPage;
+    private ExecutorService mLoaderThread;
+    private ScheduledExecutorService mMainThread;
+    private Random mRandom;
+    private String mWord;
+
+    private final AtomicLong mCompleted = new AtomicLong();
+    private final AtomicLong mCanceled = new AtomicLong();
+
+    /** The search running, the one to run after it, and the text of the last results */
+    private Load mRunning;
+    private String mPending;
+    private String mDelivered;
+    private SQLException mFailure;
+    private ScheduledFuture<?> mScheduled;
+
+    @Setup
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(PRODUCTS);
+        mCount = mDatabase.connection.prepareStatement("SELECT count(*) FROM " + ProductEntry.TABLE_NAME
+                + " WHERE " + SELECTION_SEARCH);
+        // The first page of ProductPagedCursor
+        mFirstPage = mDatabase.connection.prepareStatement("SELECT " + ProductEntry._ID + ", "
+                + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_SUPPLIER_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_PRICE + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " FROM "
+                + ProductDbHelper.PRODUCTS_WITH_SUPPLIERS + " WHERE (" + SELECTION_SEARCH + ") AND (" + ProductEntry._ID
+                + " > 0) ORDER BY " + ProductEntry.SORT_ORDER_ID + " LIMIT 50");
+        mLoaderThread = Executors.newSingleThreadExecutor();
+        mMainThread = Executors.newSingleThreadScheduledExecutor();
+        mRandom = new Random(7);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        mMainThread.shutdownNow();
+        mLoaderThread.shutdown();
+        mLoaderThread.awaitTermination(1, TimeUnit.MINUTES);
+        mCount.close();
+        mFirstPage.close();
+        mDatabase.close();
+    }
+
+    /**
+     * Type all of a word but its last letter.
+     */
+    @Setup(Level.Invocation)
+    public void typeWord() throws InterruptedException {
+        mWord = WORDS[mRandom.nextInt(WORDS.length)];
+        synchronized (this) {
+            mDelivered = null;
+        }
+        for (int length = 1; length < mWord.length(); length++) {
+            type(mWord.substring(0, length));
+            Thread.sleep(KEYSTROKE_MILLIS);
+        }
+    }
+
+    @Benchmark
+    public void lastKeystroke(Loads loads) throws InterruptedException, SQLException {
+        type(mWord);
+        synchronized (this) {
+            while (!mWord.equals(mDelivered) && mFailure == null) {
+                wait();
+            }
+            if (mFailure != null) {
+                throw mFailure;
+            }
+        }
+        loads.completed += mCompleted.getAndSet(0);
+        loads.canceled += mCanceled.getAndSet(0);
+    }
+
+    private void type(final String text) {
+        if (!driver.equals("debounce")) {
+            search(text);
+            return;
+        }
+        synchronized (this) {
+            if (mScheduled != null) {
+                mScheduled.cancel(false);
+            }
+            mScheduled = mMainThread.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    search(text);
+                }
+            }, SEARCH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void search(String text) {
+        if (mRunning == null) {
+            start(text);
+        } else {
+            // Only the latest text waits for the running search
+            mPending = text;
+            if (!driver.equals("restart")) {
+                mRunning.cancel();
+            }
+        }
+    }
+
+    private void start(String text) {
+        mRunning = new Load(text);
+        mLoaderThread.execute(mRunning);
+    }
+
+    private synchronized void finished(Load load, boolean done, SQLException failure) {
+        mRunning = null;
+        if (failure != null) {
+            mFailure = failure;
+            notifyAll();
+        } else if (done) {
+            mCompleted.incrementAndGet();
+            mDelivered = load.text;
+            notifyAll();
+        } else {
+            mCanceled.incrementAndGet();
+        }
+        if (mPending != null) {
+            start(mPending);
+            mPending = null;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockMovementEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up scanned barcodes on a catalog of 500000 products that all have a SKU, as the
+ * provider does for {@link ProductEntry#SKU_URI} and
+ * {@link ProductEntry#METHOD_SELL_SKU}: the lookup alone, and a whole scan-to-sale
+ * transaction that resolves the SKU, sells one item, reads back the quantity, records the
+ * movement and raises the alert. Both should stay well under a millisecond. The lookup with
+ * the SKU index turned off shows what the index saves.
+ *
+ * The setup fails if the lookup doesn't go through the SKU index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SkuBenchmark {
+
+    private static final int PRODUCTS = 500000;
+
+    private static final int RESTOCK_QUANTITY = 100;
+
+    /** SKUs are 13 digit barcode numbers, this one plus the product ID */
+    private static final long FIRST_SKU = 4006381000000L;
+
+    private static final String SQL_QUERY_SKU = "SELECT " + ProductEntry._ID + " FROM %s WHERE "
+            + ProductEntry.COLUMN_SKU + " = ?";
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mLookup;
+    private PreparedStatement mLookupNotIndexed;
+    private PreparedStatement mSell;
+    private PreparedStatement mReadBack;
+    private PreparedStatement mRecordSale;
+    private PreparedStatement mRaiseAlert;
+    private PreparedStatement mRestock;
+    private Random mRandom;
+
+    @Setup
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(PRODUCTS);
+        try (Statement statement = mDatabase.connection.createStatement()) {
+            statement.executeUpdate("UPDATE " + ProductEntry.TABLE_NAME + " SET " + ProductEntry.COLUMN_SKU
+                    + " = printf('%013d', " + FIRST_SKU + " + " + ProductEntry._ID + ")");
+            try (ResultSet plan = statement.executeQuery("EXPLAIN QUERY PLAN "
+                    + String.format(SQL_QUERY_SKU, ProductEntry.TABLE_NAME).replace("?", "'0'"))) {
+                while (plan.next()) {
+                    String detail = plan.getString("detail");
+                    if (!detail.contains(ProductDbHelper.INDEX_SKU)) {
+                        throw new IllegalStateException("SKU lookup without its index: " + detail);
+                    }
+                }
+            }
+        }
+
+        mLookup = mDatabase.connection.prepareStatement(String.format(SQL_QUERY_SKU, ProductEntry.TABLE_NAME));
+        mLookupNotIndexed = mDatabase.connection.prepareStatement(String.format(SQL_QUERY_SKU,
+                ProductEntry.TABLE_NAME + " NOT INDEXED"));
+        mSell = mDatabase.connection.prepareStatement(StockLocations.SQL_SELL_PRODUCT);
+        mReadBack = mDatabase.connection.prepareStatement("SELECT " + ProductEntry.COLUMN_PRODUCT_QUANTITY
+                + " FROM " + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = ?");
+        mRecordSale = mDatabase.connection.prepareStatement(StockLedger.SQL_INSERT_MOVEMENT);
+        mRaiseAlert = mDatabase.connection.prepareStatement(StockAlerts.SQL_RECORD_SALE);
+        mRestock = mDatabase.connection.prepareStatement("UPDATE " + ProductEntry.TABLE_NAME + " SET "
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = ? WHERE " + ProductEntry._ID + " = ?");
+        mRandom = new Random(7);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mLookup.close();
+        mLookupNotIndexed.close();
+        mSell.close();
+        mReadBack.close();
+        mRecordSale.close();
+        mRaiseAlert.close();
+        mRestock.close();
+        mDatabase.close();
+    }
+
+    @Benchmark
+    public long lookup() throws SQLException {
+        return lookup(mLookup, scan());
+    }
+
+    @Benchmark
+    public long lookupNotIndexed() throws SQLException {
+        return lookup(mLookupNotIndexed, scan());
+    }
+
+    /**
+     * Sell one of a scanned product in a transaction, or restock it if it has run out.
+     */
+    @Benchmark
+    public int sell() throws SQLException {
+        String sku = scan();
+        long now = System.currentTimeMillis();
+        mDatabase.connection.setAutoCommit(false);
+        try {
+            long id = lookup(mLookup, sku);
+            mSell.setInt(1, 1);
+            mSell.setLong(2, id);
+            mSell.setInt(3, 1);
+            int quantity = -1;
+            if (mSell.executeUpdate() == 1) {
+                mReadBack.setLong(1, id);
+                try (ResultSet row = mReadBack.executeQuery()) {
+                    row.next();
+                    quantity = row.getInt(1);
+                }
+                mRecordSale.setLong(1, id);
+                mRecordSale.setInt(2, -1);
+                mRecordSale.setInt(3, StockMovementEntry.REASON_SALE);
+                mRecordSale.setLong(4, now);
+                mRecordSale.executeUpdate();
+                mRaiseAlert.setLong(1, now);
+                mRaiseAlert.setLong(2, id);
+                mRaiseAlert.setInt(3, 1);
+                mRaiseAlert.executeUpdate();
+            } else {
+                mRestock.setInt(1, RESTOCK_QUANTITY);
+                mRestock.setLong(2, id);
+                mRestock.executeUpdate();
+            }
+            mDatabase.connection.commit();
+            return quantity;
+        } finally {
+            mDatabase.connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Returns the SKU of a random product.
+     */
+    private String scan() {
+        return String.format("%013d", FIRST_SKU + 1 + mRandom.nextInt(PRODUCTS));
+    }
+
+    /**
+     * Return the ID of the product with a SKU, -1 if there is none.
+     */
+    private static long lookup(PreparedStatement lookup, String sku) throws SQLException {
+        lookup.setString(1, sku);
+        try (ResultSet row = lookup.executeQuery()) {
+            return row.next() ? row.getLong(1) : -1;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockAlertEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockMovementEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A steady stream of sales as the provider runs them, with and without the statements of
+ * {@link StockAlerts}. Products are sold one at a time until they run out and are then
+ * restocked, so sales keep going below reorder points and restocks keep clearing the alerts.
+ * The cost of the alerts per sale should be the same on every size of catalog.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StockAlertBenchmark {
+
+    @Param({"1000", "100000"})
+    public int tableSize;
+
+    private static final int RESTOCK_QUANTITY = 100;
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mSell;
+    private PreparedStatement mRecordSale;
+    private PreparedStatement mRaiseAlert;
+    private PreparedStatement mRestock;
+    private PreparedStatement mClearAlert;
+    private Random mRandom;
+
+    @Setup
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(tableSize);
+        mSell = mDatabase.connection.prepareStatement(StockLocations.SQL_SELL_PRODUCT);
+        mRecordSale = mDatabase.connection.prepareStatement("INSERT INTO " + StockMovementEntry.TABLE_NAME + " ("
+                + StockMovementEntry.COLUMN_PRODUCT_ID + ", " + StockMovementEntry.COLUMN_DELTA + ", "
+                + StockMovementEntry.COLUMN_REASON + ", " + StockMovementEntry.COLUMN_TIMESTAMP
+                + ") VALUES (?, ?, " + StockMovementEntry.REASON_SALE + ", ?)");
+        // StockAlerts.recordSale
+        mRaiseAlert = mDatabase.connection.prepareStatement("INSERT OR REPLACE INTO " + StockAlertEntry.TABLE_NAME
+                + " (" + StockAlertEntry.COLUMN_PRODUCT_ID + ", " + StockAlertEntry.COLUMN_QUANTITY + ", "
+                + StockAlertEntry.COLUMN_REORDER_POINT + ", " + StockAlertEntry.COLUMN_TIMESTAMP + ") SELECT "
+                + ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                + ProductEntry.COLUMN_REORDER_POINT + ", ? FROM " + ProductEntry.TABLE_NAME + " WHERE "
+                + ProductEntry._ID + " = ? AND " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " <= "
+                + ProductEntry.COLUMN_REORDER_POINT + " AND " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " + ? > "
+                + ProductEntry.COLUMN_REORDER_POINT);
+        mRestock = mDatabase.connection.prepareStatement("UPDATE " + ProductEntry.TABLE_NAME + " SET "
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = ? WHERE " + ProductEntry._ID + " = ?");
+        // StockAlerts.recordUpdate clearing the alert of a new quantity
+        mClearAlert = mDatabase.connection.prepareStatement("DELETE FROM " + StockAlertEntry.TABLE_NAME
+                + " WHERE " + StockAlertEntry.COLUMN_PRODUCT_ID + " IN (SELECT " + ProductEntry._ID + " FROM "
+                + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = ? AND ? > "
+                + ProductEntry.COLUMN_REORDER_POINT + ")");
+        mRandom = new Random(7);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mSell.close();
+        mRecordSale.close();
+        mRaiseAlert.close();
+        mRestock.close();
+        mClearAlert.close();
+        mDatabase.close();
+    }
+
+    @Benchmark
+    public int sell() throws SQLException {
+        return sell(false);
+    }
+
+    @Benchmark
+    public int sellWithAlerts() throws SQLException {
+        return sell(true);
+    }
+
+    /**
+     * Sell one of a random product in a transaction, or restock it if it has run out.
+     */
+    private int sell(boolean alerts) throws SQLException {
+        long id = 1 + mRandom.nextInt(tableSize);
+        long now = System.currentTimeMillis();
+        mDatabase.connection.setAutoCommit(false);
+        try {
+            mSell.setInt(1, 1);
+            mSell.setLong(2, id);
+            mSell.setInt(3, 1);
+            int sold = mSell.executeUpdate();
+            if (sold == 1) {
+                mRecordSale.setLong(1, id);
+                mRecordSale.setInt(2, -1);
+                mRecordSale.setLong(3, now);
+                mRecordSale.executeUpdate();
+                if (alerts) {
+                    mRaiseAlert.setLong(1, now);
+                    mRaiseAlert.setLong(2, id);
+                    mRaiseAlert.setInt(3, 1);
+                    mRaiseAlert.executeUpdate();
+                }
+            } else {
+                if (alerts) {
+                    mClearAlert.setLong(1, id);
+                    mClearAlert.setInt(2, RESTOCK_QUANTITY);
+                    mClearAlert.executeUpdate();
+                }
+                mRestock.setInt(1, RESTOCK_QUANTITY);
+                mRestock.setLong(2, id);
+                mRestock.executeUpdate();
+            }
+            mDatabase.connection.commit();
+            return sold;
+        } finally {
+            mDatabase.connection.setAutoCommit(true);
+        }
+    }
+}
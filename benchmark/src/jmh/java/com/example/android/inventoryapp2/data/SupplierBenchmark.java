@@ -0,0 +1,142 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suppliers in every product row, as in version 10, against suppliers in a table of their
+ * own, as from version 11, on a catalog of 100000 products from 500 suppliers:
+ * <ul>
+ * <li>supplierProducts: the catalog list filtered by a supplier name, as the provider queries
+ * it for {@link ProductEntry#QUERY_PARAMETER_SUPPLIER}</li>
+ * <li>catalogFirstPage: the row count and first page of the catalog list, which has to join
+ * the supplier names from version 11 on</li>
+ * </ul>
+ * The setup prints the size of the database file and fails if the supplier query scans a
+ * table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SupplierBenchmark {
+
+    @Param({"10", "11"})
+    public int version;
+
+    private static final int PRODUCTS = 100000;
+
+    private static final int SUPPLIERS = 500;
+
+    /** The catalog list projection */
+    private static final String LIST_COLUMNS = ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_SUPPLIER_NAME + ", " + ProductEntry.COLUMN_PRODUCT_PRICE + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY;
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mSupplierProducts;
+    private PreparedStatement mCount;
+    private PreparedStatement mFirstPage;
+    private Random mRandom;
+
+    @Setup
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(PRODUCTS, SUPPLIERS, version);
+        String table;
+        String supplierQuery;
+        if (version >= BenchmarkDatabase.VERSION) {
+            ProductFilter filter = ProductFilter.parse(Collections.singletonMap(
+                    ProductEntry.QUERY_PARAMETER_SUPPLIER, BenchmarkDatabase.supplierName(0)));
+            table = ProductDbHelper.PRODUCTS_WITH_SUPPLIERS;
+            supplierQuery = "SELECT " + LIST_COLUMNS + " FROM " + filter.getTable() + " WHERE " + filter.selection
+                    + " ORDER BY " + ProductEntry.SORT_ORDER_ID;
+        } else {
+            // The filter of version 10, through the supplier name index
+            table = ProductEntry.TABLE_NAME;
+            supplierQuery = "SELECT " + LIST_COLUMNS + " FROM " + table + " WHERE "
+                    + ProductEntry.COLUMN_SUPPLIER_NAME + " = ? ORDER BY " + ProductEntry.SORT_ORDER_ID;
+        }
+        try (Statement statement = mDatabase.connection.createStatement()) {
+            checkQueryPlan(statement, supplierQuery);
+            statement.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+            try (ResultSet size = statement.executeQuery(
+                    "SELECT page_count * page_size FROM pragma_page_count(), pragma_page_size()")) {
+                size.next();
+                long bytes = size.getLong(1);
+                System.out.println(String.format(Locale.ROOT, "Version %d database: %d bytes, %.1f MB",
+                        version, bytes, bytes / 1e6));
+            }
+        }
+
+        mSupplierProducts = mDatabase.connection.prepareStatement(supplierQuery);
+        mCount = mDatabase.connection.prepareStatement("SELECT count(*) FROM " + ProductEntry.TABLE_NAME);
+        // The first page of ProductPagedCursor
+        mFirstPage = mDatabase.connection.prepareStatement("SELECT " + LIST_COLUMNS + " FROM " + table
+                + " WHERE " + ProductEntry._ID + " > 0 ORDER BY " + ProductEntry.SORT_ORDER_ID + " LIMIT 50");
+        mRandom = new Random(7);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        mSupplierProducts.close();
+        mCount.close();
+        mFirstPage.close();
+        mDatabase.close();
+    }
+
+    @Benchmark
+    public long supplierProducts() throws SQLException {
+        mSupplierProducts.setString(1, BenchmarkDatabase.supplierName(mRandom.nextInt(SUPPLIERS)));
+        return read(mSupplierProducts);
+    }
+
+    @Benchmark
+    public long catalogFirstPage() throws SQLException {
+        return read(mCount) + read(mFirstPage);
+    }
+
+    /**
+     * Fail if a query scans a table or an index from start to end.
+     */
+    private static void checkQueryPlan(Statement statement, String sql) throws SQLException {
+        try (ResultSet plan = statement.executeQuery("EXPLAIN QUERY PLAN " + sql.replace("?", "'tea Co'"))) {
+            while (plan.next()) {
+                String detail = plan.getString("detail");
+                if (detail.startsWith("SCAN")) {
+                    throw new IllegalStateException("Full scan in " + sql + ": " + detail);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read every row of a query, return the sum of the first column so none of it is
+     * optimized away.
+     */
+    private static long read(PreparedStatement query) throws SQLException {
+        long sum = 0;
+        try (ResultSet rows = query.executeQuery()) {
+            while (rows.next()) {
+                sum += rows.getLong(1);
+            }
+        }
+        return sum;
+    }
+}
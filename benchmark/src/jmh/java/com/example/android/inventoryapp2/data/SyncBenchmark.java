@@ -0,0 +1,125 @@
+package com.example.android.inventoryapp2.data;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The network side of {@link ProductSync} against {@link StandInSyncServer} on a loopback
+ * port: a catalog pulled by a new device, and a device pushing a change to every product, in
+ * batches of {@link ProductSync#BATCH_SIZE}. The scores are rows per second, the
+ * {@link Traffic} counters bytes of request and response bodies per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SyncBenchmark {
+
+    private static final int PRODUCTS = 10000;
+
+    private static final String[] WORDS = {
+            "cat", "hat", "tea", "rice", "soap", "lamp", "mug", "pen", "rope", "salt"};
+
+    private StandInSyncServer mServer;
+    private final ArrayList<SyncClient.Change> mCatalog = new ArrayList<>(PRODUCTS);
+    private long mVersion;
+
+    /**
+     * Bytes of the request and response bodies.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Traffic {
+        public long bytesSent;
+        public long bytesReceived;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesSent = 0;
+            bytesReceived = 0;
+        }
+
+        void add(SyncClient client) {
+            bytesSent += client.getBytesSent();
+            bytesReceived += client.getBytesReceived();
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        mServer = StandInSyncServer.start();
+        Random random = new Random(7);
+        for (int i = 0; i < PRODUCTS; i++) {
+            SyncClient.Change change = new SyncClient.Change();
+            change.globalId = Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+            change.version = ++mVersion;
+            change.name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            change.supplier = WORDS[random.nextInt(WORDS.length)] + " Co";
+            change.phone = "555-555-5555";
+            change.type = random.nextInt(ProductContract.ProductEntry.GOODS + 1);
+            change.price = random.nextInt(1000);
+            change.quantity = random.nextInt(100);
+            mCatalog.add(change);
+        }
+        push(new SyncClient(mServer.getUrl(), "warehouse"), mCatalog);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mServer.close();
+    }
+
+    /**
+     * A new device pulling the whole catalog.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PRODUCTS)
+    public long pullCatalog(Traffic traffic) throws IOException {
+        SyncClient client = new SyncClient(mServer.getUrl(), "new");
+        long pulled = 0;
+        String token = null;
+        SyncClient.Page page;
+        do {
+            page = client.pull(token, ProductSync.BATCH_SIZE);
+            pulled += page.changes.size();
+            token = page.token;
+        } while (page.more);
+        traffic.add(client);
+        return pulled;
+    }
+
+    /**
+     * The warehouse selling one of every product and pushing the changes.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PRODUCTS)
+    public void pushChanges(Traffic traffic) throws IOException {
+        for (SyncClient.Change change : mCatalog) {
+            change.version = ++mVersion;
+            change.quantity--;
+        }
+        SyncClient client = new SyncClient(mServer.getUrl(), "warehouse");
+        push(client, mCatalog);
+        traffic.add(client);
+    }
+
+    private static void push(SyncClient client, List<SyncClient.Change> changes) throws IOException {
+        for (int i = 0; i < changes.size(); i += ProductSync.BATCH_SIZE) {
+            client.push(changes.subList(i, Math.min(i + ProductSync.BATCH_SIZE, changes.size())));
+        }
+    }
+}
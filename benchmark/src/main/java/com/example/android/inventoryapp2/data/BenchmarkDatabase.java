@@ -0,0 +1,325 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.StockMovementEntry;
+import com.example.android.inventoryapp2.data.ProductContract.SupplierEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Desktop stand-in for the database {@link ProductDbHelper} creates on the device, built from
+ * the statements of its migrations and opened with the settings of
+ * {@link ProductDbSettings#DEFAULT}, unless a benchmark compares them with others. A new
+ * migration's statements go in here too.
+ *
+ * The database is at the latest version unless a benchmark compares it with version 10, the
+ * last one with the supplier name and phone in every product row, or compares version 1
+ * with version 2, the one that added the first indexes.
+ */
+final class BenchmarkDatabase {
+
+    /** Version of the schema with the suppliers table */
+    static final int VERSION = 11;
+
+    /** Version of the schema with the indexes on the name, the supplier, and the type and quantity */
+    static final int VERSION_INDEXES = 2;
+
+    /** Number of suppliers the products are from, unless a benchmark asks for more */
+    static final int SUPPLIERS = 10;
+
+    /**
+     * Inserts a product, the column order matches {@link #bindProduct}. The supplier ID is one
+     * of 1 to the number of suppliers, which have the IDs in the order of
+     * {@link #supplierName}.
+     */
+    static final String SQL_INSERT_PRODUCT = "INSERT INTO " + ProductEntry.TABLE_NAME + " ("
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_SUPPLIER_ID + ", "
+            + ProductEntry.COLUMN_PRODUCT_TYPE + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.COLUMN_PRODUCT_PRICE + ", "
+            + ProductEntry.COLUMN_REORDER_POINT + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Records the initial stock of the product just inserted, as the provider does in the
+     * transaction of the insert. Bound to the quantity and the time.
+     */
+    static final String SQL_RECORD_INITIAL_STOCK = "INSERT INTO " + StockMovementEntry.TABLE_NAME
+            + " (" + StockMovementEntry.COLUMN_PRODUCT_ID + ", " + StockMovementEntry.COLUMN_DELTA + ", "
+            + StockMovementEntry.COLUMN_REASON + ", " + StockMovementEntry.COLUMN_TIMESTAMP
+            + ") VALUES (last_insert_rowid(), ?, " + StockMovementEntry.REASON_INITIAL + ", ?)";
+
+    /**
+     * {@link #SQL_INSERT_PRODUCT} of version 10, with the supplier name and phone, followed by
+     * the type, quantity, price and reorder point
+     */
+    static final String SQL_INSERT_PRODUCT_V10 = "INSERT INTO " + ProductEntry.TABLE_NAME + " ("
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_SUPPLIER_NAME + ", "
+            + ProductEntry.COLUMN_SUPPLIER_PHONE + ", "
+            + ProductEntry.COLUMN_PRODUCT_TYPE + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.COLUMN_PRODUCT_PRICE + ", "
+            + ProductEntry.COLUMN_REORDER_POINT + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    /** {@link #SQL_INSERT_PRODUCT_V10} of version 1, without the reorder point */
+    private static final String SQL_INSERT_PRODUCT_V1 = "INSERT INTO " + ProductEntry.TABLE_NAME + " ("
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_SUPPLIER_NAME + ", "
+            + ProductEntry.COLUMN_SUPPLIER_PHONE + ", "
+            + ProductEntry.COLUMN_PRODUCT_TYPE + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.COLUMN_PRODUCT_PRICE + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_INSERT_SUPPLIER = "INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+            + SupplierEntry._ID + ", " + SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+            + SupplierEntry.COLUMN_SUPPLIER_PHONE + ") VALUES (?, ?, ?)";
+
+    /**
+     * The statements of the migrations up to version 10, from {@link ProductDbHelper}. The
+     * database has no products yet, so the opening stock of version 4 is left out.
+     */
+    private static final String[] SCHEMA = {
+            ProductDbHelper.SQL_CREATE_PRODUCTS_V1,
+            // Version 2
+            ProductDbHelper.SQL_CREATE_NAME_INDEX,
+            ProductDbHelper.SQL_CREATE_SUPPLIER_NAME_INDEX,
+            ProductDbHelper.SQL_CREATE_TYPE_QUANTITY_INDEX,
+            // Version 3
+            ProductDbHelper.SQL_CREATE_FTS,
+            ProductDbHelper.SQL_FILL_FTS,
+            ProductDbHelper.SQL_CREATE_FTS_INSERT_TRIGGER_V3,
+            ProductDbHelper.SQL_CREATE_FTS_UPDATE_TRIGGER_V3,
+            ProductDbHelper.SQL_CREATE_FTS_DELETE_TRIGGER,
+            // Version 4
+            ProductDbHelper.SQL_CREATE_MOVEMENTS,
+            ProductDbHelper.SQL_CREATE_MOVEMENT_TIMESTAMP_INDEX,
+            ProductDbHelper.SQL_CREATE_SUMMARIES,
+            ProductDbHelper.SQL_CREATE_SUMMARY_PRODUCT_DAY_INDEX,
+            // Version 5
+            ProductDbHelper.SQL_CREATE_IMPORTS,
+            // Version 6
+            ProductDbHelper.SQL_CREATE_SYNC_STATE,
+            ProductDbHelper.SQL_FILL_SYNC_STATE,
+            ProductDbHelper.SQL_CREATE_SYNC,
+            ProductDbHelper.SQL_CREATE_SYNC_VERSION_INDEX,
+            ProductDbHelper.SQL_FILL_SYNC,
+            ProductDbHelper.SQL_CREATE_SYNC_INSERT_TRIGGER,
+            ProductDbHelper.SQL_CREATE_SYNC_UPDATE_TRIGGER_V6,
+            ProductDbHelper.SQL_CREATE_SYNC_DELETE_TRIGGER,
+            // Version 7
+            ProductDbHelper.SQL_ADD_REORDER_POINT,
+            ProductDbHelper.SQL_CREATE_ALERTS,
+            ProductDbHelper.SQL_CREATE_ALERTS_DELETE_TRIGGER,
+            // Version 8
+            ProductDbHelper.SQL_CREATE_PRICE_INDEX,
+            ProductDbHelper.SQL_CREATE_QUANTITY_INDEX,
+            // Version 9
+            ProductDbHelper.SQL_ADD_SKU,
+            ProductDbHelper.SQL_CREATE_SKU_INDEX,
+            // Version 10
+            ProductDbHelper.SQL_CREATE_LOCATIONS,
+            ProductDbHelper.SQL_INSERT_DEFAULT_LOCATION,
+            ProductDbHelper.SQL_CREATE_LOCATION_STOCK,
+            ProductDbHelper.SQL_CREATE_STOCK_LOCATION_INDEX,
+            ProductDbHelper.SQL_CREATE_STOCK_DELETE_TRIGGER,
+    };
+
+    /**
+     * The statements of the version 11 migration, run on top of {@link #SCHEMA}, or on a
+     * version 10 database with products in it
+     */
+    static final String[] SCHEMA_V11 = {
+            ProductDbHelper.SQL_CREATE_SUPPLIERS,
+            ProductDbHelper.SQL_FILL_SUPPLIERS,
+            ProductDbHelper.SQL_CREATE_PRODUCTS_NEW,
+            ProductDbHelper.SQL_COPY_PRODUCTS,
+            ProductDbHelper.SQL_CLEAR_PRODUCTS_NEW_SEQUENCE,
+            ProductDbHelper.SQL_COPY_PRODUCTS_SEQUENCE,
+            ProductDbHelper.SQL_DROP_PRODUCTS,
+            ProductDbHelper.SQL_RENAME_PRODUCTS_NEW,
+            ProductDbHelper.SQL_CREATE_NAME_INDEX,
+            ProductDbHelper.SQL_CREATE_SUPPLIER_ID_INDEX,
+            ProductDbHelper.SQL_CREATE_TYPE_QUANTITY_INDEX,
+            ProductDbHelper.SQL_CREATE_PRICE_INDEX,
+            ProductDbHelper.SQL_CREATE_QUANTITY_INDEX,
+            ProductDbHelper.SQL_CREATE_SKU_INDEX,
+            ProductDbHelper.SQL_CREATE_FTS_INSERT_TRIGGER,
+            ProductDbHelper.SQL_CREATE_FTS_UPDATE_TRIGGER,
+            ProductDbHelper.SQL_CREATE_FTS_DELETE_TRIGGER,
+            ProductDbHelper.SQL_CREATE_SYNC_INSERT_TRIGGER,
+            ProductDbHelper.SQL_CREATE_SYNC_UPDATE_TRIGGER,
+            ProductDbHelper.SQL_CREATE_SYNC_DELETE_TRIGGER,
+            ProductDbHelper.SQL_CREATE_ALERTS_DELETE_TRIGGER,
+            ProductDbHelper.SQL_CREATE_STOCK_DELETE_TRIGGER,
+            ProductDbHelper.SQL_CREATE_SUPPLIERS_FTS_UPDATE_TRIGGER,
+            ProductDbHelper.SQL_CREATE_SUPPLIERS_SYNC_UPDATE_TRIGGER,
+    };
+
+    private static final String[] WORDS = {
+            "cat", "hat", "tea", "rice", "soap", "lamp", "mug", "pen", "rope", "salt"};
+
+    final Connection connection;
+    private final File mFile;
+
+    private BenchmarkDatabase(Connection connection, File file) {
+        this.connection = connection;
+        mFile = file;
+    }
+
+    /**
+     * Create a database file holding the given number of products, with IDs 1 to size.
+     */
+    static BenchmarkDatabase create(int size) throws IOException, SQLException {
+        return create(size, SUPPLIERS, VERSION);
+    }
+
+    /**
+     * Create a database file holding the given number of products, with IDs 1 to size, opened
+     * with the given settings. Their page size applies to the file, the other pragmas only to
+     * {@link #connection}, the connection that writes, as on the device.
+     */
+    static BenchmarkDatabase create(int size, ProductDbSettings settings) throws IOException, SQLException {
+        return create(size, SUPPLIERS, VERSION, settings);
+    }
+
+    /**
+     * Create a database file of version 1, 2, 10 or 11 holding the given number of products,
+     * with IDs 1 to size, from the given number of suppliers. Every version holds the same
+     * products.
+     */
+    static BenchmarkDatabase create(int size, int suppliers, int version) throws IOException, SQLException {
+        return create(size, suppliers, version, ProductDbSettings.DEFAULT);
+    }
+
+    private static BenchmarkDatabase create(int size, int suppliers, int version, ProductDbSettings settings)
+            throws IOException, SQLException {
+        File file = File.createTempFile("products", ".db");
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA page_size = " + settings.pageSize);
+            statement.execute("PRAGMA journal_mode = " + (settings.writeAheadLogging ? "WAL" : "DELETE"));
+            statement.execute("PRAGMA synchronous = " + settings.synchronous);
+            statement.execute("PRAGMA cache_size = " + settings.cacheSize);
+            statement.execute("PRAGMA mmap_size = " + settings.mmapSize);
+            statement.execute("PRAGMA foreign_keys = ON");
+            if (version <= VERSION_INDEXES) {
+                statement.execute(ProductDbHelper.SQL_CREATE_PRODUCTS_V1);
+                if (version == VERSION_INDEXES) {
+                    statement.execute(ProductDbHelper.SQL_CREATE_NAME_INDEX);
+                    statement.execute(ProductDbHelper.SQL_CREATE_SUPPLIER_NAME_INDEX);
+                    statement.execute(ProductDbHelper.SQL_CREATE_TYPE_QUANTITY_INDEX);
+                }
+            } else {
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+                if (version >= VERSION) {
+                    for (String sql : SCHEMA_V11) {
+                        statement.execute(sql);
+                    }
+                }
+            }
+        }
+
+        BenchmarkDatabase database = new BenchmarkDatabase(connection, file);
+        connection.setAutoCommit(false);
+        if (version >= VERSION) {
+            try (PreparedStatement insert = connection.prepareStatement(SQL_INSERT_SUPPLIER)) {
+                for (int i = 0; i < suppliers; i++) {
+                    insert.setInt(1, i + 1);
+                    insert.setString(2, supplierName(i));
+                    insert.setString(3, supplierPhone(i));
+                    insert.executeUpdate();
+                }
+            }
+        }
+        String sql = version >= VERSION ? SQL_INSERT_PRODUCT
+                : version > VERSION_INDEXES ? SQL_INSERT_PRODUCT_V10 : SQL_INSERT_PRODUCT_V1;
+        try (PreparedStatement insert = connection.prepareStatement(sql)) {
+            Random random = new Random(42);
+            for (int i = 0; i < size; i++) {
+                if (version >= VERSION) {
+                    bindProduct(insert, random, suppliers);
+                } else {
+                    bindProductV10(insert, random, suppliers, version);
+                }
+                insert.executeUpdate();
+            }
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        return database;
+    }
+
+    /**
+     * Bind the values of a random product from one of the default number of suppliers to
+     * {@link #SQL_INSERT_PRODUCT}.
+     */
+    static void bindProduct(PreparedStatement insert, Random random) throws SQLException {
+        bindProduct(insert, random, SUPPLIERS);
+    }
+
+    private static void bindProduct(PreparedStatement insert, Random random, int suppliers) throws SQLException {
+        insert.setString(1, WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+        insert.setInt(2, 1 + random.nextInt(suppliers));
+        insert.setInt(3, random.nextInt(ProductEntry.GOODS + 1));
+        insert.setInt(4, random.nextInt(100));
+        insert.setInt(5, random.nextInt(1000));
+        insert.setInt(6, random.nextInt(20));
+    }
+
+    /**
+     * Bind the same product as {@link #bindProduct} to {@link #SQL_INSERT_PRODUCT_V10}, or to
+     * {@link #SQL_INSERT_PRODUCT_V1} for the versions before the reorder point.
+     */
+    private static void bindProductV10(PreparedStatement insert, Random random, int suppliers, int version)
+            throws SQLException {
+        insert.setString(1, WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+        int supplier = random.nextInt(suppliers);
+        insert.setString(2, supplierName(supplier));
+        insert.setString(3, supplierPhone(supplier));
+        insert.setInt(4, random.nextInt(ProductEntry.GOODS + 1));
+        insert.setInt(5, random.nextInt(100));
+        insert.setInt(6, random.nextInt(1000));
+        int reorderPoint = random.nextInt(20);
+        if (version > VERSION_INDEXES) {
+            insert.setInt(7, reorderPoint);
+        }
+    }
+
+    /**
+     * Name of the supplier with the given index, from 0. The first ten are one word long.
+     */
+    static String supplierName(int supplier) {
+        String name = WORDS[supplier % WORDS.length] + " Co";
+        return supplier < WORDS.length ? name : name + " " + supplier;
+    }
+
+    private static String supplierPhone(int supplier) {
+        return String.format(Locale.ROOT, "555-555-%04d", supplier);
+    }
+
+    /**
+     * JDBC URL of the database file, for opening more connections to it.
+     */
+    String getUrl() {
+        return "jdbc:sqlite:" + mFile.getPath();
+    }
+
+    void close() throws SQLException {
+        connection.close();
+        File directory = mFile.getParentFile();
+        mFile.delete();
+        new File(directory, mFile.getName() + "-wal").delete();
+        new File(directory, mFile.getName() + "-shm").delete();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.android.inventoryapp2.data;
+
+import org.junit.Test;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the records {@link CsvReader} reads. Every input is also read a character at a time,
+ * so line endings and quotes that straddle two reads of the buffer are covered too.
+ */
+public class CsvReaderTest {
+
+    @Test
+    public void quotedFieldsHoldCommasLineBreaksAndQuotes() throws Exception {
+        assertRecords("a,\"b,c\",\"d\ne\r\nf\",\"say \"\"hi\"\"\",\"\"\n",
+                Arrays.asList("a", "b,c", "d\ne\r\nf", "say \"hi\"", ""));
+    }
+
+    @Test
+    public void textAfterAClosingQuoteIsKept() throws Exception {
+        assertRecords("\"a\"b,c", Arrays.asList("ab", "c"));
+    }
+
+    @Test
+    public void emptyFieldsAreKept() throws Exception {
+        assertRecords("a,,\n,\n", Arrays.asList("a", "", ""), Arrays.asList("", ""));
+    }
+
+    @Test
+    public void linesEndInLfCrlfOrCr() throws Exception {
+        assertRecords("a,b\r\nc,d\re,f\ng",
+                Arrays.asList("a", "b"), Arrays.asList("c", "d"), Arrays.asList("e", "f"), Arrays.asList("g"));
+    }
+
+    @Test
+    public void blankLinesAreSkipped() throws Exception {
+        assertRecords("\n\r\na\n\n\r\r\nb\r", Arrays.asList("a"), Arrays.asList("b"));
+        assertRecords("\r\n\n");
+    }
+
+    @Test
+    public void leadingByteOrderMarkIsIgnored() throws Exception {
+        assertRecords("\uFEFFname\nTea", Arrays.asList("name"), Arrays.asList("Tea"));
+        // Only at the start
+        assertRecords("name\n\uFEFFTea", Arrays.asList("name"), Arrays.asList("\uFEFFTea"));
+    }
+
+    @Test
+    public void fieldsLongerThanTheBuffer() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append((char) ('a' + i % 26));
+        }
+        String field = text.toString();
+        assertRecords(field + ",\"" + field + "\"\r\n" + field,
+                Arrays.asList(field, field), Arrays.asList(field));
+    }
+
+    @Test
+    public void recordLinesCountLineBreaksInQuotes() throws Exception {
+        for (boolean slow : new boolean[]{false, true}) {
+            CsvReader reader = new CsvReader(open("a\n\"b\nc\",\"d\r\ne\"\r\n\r\nf\r\"g\rh\"\ri", slow));
+            List<String> record = new ArrayList<>();
+            long[] lines = {1, 2, 6, 7, 9};
+            for (long line : lines) {
+                assertTrue(reader.readRecord(record));
+                assertEquals(line, reader.getRecordLine());
+            }
+            assertFalse(reader.readRecord(record));
+        }
+    }
+
+    @Test
+    public void unterminatedQuoteFails() throws Exception {
+        CsvReader reader = new CsvReader(new StringReader("a\n\"b,c\nd"));
+        List<String> record = new ArrayList<>();
+        assertTrue(reader.readRecord(record));
+        try {
+            reader.readRecord(record);
+            fail("Read an unterminated quoted field");
+        } catch (IOException e) {
+            assertEquals("Unterminated quoted field on line 2", e.getMessage());
+        }
+    }
+
+    @Test
+    public void skipResumesAfterTheRecordsSkipped() throws Exception {
+        String csv = "name,note\na,\"1\n2\"\nb,\"3\r\n4\"\nc,5\r\nd,6";
+        for (boolean slow : new boolean[]{false, true}) {
+            CsvReader reader = new CsvReader(open(csv, slow));
+            List<String> record = new ArrayList<>();
+            assertTrue(reader.readRecord(record));
+            assertEquals(2, reader.skipRecords(2));
+            assertTrue(reader.readRecord(record));
+            assertEquals(Arrays.asList("c", "5"), record);
+            assertEquals(6, reader.getRecordLine());
+            // Fewer left than asked
+            assertEquals(1, reader.skipRecords(5));
+            assertFalse(reader.readRecord(record));
+        }
+    }
+
+    /**
+     * Check that the given text reads as the given records, at once and a character at a time.
+     */
+    @SafeVarargs
+    private static void assertRecords(String csv, List<String>... expected) throws IOException {
+        for (boolean slow : new boolean[]{false, true}) {
+            assertEquals(Arrays.asList(expected), readAll(open(csv, slow)));
+        }
+    }
+
+    static List<List<String>> readAll(Reader in) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(in)) {
+            List<String> record = new ArrayList<>();
+            while (reader.readRecord(record)) {
+                records.add(new ArrayList<>(record));
+            }
+        }
+        return records;
+    }
+
+    private static Reader open(String csv, boolean slow) {
+        Reader reader = new StringReader(csv);
+        return slow ? new OneCharReader(reader) : reader;
+    }
+
+    /**
+     * Hands out a single character per read, like a slow stream.
+     */
+    private static final class OneCharReader extends FilterReader {
+        OneCharReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return super.read(buffer, offset, Math.min(length, 1));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the text {@link ExportWriter} writes, and that {@link CsvReader} reads its CSV back.
+ */
+public class ExportWriterTest {
+
+    private static final String[] COLUMNS = {"name", "supplier"};
+
+    @Test
+    public void csvReadsBackThroughCsvReader() throws Exception {
+        String[][] rows = {
+                {"Tea", "Tea Co"},
+                {"Tea, green", "\"Best\" teas"},
+                {"two\nlines", "three\r\nlines\rhere"},
+                {" spaced ", ""},
+                {"\"", ","},
+                {"Th\u00E9 \uD83C\uDF75", "\u0001\t"}};
+        List<List<String>> expected = new ArrayList<>();
+        expected.add(Arrays.asList(COLUMNS));
+        for (String[] row : rows) {
+            expected.add(Arrays.asList(row));
+        }
+        assertEquals(expected, CsvReaderTest.readAll(new StringReader(export(ProductEntry.EXPORT_FORMAT_CSV, rows))));
+    }
+
+    @Test
+    public void csvQuotesOnlyFieldsThatNeedIt() throws Exception {
+        assertEquals("name,supplier\n"
+                        + "Tea,\"a,b\"\n"
+                        + "\"say \"\"hi\"\"\",\"x\ry\"\n"
+                        + ",\n",
+                export(ProductEntry.EXPORT_FORMAT_CSV, new String[][]{
+                        {"Tea", "a,b"}, {"say \"hi\"", "x\ry"}, {null, ""}}));
+    }
+
+    @Test
+    public void jsonEscapesQuotesBackslashesAndControlCharacters() throws Exception {
+        assertEquals("{\"name\":\"a\\\"b\\\\c\",\"supplier\":\"\\n\\r\\t\\u0001\\u001f\u007f\"}\n"
+                        + "{\"name\":\"Tea\",\"supplier\":null}\n",
+                export(ProductEntry.EXPORT_FORMAT_NDJSON, new String[][]{
+                        {"a\"b\\c", "\n\r\t\u0001\u001f\u007f"}, {"Tea", null}}));
+    }
+
+    @Test
+    public void jsonWritesNumbersBare() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ExportWriter writer = new ExportWriter(Channels.newChannel(out), ProductEntry.EXPORT_FORMAT_NDJSON,
+                new String[]{"_id", "quantity"})) {
+            writer.writeLong(7);
+            writer.writeLong(-3);
+            writer.endRow();
+        }
+        assertEquals("{\"_id\":7,\"quantity\":-3}\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void loneSurrogatesAreReplaced() throws Exception {
+        String[][] rows = {{"a\uD800b", "\uDC00"}, {"\uD83C\uDF75", "c\uD83C"}};
+        assertEquals("name,supplier\na?b,?\n\uD83C\uDF75,c?\n", export(ProductEntry.EXPORT_FORMAT_CSV, rows));
+        assertEquals("{\"name\":\"a?b\",\"supplier\":\"?\"}\n{\"name\":\"\uD83C\uDF75\",\"supplier\":\"c?\"}\n",
+                export(ProductEntry.EXPORT_FORMAT_NDJSON, rows));
+    }
+
+    @Test
+    public void rowsLargerThanTheBuffer() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            // Characters of one to four bytes, so some straddle the end of the buffer
+            text.append(i % 4 == 0 ? "a" : i % 4 == 1 ? "\u00E9" : i % 4 == 2 ? "\u20AC" : "\uD83C\uDF75");
+        }
+        String field = text.toString();
+        String[][] rows = {{field, "\"" + field + "\""}, {field, ""}};
+        List<List<String>> records = CsvReaderTest.readAll(new StringReader(export(ProductEntry.EXPORT_FORMAT_CSV, rows)));
+        assertEquals(3, records.size());
+        assertEquals(Arrays.asList(rows[0]), records.get(1));
+        assertEquals(Arrays.asList(rows[1]), records.get(2));
+    }
+
+    @Test
+    public void unknownFormatFails() throws Exception {
+        try {
+            new ExportWriter(Channels.newChannel(new ByteArrayOutputStream()), "xml", COLUMNS);
+            fail("Accepted an unknown format");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown export format xml", e.getMessage());
+        }
+    }
+
+    /**
+     * Export rows of {@link #COLUMNS} in the given format and return the text written.
+     */
+    private static String export(String format, String[][] rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ExportWriter writer = new ExportWriter(Channels.newChannel(out), format, COLUMNS)) {
+            for (String[] row : rows) {
+                for (String field : row) {
+                    writer.writeString(field);
+                }
+                writer.endRow();
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
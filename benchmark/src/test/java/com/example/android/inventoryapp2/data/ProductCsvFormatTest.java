@@ -0,0 +1,103 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks how {@link ProductCsvFormat} maps the records of a catalog to product values.
+ */
+public class ProductCsvFormatTest {
+
+    @Test
+    public void headerIgnoresCaseSpacesAndUnknownColumns() {
+        ProductCsvFormat format = new ProductCsvFormat(Arrays.asList(" Name ", "NOTES", "Quantity", "SKU"));
+        assertEquals(product(ProductEntry.COLUMN_PRODUCT_NAME, "Tea", ProductEntry.COLUMN_PRODUCT_QUANTITY, 5,
+                ProductEntry.COLUMN_SKU, "0042"),
+                read(format, "Tea", "keep dry", " 5 ", "0042"));
+    }
+
+    @Test
+    public void headerRequiresANameColumn() {
+        try {
+            new ProductCsvFormat(Arrays.asList("supplier", "quantity"));
+            fail("Accepted a header without a name");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Catalog requires a name column", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shortRecordsLeaveTheMissingColumnsOut() {
+        ProductCsvFormat format = new ProductCsvFormat(Arrays.asList("name", "supplier", "phone", "price", "type"));
+        assertEquals(product(ProductEntry.COLUMN_PRODUCT_NAME, "Tea"), read(format, "Tea"));
+        assertEquals(product(ProductEntry.COLUMN_PRODUCT_NAME, "Tea", ProductEntry.COLUMN_SUPPLIER_NAME, "Tea Co"),
+                read(format, "Tea", "Tea Co"));
+    }
+
+    @Test
+    public void emptyFieldsAndExtraFieldsAreLeftOut() {
+        ProductCsvFormat format = new ProductCsvFormat(Arrays.asList("name", "price", "type"));
+        assertEquals(product(ProductEntry.COLUMN_PRODUCT_NAME, "Tea",
+                ProductEntry.COLUMN_PRODUCT_TYPE, ProductEntry.GOODS),
+                read(format, "Tea", "", String.valueOf(ProductEntry.GOODS), "extra", ""));
+    }
+
+    @Test
+    public void invalidRecordsNameTheFirstInvalidValue() {
+        ProductCsvFormat format = new ProductCsvFormat(Arrays.asList("name", "quantity", "price", "type"));
+        assertRejected(format, "Product requires a name", "", "1");
+        assertRejected(format, "Product requires valid quantity", "Tea", "five");
+        assertRejected(format, "Product requires valid price", "Tea", "1", "-1");
+        assertRejected(format, "Product requires valid type", "Tea", "1", "1", "9");
+    }
+
+    @Test
+    public void readsRecordsOfACsvFile() throws Exception {
+        List<List<String>> records = CsvReaderTest.readAll(new StringReader(
+                "\uFEFFname,supplier,quantity\r\n\"Tea, green\",\"Tea \"\"Co\"\"\",3\r\nCoffee\r\n"));
+        ProductCsvFormat format = new ProductCsvFormat(records.get(0));
+        Map<String, Object> product = new HashMap<>();
+        format.read(records.get(1), product);
+        assertEquals(product(ProductEntry.COLUMN_PRODUCT_NAME, "Tea, green",
+                ProductEntry.COLUMN_SUPPLIER_NAME, "Tea \"Co\"", ProductEntry.COLUMN_PRODUCT_QUANTITY, 3), product);
+        format.read(records.get(2), product);
+        assertEquals(product(ProductEntry.COLUMN_PRODUCT_NAME, "Coffee"), product);
+    }
+
+    private static void assertRejected(ProductCsvFormat format, String message, String... record) {
+        try {
+            read(format, record);
+            fail("Accepted " + Arrays.toString(record));
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> read(ProductCsvFormat format, String... record) {
+        Map<String, Object> product = new HashMap<>();
+        format.read(Arrays.asList(record), product);
+        return product;
+    }
+
+    /**
+     * The product with the given column and value pairs, of unknown type unless one is given.
+     */
+    private static Map<String, Object> product(Object... columnsAndValues) {
+        Map<String, Object> product = new HashMap<>();
+        product.put(ProductEntry.COLUMN_PRODUCT_TYPE, ProductEntry.TYPE_UNKNOWN);
+        for (int i = 0; i < columnsAndValues.length; i += 2) {
+            product.put((String) columnsAndValues[i], columnsAndValues[i + 1]);
+        }
+        return product;
+    }
+}
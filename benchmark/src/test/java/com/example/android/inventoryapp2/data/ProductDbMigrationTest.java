@@ -0,0 +1,163 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp2.data.ProductContract.SupplierEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the version 11 migration of {@link ProductDbHelper}, which moves the suppliers into
+ * their own table and rebuilds the products table, on a version 10 database with products in
+ * it.
+ */
+public class ProductDbMigrationTest {
+
+    private BenchmarkDatabase mDatabase;
+
+    @Before
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(0, BenchmarkDatabase.SUPPLIERS, 10);
+        insertV10("Tea", "Tea Co", null, 5);
+        insertV10("Mug", "Mug Co", "555-0001", 2);
+        insertV10("Green tea", "Tea Co", "555-0002", 7);
+        insertV10("Pen", null, null, 0);
+        insertV10("Black tea", "Tea Co", "555-0003", 1);
+        insertV10("Large mug", "Mug Co", null, 3);
+        insertV10("Rope", "Rope Co", "555-0004", 9);
+        execute("UPDATE " + ProductEntry.TABLE_NAME + " SET " + ProductEntry.COLUMN_SKU + " = '0042' WHERE "
+                + ProductEntry._ID + " = 2");
+        // The latest products, so their IDs are only kept by the sequence
+        execute("DELETE FROM " + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " IN (5, 7)");
+
+        for (String sql : BenchmarkDatabase.SCHEMA_V11) {
+            execute(sql);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mDatabase.close();
+    }
+
+    @Test
+    public void suppliersAreStoredOncePerNameWithTheirLatestPhone() throws Exception {
+        // In the order of their first products, without those of deleted products only
+        assertEquals(Arrays.asList(
+                Arrays.<Object>asList(1L, "Tea Co", "555-0002"),
+                Arrays.<Object>asList(2L, "Mug Co", "555-0001")),
+                query("SELECT " + SupplierEntry._ID + ", " + SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                        + SupplierEntry.COLUMN_SUPPLIER_PHONE + " FROM " + SupplierEntry.TABLE_NAME
+                        + " ORDER BY " + SupplierEntry._ID));
+    }
+
+    @Test
+    public void productsKeepTheirIdsAndValues() throws Exception {
+        assertEquals(Arrays.asList(
+                Arrays.<Object>asList(1L, "Tea", 1L, 5L, null),
+                Arrays.<Object>asList(2L, "Mug", 2L, 2L, "0042"),
+                Arrays.<Object>asList(3L, "Green tea", 1L, 7L, null),
+                Arrays.<Object>asList(4L, "Pen", null, 0L, null),
+                Arrays.<Object>asList(6L, "Large mug", 2L, 3L, null)),
+                query("SELECT " + ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                        + ProductEntry.COLUMN_SUPPLIER_ID + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                        + ProductEntry.COLUMN_SKU + " FROM " + ProductEntry.TABLE_NAME
+                        + " ORDER BY " + ProductEntry._ID));
+        assertEquals(0, query("PRAGMA foreign_key_check").size());
+    }
+
+    @Test
+    public void deletedIdsAreNotReused() throws Exception {
+        assertEquals(Arrays.asList(Arrays.<Object>asList(ProductEntry.TABLE_NAME, 7L)),
+                query("SELECT name, seq FROM sqlite_sequence WHERE name LIKE 'products%'"));
+        try (PreparedStatement insert = mDatabase.connection.prepareStatement(BenchmarkDatabase.SQL_INSERT_PRODUCT)) {
+            BenchmarkDatabase.bindProduct(insert, new Random(1));
+            insert.executeUpdate();
+        }
+        assertEquals(Arrays.asList(Arrays.<Object>asList(8L)),
+                query("SELECT MAX(" + ProductEntry._ID + ") FROM " + ProductEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void fullTextIndexKeepsItsContentsAndFollowsTheSuppliers() throws Exception {
+        assertEquals(Arrays.asList(
+                Arrays.<Object>asList(1L, "Tea", "Tea Co"),
+                Arrays.<Object>asList(2L, "Mug", "Mug Co"),
+                Arrays.<Object>asList(3L, "Green tea", "Tea Co"),
+                Arrays.<Object>asList(4L, "Pen", null),
+                Arrays.<Object>asList(6L, "Large mug", "Mug Co")),
+                ftsContents());
+
+        // The triggers created again look the supplier name up by ID
+        execute("UPDATE " + SupplierEntry.TABLE_NAME + " SET " + SupplierEntry.COLUMN_SUPPLIER_NAME
+                + " = 'Tea House' WHERE " + SupplierEntry._ID + " = 1");
+        execute("UPDATE " + ProductEntry.TABLE_NAME + " SET " + ProductEntry.COLUMN_SUPPLIER_ID + " = 2 WHERE "
+                + ProductEntry._ID + " = 4");
+        execute("DELETE FROM " + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = 6");
+        assertEquals(Arrays.asList(
+                Arrays.<Object>asList(1L, "Tea", "Tea House"),
+                Arrays.<Object>asList(2L, "Mug", "Mug Co"),
+                Arrays.<Object>asList(3L, "Green tea", "Tea House"),
+                Arrays.<Object>asList(4L, "Pen", "Mug Co")),
+                ftsContents());
+        assertEquals(Arrays.asList(Arrays.<Object>asList(1L), Arrays.<Object>asList(3L)),
+                query("SELECT docid FROM " + ProductDbHelper.FTS_TABLE_NAME + " WHERE "
+                        + ProductDbHelper.FTS_TABLE_NAME + " MATCH 'house' ORDER BY docid"));
+    }
+
+    private List<List<Object>> ftsContents() throws SQLException {
+        return query("SELECT docid, " + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_SUPPLIER_NAME
+                + " FROM " + ProductDbHelper.FTS_TABLE_NAME + " ORDER BY docid");
+    }
+
+    private void insertV10(String name, String supplier, String phone, int quantity) throws SQLException {
+        try (PreparedStatement insert = mDatabase.connection.prepareStatement(BenchmarkDatabase.SQL_INSERT_PRODUCT_V10)) {
+            insert.setString(1, name);
+            insert.setString(2, supplier);
+            insert.setString(3, phone);
+            insert.setInt(4, ProductEntry.GOODS);
+            insert.setInt(5, quantity);
+            insert.setInt(6, 100);
+            insert.setInt(7, 0);
+            insert.executeUpdate();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement statement = mDatabase.connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * Return the rows of a query, with integers as Longs.
+     */
+    private List<List<Object>> query(String sql) throws SQLException {
+        List<List<Object>> rows = new ArrayList<>();
+        try (Statement statement = mDatabase.connection.createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            int columns = result.getMetaData().getColumnCount();
+            while (result.next()) {
+                List<Object> row = new ArrayList<>();
+                for (int i = 1; i <= columns; i++) {
+                    Object value = result.getObject(i);
+                    row.add(value instanceof Integer ? Long.valueOf((Integer) value) : value);
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
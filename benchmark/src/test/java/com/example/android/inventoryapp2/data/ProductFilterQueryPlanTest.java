@@ -0,0 +1,108 @@
+package com.example.android.inventoryapp2.data;
+
+import com.example.android.inventoryapp2.data.ProductContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the query plan of every combination of filters from {@link ProductFilter}, with every
+ * sort key and direction, on the schema the migrations build. None of them may scan the
+ * products table or one of its indexes from start to end, so a filter that loses its index
+ * fails the build.
+ */
+public class ProductFilterQueryPlanTest {
+
+    /** The catalog list projection */
+    private static final String LIST_COLUMNS = ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", " + ProductEntry.COLUMN_PRODUCT_PRICE;
+
+    /** Filter parameters with a value of the test data, in the order of the combination bits */
+    private static final String[][] FILTERS = {
+            {ProductEntry.QUERY_PARAMETER_TYPE, String.valueOf(ProductEntry.GOODS)},
+            {ProductEntry.QUERY_PARAMETER_SUPPLIER, "tea Co"},
+            {ProductEntry.QUERY_PARAMETER_MIN_PRICE, "100"},
+            {ProductEntry.QUERY_PARAMETER_MAX_PRICE, "150"},
+            {ProductEntry.QUERY_PARAMETER_MIN_QUANTITY, "1"},
+            {ProductEntry.QUERY_PARAMETER_MAX_QUANTITY, "10"}};
+
+    private static final String[] SORTS = {
+            null, ProductEntry.SORT_NAME, ProductEntry.SORT_PRICE, ProductEntry.SORT_QUANTITY, ProductEntry.SORT_ID};
+
+    private static final String[] ORDERS = {ProductEntry.ORDER_ASCENDING, ProductEntry.ORDER_DESCENDING};
+
+    private BenchmarkDatabase mDatabase;
+
+    @Before
+    public void setUp() throws Exception {
+        mDatabase = BenchmarkDatabase.create(1000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mDatabase.close();
+    }
+
+    @Test
+    public void everyFilterSearchesAnIndex() throws Exception {
+        for (int combination = 1; combination < 1 << FILTERS.length; combination++) {
+            for (String sort : SORTS) {
+                for (String order : ORDERS) {
+                    Map<String, String> parameters = new HashMap<>();
+                    for (int i = 0; i < FILTERS.length; i++) {
+                        if ((combination & 1 << i) != 0) {
+                            parameters.put(FILTERS[i][0], FILTERS[i][1]);
+                        }
+                    }
+                    if (sort != null) {
+                        parameters.put(ProductEntry.QUERY_PARAMETER_SORT, sort);
+                        parameters.put(ProductEntry.QUERY_PARAMETER_ORDER, order);
+                    }
+                    ProductFilter filter = ProductFilter.parse(parameters);
+                    String plan = explain(buildQuery(filter, filter.getTable()), filter.selectionArgs);
+                    assertTrue("No index filtering by " + parameters + ": " + plan,
+                            plan.contains("USING INDEX " + filter.index)
+                                    || plan.contains("USING COVERING INDEX " + filter.index));
+                    for (String step : plan.split("\n")) {
+                        assertFalse("Full scan filtering by " + parameters + ": " + plan, step.startsWith("SCAN"));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the details of the query plan of a statement, one step per line.
+     */
+    private String explain(String sql, String[] args) throws Exception {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement explain = mDatabase.connection.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 0; i < args.length; i++) {
+                explain.setString(i + 1, args[i]);
+            }
+            try (ResultSet steps = explain.executeQuery()) {
+                while (steps.next()) {
+                    plan.append(steps.getString("detail")).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+
+    /**
+     * The query the provider runs for a filter on {@link ProductEntry#CONTENT_URI}.
+     */
+    private static String buildQuery(ProductFilter filter, String table) {
+        return "SELECT " + LIST_COLUMNS + " FROM " + table + " WHERE " + filter.selection
+                + (filter.sortOrder == null ? "" : " ORDER BY " + filter.sortOrder);
+    }
+}